@@ -31,6 +31,7 @@ import android.view.inputmethod.EditorInfo;
 import android.widget.ArrayAdapter;
 import android.widget.EditText;
 import com.projecttango.unibw.graphmapper.floorplan.GraphmapperActivity;
+import com.projecttango.unibw.graphmapper.floorplan.PlanExporter;
 import com.projecttango.unibw.graphmapper.floorplan.R;
 import com.projecttango.unibw.graphmapper.graph.MeasurementType;
 import com.projecttango.unibw.graphmapper.floorplan.WallMeasurement;
@@ -1364,7 +1365,7 @@ public class Dialog {
         builder.setAdapter(adapter, new DialogInterface.OnClickListener() {
             public void onClick(DialogInterface dialog, int which) {
                 int level = items.get(which);
-                GraphmapperActivity.PlanView p = contextActivity.drawLevelOnCanvas(level, null, null);
+                GraphmapperActivity.PlanView p = contextActivity.drawLevelOnCanvas(level);
                 contextActivity.setCurrentLevelDraw(level);
                 contextActivity.setCurrentPlanDraw(p);
                 contextActivity.getDrawText().append(", level: " + level);
@@ -1406,7 +1407,7 @@ public class Dialog {
                 for(Hallway h : levelHallwayList) {
                     if(h.getName().equals(s)) {
                         //found hallway
-                        GraphmapperActivity.PlanView p = contextActivity.drawHallwayOnCanvas(h, null, null);
+                        GraphmapperActivity.PlanView p = contextActivity.drawHallwayOnCanvas(h);
                         contextActivity.setCurrentPlanDraw(p);
                         contextActivity.setCurrentHallwayDraw(h);
                         contextActivity.getDrawText().append(", Hallway: " + s);
@@ -1420,4 +1421,38 @@ public class Dialog {
         AlertDialog dialog = builder.create();
         dialog.show();
     }
+
+    /**
+     * Dialog for choosing the resolution of the saved floorplan image.
+     * @param contextActivity (context - activity where the dialog displays)
+     */
+    public static void savePlanDialog(final GraphmapperActivity contextActivity) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(contextActivity);
+        builder.setTitle("Save floorplan: Please choose the resolution of the image!");
+        builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                //do nothing
+            }
+        });
+        final float[] resolutions = PlanExporter.PIXELS_PER_METER_CHOICES;
+        final List<String> items = new ArrayList<String>();
+        for(float pixelsPerMeter : resolutions) {
+            String item = (int) pixelsPerMeter + " pixels per meter";
+            if(pixelsPerMeter == PlanExporter.DEFAULT_PIXELS_PER_METER) {
+                item += " (default)";
+            }
+            items.add(item);
+        }
+        ArrayAdapter<String> adapter = new ArrayAdapter<String>(contextActivity,
+                android.R.layout.simple_spinner_dropdown_item, items);
+        builder.setAdapter(adapter, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int which) {
+                contextActivity.savePlanImage(resolutions[which]);
+            }
+        });
+        builder.setIcon(createScaledIcon(contextActivity, R.drawable.save_icon));
+        builder.setCancelable(false);
+        AlertDialog dialog = builder.create();
+        dialog.show();
+    }
 }
\ No newline at end of file
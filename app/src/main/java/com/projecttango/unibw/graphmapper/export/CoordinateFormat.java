@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+/**
+ * <p>Fast decimal formatting of coordinates for the text based export formats.</p>
+ *
+ * <p>The value is rounded to a fixed number of decimals and appended without String.format, trailing zeros
+ * are removed. The output does not depend on the locale of the device (always a decimal point).</p>
+ *
+ * @version 1.0
+ */
+public final class CoordinateFormat {
+    /** Powers of ten for the supported number of decimals */
+    private static final long[] POWERS = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000};
+
+    /**
+     * Constructor (not used, only static functions)
+     */
+    private CoordinateFormat() {
+    }
+
+    /**
+     * Appends a value rounded to the given number of decimals.
+     * @param builder (target of the text)
+     * @param value (value to be formatted)
+     * @param decimals (number of decimals, 0 to 8)
+     * @return the builder
+     */
+    public static StringBuilder append(StringBuilder builder, double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return builder.append('0');
+        }
+        long power = POWERS[decimals];
+        long scaled = Math.round(Math.abs(value) * power);
+        if (scaled != 0 && value < 0) {
+            builder.append('-');
+        }
+        builder.append(scaled / power);
+        long fraction = scaled % power;
+        if (fraction != 0) {
+            builder.append('.');
+            // Leading zeros of the fraction.
+            for (long p = power / 10; p > fraction; p /= 10) {
+                builder.append('0');
+            }
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+            }
+            builder.append(fraction);
+        }
+        return builder;
+    }
+}
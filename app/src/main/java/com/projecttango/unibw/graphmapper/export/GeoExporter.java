@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.Marker;
+import com.projecttango.unibw.graphmapper.graph.Room;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Exports a graph as georeferenced indoor features (simple indoor tagging of OpenStreetMap).</p>
+ *
+ * <p>Hallways are areas with indoor=corridor (obstacles as inner rings), rooms are points with indoor=room, markers
+ * are survey points and entrypoints are doors, elevators, stairs or entrances. All features have the level of their
+ * hallway. The graph is walked once level by level and hallway by hallway, every point is transformed once and
+ * passed to all writers, so only the rings of one hallway are held in memory.</p>
+ *
+ * @version 1.0
+ */
+public class GeoExporter {
+    /** Transform of the plan to WGS84 */
+    private final GeoReference mReference;
+    /** Reused tags of the current feature */
+    private final Map<String, String> mTags = new LinkedHashMap<String, String>();
+    /** Reused result of the transform */
+    private final double[] mLonLat = new double[2];
+
+    /**
+     * Constructor (Creates an exporter with the given georeferencing)
+     * @param reference (transform of the plan to WGS84)
+     */
+    public GeoExporter(GeoReference reference) {
+        mReference = reference;
+    }
+
+    /**
+     * This function writes all features of the graph to the writers in one pass.
+     * @param graph (navigation graph)
+     * @param writers (targets of the features, null entries are skipped)
+     * @throws IOException (if a writer fails)
+     */
+    public void export(Graph graph, GeoFeatureWriter... writers) throws IOException {
+        for (GeoFeatureWriter writer : writers) {
+            if (writer != null) {
+                writer.begin();
+            }
+        }
+        List<double[]> rings = new ArrayList<double[]>();
+        for (int level : graph.getLevels()) {
+            String levelTag = Integer.toString(level);
+            for (Hallway hallway : graph.getLevelHallways(level)) {
+                rings.clear();
+                if (hallway.getHallwayPoints().size() >= 3) {
+                    rings.add(toRing(hallway.getHallwayPoints()));
+                    for (List<float[]> obstacle : hallway.getObstacles()) {
+                        if (obstacle.size() >= 3) {
+                            rings.add(toRing(obstacle));
+                        }
+                    }
+                    beginTags(levelTag, "indoor", "corridor");
+                    mTags.put("name", hallway.getName());
+                    for (GeoFeatureWriter writer : writers) {
+                        if (writer != null) {
+                            writer.writeArea(mTags, rings);
+                        }
+                    }
+                }
+                for (Room room : hallway.getRooms()) {
+                    beginTags(levelTag, "indoor", "room");
+                    mTags.put("ref", room.getNumber());
+                    writePoint(writers, room.getPosition());
+                }
+                for (Marker marker : hallway.getMarkers()) {
+                    beginTags(levelTag, "man_made", "survey_point");
+                    mTags.put("name", marker.getName());
+                    writePoint(writers, marker.getPosition());
+                }
+                for (Entrypoint entrypoint : hallway.getConnections()) {
+                    putEntrypointTags(levelTag, entrypoint);
+                    mTags.put("name", entrypoint.getName());
+                    writePoint(writers, entrypoint.getPositionFrom());
+                }
+            }
+        }
+        for (GeoFeatureWriter writer : writers) {
+            if (writer != null) {
+                writer.end();
+            }
+        }
+    }
+
+    /**
+     * Clears the tags and sets the main tag and the level.
+     * @param level (level tag)
+     * @param key (key of the main tag)
+     * @param value (value of the main tag)
+     */
+    private void beginTags(String level, String key, String value) {
+        mTags.clear();
+        mTags.put(key, value);
+        mTags.put("level", level);
+    }
+
+    /**
+     * Sets the tags of an entrypoint by its measurement type.
+     * @param level (level tag)
+     * @param entrypoint (entrypoint of a hallway)
+     */
+    private void putEntrypointTags(String level, Entrypoint entrypoint) {
+        if (entrypoint.getType() == null) {
+            beginTags(level, "entrance", "yes");
+            return;
+        }
+        switch (entrypoint.getType()) {
+            case DOOR:
+                beginTags(level, "door", "yes");
+                break;
+            case LIFT:
+                beginTags(level, "highway", "elevator");
+                break;
+            case STAIRS:
+                beginTags(level, "stairs", "yes");
+                break;
+            default:
+                beginTags(level, "entrance", "yes");
+                break;
+        }
+    }
+
+    /**
+     * Transforms a point and writes it with the current tags.
+     * @param writers (targets of the feature)
+     * @param position (point in the OpenGL frame)
+     * @throws IOException (if a writer fails)
+     */
+    private void writePoint(GeoFeatureWriter[] writers, float[] position) throws IOException {
+        mReference.toLonLat(position, mLonLat);
+        for (GeoFeatureWriter writer : writers) {
+            if (writer != null) {
+                writer.writePoint(mTags, mLonLat[0], mLonLat[1]);
+            }
+        }
+    }
+
+    /**
+     * Transforms a ring of corner points.
+     * @param points (corner points in the OpenGL frame)
+     * @return longitude and latitude per corner
+     */
+    private double[] toRing(List<float[]> points) {
+        double[] ring = new double[points.size() * 2];
+        for (int i = 0; i < points.size(); i++) {
+            mReference.toLonLat(points.get(i), mLonLat);
+            ring[2 * i] = mLonLat[0];
+            ring[2 * i + 1] = mLonLat[1];
+        }
+        return ring;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Target of the georeferenced features of a {@link GeoExporter} (e.g. OSM XML or GeoJSON).</p>
+ *
+ * <p>The features are passed one by one and should be written immediately, so the memory of an export does not
+ * depend on the size of the graph. The tags are OSM tags, formats without tags write them as properties.
+ * The tag map and the coordinate arrays are reused by the exporter after the call.</p>
+ *
+ * @version 1.0
+ */
+public interface GeoFeatureWriter {
+    /**
+     * Starts the document.
+     * @throws IOException (if the document can't be written)
+     */
+    void begin() throws IOException;
+
+    /**
+     * Writes an area (e.g. a hallway).
+     * @param tags (tags of the area)
+     * @param rings (outer ring followed by the inner rings, longitude and latitude per corner, not closed)
+     * @throws IOException (if the area can't be written)
+     */
+    void writeArea(Map<String, String> tags, List<double[]> rings) throws IOException;
+
+    /**
+     * Writes a point (e.g. a room or an entrypoint).
+     * @param tags (tags of the point)
+     * @param longitude (longitude in degrees)
+     * @param latitude (latitude in degrees)
+     * @throws IOException (if the point can't be written)
+     */
+    void writePoint(Map<String, String> tags, double longitude, double latitude) throws IOException;
+
+    /**
+     * Ends the document and flushes the target. The target is not closed.
+     * @throws IOException (if the document can't be written)
+     */
+    void end() throws IOException;
+}
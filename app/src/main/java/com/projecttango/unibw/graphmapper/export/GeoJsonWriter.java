@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Writes georeferenced features as a GeoJSON FeatureCollection (RFC 7946).</p>
+ *
+ * <p>Areas are Polygons (outer ring counterclockwise, inner rings clockwise, all rings closed), points are Points.
+ * The tags are written as string properties. Every feature is built in a reused buffer and written at once, one
+ * feature per line.</p>
+ *
+ * @version 1.0
+ */
+public class GeoJsonWriter implements GeoFeatureWriter {
+    /** Number of decimals of the coordinates (about 1 cm) */
+    private static final int DECIMALS = 7;
+
+    /** Target of the document */
+    private final Writer mOut;
+    /** Reused buffer of one feature */
+    private final StringBuilder mBuffer = new StringBuilder(1024);
+    /** Signals if no feature was written yet */
+    private boolean mFirst = true;
+
+    /**
+     * Constructor (Creates a writer for the given target, which should be buffered)
+     * @param out (target of the document)
+     */
+    public GeoJsonWriter(Writer out) {
+        mOut = out;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        mOut.write("{\"type\":\"FeatureCollection\",\"features\":[");
+        mFirst = true;
+    }
+
+    @Override
+    public void writeArea(Map<String, String> tags, List<double[]> rings) throws IOException {
+        StringBuilder b = beginFeature(tags);
+        b.append("\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[");
+        for (int r = 0; r < rings.size(); r++) {
+            double[] ring = rings.get(r);
+            int corners = ring.length / 2;
+            // Outer ring counterclockwise, inner rings clockwise
+            boolean reverse = (getSignedArea(ring) > 0) != (r == 0);
+            if (r > 0) {
+                b.append(',');
+            }
+            b.append('[');
+            for (int i = 0; i <= corners; i++) {
+                int k = reverse ? (corners - i) % corners : i % corners;
+                if (i > 0) {
+                    b.append(',');
+                }
+                appendPosition(b, ring[2 * k], ring[2 * k + 1]);
+            }
+            b.append(']');
+        }
+        b.append("]}}");
+        mOut.append(b);
+    }
+
+    @Override
+    public void writePoint(Map<String, String> tags, double longitude, double latitude) throws IOException {
+        StringBuilder b = beginFeature(tags);
+        b.append("\"geometry\":{\"type\":\"Point\",\"coordinates\":");
+        appendPosition(b, longitude, latitude);
+        b.append("}}");
+        mOut.append(b);
+    }
+
+    @Override
+    public void end() throws IOException {
+        mOut.write("\n]}\n");
+        mOut.flush();
+    }
+
+    /**
+     * Starts a feature with its properties in the buffer.
+     * @param tags (tags of the feature, empty values are skipped)
+     * @return buffer
+     */
+    private StringBuilder beginFeature(Map<String, String> tags) {
+        StringBuilder b = mBuffer;
+        b.setLength(0);
+        b.append(mFirst ? "\n" : ",\n");
+        mFirst = false;
+        b.append("{\"type\":\"Feature\",\"properties\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (tag.getValue() == null || tag.getValue().isEmpty()) {
+                continue;
+            }
+            if (!first) {
+                b.append(',');
+            }
+            first = false;
+            appendString(b, tag.getKey());
+            b.append(':');
+            appendString(b, tag.getValue());
+        }
+        b.append("},");
+        return b;
+    }
+
+    /**
+     * Appends a position [longitude, latitude].
+     * @param b (target buffer)
+     * @param longitude (longitude in degrees)
+     * @param latitude (latitude in degrees)
+     */
+    private static void appendPosition(StringBuilder b, double longitude, double latitude) {
+        b.append('[');
+        CoordinateFormat.append(b, longitude, DECIMALS).append(',');
+        CoordinateFormat.append(b, latitude, DECIMALS).append(']');
+    }
+
+    /**
+     * Appends a JSON string with the special characters escaped.
+     * @param b (target buffer)
+     * @param text (text of the string)
+     */
+    private static void appendString(StringBuilder b, String text) {
+        b.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < 0x20) {
+                String hex = Integer.toHexString(c);
+                b.append("\\u").append("0000".substring(hex.length())).append(hex);
+            } else {
+                b.append(c);
+            }
+        }
+        b.append('"');
+    }
+
+    /**
+     * Calculates the signed area of a ring (positive if it is counterclockwise).
+     * @param ring (longitude and latitude per corner)
+     * @return signed area in square degrees
+     */
+    private static double getSignedArea(double[] ring) {
+        double area = 0;
+        int corners = ring.length / 2;
+        for (int i = 0; i < corners; i++) {
+            int j = (i + 1) % corners;
+            area += ring[2 * i] * ring[2 * j + 1] - ring[2 * j] * ring[2 * i + 1];
+        }
+        return area / 2;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Georeferencing of the local plan coordinates: a 2D similarity transform (rotation, uniform scale and
+ * translation) from the floor plane of the ADF to WGS84.</p>
+ *
+ * <p>The transform is fitted by least squares from two or more reference points with known latitude and longitude,
+ * usually markers of the graph. The plan point (x, -z) of the OpenGL frame is mapped into east/north meters of a
+ * local tangent plane around the mean of the reference points and then to latitude/longitude with an
+ * equirectangular approximation, which is exact enough for buildings (below a millimeter per 100 m).</p>
+ *
+ * @version 1.0
+ */
+public class GeoReference {
+    /** Equatorial radius of the WGS84 ellipsoid in meters */
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    /** Latitude of the origin of the tangent plane in degrees */
+    private final double mOriginLatitude;
+    /** Longitude of the origin of the tangent plane in degrees */
+    private final double mOriginLongitude;
+    /** Meters per degree of latitude */
+    private final double mMetersPerDegreeLatitude;
+    /** Meters per degree of longitude at the origin */
+    private final double mMetersPerDegreeLongitude;
+    /** Scale * cos(rotation) */
+    private final double mA;
+    /** Scale * sin(rotation) */
+    private final double mB;
+    /** Translation to the east in meters */
+    private final double mEast;
+    /** Translation to the north in meters */
+    private final double mNorth;
+    /** Root mean square error of the reference points in meters */
+    private final double mError;
+
+    /**
+     * Constructor (Fits the transform to reference points)
+     * @param localPoints (reference points in the OpenGL frame, float[3] with x, y and z)
+     * @param latLons (WGS84 coordinates of the reference points, double[2] with latitude and longitude in degrees)
+     * @throws IllegalArgumentException (if there are less than two different reference points)
+     */
+    public GeoReference(List<float[]> localPoints, List<double[]> latLons) {
+        int n = localPoints.size();
+        if (n != latLons.size() || n < 2) {
+            throw new IllegalArgumentException("At least two reference points with coordinates are needed");
+        }
+        double latitude = 0;
+        double longitude = 0;
+        for (double[] latLon : latLons) {
+            latitude += latLon[0];
+            longitude += latLon[1];
+        }
+        mOriginLatitude = latitude / n;
+        mOriginLongitude = longitude / n;
+        mMetersPerDegreeLatitude = Math.toRadians(EARTH_RADIUS);
+        mMetersPerDegreeLongitude = mMetersPerDegreeLatitude * Math.cos(Math.toRadians(mOriginLatitude));
+
+        // Centroids of both point sets
+        double[] px = new double[n];
+        double[] py = new double[n];
+        double[] qx = new double[n];
+        double[] qy = new double[n];
+        double mpx = 0;
+        double mpy = 0;
+        double mqx = 0;
+        double mqy = 0;
+        for (int i = 0; i < n; i++) {
+            px[i] = localPoints.get(i)[0];
+            py[i] = -localPoints.get(i)[2];
+            qx[i] = (latLons.get(i)[1] - mOriginLongitude) * mMetersPerDegreeLongitude;
+            qy[i] = (latLons.get(i)[0] - mOriginLatitude) * mMetersPerDegreeLatitude;
+            mpx += px[i] / n;
+            mpy += py[i] / n;
+            mqx += qx[i] / n;
+            mqy += qy[i] / n;
+        }
+        // Least squares similarity (Helmert) transform of the centered points
+        double norm = 0;
+        double dot = 0;
+        double cross = 0;
+        for (int i = 0; i < n; i++) {
+            double x = px[i] - mpx;
+            double y = py[i] - mpy;
+            double u = qx[i] - mqx;
+            double v = qy[i] - mqy;
+            norm += x * x + y * y;
+            dot += x * u + y * v;
+            cross += x * v - y * u;
+        }
+        if (norm < 1e-6) {
+            throw new IllegalArgumentException("The reference points must be at different positions");
+        }
+        mA = dot / norm;
+        mB = cross / norm;
+        mEast = mqx - (mA * mpx - mB * mpy);
+        mNorth = mqy - (mB * mpx + mA * mpy);
+
+        double error = 0;
+        for (int i = 0; i < n; i++) {
+            double u = mA * px[i] - mB * py[i] + mEast - qx[i];
+            double v = mB * px[i] + mA * py[i] + mNorth - qy[i];
+            error += u * u + v * v;
+        }
+        mError = Math.sqrt(error / n);
+    }
+
+    /**
+     * This function fits the transform to the markers of a graph with known coordinates.
+     * @param graph (navigation graph)
+     * @param markerCoordinates (WGS84 coordinates by marker name, double[2] with latitude and longitude)
+     * @return transform of the graph
+     * @throws IllegalArgumentException (if less than two markers have coordinates)
+     */
+    public static GeoReference fromMarkers(Graph graph, Map<String, double[]> markerCoordinates) {
+        List<float[]> localPoints = new ArrayList<float[]>();
+        List<double[]> latLons = new ArrayList<double[]>();
+        for (int level : graph.getLevels()) {
+            for (Hallway hallway : graph.getLevelHallways(level)) {
+                for (Marker marker : hallway.getMarkers()) {
+                    double[] latLon = markerCoordinates.get(marker.getName());
+                    if (latLon != null) {
+                        localPoints.add(marker.getPosition());
+                        latLons.add(latLon);
+                    }
+                }
+            }
+        }
+        return new GeoReference(localPoints, latLons);
+    }
+
+    /**
+     * This function transforms a point of the plan to WGS84.
+     * @param point (point in the OpenGL frame, the height is ignored)
+     * @param result (double[2] for the longitude and the latitude in degrees, GeoJSON order)
+     * @return result
+     */
+    public double[] toLonLat(float[] point, double[] result) {
+        double x = point[0];
+        double y = -point[2];
+        double east = mA * x - mB * y + mEast;
+        double north = mB * x + mA * y + mNorth;
+        result[0] = mOriginLongitude + east / mMetersPerDegreeLongitude;
+        result[1] = mOriginLatitude + north / mMetersPerDegreeLatitude;
+        return result;
+    }
+
+    /**
+     * Getter function for the scale of the transform (1 if the ADF has no scale error).
+     * @return scale
+     */
+    public double getScale() {
+        return Math.hypot(mA, mB);
+    }
+
+    /**
+     * Getter function for the rotation of the plan (angle of the x axis from east, counterclockwise).
+     * @return rotation in degrees
+     */
+    public double getRotation() {
+        return Math.toDegrees(Math.atan2(mB, mA));
+    }
+
+    /**
+     * Getter function for the root mean square error of the reference points (0 for two points).
+     * @return error in meters
+     */
+    public double getError() {
+        return mError;
+    }
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.FloorTriangles;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.Marker;
+import com.projecttango.unibw.graphmapper.graph.PolygonTriangulator;
+import com.projecttango.unibw.graphmapper.graph.Room;
+import com.projecttango.unibw.graphmapper.graph.WallExtrusion;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Writes the graph as a 3D building model in the binary glTF 2.0 format (.glb).</p>
+ *
+ * <p>Every level is one node with one mesh, so viewers and engines can show, hide or stream the levels one by one.
+ * The mesh of a level has one primitive per material: the extruded hallway walls, the floors (obstacles cut out),
+ * the obstacle boxes and a small box for every room, marker and entrypoint. The walls are placed like in the
+ * 3D view of the app, with a fixed offset below the mean height of the hallway corners and a fixed wall height
+ * (see graph.WallExtrusion).</p>
+ *
+ * <p>The vertices are packed straight from the corner points of the hallways into one position, one normal and one
+ * index array (grouped by level and primitive), there is no scene graph in between. The coordinates are the OpenGL
+ * frame of the ADF in meters, which is also the frame of glTF (y up).</p>
+ *
+ * @version 1.0
+ */
+public class GltfWriter {
+    /** Half of the edge length of the POI boxes in meters */
+    private static final float POI_SIZE = 0.1f;
+    /** Color of the hallway walls (RGB) */
+    private static final int WALL_COLOR = 0x00cc00;
+    /** Color of the floors (RGB) */
+    private static final int FLOOR_COLOR = 0xeeeeee;
+    /** Color of the obstacle boxes (RGB) */
+    private static final int OBSTACLE_COLOR = 0xffff00;
+
+    /** Hallway walls */
+    private static final int WALLS = 0;
+    /** Hallway floors */
+    private static final int FLOORS = 1;
+    /** Obstacle boxes */
+    private static final int OBSTACLES = 2;
+    /** Room boxes */
+    private static final int ROOMS = 3;
+    /** Marker boxes */
+    private static final int MARKERS = 4;
+    /** Entrypoint boxes */
+    private static final int ENTRYPOINTS = 5;
+    /** Names of the materials (index is the primitive kind) */
+    private static final String[] MATERIAL_NAMES = {"walls", "floors", "obstacles", "rooms", "markers", "entrypoints"};
+    /** Colors of the materials (index is the primitive kind) */
+    private static final int[] MATERIAL_COLORS = {WALL_COLOR, FLOOR_COLOR, OBSTACLE_COLOR,
+            PlanStyle.ROOM_COLOR, PlanStyle.MARKER_COLOR, PlanStyle.ENTRYPOINT_COLOR};
+    /** Corners of the POI boxes (bits: x = 4, y = 2, z = 1), four per face, counterclockwise from outside */
+    private static final int[] BOX_FACES = {0, 1, 3, 2, 4, 6, 7, 5, 0, 4, 5, 1, 2, 3, 7, 6, 0, 2, 6, 4, 1, 5, 7, 3};
+    /** Normals of the faces of the POI boxes */
+    private static final float[] BOX_NORMALS = {-1, 0, 0, 1, 0, 0, 0, -1, 0, 0, 1, 0, 0, 0, -1, 0, 0, 1};
+
+    /** Magic number of a GLB file ("glTF") */
+    private static final int GLB_MAGIC = 0x46546c67;
+    /** Type of the JSON chunk ("JSON") */
+    private static final int CHUNK_JSON = 0x4e4f534a;
+    /** Type of the binary chunk ("BIN") */
+    private static final int CHUNK_BIN = 0x004e4942;
+    /** Component type of the vertex attributes (FLOAT) */
+    private static final int FLOAT = 5126;
+    /** Component type of the indices (UNSIGNED_INT) */
+    private static final int UNSIGNED_INT = 5125;
+
+    /** Vertex positions (x, y, z) of all primitives */
+    private float[] mPositions = new float[3 * 1024];
+    /** Vertex normals (x, y, z) of all primitives */
+    private float[] mNormals = new float[3 * 1024];
+    /** Number of vertices of all primitives */
+    private int mVertexCount;
+    /** Triangle indices of all primitives (relative to the first vertex of the primitive) */
+    private int[] mIndices = new int[3 * 1024];
+    /** Number of indices of all primitives */
+    private int mIndexCount;
+    /** First vertex of the current primitive */
+    private int mPrimitiveVertex;
+    /** Finished primitives in the order of the buffer */
+    private final List<Primitive> mPrimitives = new ArrayList<Primitive>();
+
+    /**
+     * This function writes the building model of the graph into a GLB file.
+     * @param graph (navigation graph)
+     * @param file (target file)
+     * @throws IOException (if the file can't be written)
+     */
+    public void write(Graph graph, File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        try {
+            write(graph, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * This function writes the building model of the graph as GLB. The stream is not closed.
+     * @param graph (navigation graph)
+     * @param out (target stream)
+     * @throws IOException (if the model can't be written)
+     */
+    public void write(Graph graph, OutputStream out) throws IOException {
+        mVertexCount = 0;
+        mIndexCount = 0;
+        mPrimitives.clear();
+        List<Integer> levels = graph.getLevels();
+        // Index of the first primitive of each level and of the end
+        int[] levelPrimitives = new int[levels.size() + 1];
+        for (int i = 0; i < levels.size(); i++) {
+            levelPrimitives[i] = mPrimitives.size();
+            List<Hallway> hallways = graph.getLevelHallways(levels.get(i));
+            for (int kind = WALLS; kind <= ENTRYPOINTS; kind++) {
+                mPrimitiveVertex = mVertexCount;
+                int firstIndex = mIndexCount;
+                for (Hallway hallway : hallways) {
+                    addHallway(hallway, kind);
+                }
+                if (mIndexCount > firstIndex) {
+                    mPrimitives.add(new Primitive(kind, mPrimitiveVertex, mVertexCount - mPrimitiveVertex,
+                            firstIndex, mIndexCount - firstIndex));
+                }
+            }
+        }
+        levelPrimitives[levels.size()] = mPrimitives.size();
+
+        byte[] json = buildJson(levels, levelPrimitives).getBytes(Charset.forName("UTF-8"));
+        int jsonLength = pad(json.length);
+        int binLength = (2 * mVertexCount * 3 + mIndexCount) * 4;
+        int length = 12 + 8 + jsonLength + (binLength > 0 ? 8 + binLength : 0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(GLB_MAGIC).putInt(2).putInt(length);
+        buffer.putInt(jsonLength).putInt(CHUNK_JSON);
+        flush(buffer, out);
+        out.write(json);
+        for (int i = json.length; i < jsonLength; i++) {
+            out.write(' ');
+        }
+        if (binLength > 0) {
+            buffer.putInt(binLength).putInt(CHUNK_BIN);
+            for (int i = 0; i < mVertexCount * 3; i++) {
+                putFloat(buffer, out, mPositions[i]);
+            }
+            for (int i = 0; i < mVertexCount * 3; i++) {
+                putFloat(buffer, out, mNormals[i]);
+            }
+            for (int i = 0; i < mIndexCount; i++) {
+                if (buffer.remaining() < 4) {
+                    flush(buffer, out);
+                }
+                buffer.putInt(mIndices[i]);
+            }
+            flush(buffer, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Adds the geometry of one kind of a hallway to the current primitive.
+     * @param hallway (hallway of the current level)
+     * @param kind (kind of the primitive, e.g. WALLS)
+     */
+    private void addHallway(Hallway hallway, int kind) {
+        List<float[]> points = hallway.getHallwayPoints();
+        float floor = WallExtrusion.getFloorHeight(points);
+        float ceiling = floor + WallExtrusion.WALL_HEIGHT;
+        switch (kind) {
+            case WALLS:
+                addWalls(points, floor, ceiling);
+                break;
+            case FLOORS:
+                addHorizontal(hallway.getFloorTriangles(), floor);
+                break;
+            case OBSTACLES:
+                List<List<float[]>> noHoles = Collections.emptyList();
+                for (List<float[]> obstacle : hallway.getObstacles()) {
+                    addWalls(obstacle, floor, ceiling);
+                    addHorizontal(PolygonTriangulator.triangulate(obstacle, noHoles), ceiling);
+                }
+                break;
+            case ROOMS:
+                for (Room room : hallway.getRooms()) {
+                    addBox(room.getPosition());
+                }
+                break;
+            case MARKERS:
+                for (Marker marker : hallway.getMarkers()) {
+                    addBox(marker.getPosition());
+                }
+                break;
+            default:
+                for (Entrypoint entrypoint : hallway.getConnections()) {
+                    addBox(entrypoint.getPositionFrom());
+                }
+                break;
+        }
+    }
+
+    /**
+     * Extrudes a closed ring into wall quads (the materials of walls are double sided, so the direction of the ring is free).
+     * @param ring (corner points)
+     * @param floor (height of the floor)
+     * @param ceiling (height of the ceiling)
+     */
+    private void addWalls(List<float[]> ring, float floor, float ceiling) {
+        ensureCapacity(ring.size() * 4, ring.size() * 6);
+        for (int i = 0; i < ring.size(); i++) {
+            float[] from = ring.get(i);
+            float[] to = ring.get((i + 1) % ring.size());
+            float dx = to[0] - from[0];
+            float dz = to[2] - from[2];
+            float length = (float) Math.sqrt(dx * dx + dz * dz);
+            if (length == 0) {
+                continue;
+            }
+            // horizontal normal of the wall
+            float nx = -dz / length;
+            float nz = dx / length;
+            int v = addVertex(from[0], floor, from[2], nx, 0, nz);
+            addVertex(to[0], floor, to[2], nx, 0, nz);
+            addVertex(to[0], ceiling, to[2], nx, 0, nz);
+            addVertex(from[0], ceiling, from[2], nx, 0, nz);
+            addQuad(v);
+        }
+    }
+
+    /**
+     * Adds horizontal triangles facing up (e.g. a floor).
+     * @param triangles (triangles with x/z vertices)
+     * @param height (height of the triangles)
+     */
+    private void addHorizontal(FloorTriangles triangles, float height) {
+        float[] vertices = triangles.getVertices();
+        int[] indices = triangles.getIndices();
+        ensureCapacity(vertices.length / 2, indices.length);
+        int first = mVertexCount - mPrimitiveVertex;
+        for (int i = 0; i < vertices.length / 2; i++) {
+            addVertex(vertices[2 * i], height, vertices[2 * i + 1], 0, 1, 0);
+        }
+        for (int t = 0; t < indices.length; t += 3) {
+            int a = indices[t];
+            int b = indices[t + 1];
+            int c = indices[t + 2];
+            // counterclockwise seen from above (the y component of the normal is positive)
+            float cross = (vertices[2 * b + 1] - vertices[2 * a + 1]) * (vertices[2 * c] - vertices[2 * a])
+                    - (vertices[2 * b] - vertices[2 * a]) * (vertices[2 * c + 1] - vertices[2 * a + 1]);
+            if (cross < 0) {
+                int swap = b;
+                b = c;
+                c = swap;
+            }
+            mIndices[mIndexCount++] = first + a;
+            mIndices[mIndexCount++] = first + b;
+            mIndices[mIndexCount++] = first + c;
+        }
+    }
+
+    /**
+     * Adds a small box around a POI.
+     * @param center (position of the POI)
+     */
+    private void addBox(float[] center) {
+        ensureCapacity(24, 36);
+        for (int face = 0; face < 6; face++) {
+            int v = mVertexCount - mPrimitiveVertex;
+            for (int k = 0; k < 4; k++) {
+                int corner = BOX_FACES[face * 4 + k];
+                addVertex(center[0] + ((corner & 4) != 0 ? POI_SIZE : -POI_SIZE),
+                        center[1] + ((corner & 2) != 0 ? POI_SIZE : -POI_SIZE),
+                        center[2] + ((corner & 1) != 0 ? POI_SIZE : -POI_SIZE),
+                        BOX_NORMALS[face * 3], BOX_NORMALS[face * 3 + 1], BOX_NORMALS[face * 3 + 2]);
+            }
+            addQuad(v);
+        }
+    }
+
+    /**
+     * Adds a vertex to the current primitive (the capacity must be ensured).
+     * @param x (x coordinate)
+     * @param y (y coordinate)
+     * @param z (z coordinate)
+     * @param nx (x component of the normal)
+     * @param ny (y component of the normal)
+     * @param nz (z component of the normal)
+     * @return index of the vertex in the current primitive
+     */
+    private int addVertex(float x, float y, float z, float nx, float ny, float nz) {
+        int p = mVertexCount * 3;
+        mPositions[p] = x;
+        mPositions[p + 1] = y;
+        mPositions[p + 2] = z;
+        mNormals[p] = nx;
+        mNormals[p + 1] = ny;
+        mNormals[p + 2] = nz;
+        return mVertexCount++ - mPrimitiveVertex;
+    }
+
+    /**
+     * Adds the two triangles of a quad (the capacity must be ensured).
+     * @param v (index of the first of four counterclockwise vertices in the current primitive)
+     */
+    private void addQuad(int v) {
+        mIndices[mIndexCount++] = v;
+        mIndices[mIndexCount++] = v + 1;
+        mIndices[mIndexCount++] = v + 2;
+        mIndices[mIndexCount++] = v;
+        mIndices[mIndexCount++] = v + 2;
+        mIndices[mIndexCount++] = v + 3;
+    }
+
+    /**
+     * Grows the arrays (doubling) so that the given number of vertices and indices can be added.
+     * @param vertices (number of vertices to be added)
+     * @param indices (number of indices to be added)
+     */
+    private void ensureCapacity(int vertices, int indices) {
+        int positions = (mVertexCount + vertices) * 3;
+        if (positions > mPositions.length) {
+            int size = Math.max(positions, mPositions.length * 2);
+            mPositions = Arrays.copyOf(mPositions, size);
+            mNormals = Arrays.copyOf(mNormals, size);
+        }
+        if (mIndexCount + indices > mIndices.length) {
+            mIndices = Arrays.copyOf(mIndices, Math.max(mIndexCount + indices, mIndices.length * 2));
+        }
+    }
+
+    /**
+     * This function builds the JSON chunk: one node and one mesh per level, three accessors per primitive and
+     * three buffer views (positions, normals and indices).
+     * @param levels (levels of the graph)
+     * @param levelPrimitives (index of the first primitive of each level and of the end)
+     * @return JSON of the model
+     */
+    private String buildJson(List<Integer> levels, int[] levelPrimitives) {
+        StringBuilder b = new StringBuilder(4096);
+        b.append("{\"asset\":{\"version\":\"2.0\",\"generator\":\"Graphmapper\"},\"scene\":0,\"scenes\":[{");
+        if (levels.isEmpty()) {
+            return b.append("}]}").toString();
+        }
+        b.append("\"nodes\":[");
+        for (int i = 0; i < levels.size(); i++) {
+            b.append(i > 0 ? "," : "").append(i);
+        }
+        b.append("]}],\"nodes\":[");
+        int meshes = 0;
+        for (int i = 0; i < levels.size(); i++) {
+            b.append(i > 0 ? "," : "").append("{\"name\":\"Level ").append(levels.get(i)).append('"');
+            if (levelPrimitives[i + 1] > levelPrimitives[i]) {
+                b.append(",\"mesh\":").append(meshes++);
+            }
+            b.append(",\"extras\":{\"level\":").append(levels.get(i)).append("}}");
+        }
+        b.append(']');
+        if (!mPrimitives.isEmpty()) {
+            b.append(",\"meshes\":[");
+            boolean first = true;
+            for (int i = 0; i < levels.size(); i++) {
+                if (levelPrimitives[i + 1] == levelPrimitives[i]) {
+                    continue;
+                }
+                b.append(first ? "" : ",").append("{\"name\":\"Level ").append(levels.get(i)).append("\",\"primitives\":[");
+                first = false;
+                for (int p = levelPrimitives[i]; p < levelPrimitives[i + 1]; p++) {
+                    b.append(p > levelPrimitives[i] ? "," : "").append("{\"attributes\":{\"POSITION\":").append(3 * p)
+                            .append(",\"NORMAL\":").append(3 * p + 1).append("},\"indices\":").append(3 * p + 2)
+                            .append(",\"material\":").append(mPrimitives.get(p).mKind).append(",\"mode\":4}");
+                }
+                b.append("]}");
+            }
+            b.append("],\"materials\":[");
+            for (int kind = WALLS; kind <= ENTRYPOINTS; kind++) {
+                int color = MATERIAL_COLORS[kind];
+                b.append(kind > 0 ? "," : "").append("{\"name\":\"").append(MATERIAL_NAMES[kind])
+                        .append("\",\"pbrMetallicRoughness\":{\"baseColorFactor\":[");
+                appendColor(b, color >> 16 & 0xff).append(',');
+                appendColor(b, color >> 8 & 0xff).append(',');
+                appendColor(b, color & 0xff).append(",1],\"metallicFactor\":0,\"roughnessFactor\":1}");
+                b.append(kind == WALLS || kind == OBSTACLES ? ",\"doubleSided\":true}" : "}");
+            }
+            b.append("],\"accessors\":[");
+            for (int p = 0; p < mPrimitives.size(); p++) {
+                Primitive primitive = mPrimitives.get(p);
+                b.append(p > 0 ? "," : "");
+                b.append("{\"bufferView\":0,\"byteOffset\":").append(primitive.mFirstVertex * 12)
+                        .append(",\"componentType\":").append(FLOAT).append(",\"count\":").append(primitive.mVertexCount)
+                        .append(",\"type\":\"VEC3\",\"min\":");
+                appendBounds(b, primitive, true).append(",\"max\":");
+                appendBounds(b, primitive, false).append("},");
+                b.append("{\"bufferView\":1,\"byteOffset\":").append(primitive.mFirstVertex * 12)
+                        .append(",\"componentType\":").append(FLOAT).append(",\"count\":").append(primitive.mVertexCount)
+                        .append(",\"type\":\"VEC3\"},");
+                b.append("{\"bufferView\":2,\"byteOffset\":").append(primitive.mFirstIndex * 4)
+                        .append(",\"componentType\":").append(UNSIGNED_INT).append(",\"count\":").append(primitive.mIndexCount)
+                        .append(",\"type\":\"SCALAR\"}");
+            }
+            int vertexBytes = mVertexCount * 12;
+            b.append("],\"bufferViews\":[{\"buffer\":0,\"byteOffset\":0,\"byteLength\":").append(vertexBytes)
+                    .append(",\"target\":34962},{\"buffer\":0,\"byteOffset\":").append(vertexBytes)
+                    .append(",\"byteLength\":").append(vertexBytes)
+                    .append(",\"target\":34962},{\"buffer\":0,\"byteOffset\":").append(2 * vertexBytes)
+                    .append(",\"byteLength\":").append(mIndexCount * 4)
+                    .append(",\"target\":34963}],\"buffers\":[{\"byteLength\":")
+                    .append(2 * vertexBytes + mIndexCount * 4).append("}]");
+        }
+        return b.append('}').toString();
+    }
+
+    /**
+     * Appends the minimum or maximum position of a primitive (required by glTF for the POSITION accessor).
+     * @param b (target buffer)
+     * @param primitive (finished primitive)
+     * @param min (true for the minimum, false for the maximum)
+     * @return b
+     */
+    private StringBuilder appendBounds(StringBuilder b, Primitive primitive, boolean min) {
+        b.append('[');
+        for (int axis = 0; axis < 3; axis++) {
+            float value = mPositions[primitive.mFirstVertex * 3 + axis];
+            for (int v = primitive.mFirstVertex; v < primitive.mFirstVertex + primitive.mVertexCount; v++) {
+                value = min ? Math.min(value, mPositions[v * 3 + axis]) : Math.max(value, mPositions[v * 3 + axis]);
+            }
+            b.append(axis > 0 ? "," : "").append(value);
+        }
+        return b.append(']');
+    }
+
+    /**
+     * Appends a color channel as linear factor (glTF colors are linear, the plan colors are sRGB).
+     * @param b (target buffer)
+     * @param channel (sRGB channel 0..255)
+     * @return b
+     */
+    private static StringBuilder appendColor(StringBuilder b, int channel) {
+        double c = channel / 255.0;
+        double linear = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        return CoordinateFormat.append(b, linear, 4);
+    }
+
+    /**
+     * Puts a float into the buffer and flushes the buffer if it is full.
+     * @param buffer (little endian buffer)
+     * @param out (target stream)
+     * @param value (value to be written)
+     * @throws IOException (if the stream fails)
+     */
+    private static void putFloat(ByteBuffer buffer, OutputStream out, float value) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush(buffer, out);
+        }
+        buffer.putFloat(value);
+    }
+
+    /**
+     * Writes the content of the buffer to the stream and clears the buffer.
+     * @param buffer (buffer with a backing array)
+     * @param out (target stream)
+     * @throws IOException (if the stream fails)
+     */
+    private static void flush(ByteBuffer buffer, OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+
+    /**
+     * Rounds a chunk length up to a multiple of four bytes (required by GLB).
+     * @param length (length in bytes)
+     * @return padded length
+     */
+    private static int pad(int length) {
+        return (length + 3) & ~3;
+    }
+
+    /**
+     * Range of one primitive in the vertex and index arrays.
+     */
+    private static class Primitive {
+        /** Kind of the primitive (index of the material) */
+        private final int mKind;
+        /** First vertex */
+        private final int mFirstVertex;
+        /** Number of vertices */
+        private final int mVertexCount;
+        /** First index */
+        private final int mFirstIndex;
+        /** Number of indices */
+        private final int mIndexCount;
+
+        /**
+         * Constructor (Creates a finished primitive)
+         * @param kind (kind of the primitive)
+         * @param firstVertex (first vertex)
+         * @param vertexCount (number of vertices)
+         * @param firstIndex (first index)
+         * @param indexCount (number of indices)
+         */
+        Primitive(int kind, int firstVertex, int vertexCount, int firstIndex, int indexCount) {
+            mKind = kind;
+            mFirstVertex = firstVertex;
+            mVertexCount = vertexCount;
+            mFirstIndex = firstIndex;
+            mIndexCount = indexCount;
+        }
+    }
+}
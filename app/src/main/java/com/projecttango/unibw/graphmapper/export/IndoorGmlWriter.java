@@ -0,0 +1,508 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Writes the navigation graph as an IndoorGML 1.0 document.</p>
+ *
+ * <p>Every hallway is a CellSpace with its outline as polygon (obstacles as interior rings) and a dual State at
+ * the center of the outline. Every entrypoint is a State (transition node) at its position, which is connected to
+ * the State of its hallway. Each level is a SpaceLayer. Connections between entrypoints of the same level are
+ * Transitions, connections to another level (LIFT and STAIRS) are InterLayerConnections. A connection is stored at
+ * both hallways in the graph but written only once.</p>
+ *
+ * <p>The coordinates are written in meters in a right-handed frame with the height as third axis
+ * (x, -z, y of the OpenGL frame of the ADF). The document is streamed hallway by hallway with an
+ * {@link XmlStreamWriter}, so only the graph itself is kept in memory.</p>
+ *
+ * @version 1.0
+ */
+public class IndoorGmlWriter {
+    /** Namespace of GML 3.2 */
+    private static final String GML_NS = "http://www.opengis.net/gml/3.2";
+    /** Namespace of the IndoorGML core module */
+    private static final String CORE_NS = "http://www.opengis.net/indoorgml/1.0/core";
+    /** Namespace of XLink */
+    private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+    /** Number of decimals of the coordinates (millimeters) */
+    private static final int DECIMALS = 3;
+
+    /** Writer of the current document */
+    private XmlStreamWriter mXml;
+    /** Reused buffer of coordinate lists */
+    private final StringBuilder mBuffer = new StringBuilder(1024);
+
+    /**
+     * This function writes the graph into an IndoorGML file.
+     * @param graph (navigation graph)
+     * @param file (target file)
+     * @throws IOException (if the file can't be written)
+     */
+    public void write(Graph graph, File file) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024);
+        try {
+            write(graph, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * This function writes the graph as an IndoorGML document. The writer is not closed.
+     * @param graph (navigation graph)
+     * @param out (target of the document)
+     * @throws IOException (if the document can't be written)
+     */
+    public void write(Graph graph, Writer out) throws IOException {
+        mXml = new XmlStreamWriter(out);
+        List<Integer> levels = graph.getLevels();
+        mXml.writeStartDocument();
+        mXml.writeStartElement("core:IndoorFeatures");
+        mXml.writeAttribute("xmlns:gml", GML_NS);
+        mXml.writeAttribute("xmlns:core", CORE_NS);
+        mXml.writeAttribute("xmlns:xlink", XLINK_NS);
+        mXml.writeAttribute("gml:id", "IFs");
+
+        // Primal space: one cell per hallway
+        mXml.writeStartElement("core:primalSpaceFeatures");
+        mXml.writeStartElement("core:PrimalSpaceFeatures");
+        mXml.writeAttribute("gml:id", "PSFs");
+        for (int level : levels) {
+            for (Hallway hallway : graph.getLevelHallways(level)) {
+                writeCellSpace(hallway);
+            }
+        }
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+
+        // Dual space: one layer per level
+        mXml.writeStartElement("core:multiLayeredGraph");
+        mXml.writeStartElement("core:MultiLayeredGraph");
+        mXml.writeAttribute("gml:id", "MLG");
+        mXml.writeStartElement("core:spaceLayers");
+        mXml.writeAttribute("gml:id", "SLs");
+        for (int level : levels) {
+            writeSpaceLayer(graph, level);
+        }
+        mXml.writeEndElement();
+        if (hasInterLayerConnections(graph)) {
+            mXml.writeStartElement("core:interEdges");
+            mXml.writeAttribute("gml:id", "IEs");
+            for (int level : levels) {
+                for (Hallway hallway : graph.getLevelHallways(level)) {
+                    writeInterLayerConnections(graph, hallway);
+                }
+            }
+            mXml.writeEndElement();
+        }
+        mXml.writeEndDocument();
+        mXml = null;
+    }
+
+    /**
+     * Writes the cell space of a hallway.
+     * @param hallway (hallway)
+     * @throws IOException (if the cell can't be written)
+     */
+    private void writeCellSpace(Hallway hallway) throws IOException {
+        int id = hallway.getID();
+        mXml.writeStartElement("core:cellSpaceMember");
+        mXml.writeStartElement("core:CellSpace");
+        mXml.writeAttribute("gml:id", "C" + id);
+        mXml.writeTextElement("gml:description", "level " + hallway.getLevel());
+        writeName(hallway.getName());
+        List<float[]> outline = hallway.getHallwayPoints();
+        if (outline.size() >= 3) {
+            mXml.writeStartElement("core:cellSpaceGeometry");
+            mXml.writeStartElement("core:Geometry2D");
+            mXml.writeStartElement("gml:Polygon");
+            mXml.writeAttribute("gml:id", "CG" + id);
+            mXml.writeAttribute("srsDimension", "3");
+            writeRing("gml:exterior", outline);
+            for (List<float[]> obstacle : hallway.getObstacles()) {
+                if (obstacle.size() >= 3) {
+                    writeRing("gml:interior", obstacle);
+                }
+            }
+            mXml.writeEndElement();
+            mXml.writeEndElement();
+            mXml.writeEndElement();
+        }
+        writeReference("core:duality", "S" + id);
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+    }
+
+    /**
+     * Writes the states and transitions of a level.
+     * @param graph (navigation graph, for the connected hallways)
+     * @param level (level of the layer)
+     * @throws IOException (if the layer can't be written)
+     */
+    private void writeSpaceLayer(Graph graph, int level) throws IOException {
+        List<Hallway> hallways = graph.getLevelHallways(level);
+        mXml.writeStartElement("core:spaceLayerMember");
+        mXml.writeStartElement("core:SpaceLayer");
+        mXml.writeAttribute("gml:id", getLayerID(level));
+        mXml.writeTextElement("gml:name", "level " + level);
+
+        mXml.writeStartElement("core:nodes");
+        mXml.writeAttribute("gml:id", "N" + getLayerID(level));
+        for (Hallway hallway : hallways) {
+            int id = hallway.getID();
+            mXml.writeStartElement("core:stateMember");
+            mXml.writeStartElement("core:State");
+            mXml.writeAttribute("gml:id", "S" + id);
+            writeName(hallway.getName());
+            writeReference("core:duality", "C" + id);
+            writePoint("SG" + id, getCenter(hallway.getHallwayPoints()));
+            mXml.writeEndElement();
+            mXml.writeEndElement();
+            List<Entrypoint> entrypoints = hallway.getConnections();
+            for (int k = 0; k < entrypoints.size(); k++) {
+                Entrypoint entrypoint = entrypoints.get(k);
+                mXml.writeStartElement("core:stateMember");
+                mXml.writeStartElement("core:State");
+                mXml.writeAttribute("gml:id", getEntrypointID(id, k));
+                if (entrypoint.getType() != null) {
+                    mXml.writeTextElement("gml:description", entrypoint.getType().name());
+                }
+                writeName(entrypoint.getName());
+                writePoint("G" + getEntrypointID(id, k), entrypoint.getPositionFrom());
+                mXml.writeEndElement();
+                mXml.writeEndElement();
+            }
+        }
+        mXml.writeEndElement();
+
+        mXml.writeStartElement("core:edges");
+        mXml.writeAttribute("gml:id", "E" + getLayerID(level));
+        for (Hallway hallway : hallways) {
+            int id = hallway.getID();
+            float[] center = getCenter(hallway.getHallwayPoints());
+            List<Entrypoint> entrypoints = hallway.getConnections();
+            for (int k = 0; k < entrypoints.size(); k++) {
+                Entrypoint entrypoint = entrypoints.get(k);
+                // Hallway -> entrypoint
+                writeTransition("T" + getEntrypointID(id, k), "S" + id, getEntrypointID(id, k),
+                        center, entrypoint.getPositionFrom());
+                // Entrypoint -> connected entrypoint on the same level
+                for (int n = 0; n < entrypoint.getHallwayToIDList().size(); n++) {
+                    Hallway target = graph.searchHallway(entrypoint.getHallwayToIDList().get(n));
+                    if (target == null || target.getLevel() != level) {
+                        continue;
+                    }
+                    float[] positionTo = entrypoint.getPositionToList().get(n);
+                    int peer = findPeer(target, id, positionTo);
+                    if (isWrittenHere(id, k, target.getID(), peer)) {
+                        writeTransition("T" + getEntrypointID(id, k) + "_" + n, getEntrypointID(id, k),
+                                getTargetID(target.getID(), peer), entrypoint.getPositionFrom(), positionTo);
+                    }
+                }
+            }
+        }
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+    }
+
+    /**
+     * Writes the connections of the entrypoints of a hallway to other levels.
+     * @param graph (navigation graph)
+     * @param hallway (hallway with the entrypoints)
+     * @throws IOException (if the connections can't be written)
+     */
+    private void writeInterLayerConnections(Graph graph, Hallway hallway) throws IOException {
+        int id = hallway.getID();
+        List<Entrypoint> entrypoints = hallway.getConnections();
+        for (int k = 0; k < entrypoints.size(); k++) {
+            Entrypoint entrypoint = entrypoints.get(k);
+            for (int n = 0; n < entrypoint.getHallwayToIDList().size(); n++) {
+                Hallway target = graph.searchHallway(entrypoint.getHallwayToIDList().get(n));
+                if (target == null || target.getLevel() == hallway.getLevel()) {
+                    continue;
+                }
+                int peer = findPeer(target, id, entrypoint.getPositionToList().get(n));
+                if (!isWrittenHere(id, k, target.getID(), peer)) {
+                    continue;
+                }
+                mXml.writeStartElement("core:interLayerConnectionMember");
+                mXml.writeStartElement("core:InterLayerConnection");
+                mXml.writeAttribute("gml:id", "I" + getEntrypointID(id, k) + "_" + n);
+                mXml.writeTextElement("core:typeOfTopoExpression", "OVERLAPS");
+                mXml.writeTextElement("core:comment", entrypoint.getType() != null ? entrypoint.getType().name() : "");
+                writeReference("core:interConnects", getEntrypointID(id, k));
+                writeReference("core:interConnects", getTargetID(target.getID(), peer));
+                writeReference("core:connectedLayers", getLayerID(hallway.getLevel()));
+                writeReference("core:connectedLayers", getLayerID(target.getLevel()));
+                mXml.writeEndElement();
+                mXml.writeEndElement();
+            }
+        }
+    }
+
+    /**
+     * Signals if the graph has a connection between two levels (the inter edges must not be empty).
+     * @param graph (navigation graph)
+     * @return true if an entrypoint is connected to a hallway of another level
+     */
+    private static boolean hasInterLayerConnections(Graph graph) {
+        for (Hallway hallway : graph.getGraph().values()) {
+            for (Entrypoint entrypoint : hallway.getConnections()) {
+                for (int id : entrypoint.getHallwayToIDList()) {
+                    Hallway target = graph.searchHallway(id);
+                    if (target != null && target.getLevel() != hallway.getLevel()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the entrypoint of the target hallway which is the other end of a connection.
+     * @param target (connected hallway)
+     * @param fromID (ID of the hallway of the connection)
+     * @param positionTo (position of the other end stored in the connection)
+     * @return index of the entrypoint in the target hallway or -1 if the target has no matching entrypoint
+     */
+    private static int findPeer(Hallway target, int fromID, float[] positionTo) {
+        int best = -1;
+        float bestDistance = Float.MAX_VALUE;
+        List<Entrypoint> entrypoints = target.getConnections();
+        for (int k = 0; k < entrypoints.size(); k++) {
+            Entrypoint entrypoint = entrypoints.get(k);
+            if (!entrypoint.getHallwayToIDList().contains(fromID)) {
+                continue;
+            }
+            float[] position = entrypoint.getPositionFrom();
+            if (Arrays.equals(position, positionTo)) {
+                return k;
+            }
+            float dx = position[0] - positionTo[0];
+            float dy = position[1] - positionTo[1];
+            float dz = position[2] - positionTo[2];
+            float distance = dx * dx + dy * dy + dz * dz;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Signals if a connection is written from this side. Connections are stored at both entrypoints,
+     * they are written from the entrypoint with the smaller hallway ID (and index).
+     * @param id (ID of the hallway)
+     * @param k (index of the entrypoint)
+     * @param targetID (ID of the connected hallway)
+     * @param peer (index of the connected entrypoint, -1 if the connection is only stored here)
+     * @return true if the connection is written for this entrypoint
+     */
+    private static boolean isWrittenHere(int id, int k, int targetID, int peer) {
+        return peer < 0 || id < targetID || (id == targetID && k < peer);
+    }
+
+    /**
+     * Writes a transition between two states.
+     * @param gmlID (ID of the transition)
+     * @param from (ID of the first state)
+     * @param to (ID of the second state)
+     * @param fromPosition (position of the first state)
+     * @param toPosition (position of the second state)
+     * @throws IOException (if the transition can't be written)
+     */
+    private void writeTransition(String gmlID, String from, String to, float[] fromPosition, float[] toPosition)
+            throws IOException {
+        mXml.writeStartElement("core:transitionMember");
+        mXml.writeStartElement("core:Transition");
+        mXml.writeAttribute("gml:id", gmlID);
+        float dx = toPosition[0] - fromPosition[0];
+        float dy = toPosition[1] - fromPosition[1];
+        float dz = toPosition[2] - fromPosition[2];
+        mBuffer.setLength(0);
+        mXml.writeTextElement("core:weight",
+                CoordinateFormat.append(mBuffer, Math.sqrt(dx * dx + dy * dy + dz * dz), DECIMALS));
+        writeReference("core:connects", from);
+        writeReference("core:connects", to);
+        mXml.writeStartElement("core:geometry");
+        mXml.writeStartElement("gml:LineString");
+        mXml.writeAttribute("gml:id", "G" + gmlID);
+        mXml.writeAttribute("srsDimension", "3");
+        mBuffer.setLength(0);
+        appendPosition(fromPosition).append(' ');
+        appendPosition(toPosition);
+        mXml.writeTextElement("gml:posList", mBuffer);
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+    }
+
+    /**
+     * Writes a closed linear ring (the first point is repeated at the end).
+     * @param name (element of the ring, "gml:exterior" or "gml:interior")
+     * @param points (corner points of the ring)
+     * @throws IOException (if the ring can't be written)
+     */
+    private void writeRing(String name, List<float[]> points) throws IOException {
+        mXml.writeStartElement(name);
+        mXml.writeStartElement("gml:LinearRing");
+        mBuffer.setLength(0);
+        for (float[] point : points) {
+            appendPosition(point).append(' ');
+        }
+        appendPosition(points.get(0));
+        mXml.writeTextElement("gml:posList", mBuffer);
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+    }
+
+    /**
+     * Writes the geometry of a state.
+     * @param gmlID (ID of the point)
+     * @param position (position of the state)
+     * @throws IOException (if the point can't be written)
+     */
+    private void writePoint(String gmlID, float[] position) throws IOException {
+        mXml.writeStartElement("core:geometry");
+        mXml.writeStartElement("gml:Point");
+        mXml.writeAttribute("gml:id", gmlID);
+        mXml.writeAttribute("srsDimension", "3");
+        mBuffer.setLength(0);
+        mXml.writeTextElement("gml:pos", appendPosition(position));
+        mXml.writeEndElement();
+        mXml.writeEndElement();
+    }
+
+    /**
+     * Writes a name if it is set.
+     * @param name (name or null)
+     * @throws IOException (if the name can't be written)
+     */
+    private void writeName(String name) throws IOException {
+        if (name != null && !name.isEmpty()) {
+            mXml.writeTextElement("gml:name", name);
+        }
+    }
+
+    /**
+     * Writes a reference to an object of the document.
+     * @param name (element of the reference)
+     * @param gmlID (ID of the referenced object)
+     * @throws IOException (if the reference can't be written)
+     */
+    private void writeReference(String name, String gmlID) throws IOException {
+        mXml.writeStartElement(name);
+        mXml.writeAttribute("xlink:href", "#" + gmlID);
+        mXml.writeEndElement();
+    }
+
+    /**
+     * Appends a position in the IndoorGML frame (x, -z, y).
+     * @param point (point in the OpenGL frame)
+     * @return the coordinate buffer
+     */
+    private StringBuilder appendPosition(float[] point) {
+        CoordinateFormat.append(mBuffer, point[0], DECIMALS).append(' ');
+        CoordinateFormat.append(mBuffer, -point[2], DECIMALS).append(' ');
+        return CoordinateFormat.append(mBuffer, point[1], DECIMALS);
+    }
+
+    /**
+     * Calculates the center of an outline (centroid of the area, mean of the corners for degenerated outlines).
+     * @param points (corner points of the outline)
+     * @return center (x, y, z), the height is the mean height of the corners
+     */
+    private static float[] getCenter(List<float[]> points) {
+        float[] mean = new float[3];
+        if (points.isEmpty()) {
+            return mean;
+        }
+        double area = 0;
+        double cx = 0;
+        double cz = 0;
+        for (int i = 0; i < points.size(); i++) {
+            float[] a = points.get(i);
+            float[] b = points.get((i + 1) % points.size());
+            double cross = (double) a[0] * b[2] - (double) b[0] * a[2];
+            area += cross;
+            cx += (a[0] + b[0]) * cross;
+            cz += (a[2] + b[2]) * cross;
+            mean[0] += a[0];
+            mean[1] += a[1];
+            mean[2] += a[2];
+        }
+        for (int i = 0; i < 3; i++) {
+            mean[i] /= points.size();
+        }
+        if (Math.abs(area) > 1e-6) {
+            mean[0] = (float) (cx / (3 * area));
+            mean[2] = (float) (cz / (3 * area));
+        }
+        return mean;
+    }
+
+    /**
+     * Returns the ID of the space layer of a level.
+     * @param level (level)
+     * @return gml:id of the layer
+     */
+    private static String getLayerID(int level) {
+        return level < 0 ? "SLm" + (-level) : "SL" + level;
+    }
+
+    /**
+     * Returns the ID of the state of an entrypoint.
+     * @param hallwayID (ID of the hallway)
+     * @param k (index of the entrypoint in the hallway)
+     * @return gml:id of the state
+     */
+    private static String getEntrypointID(int hallwayID, int k) {
+        return "S" + hallwayID + "_" + k;
+    }
+
+    /**
+     * Returns the ID of the state at the other end of a connection.
+     * @param targetID (ID of the connected hallway)
+     * @param peer (index of the connected entrypoint or -1 if there is none)
+     * @return gml:id of the entrypoint state or of the hallway state
+     */
+    private static String getTargetID(int targetID, int peer) {
+        return peer >= 0 ? getEntrypointID(targetID, peer) : "S" + targetID;
+    }
+}
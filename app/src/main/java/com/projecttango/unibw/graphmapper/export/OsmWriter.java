@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Writes georeferenced features as OSM XML (API 0.6) for the indoor tagging of OpenStreetMap.</p>
+ *
+ * <p>All objects are new, so they get negative IDs. An area with one ring is a closed way, an area with inner rings
+ * (obstacles) is a multipolygon relation with untagged member ways. The objects are written feature by feature
+ * (the nodes of an area before its ways and its relation), which JOSM and osmium read without sorting.</p>
+ *
+ * @version 1.0
+ */
+public class OsmWriter implements GeoFeatureWriter {
+    /** Number of decimals of the coordinates (about 1 cm) */
+    private static final int DECIMALS = 7;
+
+    /** Writer of the document */
+    private final XmlStreamWriter mXml;
+    /** Reused buffer of the coordinates */
+    private final StringBuilder mBuffer = new StringBuilder(16);
+    /** Next (negative) node ID */
+    private long mNextNodeID = -1;
+    /** Next (negative) way ID */
+    private long mNextWayID = -1;
+    /** Next (negative) relation ID */
+    private long mNextRelationID = -1;
+
+    /**
+     * Constructor (Creates a writer for the given target, which should be buffered)
+     * @param out (target of the document)
+     */
+    public OsmWriter(Writer out) {
+        mXml = new XmlStreamWriter(out);
+    }
+
+    @Override
+    public void begin() throws IOException {
+        mXml.writeStartDocument();
+        mXml.writeStartElement("osm");
+        mXml.writeAttribute("version", "0.6");
+        mXml.writeAttribute("generator", "Graphmapper");
+        mXml.writeAttribute("upload", "false");
+    }
+
+    @Override
+    public void writeArea(Map<String, String> tags, List<double[]> rings) throws IOException {
+        long[] wayIDs = new long[rings.size()];
+        for (int r = 0; r < rings.size(); r++) {
+            double[] ring = rings.get(r);
+            int corners = ring.length / 2;
+            long firstNode = mNextNodeID;
+            for (int i = 0; i < corners; i++) {
+                writeNode(null, ring[2 * i], ring[2 * i + 1]);
+            }
+            wayIDs[r] = mNextWayID--;
+            mXml.writeStartElement("way");
+            mXml.writeAttribute("id", Long.toString(wayIDs[r]));
+            for (int i = 0; i <= corners; i++) {
+                mXml.writeStartElement("nd");
+                mXml.writeAttribute("ref", Long.toString(firstNode - (i % corners)));
+                mXml.writeEndElement();
+            }
+            if (rings.size() == 1) {
+                writeTags(tags);
+            }
+            mXml.writeEndElement();
+        }
+        if (rings.size() > 1) {
+            mXml.writeStartElement("relation");
+            mXml.writeAttribute("id", Long.toString(mNextRelationID--));
+            for (int r = 0; r < rings.size(); r++) {
+                mXml.writeStartElement("member");
+                mXml.writeAttribute("type", "way");
+                mXml.writeAttribute("ref", Long.toString(wayIDs[r]));
+                mXml.writeAttribute("role", r == 0 ? "outer" : "inner");
+                mXml.writeEndElement();
+            }
+            mXml.writeStartElement("tag");
+            mXml.writeAttribute("k", "type");
+            mXml.writeAttribute("v", "multipolygon");
+            mXml.writeEndElement();
+            writeTags(tags);
+            mXml.writeEndElement();
+        }
+    }
+
+    @Override
+    public void writePoint(Map<String, String> tags, double longitude, double latitude) throws IOException {
+        writeNode(tags, longitude, latitude);
+    }
+
+    @Override
+    public void end() throws IOException {
+        mXml.writeEndDocument();
+    }
+
+    /**
+     * Writes a node with the next ID.
+     * @param tags (tags of the node or null)
+     * @param longitude (longitude in degrees)
+     * @param latitude (latitude in degrees)
+     * @throws IOException (if the node can't be written)
+     */
+    private void writeNode(Map<String, String> tags, double longitude, double latitude) throws IOException {
+        mXml.writeStartElement("node");
+        mXml.writeAttribute("id", Long.toString(mNextNodeID--));
+        mBuffer.setLength(0);
+        mXml.writeAttribute("lat", CoordinateFormat.append(mBuffer, latitude, DECIMALS).toString());
+        mBuffer.setLength(0);
+        mXml.writeAttribute("lon", CoordinateFormat.append(mBuffer, longitude, DECIMALS).toString());
+        if (tags != null) {
+            writeTags(tags);
+        }
+        mXml.writeEndElement();
+    }
+
+    /**
+     * Writes the tags of the current object.
+     * @param tags (tags, empty values are skipped)
+     * @throws IOException (if the tags can't be written)
+     */
+    private void writeTags(Map<String, String> tags) throws IOException {
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (tag.getValue() == null || tag.getValue().isEmpty()) {
+                continue;
+            }
+            mXml.writeStartElement("tag");
+            mXml.writeAttribute("k", tag.getKey());
+            mXml.writeAttribute("v", tag.getValue());
+            mXml.writeEndElement();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.Marker;
+import com.projecttango.unibw.graphmapper.graph.OutlineLod;
+import com.projecttango.unibw.graphmapper.graph.Room;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * <p>Writes the floorplans of a graph as one PDF document with one page per level.</p>
+ *
+ * <p>The pages are drawn with PDF path operators straight from the hallways of the graph, so the plans stay
+ * sharp at any zoom. A page has a scale of 1:100, larger levels are scaled down to the maximum page size of
+ * PDF (200 inch). The labels use the standard font Helvetica, characters outside of Latin-1 are replaced by
+ * '?'. The outlines are simplified to half a point of the page (see {@link OutlineLod}). The page content is compressed and written as soon as the page is finished, so only one page is kept
+ * in memory.</p>
+ *
+ * @version 1.0
+ */
+public class PdfPlanWriter {
+    /** Points (1/72 inch) per meter for a scale of 1:100 */
+    private static final float POINTS_PER_METER = 72 / 2.54f;
+    /** Maximum width and height of a page in points */
+    private static final float MAX_PAGE_SIZE = 14400;
+    /** Factor of the control points for a circle with 4 bezier curves */
+    private static final float CIRCLE_KAPPA = 0.5523f;
+    /** Number of decimals of the page coordinates */
+    private static final int DECIMALS = 2;
+
+    /** Object number of the catalog */
+    private static final int CATALOG = 1;
+    /** Object number of the page tree */
+    private static final int PAGES = 2;
+    /** Object number of the font */
+    private static final int FONT = 3;
+    /** Object number of the first page, every page uses two objects (page and content) */
+    private static final int FIRST_PAGE = 4;
+
+    /** Target stream */
+    private OutputStream mOut;
+    /** Number of bytes written to the target stream */
+    private long mPosition;
+    /** Byte offsets of the objects */
+    private final List<Long> mOffsets = new ArrayList<Long>();
+    /** Content stream of the current page */
+    private final StringBuilder mContent = new StringBuilder(64 * 1024);
+    /** Scale of the current page (points per meter) */
+    private float mScale;
+    /** Left border of the current page in meters */
+    private float mLeft;
+    /** Bottom border of the current page in meters (maximum z because the y axis of PDF is flipped) */
+    private float mBottom;
+
+    /**
+     * This function writes all levels of the graph into a PDF file.
+     * @param graph (navigation graph)
+     * @param file (target file)
+     * @throws IOException (if the file can't be written)
+     */
+    public void write(Graph graph, File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        try {
+            write(graph, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * This function writes all levels of the graph as a PDF document. The stream is not closed.
+     * @param graph (navigation graph)
+     * @param out (target stream)
+     * @throws IOException (if the document can't be written)
+     */
+    public void write(Graph graph, OutputStream out) throws IOException {
+        mOut = out;
+        mPosition = 0;
+        mOffsets.clear();
+        List<Integer> levels = graph.getLevels();
+
+        writeAscii("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+        beginObject(CATALOG);
+        writeAscii("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\n");
+        endObject();
+        beginObject(PAGES);
+        StringBuilder kids = new StringBuilder("<< /Type /Pages /Count ").append(levels.size()).append(" /Kids [");
+        for (int i = 0; i < levels.size(); i++) {
+            kids.append(' ').append(FIRST_PAGE + 2 * i).append(" 0 R");
+        }
+        writeAscii(kids.append(" ] >>\n").toString());
+        endObject();
+        beginObject(FONT);
+        writeAscii("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>\n");
+        endObject();
+
+        for (int i = 0; i < levels.size(); i++) {
+            writePage(graph, levels.get(i), FIRST_PAGE + 2 * i);
+        }
+
+        long xref = mPosition;
+        StringBuilder b = new StringBuilder();
+        b.append("xref\n0 ").append(mOffsets.size() + 1).append("\n0000000000 65535 f \n");
+        for (long offset : mOffsets) {
+            String number = Long.toString(offset);
+            b.append("0000000000".substring(number.length())).append(number).append(" 00000 n \n");
+        }
+        b.append("trailer\n<< /Size ").append(mOffsets.size() + 1).append(" /Root ").append(CATALOG)
+                .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        writeAscii(b.toString());
+        out.flush();
+        mOut = null;
+    }
+
+    /**
+     * Writes the page and the content stream of one level.
+     * @param graph (navigation graph)
+     * @param level (level of the page)
+     * @param object (object number of the page, the content is the next object)
+     * @throws IOException (if the page can't be written)
+     */
+    private void writePage(Graph graph, int level, int object) throws IOException {
+        List<Hallway> hallways = graph.getLevelHallways(level);
+        BoundingBox bounds = graph.getLevelBounds(level);
+        float[] min = bounds.isEmpty() ? new float[3] : bounds.getMin();
+        float width = bounds.getWidth() + 2 * PlanStyle.MARGIN;
+        float depth = bounds.getDepth() + 2 * PlanStyle.MARGIN;
+        mScale = Math.min(POINTS_PER_METER, MAX_PAGE_SIZE / Math.max(width, depth));
+        mLeft = min[0] - PlanStyle.MARGIN;
+        mBottom = min[2] - PlanStyle.MARGIN + depth;
+
+        StringBuilder c = mContent;
+        c.setLength(0);
+        float tolerance = OutlineLod.getTolerance(mScale);
+        c.append("1 J 1 j ");
+        appendNumber(PlanStyle.LINE_WIDTH * mScale).append(" w ");
+        appendColor(PlanStyle.LINE_COLOR, "RG");
+        for (Hallway hallway : hallways) {
+            appendRing(hallway.getHallwayPoints(tolerance));
+            for (List<float[]> obstacle : hallway.getObstacles(tolerance)) {
+                appendRing(obstacle);
+            }
+        }
+        c.append("S\n");
+
+        appendColor(PlanStyle.ROOM_COLOR, "rg");
+        for (Hallway hallway : hallways) {
+            for (Room room : hallway.getRooms()) {
+                appendCircle(room.getPosition());
+            }
+        }
+        appendColor(PlanStyle.MARKER_COLOR, "rg");
+        for (Hallway hallway : hallways) {
+            for (Marker marker : hallway.getMarkers()) {
+                appendCircle(marker.getPosition());
+            }
+        }
+        appendColor(PlanStyle.ENTRYPOINT_COLOR, "rg");
+        for (Hallway hallway : hallways) {
+            for (Entrypoint entrypoint : hallway.getConnections()) {
+                appendCircle(entrypoint.getPositionFrom());
+            }
+        }
+
+        c.append("BT /F1 ");
+        appendNumber(PlanStyle.TEXT_SIZE * mScale).append(" Tf\n");
+        for (Hallway hallway : hallways) {
+            if (!hallway.getHallwayPoints().isEmpty()) {
+                appendLabel(hallway.getName(), hallway.getHallwayPoints().get(0), PlanStyle.LINE_COLOR);
+            }
+            for (Room room : hallway.getRooms()) {
+                appendLabel(room.getNumber(), room.getPosition(), PlanStyle.ROOM_COLOR);
+            }
+            for (Marker marker : hallway.getMarkers()) {
+                appendLabel(marker.getName(), marker.getPosition(), PlanStyle.MARKER_COLOR);
+            }
+            for (Entrypoint entrypoint : hallway.getConnections()) {
+                appendLabel(entrypoint.getName(), entrypoint.getPositionFrom(), PlanStyle.ENTRYPOINT_COLOR);
+            }
+        }
+        c.append("ET\n");
+
+        // Page object
+        beginObject(object);
+        StringBuilder page = new StringBuilder("<< /Type /Page /Parent ").append(PAGES).append(" 0 R /MediaBox [0 0 ");
+        page.append(Math.round(width * mScale)).append(' ').append(Math.round(depth * mScale));
+        page.append("] /Resources << /Font << /F1 ").append(FONT).append(" 0 R >> >> /Contents ")
+                .append(object + 1).append(" 0 R >>\n");
+        writeAscii(page.toString());
+        endObject();
+
+        // Compressed content stream
+        ByteArrayOutputStream data = new ByteArrayOutputStream(c.length() / 4);
+        byte[] latin1 = new byte[c.length()];
+        for (int i = 0; i < latin1.length; i++) {
+            latin1[i] = (byte) c.charAt(i);
+        }
+        // The stream does not end a Deflater it got from outside, so its native memory is freed here.
+        Deflater compressor = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflater = new DeflaterOutputStream(data, compressor);
+            deflater.write(latin1);
+            deflater.close();
+        } finally {
+            compressor.end();
+        }
+        beginObject(object + 1);
+        writeAscii("<< /Length " + data.size() + " /Filter /FlateDecode >>\nstream\n");
+        data.writeTo(mOut);
+        mPosition += data.size();
+        writeAscii("\nendstream\n");
+        endObject();
+    }
+
+    /**
+     * Appends a closed ring as a subpath (moveto, linetos and closepath).
+     * @param points (corner points of the ring)
+     */
+    private void appendRing(List<float[]> points) {
+        for (int i = 0; i < points.size(); i++) {
+            float[] point = points.get(i);
+            appendPoint(point[0], point[2]).append(i == 0 ? " m\n" : " l\n");
+        }
+        if (!points.isEmpty()) {
+            mContent.append("h\n");
+        }
+    }
+
+    /**
+     * Appends a filled circle for a POI.
+     * @param position (position of the POI)
+     */
+    private void appendCircle(float[] position) {
+        float x = position[0];
+        float z = position[2];
+        float r = PlanStyle.POINT_RADIUS;
+        float k = r * CIRCLE_KAPPA;
+        appendPoint(x + r, z).append(" m ");
+        appendPoint(x + r, z + k).append(' ');
+        appendPoint(x + k, z + r).append(' ');
+        appendPoint(x, z + r).append(" c ");
+        appendPoint(x - k, z + r).append(' ');
+        appendPoint(x - r, z + k).append(' ');
+        appendPoint(x - r, z).append(" c ");
+        appendPoint(x - r, z - k).append(' ');
+        appendPoint(x - k, z - r).append(' ');
+        appendPoint(x, z - r).append(" c ");
+        appendPoint(x + k, z - r).append(' ');
+        appendPoint(x + r, z - k).append(' ');
+        appendPoint(x + r, z).append(" c f\n");
+    }
+
+    /**
+     * Appends a label above and to the right of its position.
+     * @param text (text of the label, nothing is appended if it is null or empty)
+     * @param position (position of the labeled element)
+     * @param color (RGB color of the label)
+     */
+    private void appendLabel(String text, float[] position, int color) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        StringBuilder c = mContent;
+        appendColor(color, "rg");
+        c.append("1 0 0 1 ");
+        appendPoint(position[0] + PlanStyle.POINT_RADIUS, position[2] - PlanStyle.POINT_RADIUS).append(" Tm (");
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '(' || ch == ')' || ch == '\\') {
+                c.append('\\').append(ch);
+            } else if (ch < 0x20 || ch > 0xff) {
+                c.append('?');
+            } else {
+                c.append(ch);
+            }
+        }
+        c.append(") Tj\n");
+    }
+
+    /**
+     * Appends a point of the plan in page coordinates.
+     * @param x (x coordinate in meters)
+     * @param z (z coordinate in meters)
+     * @return content stream
+     */
+    private StringBuilder appendPoint(float x, float z) {
+        appendNumber((x - mLeft) * mScale).append(' ');
+        return appendNumber((mBottom - z) * mScale);
+    }
+
+    /**
+     * Appends a number to the content stream.
+     * @param value (number)
+     * @return content stream
+     */
+    private StringBuilder appendNumber(float value) {
+        return CoordinateFormat.append(mContent, value, DECIMALS);
+    }
+
+    /**
+     * Appends a color operator to the content stream.
+     * @param rgb (RGB color)
+     * @param operator ("RG" for strokes, "rg" for fills)
+     */
+    private void appendColor(int rgb, String operator) {
+        CoordinateFormat.append(mContent, ((rgb >> 16) & 0xff) / 255f, 3).append(' ');
+        CoordinateFormat.append(mContent, ((rgb >> 8) & 0xff) / 255f, 3).append(' ');
+        CoordinateFormat.append(mContent, (rgb & 0xff) / 255f, 3).append(' ').append(operator).append('\n');
+    }
+
+    /**
+     * Writes the start of an object and remembers its byte offset for the cross reference table.
+     * @param number (object number, objects are written in ascending order)
+     * @throws IOException (if the object can't be written)
+     */
+    private void beginObject(int number) throws IOException {
+        mOffsets.add(mPosition);
+        writeAscii(number + " 0 obj\n");
+    }
+
+    /**
+     * Writes the end of an object.
+     * @throws IOException (if the object can't be written)
+     */
+    private void endObject() throws IOException {
+        writeAscii("endobj\n");
+    }
+
+    /**
+     * Writes a text with one byte per character.
+     * @param text (text with Latin-1 characters)
+     * @throws IOException (if the text can't be written)
+     */
+    private void writeAscii(String text) throws IOException {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        mOut.write(bytes);
+        mPosition += bytes.length;
+    }
+}
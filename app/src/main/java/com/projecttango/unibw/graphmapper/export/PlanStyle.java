@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+/**
+ * <p>Colors and sizes of the exported vector plans. The colors are the same as in the PlanView of the app.
+ * All sizes are in meters of the plan.</p>
+ *
+ * @version 1.0
+ */
+public final class PlanStyle {
+    /** Color of the hallway and obstacle outlines and their labels (RGB) */
+    public static final int LINE_COLOR = 0x000000; //Black
+    /** Color of the rooms (RGB) */
+    public static final int ROOM_COLOR = 0xf44336; //Red
+    /** Color of the markers (RGB) */
+    public static final int MARKER_COLOR = 0xcddc39; //Lime
+    /** Color of the entrypoints (RGB) */
+    public static final int ENTRYPOINT_COLOR = 0x2196f3; //Blue
+    /** Line width of the outlines */
+    public static final float LINE_WIDTH = 0.05f;
+    /** Radius of the POI points */
+    public static final float POINT_RADIUS = 0.15f;
+    /** Text size of the labels */
+    public static final float TEXT_SIZE = 0.3f;
+    /** Free space around the plan */
+    public static final float MARGIN = 1.0f;
+
+    /**
+     * Constructor (not used, only constants)
+     */
+    private PlanStyle() {
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.Marker;
+import com.projecttango.unibw.graphmapper.graph.OutlineLod;
+import com.projecttango.unibw.graphmapper.graph.Room;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Writes the floorplans of a graph as SVG vector images, one file per level.</p>
+ *
+ * <p>The plan is written in meters (x and z axis of the OpenGL frame, like the PlanView) straight from the
+ * hallways of the graph, so the size of a file only depends on the number of corners and POIs. The document
+ * is sized with a scale of 1:100 (1 m of the plan is 1 cm of the image). The elements are grouped by their
+ * type (hallways, obstacles, rooms, markers, entrypoints and labels) and every hallway path has the ID of
+ * the hallway.</p>
+ *
+ * @version 1.0
+ */
+public class SvgPlanWriter {
+    /** Number of decimals of the coordinates (millimeters) */
+    private static final int DECIMALS = 3;
+
+    /** Reused buffer of one element */
+    private final StringBuilder mBuffer = new StringBuilder(1024);
+    /** Allowed deviation of the simplified outlines in meters (0: original outlines) */
+    private final float mTolerance;
+
+    /**
+     * Constructor (Creates a writer for the original outlines)
+     */
+    public SvgPlanWriter() {
+        this(0);
+    }
+
+    /**
+     * Constructor (Creates a writer for simplified outlines, e.g. for overview plans)
+     * @param tolerance (allowed deviation of the outlines in meters, see {@link OutlineLod})
+     */
+    public SvgPlanWriter(float tolerance) {
+        mTolerance = tolerance;
+    }
+
+    /**
+     * This function writes all levels of the graph into the given directory.
+     * @param graph (navigation graph)
+     * @param directory (target directory)
+     * @param name (prefix of the file names, e.g. the name of the ADF)
+     * @return written files ("name_levelN.svg")
+     * @throws IOException (if a file can't be written)
+     */
+    public List<File> writeLevels(Graph graph, File directory, String name) throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (int level : graph.getLevels()) {
+            File file = new File(directory, name + "_level" + level + ".svg");
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            try {
+                writeLevel(graph, level, out);
+            } finally {
+                out.close();
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * This function writes the plan of one level as an SVG document. The writer is not closed.
+     * @param graph (navigation graph)
+     * @param level (level to be written)
+     * @param out (target of the document)
+     * @throws IOException (if the document can't be written)
+     */
+    public void writeLevel(Graph graph, int level, Writer out) throws IOException {
+        List<Hallway> hallways = graph.getLevelHallways(level);
+        BoundingBox bounds = graph.getLevelBounds(level);
+        float[] min = bounds.isEmpty() ? new float[3] : bounds.getMin();
+        float left = min[0] - PlanStyle.MARGIN;
+        float top = min[2] - PlanStyle.MARGIN;
+        float width = bounds.getWidth() + 2 * PlanStyle.MARGIN;
+        float height = bounds.getDepth() + 2 * PlanStyle.MARGIN;
+
+        StringBuilder b = mBuffer;
+        b.setLength(0);
+        b.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        b.append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"");
+        CoordinateFormat.append(b, width, DECIMALS).append("cm\" height=\"");
+        CoordinateFormat.append(b, height, DECIMALS).append("cm\" viewBox=\"");
+        CoordinateFormat.append(b, left, DECIMALS).append(' ');
+        CoordinateFormat.append(b, top, DECIMALS).append(' ');
+        CoordinateFormat.append(b, width, DECIMALS).append(' ');
+        CoordinateFormat.append(b, height, DECIMALS).append("\">\n");
+        b.append("<title>Level ").append(level).append("</title>\n");
+        flush(out);
+
+        // Outlines of the hallways
+        beginGroup(out, "hallways", "fill=\"none\" stroke=\"" + color(PlanStyle.LINE_COLOR) + "\" stroke-width=\""
+                + PlanStyle.LINE_WIDTH + "\" stroke-linejoin=\"round\"");
+        for (Hallway hallway : hallways) {
+            b.append("<path id=\"hallway-").append(hallway.getID()).append("\" d=\"");
+            appendRing(b, hallway.getHallwayPoints(mTolerance));
+            b.append("\"/>\n");
+            flush(out);
+        }
+        endGroup(out);
+
+        // Obstacle rings (one path per hallway)
+        beginGroup(out, "obstacles", "fill=\"none\" stroke=\"" + color(PlanStyle.LINE_COLOR) + "\" stroke-width=\""
+                + PlanStyle.LINE_WIDTH + "\" stroke-dasharray=\"0.2 0.1\"");
+        for (Hallway hallway : hallways) {
+            if (hallway.getObstacles().isEmpty()) {
+                continue;
+            }
+            b.append("<path id=\"obstacles-").append(hallway.getID()).append("\" d=\"");
+            for (List<float[]> obstacle : hallway.getObstacles(mTolerance)) {
+                appendRing(b, obstacle);
+            }
+            b.append("\"/>\n");
+            flush(out);
+        }
+        endGroup(out);
+
+        // POIs
+        beginGroup(out, "rooms", "fill=\"" + color(PlanStyle.ROOM_COLOR) + "\"");
+        for (Hallway hallway : hallways) {
+            for (Room room : hallway.getRooms()) {
+                appendPoint(out, room.getPosition());
+            }
+        }
+        endGroup(out);
+        beginGroup(out, "markers", "fill=\"" + color(PlanStyle.MARKER_COLOR) + "\"");
+        for (Hallway hallway : hallways) {
+            for (Marker marker : hallway.getMarkers()) {
+                appendPoint(out, marker.getPosition());
+            }
+        }
+        endGroup(out);
+        beginGroup(out, "entrypoints", "fill=\"" + color(PlanStyle.ENTRYPOINT_COLOR) + "\"");
+        for (Hallway hallway : hallways) {
+            for (Entrypoint entrypoint : hallway.getConnections()) {
+                appendPoint(out, entrypoint.getPositionFrom());
+            }
+        }
+        endGroup(out);
+
+        // Names of the hallways (at their first corner) and the POIs
+        beginGroup(out, "labels", "font-family=\"sans-serif\" font-size=\"" + PlanStyle.TEXT_SIZE + "\"");
+        for (Hallway hallway : hallways) {
+            if (!hallway.getHallwayPoints().isEmpty()) {
+                appendLabel(out, hallway.getName(), hallway.getHallwayPoints().get(0), PlanStyle.LINE_COLOR);
+            }
+            for (Room room : hallway.getRooms()) {
+                appendLabel(out, room.getNumber(), room.getPosition(), PlanStyle.ROOM_COLOR);
+            }
+            for (Marker marker : hallway.getMarkers()) {
+                appendLabel(out, marker.getName(), marker.getPosition(), PlanStyle.MARKER_COLOR);
+            }
+            for (Entrypoint entrypoint : hallway.getConnections()) {
+                appendLabel(out, entrypoint.getName(), entrypoint.getPositionFrom(), PlanStyle.ENTRYPOINT_COLOR);
+            }
+        }
+        endGroup(out);
+        out.write("</svg>\n");
+    }
+
+    /**
+     * Writes the start of a group.
+     * @param out (target of the document)
+     * @param id (id of the group)
+     * @param attributes (presentation attributes of the group)
+     * @throws IOException (if the group can't be written)
+     */
+    private void beginGroup(Writer out, String id, String attributes) throws IOException {
+        out.write("<g id=\"" + id + "\" " + attributes + ">\n");
+    }
+
+    /**
+     * Writes the end of a group.
+     * @param out (target of the document)
+     * @throws IOException (if the group can't be written)
+     */
+    private void endGroup(Writer out) throws IOException {
+        out.write("</g>\n");
+    }
+
+    /**
+     * Appends a closed ring as path data (moveto, linetos and closepath).
+     * @param b (target buffer)
+     * @param points (corner points of the ring)
+     */
+    private void appendRing(StringBuilder b, List<float[]> points) {
+        for (int i = 0; i < points.size(); i++) {
+            float[] point = points.get(i);
+            b.append(i == 0 ? 'M' : 'L');
+            CoordinateFormat.append(b, point[0], DECIMALS).append(' ');
+            CoordinateFormat.append(b, point[2], DECIMALS);
+        }
+        if (!points.isEmpty()) {
+            b.append('Z');
+        }
+    }
+
+    /**
+     * Writes a POI as a circle.
+     * @param out (target of the document)
+     * @param position (position of the POI)
+     * @throws IOException (if the circle can't be written)
+     */
+    private void appendPoint(Writer out, float[] position) throws IOException {
+        StringBuilder b = mBuffer;
+        b.append("<circle cx=\"");
+        CoordinateFormat.append(b, position[0], DECIMALS).append("\" cy=\"");
+        CoordinateFormat.append(b, position[2], DECIMALS).append("\" r=\"").append(PlanStyle.POINT_RADIUS).append("\"/>\n");
+        flush(out);
+    }
+
+    /**
+     * Writes a label above and to the right of its position.
+     * @param out (target of the document)
+     * @param text (text of the label, nothing is written if it is null or empty)
+     * @param position (position of the labeled element)
+     * @param color (RGB color of the label)
+     * @throws IOException (if the label can't be written)
+     */
+    private void appendLabel(Writer out, String text, float[] position, int color) throws IOException {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        StringBuilder b = mBuffer;
+        b.append("<text x=\"");
+        CoordinateFormat.append(b, position[0] + PlanStyle.POINT_RADIUS, DECIMALS).append("\" y=\"");
+        CoordinateFormat.append(b, position[2] - PlanStyle.POINT_RADIUS, DECIMALS).append("\" fill=\"")
+                .append(color(color)).append("\">");
+        appendEscaped(b, text);
+        b.append("</text>\n");
+        flush(out);
+    }
+
+    /**
+     * Appends a text with the XML special characters escaped.
+     * @param b (target buffer)
+     * @param text (text to be escaped)
+     */
+    private static void appendEscaped(StringBuilder b, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    b.append("&lt;");
+                    break;
+                case '>':
+                    b.append("&gt;");
+                    break;
+                case '&':
+                    b.append("&amp;");
+                    break;
+                case '"':
+                    b.append("&quot;");
+                    break;
+                default:
+                    if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                        b.append(' '); //not allowed in XML 1.0
+                    } else {
+                        b.append(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Formats an RGB color as an SVG color.
+     * @param rgb (RGB color)
+     * @return color "#rrggbb"
+     */
+    private static String color(int rgb) {
+        String hex = Integer.toHexString(rgb & 0xffffff);
+        return "#000000".substring(0, 7 - hex.length()) + hex;
+    }
+
+    /**
+     * Writes the buffer and clears it.
+     * @param out (target of the document)
+     * @throws IOException (if the buffer can't be written)
+     */
+    private void flush(Writer out) throws IOException {
+        out.append(mBuffer);
+        mBuffer.setLength(0);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Minimal streaming XML writer in the style of StAX (javax.xml.stream is not part of Android).</p>
+ *
+ * <p>Elements are written as soon as they are started, only the names of the open elements are kept, so
+ * documents of any size can be written with constant memory. Attribute values and texts are escaped.
+ * Elements without content are closed with "/&gt;", nested elements are indented by two spaces.</p>
+ *
+ * @version 1.0
+ */
+public class XmlStreamWriter {
+    /** Target of the document */
+    private final Writer mOut;
+    /** Names of the open elements */
+    private final List<String> mOpenElements = new ArrayList<String>();
+    /** Signals if the start tag of the innermost element is not closed with '>' yet */
+    private boolean mStartTagOpen;
+    /** Signals if the innermost element contains text (its end tag is not indented) */
+    private boolean mHasText;
+
+    /**
+     * Constructor (Creates a writer for the given target, which should be buffered)
+     * @param out (target of the document)
+     */
+    public XmlStreamWriter(Writer out) {
+        mOut = out;
+    }
+
+    /**
+     * Writes the XML declaration (UTF-8).
+     * @throws IOException (if the declaration can't be written)
+     */
+    public void writeStartDocument() throws IOException {
+        mOut.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    }
+
+    /**
+     * Starts a new element in the current element.
+     * @param name (qualified name, e.g. "gml:Point")
+     * @throws IOException (if the element can't be written)
+     */
+    public void writeStartElement(String name) throws IOException {
+        closeStartTag();
+        newLine();
+        mOut.write('<');
+        mOut.write(name);
+        mOpenElements.add(name);
+        mStartTagOpen = true;
+        mHasText = false;
+    }
+
+    /**
+     * Writes an attribute of the element that was started last.
+     * @param name (qualified name of the attribute)
+     * @param value (value, it is escaped)
+     * @throws IOException (if the attribute can't be written)
+     */
+    public void writeAttribute(String name, String value) throws IOException {
+        if (!mStartTagOpen) {
+            throw new IllegalStateException("Attribute " + name + " outside of a start tag");
+        }
+        mOut.write(' ');
+        mOut.write(name);
+        mOut.write("=\"");
+        writeEscaped(value);
+        mOut.write('"');
+    }
+
+    /**
+     * Writes text into the current element.
+     * @param text (text, it is escaped)
+     * @throws IOException (if the text can't be written)
+     */
+    public void writeCharacters(CharSequence text) throws IOException {
+        closeStartTag();
+        writeEscaped(text);
+        mHasText = true;
+    }
+
+    /**
+     * Writes an element which only contains text.
+     * @param name (qualified name)
+     * @param text (text, it is escaped)
+     * @throws IOException (if the element can't be written)
+     */
+    public void writeTextElement(String name, CharSequence text) throws IOException {
+        writeStartElement(name);
+        writeCharacters(text);
+        writeEndElement();
+    }
+
+    /**
+     * Ends the innermost open element.
+     * @throws IOException (if the end tag can't be written)
+     */
+    public void writeEndElement() throws IOException {
+        if (mOpenElements.isEmpty()) {
+            throw new IllegalStateException("No open element");
+        }
+        String name = mOpenElements.remove(mOpenElements.size() - 1);
+        if (mStartTagOpen) {
+            mOut.write("/>");
+            mStartTagOpen = false;
+        } else {
+            if (!mHasText) {
+                newLine();
+            }
+            mOut.write("</");
+            mOut.write(name);
+            mOut.write('>');
+        }
+        mHasText = false;
+    }
+
+    /**
+     * Ends all open elements and flushes the target. The target is not closed.
+     * @throws IOException (if the document can't be written)
+     */
+    public void writeEndDocument() throws IOException {
+        while (!mOpenElements.isEmpty()) {
+            writeEndElement();
+        }
+        mOut.write('\n');
+        mOut.flush();
+    }
+
+    /**
+     * Closes the start tag of the innermost element, so content can be written.
+     * @throws IOException (if the tag can't be written)
+     */
+    private void closeStartTag() throws IOException {
+        if (mStartTagOpen) {
+            mOut.write('>');
+            mStartTagOpen = false;
+        }
+    }
+
+    /**
+     * Starts a new indented line for the current depth.
+     * @throws IOException (if the line can't be written)
+     */
+    private void newLine() throws IOException {
+        mOut.write('\n');
+        for (int i = 0; i < mOpenElements.size(); i++) {
+            mOut.write("  ");
+        }
+    }
+
+    /**
+     * Writes a text with the XML special characters escaped.
+     * @param text (text to be escaped)
+     * @throws IOException (if the text can't be written)
+     */
+    private void writeEscaped(CharSequence text) throws IOException {
+        int first = 0;
+        while (first < text.length() && !needsEscape(text.charAt(first))) {
+            first++;
+        }
+        mOut.append(text, 0, first); //most texts (e.g. coordinates) have nothing to escape
+        for (int i = first; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    mOut.write("&lt;");
+                    break;
+                case '>':
+                    mOut.write("&gt;");
+                    break;
+                case '&':
+                    mOut.write("&amp;");
+                    break;
+                case '"':
+                    mOut.write("&quot;");
+                    break;
+                default:
+                    if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                        mOut.write(' '); //not allowed in XML 1.0
+                    } else {
+                        mOut.write(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Signals if a character must be escaped or replaced.
+     * @param c (character)
+     * @return true if the character can't be written as it is
+     */
+    private static boolean needsEscape(char c) {
+        return c == '<' || c == '>' || c == '&' || c == '"' || (c < 0x20 && c != '\t' && c != '\n' && c != '\r');
+    }
+}
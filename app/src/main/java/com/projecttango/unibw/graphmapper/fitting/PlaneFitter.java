@@ -0,0 +1,407 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.fitting;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * <p>Plane fitting engine that works directly on the xyz buffer of a Tango point cloud.
+ * It can be used instead of TangoSupport.fitPlaneModelNearClick and does not need the Tango service
+ * or Android (plain Java), so it can also run offline on recorded point clouds and in the benchmarks
+ * of the cli module.</p>
+ *
+ * <p>The fitting is done in three steps:
+ * 1. Preselection: only the points which are projected into a small pixel window around the click (u, v)
+ * of the color camera are used.
+ * 2. RANSAC: random planes through three points are scored by the number of inliers.
+ * 3. Refinement: a least squares plane is fitted through all inliers of the best RANSAC plane.</p>
+ *
+ * <p>All points are stored in reusable primitive arrays (one array per coordinate), so the inner loops
+ * don't allocate objects and can be vectorized by the compiler. One PlaneFitter object must only be used
+ * by one thread at a time.</p>
+ *
+ * @version 1.0
+ */
+public class PlaneFitter {
+    /** Default half size of the pixel window around the click */
+    public static final int DEFAULT_WINDOW_RADIUS = 30;
+    /** Default number of RANSAC iterations */
+    public static final int DEFAULT_ITERATIONS = 50;
+    /** Default maximum distance of an inlier to the plane (in meters) */
+    public static final float DEFAULT_INLIER_DISTANCE = 0.02f;
+    /** Minimum number of points in the pixel window that are needed to fit a plane */
+    private static final int MIN_POINT_COUNT = 10;
+    /** Epsilon to detect degenerated (colinear) samples and parallel rays */
+    private static final float EPSILON = 0.000001f;
+
+    /** Half size of the pixel window around the click (in pixels of the color camera) */
+    private int mWindowRadius;
+    /** Number of RANSAC iterations */
+    private int mIterations;
+    /** Maximum distance of an inlier to the plane (in meters) */
+    private float mInlierDistance;
+    /** Random number generator for the RANSAC samples (seeded, so results are reproducible) */
+    private Random mRandom;
+
+    /** Copy of the xyz buffer of the point cloud */
+    private float[] mCloud = new float[0];
+    /** x coordinates of the preselected points (depth frame) */
+    private float[] mX = new float[0];
+    /** y coordinates of the preselected points (depth frame) */
+    private float[] mY = new float[0];
+    /** z coordinates of the preselected points (depth frame) */
+    private float[] mZ = new float[0];
+    /** number of preselected points */
+    private int mCount;
+
+    /** Intersection point of the click ray and the fitted plane (depth frame) */
+    private double[] mIntersectionPoint = new double[3];
+    /** Fitted plane model (a, b, c, d) with ax + by + cz + d = 0 (depth frame) */
+    private double[] mPlaneModel = new double[4];
+    /** Number of inliers of the fitted plane */
+    private int mInlierCount;
+
+    /**
+     * Constructor (Creates a new PlaneFitter object with the default settings)
+     */
+    public PlaneFitter() {
+        this(DEFAULT_WINDOW_RADIUS, DEFAULT_ITERATIONS, DEFAULT_INLIER_DISTANCE, 0);
+    }
+
+    /**
+     * Constructor (Creates a new PlaneFitter object with the given settings)
+     * @param windowRadius (half size of the pixel window around the click)
+     * @param iterations (number of RANSAC iterations)
+     * @param inlierDistance (maximum distance of an inlier to the plane in meters)
+     * @param seed (seed of the random number generator)
+     */
+    public PlaneFitter(int windowRadius, int iterations, float inlierDistance, long seed) {
+        mWindowRadius = windowRadius;
+        mIterations = iterations;
+        mInlierDistance = inlierDistance;
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Fits a plane near the click location with the data of a xyz point buffer.
+     * @param xyz (buffer with x, y and z coordinates of each point in depth camera frame)
+     * @param pointCount (number of points in the buffer)
+     * @param width (width of the color camera image in pixels)
+     * @param height (height of the color camera image in pixels)
+     * @param fx (focal length x of the color camera)
+     * @param fy (focal length y of the color camera)
+     * @param cx (principal point x of the color camera)
+     * @param cy (principal point y of the color camera)
+     * @param colorTdepth (column major 4x4 transform from depth camera frame to color camera frame)
+     * @param u (The u-coordinate for the user selection. This is expected to be between 0.0 and 1.0.)
+     * @param v (The v-coordinate for the user selection. This is expected to be between 0.0 and 1.0.)
+     * @return true if a plane was found (results can be read with the getter functions)
+     */
+    public boolean fitPlaneModelNearClick(FloatBuffer xyz, int pointCount, int width, int height,
+                                          double fx, double fy, double cx, double cy,
+                                          float[] colorTdepth, float u, float v) {
+        mInlierCount = 0;
+        preselect(xyz, pointCount, (float) fx, (float) fy, (float) cx, (float) cy,
+                u * width, v * height, colorTdepth);
+        if (mCount < MIN_POINT_COUNT) {
+            return false;
+        }
+        if (!ransac() || !refine()) {
+            return false;
+        }
+        // Intersect the ray through the clicked pixel with the plane (in depth frame).
+        float rayX = (u * width - (float) cx) / (float) fx;
+        float rayY = (v * height - (float) cy) / (float) fy;
+        return intersectRay(colorTdepth, rayX, rayY);
+    }
+
+    /**
+     * Getter function for the intersection point of the click ray and the fitted plane (depth frame).
+     * @return mIntersectionPoint
+     */
+    public double[] getIntersectionPoint() {
+        return mIntersectionPoint;
+    }
+
+    /**
+     * Getter function for the fitted plane model (a, b, c, d) with ax + by + cz + d = 0 (depth frame).
+     * The normal (a, b, c) has unit length and points to the depth camera.
+     * @return mPlaneModel
+     */
+    public double[] getPlaneModel() {
+        return mPlaneModel;
+    }
+
+    /**
+     * Getter function for the number of inliers of the last fitted plane.
+     * @return mInlierCount
+     */
+    public int getInlierCount() {
+        return mInlierCount;
+    }
+
+    /**
+     * This function copies all points which are projected into the pixel window around the click
+     * into the coordinate arrays mX, mY and mZ.
+     * @param xyz (point buffer in depth frame)
+     * @param pointCount (number of points)
+     * @param fx (focal length x of the color camera)
+     * @param fy (focal length y of the color camera)
+     * @param cx (principal point x of the color camera)
+     * @param cy (principal point y of the color camera)
+     * @param clickX (x position of the click in pixels)
+     * @param clickY (y position of the click in pixels)
+     * @param m (column major transform from depth frame to color frame)
+     */
+    private void preselect(FloatBuffer xyz, int pointCount, float fx, float fy, float cx, float cy,
+                           float clickX, float clickY, float[] m) {
+        int length = 3 * pointCount;
+        if (mCloud.length < length) {
+            mCloud = new float[length];
+            mX = new float[pointCount];
+            mY = new float[pointCount];
+            mZ = new float[pointCount];
+        }
+        // Use a duplicate so the position of the shared buffer is not changed.
+        FloatBuffer buffer = xyz.duplicate();
+        buffer.position(0);
+        buffer.get(mCloud, 0, length);
+
+        float minX = clickX - mWindowRadius;
+        float maxX = clickX + mWindowRadius;
+        float minY = clickY - mWindowRadius;
+        float maxY = clickY + mWindowRadius;
+        int count = 0;
+        for (int i = 0; i < length; i += 3) {
+            float x = mCloud[i];
+            float y = mCloud[i + 1];
+            float z = mCloud[i + 2];
+            // Transform the point into the color camera frame and project it into the image.
+            float colorX = m[0] * x + m[4] * y + m[8] * z + m[12];
+            float colorY = m[1] * x + m[5] * y + m[9] * z + m[13];
+            float colorZ = m[2] * x + m[6] * y + m[10] * z + m[14];
+            if (colorZ <= EPSILON) {
+                continue;
+            }
+            float pixelX = fx * colorX / colorZ + cx;
+            float pixelY = fy * colorY / colorZ + cy;
+            if (pixelX >= minX && pixelX <= maxX && pixelY >= minY && pixelY <= maxY) {
+                mX[count] = x;
+                mY[count] = y;
+                mZ[count] = z;
+                count++;
+            }
+        }
+        mCount = count;
+    }
+
+    /**
+     * RANSAC plane search on the preselected points. The best plane is stored in mPlaneModel.
+     * @return true if a plane with at least three inliers was found
+     */
+    private boolean ransac() {
+        int bestInliers = 0;
+        float threshold = mInlierDistance;
+        for (int iteration = 0; iteration < mIterations; iteration++) {
+            int i1 = mRandom.nextInt(mCount);
+            int i2 = mRandom.nextInt(mCount);
+            int i3 = mRandom.nextInt(mCount);
+            if (i1 == i2 || i1 == i3 || i2 == i3) {
+                continue;
+            }
+            // Plane through the three sample points.
+            float ax = mX[i2] - mX[i1];
+            float ay = mY[i2] - mY[i1];
+            float az = mZ[i2] - mZ[i1];
+            float bx = mX[i3] - mX[i1];
+            float by = mY[i3] - mY[i1];
+            float bz = mZ[i3] - mZ[i1];
+            float nx = ay * bz - az * by;
+            float ny = az * bx - ax * bz;
+            float nz = ax * by - ay * bx;
+            float norm = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (norm < EPSILON) {
+                continue;
+            }
+            nx /= norm;
+            ny /= norm;
+            nz /= norm;
+            float d = -(nx * mX[i1] + ny * mY[i1] + nz * mZ[i1]);
+            int inliers = countInliers(nx, ny, nz, d, threshold);
+            if (inliers > bestInliers) {
+                bestInliers = inliers;
+                mPlaneModel[0] = nx;
+                mPlaneModel[1] = ny;
+                mPlaneModel[2] = nz;
+                mPlaneModel[3] = d;
+            }
+        }
+        mInlierCount = bestInliers;
+        return bestInliers >= 3;
+    }
+
+    /**
+     * Counts the preselected points with a distance to the plane less than the threshold.
+     * @param nx (x value of the unit normal)
+     * @param ny (y value of the unit normal)
+     * @param nz (z value of the unit normal)
+     * @param d (distance of the plane to the origin)
+     * @param threshold (maximum distance of an inlier)
+     * @return number of inliers
+     */
+    private int countInliers(float nx, float ny, float nz, float d, float threshold) {
+        int inliers = 0;
+        for (int i = 0; i < mCount; i++) {
+            float distance = nx * mX[i] + ny * mY[i] + nz * mZ[i] + d;
+            if (distance < threshold && distance > -threshold) {
+                inliers++;
+            }
+        }
+        return inliers;
+    }
+
+    /**
+     * Least squares refinement of the RANSAC plane with all its inliers.
+     * The normal of the refined plane is the direction with the least variance of the inliers.
+     * @return true if the inliers weren't degenerated
+     */
+    private boolean refine() {
+        float nx = (float) mPlaneModel[0];
+        float ny = (float) mPlaneModel[1];
+        float nz = (float) mPlaneModel[2];
+        float d = (float) mPlaneModel[3];
+        float threshold = mInlierDistance;
+
+        // Centroid of the inliers
+        double sumX = 0;
+        double sumY = 0;
+        double sumZ = 0;
+        int n = 0;
+        for (int i = 0; i < mCount; i++) {
+            float distance = nx * mX[i] + ny * mY[i] + nz * mZ[i] + d;
+            if (distance < threshold && distance > -threshold) {
+                sumX += mX[i];
+                sumY += mY[i];
+                sumZ += mZ[i];
+                n++;
+            }
+        }
+        double centerX = sumX / n;
+        double centerY = sumY / n;
+        double centerZ = sumZ / n;
+
+        // Covariance matrix of the inliers
+        double xx = 0, xy = 0, xz = 0, yy = 0, yz = 0, zz = 0;
+        for (int i = 0; i < mCount; i++) {
+            float distance = nx * mX[i] + ny * mY[i] + nz * mZ[i] + d;
+            if (distance < threshold && distance > -threshold) {
+                double rx = mX[i] - centerX;
+                double ry = mY[i] - centerY;
+                double rz = mZ[i] - centerZ;
+                xx += rx * rx;
+                xy += rx * ry;
+                xz += rx * rz;
+                yy += ry * ry;
+                yz += ry * rz;
+                zz += rz * rz;
+            }
+        }
+
+        // The normal is the cross product of the two rows of the covariance matrix with the largest determinant.
+        double detX = yy * zz - yz * yz;
+        double detY = xx * zz - xz * xz;
+        double detZ = xx * yy - xy * xy;
+        double detMax = Math.max(detX, Math.max(detY, detZ));
+        if (detMax <= 0) {
+            return false;
+        }
+        double rx;
+        double ry;
+        double rz;
+        if (detMax == detX) {
+            rx = detX;
+            ry = xz * yz - xy * zz;
+            rz = xy * yz - xz * yy;
+        } else if (detMax == detY) {
+            rx = xz * yz - xy * zz;
+            ry = detY;
+            rz = xy * xz - yz * xx;
+        } else {
+            rx = xy * yz - xz * yy;
+            ry = xy * xz - yz * xx;
+            rz = detZ;
+        }
+        double norm = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        rx /= norm;
+        ry /= norm;
+        rz /= norm;
+        double rd = -(rx * centerX + ry * centerY + rz * centerZ);
+        // The depth camera is at the origin, the normal should point to the camera.
+        if (rd < 0) {
+            rx = -rx;
+            ry = -ry;
+            rz = -rz;
+            rd = -rd;
+        }
+        mPlaneModel[0] = rx;
+        mPlaneModel[1] = ry;
+        mPlaneModel[2] = rz;
+        mPlaneModel[3] = rd;
+        mInlierCount = n;
+        return true;
+    }
+
+    /**
+     * Intersects the ray through the clicked pixel with the fitted plane and stores the result in mIntersectionPoint.
+     * @param colorTdepth (column major transform from depth frame to color frame)
+     * @param rayX (x value of the ray direction in color frame, z = 1)
+     * @param rayY (y value of the ray direction in color frame, z = 1)
+     * @return true if the ray hits the plane in front of the camera
+     */
+    private boolean intersectRay(float[] colorTdepth, float rayX, float rayY) {
+        float[] m = colorTdepth;
+        // depthTcolor = inverse of the rigid transform: rotation transposed, translation -R^T * t
+        double originX = -(m[0] * m[12] + m[1] * m[13] + m[2] * m[14]);
+        double originY = -(m[4] * m[12] + m[5] * m[13] + m[6] * m[14]);
+        double originZ = -(m[8] * m[12] + m[9] * m[13] + m[10] * m[14]);
+        double dirX = m[0] * rayX + m[1] * rayY + m[2];
+        double dirY = m[4] * rayX + m[5] * rayY + m[6];
+        double dirZ = m[8] * rayX + m[9] * rayY + m[10];
+
+        double a = mPlaneModel[0];
+        double b = mPlaneModel[1];
+        double c = mPlaneModel[2];
+        double d = mPlaneModel[3];
+        double denominator = a * dirX + b * dirY + c * dirZ;
+        if (Math.abs(denominator) < EPSILON) {
+            return false;
+        }
+        double t = -(a * originX + b * originY + c * originZ + d) / denominator;
+        if (t <= 0) {
+            return false;
+        }
+        mIntersectionPoint[0] = originX + t * dirX;
+        mIntersectionPoint[1] = originY + t * dirY;
+        mIntersectionPoint[2] = originZ + t * dirZ;
+        return true;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.util.Log;
+
+/**
+ * <p>Counters of the culling stage of the AR view: the cells of the graph overlay and the level meshes
+ * of the wall layer.</p>
+ *
+ * <p>The counters of the latest cull are kept for inspection. The sums are written to the log
+ * as averages per cull after a fixed number of culls.</p>
+ *
+ * @version 1.0
+ */
+public class CullingStats {
+    /** Tag of this class */
+    private static final String TAG = CullingStats.class.getSimpleName();
+    /** Number of culls after which the averages are logged */
+    private static final int LOG_INTERVAL = 600;
+    /** Tested BVH nodes of the latest cull */
+    private int mTestedNodes;
+    /** Cells culled by the frustum in the latest cull */
+    private int mFrustumCulled;
+    /** Cells culled by the distance or the level in the latest cull */
+    private int mDistanceCulled;
+    /** Cells drawn with each level of detail in the latest cull */
+    private int[] mDrawn = new int[GraphOverlay.LOD_COUNT];
+    /** Wall levels culled in the latest cull */
+    private int mWallLevelsCulled;
+    /** Wall levels drawn in the latest cull */
+    private int mWallLevelsDrawn;
+    /** Draw calls of the latest cull (cells and wall levels) */
+    private int mDrawCalls;
+    /** Number of culls since the last log */
+    private int mCulls;
+    /** Sum of the culled cells since the last log */
+    private long mCulledSum;
+    /** Sum of the drawn cells since the last log */
+    private long mDrawnSum;
+    /** Sum of the culled wall levels since the last log */
+    private long mWallCulledSum;
+    /** Sum of the drawn wall levels since the last log */
+    private long mWallDrawnSum;
+    /** Sum of the draw calls since the last log */
+    private long mDrawCallSum;
+
+    /**
+     * Resets the counters of the latest cull (called at the start of a cull).
+     */
+    public void beginCull() {
+        mTestedNodes = 0;
+        mFrustumCulled = 0;
+        mDistanceCulled = 0;
+        mWallLevelsCulled = 0;
+        mWallLevelsDrawn = 0;
+        mDrawCalls = 0;
+        for (int i = 0; i < mDrawn.length; i++) {
+            mDrawn[i] = 0;
+        }
+    }
+
+    /**
+     * Adds the counters of the latest cull to the sums (called at the end of a cull).
+     */
+    public void endCull() {
+        mCulledSum += mFrustumCulled + mDistanceCulled;
+        mDrawnSum += getDrawnCells();
+        mWallCulledSum += mWallLevelsCulled;
+        mWallDrawnSum += mWallLevelsDrawn;
+        mDrawCallSum += mDrawCalls;
+        if (++mCulls == LOG_INTERVAL) {
+            Log.d(TAG, String.format("per cull: culled %.1f, drawn %.1f, wall levels culled %.1f, drawn %.1f, "
+                    + "draw calls %.1f (latest: %s)", (float) mCulledSum / mCulls, (float) mDrawnSum / mCulls,
+                    (float) mWallCulledSum / mCulls, (float) mWallDrawnSum / mCulls, (float) mDrawCallSum / mCulls,
+                    toString()));
+            mCulls = 0;
+            mCulledSum = 0;
+            mDrawnSum = 0;
+            mWallCulledSum = 0;
+            mWallDrawnSum = 0;
+            mDrawCallSum = 0;
+        }
+    }
+
+    /**
+     * Counts a tested BVH node.
+     */
+    public void countTestedNode() {
+        mTestedNodes++;
+    }
+
+    /**
+     * Counts cells culled by the frustum.
+     * @param cells (number of cells)
+     */
+    public void countFrustumCulled(int cells) {
+        mFrustumCulled += cells;
+    }
+
+    /**
+     * Counts cells culled by the distance or the level.
+     * @param cells (number of cells)
+     */
+    public void countDistanceCulled(int cells) {
+        mDistanceCulled += cells;
+    }
+
+    /**
+     * Counts a drawn cell.
+     * @param lod (level of detail of the cell)
+     * @param drawCalls (number of batches drawn for the cell)
+     */
+    public void countDrawn(int lod, int drawCalls) {
+        mDrawn[lod]++;
+        mDrawCalls += drawCalls;
+    }
+
+    /**
+     * Counts a tested level mesh of the wall layer (one draw call if it is drawn).
+     * @param drawn (true if the level is drawn, false if it is culled)
+     */
+    public void countWallLevel(boolean drawn) {
+        if (drawn) {
+            mWallLevelsDrawn++;
+            mDrawCalls++;
+        } else {
+            mWallLevelsCulled++;
+        }
+    }
+
+    /**
+     * Getter function for the number of cells drawn in the latest cull.
+     * @return number of drawn cells (all levels of detail)
+     */
+    public int getDrawnCells() {
+        int drawn = 0;
+        for (int count : mDrawn) {
+            drawn += count;
+        }
+        return drawn;
+    }
+
+    /**
+     * Getter function for the number of cells culled in the latest cull.
+     * @return number of culled cells (frustum and distance)
+     */
+    public int getCulledCells() {
+        return mFrustumCulled + mDistanceCulled;
+    }
+
+    /**
+     * Getter function for the number of wall levels drawn in the latest cull.
+     * @return mWallLevelsDrawn
+     */
+    public int getDrawnWallLevels() {
+        return mWallLevelsDrawn;
+    }
+
+    /**
+     * Getter function for the number of wall levels culled in the latest cull.
+     * @return mWallLevelsCulled
+     */
+    public int getCulledWallLevels() {
+        return mWallLevelsCulled;
+    }
+
+    /**
+     * Getter function for the number of draw calls of the latest cull.
+     * @return mDrawCalls
+     */
+    public int getDrawCalls() {
+        return mDrawCalls;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("nodes ").append(mTestedNodes);
+        builder.append(", frustum culled ").append(mFrustumCulled);
+        builder.append(", distance culled ").append(mDistanceCulled);
+        builder.append(", drawn per lod");
+        for (int count : mDrawn) {
+            builder.append(' ').append(count);
+        }
+        builder.append(", wall levels culled ").append(mWallLevelsCulled);
+        builder.append(", wall levels drawn ").append(mWallLevelsDrawn);
+        builder.append(", draw calls ").append(mDrawCalls);
+        return builder.toString();
+    }
+}
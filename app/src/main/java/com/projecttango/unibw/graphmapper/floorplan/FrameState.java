@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import com.google.atap.tangoservice.TangoPoseData;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>State of the latest rendered frame: timestamp of the RGB frame and the camera pose at this time.
+ * A second instance holds the latest device pose of the pose callbacks, which are independent of the rendering.</p>
+ *
+ * <p>Every instance has only one writer thread (the OpenGL thread or the Tango callback thread). Other threads
+ * (touch handling, position layer) read the state without locking through a sequence lock: the writer makes the sequence odd while it writes, so a reader retries
+ * if the sequence was odd or has changed while it was reading. The writer never waits for a reader.</p>
+ *
+ * <p>NOTE: The values are stored in an AtomicLongArray, so the reads can't be reordered around the sequence checks.</p>
+ *
+ * @version 1.0
+ */
+public class FrameState {
+    /** Slot of the RGB timestamp */
+    private static final int RGB_TIMESTAMP = 0;
+    /** Slot of the pose timestamp */
+    private static final int POSE_TIMESTAMP = 1;
+    /** First slot of the translation (x, y, z) */
+    private static final int TRANSLATION = 2;
+    /** First slot of the rotation (x, y, z, w) */
+    private static final int ROTATION = 5;
+    /** Number of slots */
+    private static final int SIZE = 9;
+    /** Sequence number (odd while the writer is writing) */
+    private final AtomicLong mSequence = new AtomicLong();
+    /** Values as raw double bits */
+    private final AtomicLongArray mValues = new AtomicLongArray(SIZE);
+
+    /**
+     * Publishes the timestamp of a new RGB frame (writer thread only).
+     * @param rgbTimestamp (timestamp of the frame)
+     */
+    public void publishRgbTimestamp(double rgbTimestamp) {
+        long sequence = mSequence.get();
+        mSequence.set(sequence + 1);
+        set(RGB_TIMESTAMP, rgbTimestamp);
+        mSequence.set(sequence + 2);
+    }
+
+    /**
+     * Publishes the latest pose (writer thread only).
+     * @param pose (valid pose, e.g. of the color camera)
+     */
+    public void publishPose(TangoPoseData pose) {
+        long sequence = mSequence.get();
+        mSequence.set(sequence + 1);
+        set(POSE_TIMESTAMP, pose.timestamp);
+        for (int i = 0; i < 3; i++) {
+            set(TRANSLATION + i, pose.translation[i]);
+        }
+        for (int i = 0; i < 4; i++) {
+            set(ROTATION + i, pose.rotation[i]);
+        }
+        mSequence.set(sequence + 2);
+    }
+
+    /**
+     * Getter function for the timestamp of the latest RGB frame.
+     * @return timestamp (0 if there was no frame yet)
+     */
+    public double getRgbTimestamp() {
+        return Double.longBitsToDouble(mValues.get(RGB_TIMESTAMP));
+    }
+
+    /**
+     * Reads a consistent copy of the latest pose.
+     * @param translation (float[3] to be filled with the translation)
+     * @param rotation (float[4] to be filled with the rotation quaternion x, y, z, w)
+     * @return timestamp of the pose (0 if there was no valid pose yet)
+     */
+    public double readPose(float[] translation, float[] rotation) {
+        while (true) {
+            long sequence = mSequence.get();
+            if ((sequence & 1) != 0) {
+                Thread.yield(); //writer is writing
+                continue;
+            }
+            double timestamp = get(POSE_TIMESTAMP);
+            for (int i = 0; i < 3; i++) {
+                translation[i] = (float) get(TRANSLATION + i);
+            }
+            for (int i = 0; i < 4; i++) {
+                rotation[i] = (float) get(ROTATION + i);
+            }
+            if (mSequence.get() == sequence) {
+                return timestamp;
+            }
+        }
+    }
+
+    /**
+     * Stores a value.
+     * @param slot (slot of the value)
+     * @param value (value to be stored)
+     */
+    private void set(int slot, double value) {
+        mValues.set(slot, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Loads a value.
+     * @param slot (slot of the value)
+     * @return value
+     */
+    private double get(int slot) {
+        return Double.longBitsToDouble(mValues.get(slot));
+    }
+}
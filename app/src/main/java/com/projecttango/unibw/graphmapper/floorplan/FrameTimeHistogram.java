@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.util.Log;
+
+/**
+ * <p>Histogram of the frame times of the augmented reality view.</p>
+ *
+ * <p>The frame times are counted in fixed buckets and the histogram is written to the log
+ * after a fixed number of frames, so stalls of the OpenGL thread (e.g. lock contention) become visible.
+ * It must only be used by the OpenGL render thread.</p>
+ *
+ * @version 1.0
+ */
+public class FrameTimeHistogram {
+    /** Tag of this class */
+    private static final String TAG = FrameTimeHistogram.class.getSimpleName();
+    /** Upper bounds of the buckets in milliseconds (the last bucket has no upper bound) */
+    private static final int[] BUCKET_BOUNDS = {8, 12, 17, 25, 34, 50, 100};
+    /** Number of frames after which the histogram is logged and reset */
+    private static final int LOG_INTERVAL = 600;
+    /** Number of frames per bucket */
+    private final int[] mCounts = new int[BUCKET_BOUNDS.length + 1];
+    /** Number of frames since the last log */
+    private int mFrames = 0;
+    /** Longest frame time since the last log in milliseconds */
+    private double mMaxMillis = 0;
+
+    /**
+     * Counts the time of a frame.
+     * @param deltaTime (time since the last frame in seconds)
+     */
+    public void record(double deltaTime) {
+        double millis = deltaTime * 1000;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && millis >= BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+        mCounts[bucket]++;
+        mMaxMillis = Math.max(mMaxMillis, millis);
+        if (++mFrames == LOG_INTERVAL) {
+            Log.d(TAG, toString());
+            reset();
+        }
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mFrames = 0;
+        mMaxMillis = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("frame times (ms):");
+        for (int i = 0; i < mCounts.length; i++) {
+            builder.append(i < BUCKET_BOUNDS.length ? " <" + BUCKET_BOUNDS[i] : " >=" + BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1]);
+            builder.append(':').append(mCounts[i]);
+        }
+        builder.append(" max:").append((int) mMaxMillis);
+        return builder.toString();
+    }
+}
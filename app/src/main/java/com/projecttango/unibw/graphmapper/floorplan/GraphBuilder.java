@@ -20,6 +20,7 @@
 
 package com.projecttango.unibw.graphmapper.floorplan;
 
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
 import com.projecttango.unibw.graphmapper.graph.Entrypoint;
 import com.projecttango.unibw.graphmapper.graph.Hallway;
 import com.projecttango.unibw.graphmapper.graph.Marker;
@@ -46,64 +47,39 @@ public class GraphBuilder {
     private static final float EPSILON = 0.000001f;
 
     /**
-     * This function calculates the center of a plan with a given list of points.
-     * @param list (point list with all points from the plan)
+     * This function calculates the center of a plan with a given bounding box.
+     * @param bounds (precalculated bounding box of the hallway or level)
      * @return Center of the plan as a float[] 3D vector
      */
-    public static float[] getPlanCenter(List<float[]> list) {
-        float[] bounds = getPlanBounds(list);
-        return new float[]{(bounds[0] + bounds[1]) / 2, (bounds[2] + bounds[3]) / 2,
-                (bounds[4] + bounds[5]) / 2};
+    public static float[] getPlanCenter(BoundingBox bounds) {
+        return bounds.getCenter();
     }
 
     /**
-     * This function calculates the scale of a floorplan with a given list of points.
+     * This function calculates the scale of a floorplan with a given bounding box.
+     * So the all elements can be fitted on the display of the tablet with a specific scale.
      * @param height (height of the canvas)
      * @param width (weight of the canvas)
-     * @param list (point list with all points from the plan)
+     * @param bounds (precalculated bounding box of the hallway or level)
      * @return scale of the plan (float value)
      */
-    public static float getPlanScale(int height, int width, List<float[]> list) {
-        float[] bounds = getPlanBounds(list);
-        float xScale = RENDER_PADDING_SCALE_FACTOR * width / (bounds[1] - bounds[0]);
-        float zScale = RENDER_PADDING_SCALE_FACTOR * height / (bounds[5] - bounds[4]);
+    public static float getPlanScale(int height, int width, BoundingBox bounds) {
+        float xScale = RENDER_PADDING_SCALE_FACTOR * width / bounds.getWidth();
+        float zScale = RENDER_PADDING_SCALE_FACTOR * height / bounds.getDepth();
         return xScale < zScale ? xScale : zScale;
     }
 
     /**
-     * This function calculates a bounding box around all points of a hallway or level.
-     * So the all elements can be fitted on the display of the tablet with a specific scale.
-     * @param list (point list with all points from the plan)
-     * @return float array with start and end values for x, y, and z coordinates in a calculated scale
+     * This function calculates the size of a canvas that shows the plan with a given resolution.
+     * It is the inverse of getPlanScale, so the plan has the same padding as on the display.
+     * @param bounds (precalculated bounding box of the hallway or level)
+     * @param pixelsPerMeter (resolution of the plan)
+     * @return width and height of the canvas in pixels (at least 1)
      */
-    private static float[] getPlanBounds(List<float[]> list) {
-        float xStart = Float.MAX_VALUE;
-        float yStart = Float.MAX_VALUE;
-        float zStart = Float.MAX_VALUE;
-        float xEnd = Float.MIN_VALUE;
-        float yEnd = Float.MIN_VALUE;
-        float zEnd = Float.MIN_VALUE;
-        for (float[] point : list) {
-            if (point[0] < xStart) {
-                xStart = point[0];
-            }
-            if (point[0] > xEnd) {
-                xEnd = point[0];
-            }
-            if (point[1] < yStart) {
-                yStart = point[1];
-            }
-            if (point[1] > yEnd) {
-                yEnd = point[1];
-            }
-            if (point[2] < zStart) {
-                zStart = point[2];
-            }
-            if (point[2] > zEnd) {
-                zEnd = point[2];
-            }
-        }
-        return new float[]{xStart, xEnd, yStart, yEnd, zStart, zEnd};
+    public static int[] getPlanSize(BoundingBox bounds, float pixelsPerMeter) {
+        int width = (int) Math.ceil(bounds.getWidth() * pixelsPerMeter / RENDER_PADDING_SCALE_FACTOR);
+        int height = (int) Math.ceil(bounds.getDepth() * pixelsPerMeter / RENDER_PADDING_SCALE_FACTOR);
+        return new int[]{Math.max(1, width), Math.max(1, height)};
     }
 
     /**
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.gson.Gson;
+import com.projecttango.unibw.graphmapper.export.GltfWriter;
+import com.projecttango.unibw.graphmapper.export.IndoorGmlWriter;
+import com.projecttango.unibw.graphmapper.export.PdfPlanWriter;
+import com.projecttango.unibw.graphmapper.export.SvgPlanWriter;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Writes the file exports of a saved graph (vector plans, IndoorGML, 3D model) on a single worker thread, so saving a large
+ * graph does not block the UI thread.</p>
+ *
+ * <p>The worker reads its own copy of the graph from the JSON of the saved graph, so the graph of the activity
+ * can be used while the files are written. Every export is written on its own, a failed export does not stop
+ * the others. The listener is called on the UI thread when all files are written.</p>
+ *
+ * @version 1.0
+ */
+public class GraphExporter {
+    /**
+     * Listener for finished exports. The functions are called on the UI thread.
+     */
+    public interface OnExportListener {
+        /**
+         * Called when all files were written.
+         * @param files (written files)
+         */
+        void onExported(List<File> files);
+
+        /**
+         * Called when at least one export failed.
+         * @param files (files that were written anyway)
+         * @param e (cause of the first failure)
+         */
+        void onExportFailed(List<File> files, Exception e);
+    }
+
+    /** single worker thread with the queue of exports */
+    private final ThreadPoolExecutor mExecutor;
+    /** handler to deliver the results on the UI thread */
+    private final Handler mUiHandler;
+
+    /**
+     * Constructor (Creates a new exporter with its worker thread)
+     */
+    public GraphExporter() {
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        mUiHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Enqueues the exports of a saved graph.
+     * @param graphJson (saved graph in GSON format)
+     * @param planDirectory (directory of the vector plans)
+     * @param graphDirectory (directory of the graph exports)
+     * @param name (name of the adf & graph, prefix of the files)
+     * @param listener (listener for the result, called on the UI thread)
+     */
+    public void export(final String graphJson, final File planDirectory, final File graphDirectory,
+                       final String name,
+                       final OnExportListener listener) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<File> files = new ArrayList<File>();
+                Exception failure = null;
+                try {
+                    Graph graph = new Gson().fromJson(graphJson, Graph.class);
+                    failure = write(graph, planDirectory, graphDirectory, name, files);
+                } catch (RuntimeException e) {
+                    failure = e;
+                } catch (OutOfMemoryError e) {
+                    failure = new IOException("Not enough memory for the export", e);
+                }
+                final Exception cause = failure;
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cause == null) {
+                            listener.onExported(files);
+                        } else {
+                            listener.onExportFailed(files, cause);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops the worker thread after the pending exports are written.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * This function writes all exports of the graph (worker thread).
+     * @param graph (copy of the saved graph)
+     * @param planDirectory (directory of the vector plans)
+     * @param graphDirectory (directory of the graph exports)
+     * @param name (name of the adf & graph, prefix of the files)
+     * @param files (list to be filled with the written files)
+     * @return cause of the first failed export or null if all files were written
+     */
+    private Exception write(Graph graph, File planDirectory, File graphDirectory, String name,
+                            List<File> files) {
+        Exception failure = null;
+        //Vector plans (one SVG per level and one PDF with all levels)
+        try {
+            files.addAll(new SvgPlanWriter().writeLevels(graph, planDirectory, name));
+            File pdf = new File(planDirectory, name + "_plan.pdf");
+            new PdfPlanWriter().write(graph, pdf);
+            files.add(pdf);
+        } catch (IOException e) {
+            failure = e;
+        }
+        //Graph in IndoorGML format
+        try {
+            File gml = new File(graphDirectory, name + "_indoor.gml");
+            new IndoorGmlWriter().write(graph, gml);
+            files.add(gml);
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        //3D building model (binary glTF)
+        try {
+            File glb = new File(graphDirectory, name + "_model.glb");
+            new GltfWriter().write(graph, glb);
+            files.add(glb);
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        return failure;
+    }
+}
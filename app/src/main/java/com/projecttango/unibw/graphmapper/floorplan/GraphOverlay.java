@@ -0,0 +1,501 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.graphics.Color;
+import android.opengl.GLES20;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.Marker;
+import com.projecttango.unibw.graphmapper.graph.Room;
+
+/**
+ * <p>Augmented reality overlay of a loaded navigation graph (hallway outlines, obstacles, entrypoints, rooms and markers).</p>
+ *
+ * <p>The geometry of every level is split into the cells of a uniform grid (x and z in the OpenGL frame).
+ * Each cell has one batch with a static vertex buffer per level of detail, which is uploaded once:
+ * the outline (hallways and obstacles) and the labels (crosses of entrypoints, rooms and markers).
+ * Far cells show only the outline and the nearest cells also the labels. The walls are merged per level
+ * by the WallLayer, which uses the distance of LOD_WALLS. The wall layer of a cell stays empty.</p>
+ *
+ * <p>The cells of every level are stored in a bounding volume hierarchy (BVH). Every time the camera pose changes,
+ * the BVH is traversed: subtrees outside of the view frustum, too far away or on another level are culled as a whole,
+ * subtrees completely inside of the frustum are not tested again. The counters of every cull are kept in CullingStats.</p>
+ *
+ * <p>NOTE: The overlay must be created and culled on the OpenGL render thread.</p>
+ *
+ * @version 1.0
+ */
+public class GraphOverlay {
+    /** Level of detail: only the outline is drawn */
+    public static final int LOD_OUTLINE = 0;
+    /** Level of detail: the outline and the walls are drawn */
+    public static final int LOD_WALLS = 1;
+    /** Level of detail: the outline, the walls and the labels are drawn */
+    public static final int LOD_LABELS = 2;
+    /** Number of levels of detail */
+    public static final int LOD_COUNT = 3;
+    /** Maximum horizontal distance in meters of each level of detail */
+    private static final float[] LOD_RADIUS = {30f, 15f, 8f};
+    /** Side length of a grid cell in meters */
+    private static final float CELL_SIZE = 8f;
+    /** Maximum length of a line piece (long lines are split, so every piece stays close to its cell) */
+    private static final float MAX_PIECE_LENGTH = CELL_SIZE / 2;
+    /** Vertical distance in meters up to which the geometry of a level is shown (hides the other levels) */
+    private static final float LEVEL_HEIGHT_TOLERANCE = 2.5f;
+    /** Half size of the crosses of entrypoints, rooms and markers */
+    private static final float CROSS_SIZE = 0.15f;
+    /** Color of the hallway outlines */
+    private static final int HALLWAY_COLOR = 0xff009900;
+    /** Color of the obstacles */
+    private static final int OBSTACLE_COLOR = Color.YELLOW;
+    /** Color of the entrypoints */
+    private static final int ENTRY_COLOR = Color.BLUE;
+    /** Color of the rooms */
+    private static final int ROOM_COLOR = Color.RED;
+    /** Color of the markers */
+    private static final int MARKER_COLOR = Color.CYAN;
+    /** Container of all cell batches (added to the scene) */
+    private Object3D mRoot = new Object3D();
+    /** Cells of every level (level -> cell key -> cell) */
+    private Map<Integer, Map<Long, Cell>> mLevels = new HashMap<Integer, Map<Long, Cell>>();
+    /** Root nodes of the BVH of every level */
+    private List<BvhNode> mBvhRoots = new ArrayList<BvhNode>();
+    /** Cells which are drawn at the moment */
+    private List<Cell> mDrawnCells = new ArrayList<Cell>();
+    /** Cells which are drawn after the running cull */
+    private List<Cell> mNextDrawnCells = new ArrayList<Cell>();
+    /** View frustum of the running cull */
+    private ViewFrustum mFrustum;
+    /** Counters of the running cull */
+    private CullingStats mStats;
+
+    /**
+     * Constructor (Creates the batches of all levels of the graph and uploads them)
+     * NOTE: This must be called from the OpenGL render thread.
+     * @param graph (loaded navigation graph)
+     */
+    public GraphOverlay(Graph graph) {
+        mRoot.isContainer(true);
+        for (Hallway hallway : graph.getGraph().values()) {
+            int level = hallway.getLevel();
+            addLoop(level, hallway.getHallwayPoints(), HALLWAY_COLOR);
+            for (List<float[]> obstacle : hallway.getObstacles()) {
+                addLoop(level, obstacle, OBSTACLE_COLOR);
+            }
+            for (Entrypoint entrypoint : hallway.getConnections()) {
+                addCross(level, entrypoint.getPositionFrom(), ENTRY_COLOR);
+            }
+            for (Room room : hallway.getRooms()) {
+                addCross(level, room.getPosition(), ROOM_COLOR);
+            }
+            for (Marker marker : hallway.getMarkers()) {
+                addCross(level, marker.getPosition(), MARKER_COLOR);
+            }
+        }
+        Material material = new Material();
+        material.useVertexColors(true);
+        for (Map<Long, Cell> cells : mLevels.values()) {
+            for (Cell cell : cells.values()) {
+                for (Object3D layer : cell.createLayers(material)) {
+                    if (layer != null) {
+                        mRoot.addChild(layer);
+                    }
+                }
+            }
+            mBvhRoots.add(buildBvh(new ArrayList<Cell>(cells.values())));
+        }
+    }
+
+    /**
+     * Getter function for the container of all batches, which has to be added to the scene.
+     * @return mRoot
+     */
+    public Object3D getRoot() {
+        return mRoot;
+    }
+
+    /**
+     * Getter function for the maximum horizontal distance of a level of detail.
+     * @param lod (level of detail)
+     * @return distance in meters
+     */
+    public static float getLodRadius(int lod) {
+        return LOD_RADIUS[lod];
+    }
+
+    /**
+     * Culls the cells with the current pose of the camera and selects the level of detail of the visible cells.
+     * NOTE: This must be called from the OpenGL render thread after the camera pose was updated.
+     * @param frustum (view frustum of the camera with the current pose and projection)
+     * @param position (position of the camera)
+     * @param stats (counters of the running cull)
+     */
+    public void cull(ViewFrustum frustum, Vector3 position, CullingStats stats) {
+        mFrustum = frustum;
+        mStats = stats;
+        for (Cell cell : mDrawnCells) {
+            cell.mNextLod = -1;
+        }
+        for (BvhNode root : mBvhRoots) {
+            cullNode(root, position.x, position.y, position.z, false);
+        }
+        // Hide the cells which are culled now and update the others.
+        for (Cell cell : mDrawnCells) {
+            if (cell.mNextLod < 0) {
+                cell.applyLod(-1);
+            }
+        }
+        for (Cell cell : mNextDrawnCells) {
+            mStats.countDrawn(cell.mNextLod, cell.applyLod(cell.mNextLod));
+        }
+        List<Cell> swap = mDrawnCells;
+        mDrawnCells = mNextDrawnCells;
+        mNextDrawnCells = swap;
+        mNextDrawnCells.clear();
+    }
+
+    /**
+     * Culls a BVH node and its children.
+     * @param node (node to be tested)
+     * @param x (x coordinate of the camera)
+     * @param y (y coordinate of the camera)
+     * @param z (z coordinate of the camera)
+     * @param inside (true if a parent node is completely inside of the frustum)
+     */
+    private void cullNode(BvhNode node, double x, double y, double z, boolean inside) {
+        mStats.countTestedNode();
+        double distance = horizontalDistance(node.mBounds, x, z);
+        if (distance > LOD_RADIUS[LOD_OUTLINE] || !isOnLevel(node.mBounds, y)) {
+            mStats.countDistanceCulled(node.mCellCount);
+            return;
+        }
+        if (!inside) {
+            int result = mFrustum.test(node.mBounds);
+            if (result == ViewFrustum.OUTSIDE) {
+                mStats.countFrustumCulled(node.mCellCount);
+                return;
+            }
+            inside = result == ViewFrustum.INSIDE;
+        }
+        if (node.mCell != null) {
+            int lod = LOD_OUTLINE;
+            while (lod + 1 < LOD_COUNT && distance <= LOD_RADIUS[lod + 1]) {
+                lod++;
+            }
+            node.mCell.mNextLod = lod;
+            mNextDrawnCells.add(node.mCell);
+        } else {
+            cullNode(node.mLeft, x, y, z, inside);
+            cullNode(node.mRight, x, y, z, inside);
+        }
+    }
+
+    /**
+     * Calculates the horizontal distance (x and z) between a point and a bounding box.
+     * @param box (bounding box)
+     * @param x (x coordinate of the point)
+     * @param z (z coordinate of the point)
+     * @return distance (0 if the point is above or below the box)
+     */
+    private static double horizontalDistance(BoundingBox box, double x, double z) {
+        double dx = Math.max(0, Math.max(box.getMinX() - x, x - box.getMaxX()));
+        double dz = Math.max(0, Math.max(box.getMinZ() - z, z - box.getMaxZ()));
+        return Math.sqrt(dx * dx + dz * dz);
+    }
+
+    /**
+     * Signals if a height is on the level of a bounding box.
+     * @param box (bounding box)
+     * @param y (height)
+     * @return true if the height is within the tolerance around the box
+     */
+    private static boolean isOnLevel(BoundingBox box, double y) {
+        return y >= box.getMinY() - LEVEL_HEIGHT_TOLERANCE && y <= box.getMaxY() + LEVEL_HEIGHT_TOLERANCE;
+    }
+
+    /**
+     * Builds a BVH over the cells. The cells are split at the median of their centers along the longer horizontal axis.
+     * @param cells (cells of one level, not empty)
+     * @return root node
+     */
+    private static BvhNode buildBvh(List<Cell> cells) {
+        BvhNode node = new BvhNode();
+        node.mCellCount = cells.size();
+        for (Cell cell : cells) {
+            node.mBounds.include(cell.mBounds);
+        }
+        if (cells.size() == 1) {
+            node.mCell = cells.get(0);
+            return node;
+        }
+        final int axis = node.mBounds.getWidth() >= node.mBounds.getDepth() ? 0 : 2;
+        Collections.sort(cells, new Comparator<Cell>() {
+            @Override
+            public int compare(Cell a, Cell b) {
+                return Float.compare(a.mBounds.getCenter()[axis], b.mBounds.getCenter()[axis]);
+            }
+        });
+        int half = cells.size() / 2;
+        node.mLeft = buildBvh(new ArrayList<Cell>(cells.subList(0, half)));
+        node.mRight = buildBvh(new ArrayList<Cell>(cells.subList(half, cells.size())));
+        return node;
+    }
+
+    /**
+     * Adds a closed polygon (every corner is connected to the next and the last to the first).
+     * @param level (level of the polygon)
+     * @param points (corner points)
+     * @param color (color of the lines)
+     */
+    private void addLoop(int level, List<float[]> points, int color) {
+        for (int i = 0; i < points.size(); i++) {
+            addLine(level, points.get(i), points.get((i + 1) % points.size()), color);
+        }
+    }
+
+    /**
+     * Adds an outline line. Long lines are split into pieces which are added to the cell of their midpoint.
+     * @param level (level of the line)
+     * @param from (start point)
+     * @param to (end point)
+     * @param color (color of the line)
+     */
+    private void addLine(int level, float[] from, float[] to, int color) {
+        float dx = to[0] - from[0];
+        float dy = to[1] - from[1];
+        float dz = to[2] - from[2];
+        float length = (float) Math.sqrt(dx * dx + dz * dz);
+        int pieces = Math.max(1, (int) Math.ceil(length / MAX_PIECE_LENGTH));
+        for (int i = 0; i < pieces; i++) {
+            float t0 = (float) i / pieces;
+            float t1 = (float) (i + 1) / pieces;
+            float[] start = {from[0] + dx * t0, from[1] + dy * t0, from[2] + dz * t0};
+            float[] end = {from[0] + dx * t1, from[1] + dy * t1, from[2] + dz * t1};
+            getCell(level, (start[0] + end[0]) / 2, (start[2] + end[2]) / 2).addLine(LOD_OUTLINE, start, end, color);
+        }
+    }
+
+    /**
+     * Adds a label cross of three axis aligned lines around a point.
+     * @param level (level of the point)
+     * @param point (center of the cross)
+     * @param color (color of the cross)
+     */
+    private void addCross(int level, float[] point, int color) {
+        Cell cell = getCell(level, point[0], point[2]);
+        for (int axis = 0; axis < 3; axis++) {
+            float[] start = {point[0], point[1], point[2]};
+            float[] end = {point[0], point[1], point[2]};
+            start[axis] -= CROSS_SIZE;
+            end[axis] += CROSS_SIZE;
+            cell.addLine(LOD_LABELS, start, end, color);
+        }
+    }
+
+    /**
+     * Returns the cell of a position and creates it if necessary.
+     * @param level (level of the position)
+     * @param x (x coordinate)
+     * @param z (z coordinate)
+     * @return cell
+     */
+    private Cell getCell(int level, float x, float z) {
+        Map<Long, Cell> cells = mLevels.get(level);
+        if (cells == null) {
+            cells = new HashMap<Long, Cell>();
+            mLevels.put(level, cells);
+        }
+        long key = cellKey(cellIndex(x), cellIndex(z));
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    /**
+     * Calculates the grid index of a coordinate.
+     * @param coordinate (x or z coordinate)
+     * @return index of the cell
+     */
+    private static int cellIndex(float coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    /**
+     * Combines the x and z index of a cell to one key.
+     * @param cellX (x index)
+     * @param cellZ (z index)
+     * @return key of the cell
+     */
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xffffffffL);
+    }
+
+    /**
+     * Node of the bounding volume hierarchy. A leaf references one cell.
+     */
+    private static class BvhNode {
+        /** Bounding box of all cells below this node */
+        private final BoundingBox mBounds = new BoundingBox();
+        /** Number of cells below this node */
+        private int mCellCount;
+        /** Cell of a leaf (null for inner nodes) */
+        private Cell mCell;
+        /** Left child (null for leaves) */
+        private BvhNode mLeft;
+        /** Right child (null for leaves) */
+        private BvhNode mRight;
+    }
+
+    /**
+     * One grid cell of a level: one line batch per level of detail and the bounding box of all batches.
+     */
+    private static class Cell {
+        /** Bounding box of all lines of the cell */
+        private final BoundingBox mBounds = new BoundingBox();
+        /** Vertex positions (x, y, z) of every layer, null if the layer is empty */
+        private float[][] mVertices = new float[LOD_COUNT][];
+        /** Vertex colors (r, g, b, a) of every layer */
+        private float[][] mColors = new float[LOD_COUNT][];
+        /** Number of vertices of every layer */
+        private int[] mVertexCounts = new int[LOD_COUNT];
+        /** Batch of every layer (null if the layer is empty) */
+        private Object3D[] mLayers = new Object3D[LOD_COUNT];
+        /** Level of detail which is shown (-1 if the cell is culled) */
+        private int mLod = -1;
+        /** Level of detail selected by the running cull (-1 if the cell is culled) */
+        private int mNextLod = -1;
+
+        /**
+         * Adds a line to a layer of the cell.
+         * @param layer (level of detail of the line)
+         * @param start (start point)
+         * @param end (end point)
+         * @param color (color of the line)
+         */
+        private void addLine(int layer, float[] start, float[] end, int color) {
+            addVertex(layer, start, color);
+            addVertex(layer, end, color);
+            mBounds.include(start);
+            mBounds.include(end);
+        }
+
+        /**
+         * Adds a vertex to a layer of the cell.
+         * @param layer (level of detail of the vertex)
+         * @param point (position of the vertex)
+         * @param color (color of the vertex)
+         */
+        private void addVertex(int layer, float[] point, int color) {
+            int count = mVertexCounts[layer];
+            if (mVertices[layer] == null) {
+                mVertices[layer] = new float[48];
+                mColors[layer] = new float[64];
+            } else if ((count + 1) * 3 > mVertices[layer].length) {
+                float[] vertices = new float[mVertices[layer].length * 2];
+                System.arraycopy(mVertices[layer], 0, vertices, 0, mVertices[layer].length);
+                mVertices[layer] = vertices;
+                float[] colors = new float[mColors[layer].length * 2];
+                System.arraycopy(mColors[layer], 0, colors, 0, mColors[layer].length);
+                mColors[layer] = colors;
+            }
+            System.arraycopy(point, 0, mVertices[layer], count * 3, 3);
+            float[] colors = mColors[layer];
+            int c = count * 4;
+            colors[c] = Color.red(color) / 255f;
+            colors[c + 1] = Color.green(color) / 255f;
+            colors[c + 2] = Color.blue(color) / 255f;
+            colors[c + 3] = Color.alpha(color) / 255f;
+            mVertexCounts[layer]++;
+        }
+
+        /**
+         * Shows the layers of a level of detail and hides the others.
+         * @param lod (level of detail, -1 hides all layers)
+         * @return number of visible batches (draw calls)
+         */
+        private int applyLod(int lod) {
+            int drawCalls = 0;
+            for (int i = 0; i < LOD_COUNT; i++) {
+                if (mLayers[i] != null) {
+                    boolean visible = i <= lod;
+                    if (mLod != lod) {
+                        mLayers[i].setVisible(visible);
+                    }
+                    if (visible) {
+                        drawCalls++;
+                    }
+                }
+            }
+            mLod = lod;
+            return drawCalls;
+        }
+
+        /**
+         * Creates the line batches of the cell and uploads them once (static vertex buffers).
+         * NOTE: This must be called from the OpenGL render thread.
+         * @param material (shared material with vertex colors)
+         * @return invisible batch of every layer (null if the layer is empty)
+         */
+        private Object3D[] createLayers(Material material) {
+            for (int layer = 0; layer < LOD_COUNT; layer++) {
+                int vertexCount = mVertexCounts[layer];
+                if (vertexCount == 0) {
+                    continue;
+                }
+                float[] vertices = new float[vertexCount * 3];
+                System.arraycopy(mVertices[layer], 0, vertices, 0, vertices.length);
+                float[] colors = new float[vertexCount * 4];
+                System.arraycopy(mColors[layer], 0, colors, 0, colors.length);
+                int[] indices = new int[vertexCount];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = i;
+                }
+                Object3D object = new Object3D();
+                object.setData(vertices, new float[vertices.length], new float[vertexCount * 2], colors, indices, true);
+                object.setDrawingMode(GLES20.GL_LINES);
+                object.setMaterial(material);
+                object.setVisible(false);
+                mLayers[layer] = object;
+            }
+            // the arrays are not needed anymore
+            mVertices = null;
+            mColors = null;
+            return mLayers;
+        }
+    }
+}
@@ -38,11 +38,15 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Environment;
 import android.util.Log;
+import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
@@ -53,7 +57,6 @@ import android.widget.Toast;
 
 import org.rajawali3d.scene.ASceneFrameCallback;
 import org.rajawali3d.surface.RajawaliSurfaceView;
-import android.opengl.Matrix;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -69,15 +72,12 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import com.google.gson.Gson;
 import com.projecttango.unibw.graphmapper.dialog.ADFPair;
 import com.projecttango.unibw.graphmapper.dialog.Dialog;
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
 import com.projecttango.unibw.graphmapper.graph.MeasurementType;
 import com.projecttango.unibw.graphmapper.graph.Entrypoint;
 import com.projecttango.unibw.graphmapper.graph.Graph;
 import com.projecttango.unibw.graphmapper.graph.Hallway;
-import com.projecttango.unibw.graphmapper.graph.Marker;
-import com.projecttango.unibw.graphmapper.graph.Room;
-import com.projecttango.tangosupport.TangoPointCloudManager;
 import com.projecttango.tangosupport.TangoSupport;
-import com.projecttango.tangosupport.TangoSupport.IntersectionPointPlaneModelPair;
 
 /**
  * <p>A small demo application that allows the user to create a navigation graph of indoor environments
@@ -92,7 +92,7 @@ import com.projecttango.tangosupport.TangoSupport.IntersectionPointPlaneModelPai
  * relocalization in the area the user can view the floor plans and see his current position in it.</p>
  *
  * <p>The get wall measurements or POI measurements you have to click on the wall. After that there will be a plane
- * fitting on the wall. The application uses TangoSupportLibrary to do plane fitting using the point cloud data.
+ * fitting on the wall. The application uses its own RANSAC plane fitting (PlaneFitter) on the point cloud data and falls back to the TangoSupportLibrary.
  * When the user clicks on the display, plane detection is done on the surface at the location of
  * the click and a 3D object will be placed in the scene anchored at that location. A Wall Measurement
  * will be recorded for that plane.</p>
@@ -111,12 +111,12 @@ import com.projecttango.tangosupport.TangoSupport.IntersectionPointPlaneModelPai
  * @author Konstantin Klinger
  * @version 3.0
  */
-public class GraphmapperActivity extends Activity implements View.OnTouchListener {
+public class GraphmapperActivity extends Activity implements View.OnTouchListener, MeasurementPipeline.OnMeasurementListener {
     /** Tag of this class / activity */
     private static final String TAG = GraphmapperActivity.class.getSimpleName();
     /** ID for invalid textures */
     private static final int INVALID_TEXTURE_ID = 0;
-    /** path to the location in the internal storage where the graph and jpg files are stored */
+    /** path to the location in the internal storage where the graph and image files are stored */
     private static final String mStoragePath = "/Graphmapper";
     /** counter to count images that were saved, so that they haven't the same name */
     private static int mCountJPG = 1;
@@ -126,12 +126,22 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
     private GraphmapperRenderer mRenderer;
     /** intrinsic parameters of the camera */
     private TangoCameraIntrinsics mIntrinsics;
-    /** manager to handle the tango point cloud data */
-    private TangoPointCloudManager mPointCloudManager;
+    /** ring buffer with the latest tango point clouds (indexed by their timestamps) */
+    private PointCloudRingBuffer mPointCloudBuffer;
+    /** downsampling stage between the Tango callback and the point cloud ring buffer */
+    private PointCloudDownsampler mPointCloudDownsampler;
+    /** pipeline that fits the planes of the measurements on a worker thread */
+    private MeasurementPipeline mMeasurementPipeline;
     /** tango system object */
-    private Tango mTango;
-    /** Signals if the tango system is connected */
-    private boolean mIsConnected = false;
+    private volatile Tango mTango;
+    /** connection state of the tango system (replaces the activity lock) */
+    private TangoConnectionState mConnectionState = new TangoConnectionState();
+    /** latest rgb timestamp and camera pose, published by the gl thread and read without locking */
+    private FrameState mFrameState = new FrameState();
+    /** latest device pose (OpenGL frame), published by the tango callback thread independent of the gl thread */
+    private FrameState mDevicePose = new FrameState();
+    /** histogram of the frame times of the gl thread */
+    private FrameTimeHistogram mFrameTimes = new FrameTimeHistogram();
     /** timestamp of the pose data */
     private double mCameraPoseTimestamp = 0;
 
@@ -243,6 +253,16 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
     private boolean mIsViewer = false;
     /** view of the currently drawn floorplan */
     private PlanView mCurrentPlanDraw = null;
+    /** layer with the current position above the drawn plan (null if the position is not shown) */
+    private PositionOverlayView mPositionOverlay = null;
+    /** cache of the rasterized plan tiles */
+    private PlanTileCache mPlanTileCache;
+    /** worker thread that rasterizes the plan tiles */
+    private PlanTileRenderer mPlanTileRenderer;
+    /** worker thread that exports the plans as images */
+    private PlanExporter mPlanExporter;
+    /** worker thread that writes the file exports of the saved graph */
+    private GraphExporter mGraphExporter;
     /** level of the currently drawn floorplan */
     private int mCurrentLevelDraw = 0;
     /** currently drawn hallway */
@@ -285,6 +305,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         File graph = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + mStoragePath + "/Graphs");
         File image = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + mStoragePath + "/Images");
         File print = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + mStoragePath + "/Prints");
+        File plan = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + mStoragePath + "/Plans");
         if(!graph.exists()) {
             graph.mkdirs();
         }
@@ -294,6 +315,9 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         if(!print.exists()) {
             print.mkdirs();
         }
+        if(!plan.exists()) {
+            plan.mkdirs();
+        }
         mSurfaceView = (RajawaliSurfaceView) findViewById(R.id.ar_view);
         mRenderer = new GraphmapperRenderer(this);
         mSurfaceView.setSurfaceRenderer(mRenderer);
@@ -301,8 +325,15 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         // Set ZOrderOnTop to false so the other views don't get hidden by the SurfaceView.
         mSurfaceView.setZOrderOnTop(false);
         mProgressGroup = (ViewGroup) findViewById(R.id.progress_group);
-        mPointCloudManager = new TangoPointCloudManager();
+        mPointCloudDownsampler = new PointCloudDownsampler();
+        mPointCloudBuffer = new PointCloudRingBuffer(mPointCloudDownsampler.getMaxPoints());
+        mMeasurementPipeline = new MeasurementPipeline(mPointCloudBuffer, mConnectionState, this);
+        mPlanTileCache = new PlanTileCache();
+        mPlanTileRenderer = new PlanTileRenderer(mPlanTileCache, 30);
+        mPlanExporter = new PlanExporter();
+        mGraphExporter = new GraphExporter();
         mCurrentActionType = MeasurementType.WALL;
+        Graph.resetIDCounter();
         mGraph = new Graph();
         mWallMeasurementList = new ArrayList<WallMeasurement>();
         mRoomMeasurementList = new ArrayList<WallMeasurement>();
@@ -535,21 +566,30 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
     @Override
     protected void onPause() {
         super.onPause();
-        // Synchronize against disconnecting while the service is being used in the OpenGL thread or
-        // in the UI thread.
-        synchronized (this) {
-            if (mIsConnected) {
-                mRenderer.getCurrentScene().clearFrameCallbacks();
-                mTango.disconnectCamera(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
-                // We need to invalidate the connected texture ID so that we cause a re-connection
-                // in the OpenGL thread after resume
-                mConnectedTextureIdGlThread = INVALID_TEXTURE_ID;
-                mTango.disconnect();
-                mIsConnected = false;
-            }
+        // Taps that are not measured yet can't be measured after disconnecting, a running measurement is dropped.
+        mMeasurementPipeline.cancelPending();
+        // Disconnecting only waits for the current frame to release the service, frames never wait for the UI thread.
+        // A connection attempt that is still running is cancelled instead.
+        if (mConnectionState.startDisconnecting()) {
+            mRenderer.getCurrentScene().clearFrameCallbacks();
+            mTango.disconnectCamera(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
+            // We need to invalidate the connected texture ID so that we cause a re-connection
+            // in the OpenGL thread after resume
+            mConnectedTextureIdGlThread = INVALID_TEXTURE_ID;
+            mTango.disconnect();
+            mConnectionState.finishDisconnecting();
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mMeasurementPipeline.shutdown();
+        mPlanTileRenderer.shutdown();
+        mPlanExporter.shutdown();
+        mGraphExporter.shutdown();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -581,10 +621,9 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
      * Connect to Tango service and connect the camera to the renderer.
      */
     private void connectAndStart() {
-        // Synchronize against disconnecting while the service is being used in the OpenGL thread or
-        // in the UI thread.
-
-        if (!mIsConnected) {
+        // Every connection attempt gets a new generation, so an attempt that was cancelled by onPause can be detected.
+        final long generation = mConnectionState.startConnecting();
+        if (generation >= 0) {
             // Initialize Tango Service as a normal Android Service, since we call
             // mTango.disconnect() in onPause, this will unbind Tango Service, so
             // everytime when onResume get called, we should create a new Tango object.
@@ -595,12 +634,17 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                 // when there is no UI thread changes involved.
                 @Override
                 public void run() {
+                    // Only this instance is used by the attempt, mTango may already be the instance of a later attempt.
+                    Tango tango = mTango;
                     try {
-                        synchronized (GraphmapperActivity.this) {
-                            TangoSupport.initialize();
-                            connectTango();
-                            connectRenderer();
-                            mIsConnected = true;
+                        TangoSupport.initialize();
+                        connectTango(tango);
+                        ASceneFrameCallback frameCallback = connectRenderer(tango);
+                        if (!mConnectionState.finishConnecting(generation)) {
+                            // The activity was paused while connecting.
+                            mRenderer.getCurrentScene().unregisterFrameCallback(frameCallback);
+                            tango.disconnectCamera(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
+                            tango.disconnect();
                         }
                     } catch (TangoOutOfDateException e) {
                         Log.e(TAG, getString(R.string.exception_out_of_date), e);
@@ -613,11 +657,12 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
 
     /**
      * Configure the Tango service and connect it to callbacks.
+     * @param tango (tango instance of the current connection attempt)
      */
-    private void connectTango() {
+    private void connectTango(Tango tango) {
         // Use default configuration for Tango Service, plus low latency
         // IMU integration and area learning.
-        TangoConfig config = mTango.getConfig(TangoConfig.CONFIG_TYPE_DEFAULT);
+        TangoConfig config = tango.getConfig(TangoConfig.CONFIG_TYPE_DEFAULT);
         // NOTE: Low latency integration is necessary to achieve a precise alignment of virtual
         // objects with the RBG image and produce a good AR effect.
         config.putBoolean(TangoConfig.KEY_BOOLEAN_LOWLATENCYIMUINTEGRATION, true);
@@ -652,15 +697,33 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         if(!mIsViewer) {
             config.putBoolean(TangoConfig.KEY_BOOLEAN_LEARNINGMODE, true);
         }
-        mTango.connect(config);
+        tango.connect(config);
 
-        // No need to add any coordinate frame pairs since we are not
-        // using pose data. So just initialize.
+        // The device pose in the area description is needed for the current position on the plan,
+        // which is shown without the AR view (the gl thread is not running in the draw view).
         ArrayList<TangoCoordinateFramePair> framePairs = new ArrayList<TangoCoordinateFramePair>();
-        mTango.connectListener(framePairs, new OnTangoUpdateListener() {
+        framePairs.add(new TangoCoordinateFramePair(
+                TangoPoseData.COORDINATE_FRAME_AREA_DESCRIPTION,
+                TangoPoseData.COORDINATE_FRAME_DEVICE));
+        tango.connectListener(framePairs, new OnTangoUpdateListener() {
             @Override
             public void onPoseAvailable(TangoPoseData pose) {
-                // We are not using OnPoseAvailable for this app.
+                // The pose is only valid after the relocalization in the loaded adf.
+                if (pose.statusCode != TangoPoseData.POSE_VALID || !mConnectionState.beginUse()) {
+                    return;
+                }
+                try {
+                    // Same pose in the OpenGL frame of the plan.
+                    TangoPoseData devicePose = TangoSupport.getPoseAtTime(pose.timestamp,
+                            TangoPoseData.COORDINATE_FRAME_AREA_DESCRIPTION,
+                            TangoPoseData.COORDINATE_FRAME_DEVICE,
+                            TangoSupport.TANGO_SUPPORT_ENGINE_OPENGL, 0);
+                    if (devicePose.statusCode == TangoPoseData.POSE_VALID) {
+                        mDevicePose.publishPose(devicePose);
+                    }
+                } finally {
+                    mConnectionState.endUse();
+                }
             }
 
             @Override
@@ -676,8 +739,8 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
 
             @Override
             public void onXyzIjAvailable(TangoXyzIjData xyzIj) {
-                // Save the cloud and point data for later use.
-                mPointCloudManager.updateXyzIj(xyzIj);
+                // Save the downsampled cloud and point data for later use.
+                mPointCloudBuffer.updateXyzIj(mPointCloudDownsampler.downsample(xyzIj));
             }
 
             @Override
@@ -687,31 +750,34 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         });
 
         // Get intrinsics from device for use in transforms. This needs to be done after connecting Tango and listeners.
-        mIntrinsics = mTango.getCameraIntrinsics(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
+        mIntrinsics = tango.getCameraIntrinsics(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
+        mMeasurementPipeline.setIntrinsics(mIntrinsics);
     }
 
     /**
      * Connects the view and renderer to the color camara and callbacks.
+     * @param tango (tango instance of the current connection attempt)
+     * @return registered frame callback
      */
-    private void connectRenderer() {
+    private ASceneFrameCallback connectRenderer(final Tango tango) {
         // Register a Rajawali Scene Frame Callback to update the scene camera pose whenever a new
         // RGB frame is rendered.
         // (@see https://github.com/Rajawali/Rajawali/wiki/Scene-Frame-Callbacks)
-        mRenderer.getCurrentScene().registerFrameCallback(new ASceneFrameCallback() {
+        ASceneFrameCallback frameCallback = new ASceneFrameCallback() {
             @Override
             public void onPreFrame(long sceneTime, double deltaTime) {
                 // NOTE: This is called from the OpenGL render thread, after all the renderer
                 // onRender callbacks had a chance to run and before scene objects are rendered
                 // into the scene.
 
-                // Prevent concurrent access to {@code mIsFrameAvailableTangoThread} from the Tango
-                // callback thread and service disconnection from an onPause event.
-                synchronized (GraphmapperActivity.this) {
-                    // Don't execute any tango API actions if we're not connected to the service
-                    if (!mIsConnected) {
-                        return;
-                    }
+                mFrameTimes.record(deltaTime);
 
+                // Don't execute any tango API actions if we're not connected to the service.
+                // This never waits, a disconnect from onPause waits until endUse is called instead.
+                if (!mConnectionState.beginUse()) {
+                    return;
+                }
+                try {
                     // Set-up scene camera projection to match RGB camera intrinsics
                     if (!mRenderer.isSceneCameraConfigured()) {
                         mRenderer.setProjectionMatrix(mIntrinsics);
@@ -721,7 +787,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                     // NOTE: When the OpenGL context is recycled, Rajawali may re-generate the
                     // texture with a different ID.
                     if (mConnectedTextureIdGlThread != mRenderer.getTextureId()) {
-                        mTango.connectTextureId(TangoCameraIntrinsics.TANGO_CAMERA_COLOR,
+                        tango.connectTextureId(TangoCameraIntrinsics.TANGO_CAMERA_COLOR,
                                 mRenderer.getTextureId());
                         mConnectedTextureIdGlThread = mRenderer.getTextureId();
                         Log.d(TAG, "connected to texture id: " + mRenderer.getTextureId());
@@ -730,7 +796,8 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                     // If there is a new RGB camera frame available, update the texture with it
                     if (mIsFrameAvailableTangoThread.compareAndSet(true, false)) {
                         mRgbTimestampGlThread =
-                                mTango.updateTexture(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
+                                tango.updateTexture(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
+                        mFrameState.publishRgbTimestamp(mRgbTimestampGlThread);
                     }
 
                     // If a new RGB frame has been rendered, update the camera pose to match.
@@ -745,9 +812,14 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                             // Update the camera pose from the renderer
                             mRenderer.updateRenderCameraPose(lastFramePose);
                             mCameraPoseTimestamp = lastFramePose.timestamp;
+                            mFrameState.publishPose(lastFramePose);
 
                             //If ADF was loaded, check if re-localization occured and tell it the user
                             if (mIsSuccessGraphLoaded) {
+                                if (mIsViewer) {
+                                    //show the loaded graph in the AR view
+                                    mRenderer.showGraph(mGraph);
+                                }
                                 runOnUiThread(new Runnable() {
                                     @Override
                                     public void run() {
@@ -764,6 +836,8 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                                     mRgbTimestampGlThread);
                         }
                     }
+                } finally {
+                    mConnectionState.endUse();
                 }
             }
 
@@ -781,15 +855,17 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
             public boolean callPreFrame() {
                 return true;
             }
-        });
+        };
+        mRenderer.getCurrentScene().registerFrameCallback(frameCallback);
+        return frameCallback;
     }
 
     /**
-     * This method handles when the user clicks the screen. It will try to fit a plane to the
-     * clicked point using depth data.
+     * This method handles when the user clicks the screen. It enqueues the clicked point into the
+     * measurement pipeline, which will try to fit a plane to it using depth data on its worker thread.
      * @param view (current view)
      * @param motionEvent (event that the user had done on the display)
-     * @return true (if there is no exception)
+     * @return true
      */
     @Override
     public boolean onTouch(View view, MotionEvent motionEvent) {
@@ -799,130 +875,63 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                 float u = motionEvent.getX() / view.getWidth();
                 float v = motionEvent.getY() / view.getHeight();
 
-                try {
-                    // Take a wall measurement by fitting a plane on the clicked point using the latest
-                    // point cloud data.
-                    // Synchronize against concurrent access to the RGB timestamp in the OpenGL thread
-                    // and a possible service disconnection due to an onPause event.
-                    WallMeasurement wallMeasurement;
-                    synchronized (this) {
-                        wallMeasurement = doWallMeasurement(u, v, mRgbTimestampGlThread, mCurrentActionType);
-                    }
-                    // If the measurement was successful add it to the current measurements
-                    if (wallMeasurement != null) {
-                        if (wallMeasurement.getMeasurementType() == MeasurementType.CUT) {
-                            mCutMeasurementList.add(wallMeasurement);
-                            mLastType = MeasurementType.CUT;
-                        } else if (wallMeasurement.getMeasurementType() == MeasurementType.ENTRY) {
-                            Dialog.entryTypeDialog(this, wallMeasurement);
-                            mEntryMeasurementList.add(wallMeasurement);
-                            mLastType = MeasurementType.ENTRY;
-                        } else if (wallMeasurement.getMeasurementType() == MeasurementType.ROOM) {
-                            Dialog.roomDialog(this, wallMeasurement);
-                            mRoomMeasurementList.add(wallMeasurement);
-                            mLastType = MeasurementType.ROOM;
-                        } else if (wallMeasurement.getMeasurementType() == MeasurementType.MARKER) {
-                            Dialog.markerDialog(this, wallMeasurement);
-                            mMarkerMeasurementList.add(wallMeasurement);
-                            mLastType = MeasurementType.MARKER;
-                        } else {
-                            mWallMeasurementList.add(wallMeasurement);
-                            mLastType = MeasurementType.WALL;
-                        }
-                        mLastMeasurement = wallMeasurement;
-                        mRenderer.addWallMeasurement(wallMeasurement);
-                    }
-
-                } catch (TangoException t) {
-                    Toast.makeText(getApplicationContext(),
-                            R.string.failed_measurement,
-                            Toast.LENGTH_SHORT).show();
-                    Log.e(TAG, getString(R.string.failed_measurement), t);
-                } catch (SecurityException t) {
-                    Toast.makeText(getApplicationContext(),
-                            R.string.failed_permissions,
-                            Toast.LENGTH_SHORT).show();
-                    Log.e(TAG, getString(R.string.failed_permissions), t);
-                }
+                // Timestamp of the latest RGB frame, published by the OpenGL thread (no locking).
+                double rgbTimestamp = mFrameState.getRgbTimestamp();
+                // Take a wall measurement by fitting a plane on the clicked point using the
+                // point cloud data closest to the RGB frame (on the worker thread).
+                mMeasurementPipeline.enqueue(u, v, rgbTimestamp, mCurrentActionType);
             }
         }
         return true;
     }
 
     /**
-     * Use the TangoSupport library and point cloud data to calculate the plane at the specified
-     * location in the color camera frame.
-     * @param u (The u-coordinate for the user selection. This is expected to be between 0.0 and 1.0.)
-     * @param v (The v-coordinate for the user selection. This is expected to be between 0.0 and 1.0.)
-     * @param rgbTimestamp (timestamp of the current measurement)
-     * @param type (type of the current measurement)
-     * @return new wallMeasurement object with the calculated pose or null if there wasn't a valid pose data
+     * This method is called on the UI thread when the measurement pipeline has fitted a plane.
+     * It adds the measurement to the current measurements.
+     * @param wallMeasurement (new measurement)
      */
-    private WallMeasurement doWallMeasurement(float u, float v, double rgbTimestamp, MeasurementType type) {
-        TangoXyzIjData xyzIj = mPointCloudManager.getLatestXyzIj();
-
-        if (xyzIj == null) {
-            return null;
-        }
-
-        // We need to calculate the transform between the color camera at the
-        // time the user clicked and the depth camera at the time the depth
-        // cloud was acquired.
-        TangoPoseData colorTdepthPose = TangoSupport.calculateRelativePose(
-                rgbTimestamp, TangoPoseData.COORDINATE_FRAME_CAMERA_COLOR,
-                xyzIj.timestamp, TangoPoseData.COORDINATE_FRAME_CAMERA_DEPTH);
-
-        // Perform plane fitting with the latest available point cloud data.
-        try {
-            IntersectionPointPlaneModelPair intersectionPointPlaneModelPair =
-                    TangoSupport.fitPlaneModelNearClick(xyzIj, mIntrinsics,
-                            colorTdepthPose, u, v);
-
-            // Get the depth camera transform at the time the plane data was acquired.
-            TangoSupport.TangoMatrixTransformData transform =
-                    TangoSupport.getMatrixTransformAtTime(xyzIj.timestamp,
-                            TangoPoseData.COORDINATE_FRAME_AREA_DESCRIPTION,
-                            TangoPoseData.COORDINATE_FRAME_CAMERA_DEPTH,
-                            TangoSupport.TANGO_SUPPORT_ENGINE_OPENGL,
-                            TangoSupport.TANGO_SUPPORT_ENGINE_TANGO);
-            if (transform.statusCode == TangoPoseData.POSE_VALID) {
-                // Update the AR object location.
-                float[] planeFitTransform = calculatePlaneTransform(
-                        intersectionPointPlaneModelPair.intersectionPoint,
-                        intersectionPointPlaneModelPair.planeModel, transform.matrix);
-
-                return new WallMeasurement(planeFitTransform, transform.matrix, xyzIj.timestamp, type);
-            } else {
-                Log.d(TAG, "Could not get a valid transform from depth to area description at time "
-                        + xyzIj.timestamp);
-            }
-        } catch (TangoException e) {
-            Log.d(TAG, "Failed to fit plane");
-            Toast.makeText(this, "Failed to fit plane", Toast.LENGTH_SHORT).show();
+    @Override
+    public void onMeasurement(WallMeasurement wallMeasurement) {
+        if (wallMeasurement.getMeasurementType() == MeasurementType.CUT) {
+            mCutMeasurementList.add(wallMeasurement);
+            mLastType = MeasurementType.CUT;
+        } else if (wallMeasurement.getMeasurementType() == MeasurementType.ENTRY) {
+            Dialog.entryTypeDialog(this, wallMeasurement);
+            mEntryMeasurementList.add(wallMeasurement);
+            mLastType = MeasurementType.ENTRY;
+        } else if (wallMeasurement.getMeasurementType() == MeasurementType.ROOM) {
+            Dialog.roomDialog(this, wallMeasurement);
+            mRoomMeasurementList.add(wallMeasurement);
+            mLastType = MeasurementType.ROOM;
+        } else if (wallMeasurement.getMeasurementType() == MeasurementType.MARKER) {
+            Dialog.markerDialog(this, wallMeasurement);
+            mMarkerMeasurementList.add(wallMeasurement);
+            mLastType = MeasurementType.MARKER;
+        } else {
+            mWallMeasurementList.add(wallMeasurement);
+            mLastType = MeasurementType.WALL;
         }
-        return null;
+        mLastMeasurement = wallMeasurement;
+        mRenderer.addWallMeasurement(wallMeasurement);
     }
 
     /**
-     * Calculate the pose of the plane based on the position and normal orientation of the plane and align it with gravity.
-     * @param point (starting point of the plane)
-     * @param normal (normal vector of the plane)
-     * @param openGlTdepth (depth in openGL frame)
-     * @return pose of the plane in device frame
+     * This method is called on the UI thread when the measurement pipeline failed to fit a plane.
+     * @param e (TangoException or SecurityException of the Tango service)
      */
-    private float[] calculatePlaneTransform(double[] point, double normal[], float[] openGlTdepth) {
-        // Vector aligned to gravity.
-        float[] openGlUp = new float[]{0, 1, 0, 0};
-        float[] depthTOpenGl = new float[16];
-        Matrix.invertM(depthTOpenGl, 0, openGlTdepth, 0);
-        float[] depthUp = new float[4];
-        Matrix.multiplyMV(depthUp, 0, depthTOpenGl, 0, openGlUp, 0);
-        // Create the plane matrix transform in depth frame from a point, the plane normal and the
-        // up vector.
-        float[] depthTplane = matrixFromPointNormalUp(point, normal, depthUp);
-        float[] openGlTplane = new float[16];
-        Matrix.multiplyMM(openGlTplane, 0, openGlTdepth, 0, depthTplane, 0);
-        return openGlTplane;
+    @Override
+    public void onMeasurementFailed(RuntimeException e) {
+        if (e instanceof SecurityException) {
+            Toast.makeText(getApplicationContext(),
+                    R.string.failed_permissions,
+                    Toast.LENGTH_SHORT).show();
+            Log.e(TAG, getString(R.string.failed_permissions), e);
+        } else {
+            Toast.makeText(getApplicationContext(),
+                    R.string.failed_measurement,
+                    Toast.LENGTH_SHORT).show();
+            Log.e(TAG, getString(R.string.failed_measurement), e);
+        }
     }
 
     /**
@@ -1071,6 +1080,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         mCurrentHallway.setName(hallwayName);
         mCurrentHallway.setLevel(mCurrentLevel);
         mGraph.addHallway(mCurrentHallway); //store current hallway in graph
+        mRenderer.addHallway(mCurrentHallway); //show the walls of the finished hallway
         mWallMeasurementList.clear(); //clear wall list
         mRoomMeasurementList.clear(); //clear room list
         mMarkerMeasurementList.clear(); //clear marker list
@@ -1259,16 +1269,19 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
      */
     private boolean canSaveAdf() {
         boolean canSaveAdf = false;
+        // Disconnecting happens on the UI thread as well, so the service can't be disconnected during this call.
+        if (!mConnectionState.isConnected()) {
+            Log.w(TAG, "Tango service is not connected");
+            return false;
+        }
         try {
-            synchronized (this) {
-                TangoPoseData poseData = mTango.getPoseAtTime(0, new TangoCoordinateFramePair(
-                        TangoPoseData.COORDINATE_FRAME_AREA_DESCRIPTION,
-                        TangoPoseData.COORDINATE_FRAME_START_OF_SERVICE));
-                if (poseData.statusCode == TangoPoseData.POSE_VALID) {
-                    canSaveAdf = true;
-                } else {
-                    Log.w(TAG, "ADF pose unavailable");
-                }
+            TangoPoseData poseData = mTango.getPoseAtTime(0, new TangoCoordinateFramePair(
+                    TangoPoseData.COORDINATE_FRAME_AREA_DESCRIPTION,
+                    TangoPoseData.COORDINATE_FRAME_START_OF_SERVICE));
+            if (poseData.statusCode == TangoPoseData.POSE_VALID) {
+                canSaveAdf = true;
+            } else {
+                Log.w(TAG, "ADF pose unavailable");
             }
         } catch (TangoException e) {
             Log.e(TAG, "Exception query Tango service before saving ADF.", e);
@@ -1276,63 +1289,6 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         return canSaveAdf;
     }
 
-    /**
-     * Calculates a transformation matrix based on a point, a normal and the up gravity vector.
-     * The coordinate frame of the target transformation will be Z forward, X left, Y up.
-     * @param point (starting point)
-     * @param normal (normal vector)
-     * @param up (up gravity vector)
-     * @return transformation matrix (Note the order: x, z, y)
-     */
-    private float[] matrixFromPointNormalUp(double[] point, double[] normal, float[] up) {
-        float[] zAxis = new float[]{(float) normal[0], (float) normal[1], (float) normal[2]};
-        normalize(zAxis);
-        float[] xAxis = crossProduct(zAxis, up);
-        normalize(xAxis);
-        float[] yAxis = crossProduct(zAxis, xAxis);
-        normalize(yAxis);
-        float[] m = new float[16];
-        Matrix.setIdentityM(m, 0);
-        m[0] = xAxis[0];
-        m[1] = xAxis[1];
-        m[2] = xAxis[2];
-        m[4] = yAxis[0];
-        m[5] = yAxis[1];
-        m[6] = yAxis[2];
-        m[8] = zAxis[0];
-        m[9] = zAxis[1];
-        m[10] = zAxis[2];
-        m[12] = (float) point[0];
-        m[13] = (float) point[1];
-        m[14] = (float) point[2];
-        return m;
-    }
-
-    /**
-     * Normalize a vector.
-     * @param v (un-normalized vector)
-     */
-    private void normalize(float[] v) {
-        double norm = Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
-        v[0] /= norm;
-        v[1] /= norm;
-        v[2] /= norm;
-    }
-
-    /**
-     * Cross product between two vectors following the right hand rule.
-     * @param v1 (first vector)
-     * @param v2 (second vector)
-     * @return cross product
-     */
-    private float[] crossProduct(float[] v1, float[] v2) {
-        float[] result = new float[3];
-        result[0] = v1[1] * v2[2] - v2[1] * v1[2];
-        result[1] = v1[2] * v2[0] - v2[2] * v1[0];
-        result[2] = v1[0] * v2[1] - v2[0] * v1[1];
-        return result;
-    }
-
     /**
      * Finish plan AsyncTask.
      * Shows a spinner while it's saving the adf and updating the measurements.
@@ -1391,8 +1347,11 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                 public void onClick(View v) {
                     mDrawText.setText("Graph & ADF name: " + mADFName);
                     //1. choose level, 2. draw on canvas
+                    //the graph could have changed since the last plan was drawn
+                    mPlanTileCache.clear();
                     Dialog.chooseLevelToDrawDialog(GraphmapperActivity.this);
                     if (mCurrentPlanDraw != null) {
+                        hidePositionOverlay();
                         FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
                         layout.removeView(mCurrentPlanDraw);
                         mCurrentPlanDraw = null;
@@ -1424,18 +1383,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                             mNameButton.setText("Hide Names");
                             mShowNamesDraw = true;
                         }
-
-                        if (mCurrentHallwayDraw == null) {
-                            //Draw Level
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            mCurrentPlanDraw = drawLevelOnCanvas(mCurrentLevelDraw, null, null);
-                        } else {
-                            //Draw Hallway
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            mCurrentPlanDraw = drawHallwayOnCanvas(mCurrentHallwayDraw, null, null);
-                        }
+                        mCurrentPlanDraw.setOptions(mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw);
                     }
                 }
             });
@@ -1452,18 +1400,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                             mLengthButton.setText("Hide Length");
                             mShowLengthDraw = true;
                         }
-
-                        if (mCurrentHallwayDraw == null) {
-                            //Draw Level
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            mCurrentPlanDraw = drawLevelOnCanvas(mCurrentLevelDraw, null, null);
-                        } else {
-                            //Draw Hallway
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            mCurrentPlanDraw = drawHallwayOnCanvas(mCurrentHallwayDraw, null, null);
-                        }
+                        mCurrentPlanDraw.setOptions(mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw);
                     }
                 }
             });
@@ -1481,17 +1418,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                             mPOIButton.setText("Hide POIs");
                             mShowPOIDraw = true;
                         }
-                        if (mCurrentHallwayDraw == null) {
-                            //Draw Level
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            mCurrentPlanDraw = drawLevelOnCanvas(mCurrentLevelDraw, null, null);
-                        } else {
-                            //Draw Hallway
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            mCurrentPlanDraw = drawHallwayOnCanvas(mCurrentHallwayDraw, null, null);
-                        }
+                        mCurrentPlanDraw.setOptions(mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw);
                     }
                 }
             });
@@ -1509,18 +1436,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                             mObstacleButton.setText("Hide Obst.");
                             mShowObstaclesDraw = true;
                         }
-
-                        if (mCurrentHallwayDraw == null) {
-                            //Draw Level
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            mCurrentPlanDraw = drawLevelOnCanvas(mCurrentLevelDraw, null, null);
-                        } else {
-                            //Draw Hallway
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            mCurrentPlanDraw = drawHallwayOnCanvas(mCurrentHallwayDraw, null, null);
-                        }
+                        mCurrentPlanDraw.setOptions(mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw);
                     }
                 }
             });
@@ -1531,6 +1447,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                 @Override
                 public void onClick(View v) {
                     if (mCurrentPlanDraw != null) {
+                        hidePositionOverlay();
                         FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
                         layout.removeView(mCurrentPlanDraw);
                         mCurrentPlanDraw = null;
@@ -1562,26 +1479,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                 @Override
                 public void onClick(View v) {
                     if (mCurrentPlanDraw != null) {
-                        //Convert the view to a bitmap object and save it as a jpg
-                        File storage = Environment.getExternalStorageDirectory();
-                        String path = storage.getAbsolutePath() + mStoragePath + "/Images";
-                        String name = mADFName + "_floorplan_level" + mCurrentLevelDraw + "_IMG" + mCountJPG;
-                        mCountJPG++;
-                        if (mCurrentHallwayDraw != null) {
-                            name += "_" + mCurrentHallwayDraw.getName() + ".jpg";
-                        } else {
-                            name += ".jpg";
-                        }
-                        File file = new File(path, name);
-                        try {
-                            FileOutputStream fos = new FileOutputStream(file);
-                            Bitmap b = mCurrentPlanDraw.getDrawingCache();
-                            b.compress(Bitmap.CompressFormat.JPEG, 100, fos);
-                            fos.close();
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                        Toast.makeText(GraphmapperActivity.this, "Floorplan saved under: " + path + "/" + name, Toast.LENGTH_SHORT).show();
+                        Dialog.savePlanDialog(GraphmapperActivity.this); //ask for the resolution
                     }
                 }
             });
@@ -1592,6 +1490,7 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                 @Override
                 public void onClick(View v) {
                     if (mCurrentPlanDraw != null) {
+                        hidePositionOverlay();
                         FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
                         layout.removeView(mCurrentPlanDraw);
                         mCurrentPlanDraw = null;
@@ -1608,37 +1507,10 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
             mPositionButton.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    // If there is a new RGB camera frame available, update the texture with it
-                    if (mIsFrameAvailableTangoThread.compareAndSet(true, false)) {
-                        mRgbTimestampGlThread = mTango.updateTexture(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
-                    }
-                    // If a new RGB frame has been rendered, update the camera pose to match.
-                    if (mRgbTimestampGlThread > mCameraPoseTimestamp) {
-                        // Calculate the camera color pose at the camera frame update time in OpenGL engine.
-                        TangoPoseData currentPose = TangoSupport.getPoseAtTime(
-                                mRgbTimestampGlThread,
-                                TangoPoseData.COORDINATE_FRAME_AREA_DESCRIPTION,
-                                TangoPoseData.COORDINATE_FRAME_CAMERA_COLOR,
-                                TangoSupport.TANGO_SUPPORT_ENGINE_OPENGL, 0);
-                        if (currentPose.statusCode == TangoPoseData.POSE_VALID) {
-                            // Update the camera pose from the renderer
-                            mRenderer.updateRenderCameraPose(currentPose);
-                            mCameraPoseTimestamp = currentPose.timestamp;
-                            float[] position = currentPose.getTranslationAsFloats();
-                            float[] orientation = currentPose.getRotationAsFloats();
-                            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
-                            layout.removeView(mCurrentPlanDraw);
-                            if(mCurrentHallwayDraw == null) {
-                                //draw level
-                                mCurrentPlanDraw = drawLevelOnCanvas(mCurrentLevelDraw, position, orientation);
-                            } else {
-                                //draw hallway
-                                mCurrentPlanDraw = drawHallwayOnCanvas(mCurrentHallwayDraw, position, orientation);
-                            }
-
-                        } else {
-                            Log.w(TAG, "Can't get device pose at time: " + mRgbTimestampGlThread);
-                        }
+                    if (mPositionOverlay == null) {
+                        showPositionOverlay();
+                    } else {
+                        hidePositionOverlay();
                     }
                 }
             });
@@ -1647,8 +1519,49 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         }
     }
 
+    /**
+     * This function renders the currently drawn plan in high resolution on the export thread and saves it as
+     * a PNG image.
+     * @param pixelsPerMeter (resolution of the image)
+     */
+    public void savePlanImage(float pixelsPerMeter) {
+        if (mCurrentPlanDraw == null) {
+            return;
+        }
+        File storage = Environment.getExternalStorageDirectory();
+        String path = storage.getAbsolutePath() + mStoragePath + "/Images";
+        String name = mADFName + "_floorplan_level" + mCurrentLevelDraw + "_IMG" + mCountJPG;
+        mCountJPG++;
+        if (mCurrentHallwayDraw != null) {
+            name += "_" + mCurrentHallwayDraw.getName() + ".png";
+        } else {
+            name += ".png";
+        }
+        File file = new File(path, name);
+        mPlanExporter.export(mCurrentPlanDraw.getHallways(), mCurrentPlanDraw.getPlanBounds(), pixelsPerMeter,
+                mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw, file,
+                new PlanExporter.OnExportListener() {
+                    @Override
+                    public void onExported(File file, int width, int height) {
+                        Toast.makeText(GraphmapperActivity.this, "Floorplan saved under: " + file.getAbsolutePath()
+                                + " (" + width + " x " + height + ")", Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onExportFailed(File file, Exception e) {
+                        Log.e(TAG, "Floorplan could not be saved: " + file.getAbsolutePath(), e);
+                        Toast.makeText(GraphmapperActivity.this, "Floorplan could not be saved",
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+        Toast.makeText(GraphmapperActivity.this, "Saving floorplan...", Toast.LENGTH_SHORT).show();
+    }
+
     /**
      * This function saves the current navigation graph (network) as a text file on the device in GSON format.
+     * The plans of all levels are saved as vector files (one SVG per level and one PDF with all levels)
+     * and the graph is also saved in IndoorGML format and as 3D building model (glTF).
+     * The exports are written on the export thread (GraphExporter).
      */
     public void saveGraph() {
         //Save IDCounter
@@ -1681,6 +1594,21 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         } catch (Exception e) {
             e.printStackTrace();
         }
+        //Save vector plans, IndoorGML & 3D building model on the export thread
+        File planDir = new File(storage.getAbsolutePath() + mStoragePath + "/Plans");
+        mGraphExporter.export(json, planDir, new File(graphPath), mADFName, new GraphExporter.OnExportListener() {
+            @Override
+            public void onExported(List<File> files) {
+                Toast.makeText(GraphmapperActivity.this, files.size() + " export files saved", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onExportFailed(List<File> files, Exception e) {
+                Log.e(TAG, "Exports could not be saved completely", e);
+                Toast.makeText(GraphmapperActivity.this, "Exports could not be saved completely ("
+                        + files.size() + " files saved)", Toast.LENGTH_SHORT).show();
+            }
+        });
         Toast.makeText(GraphmapperActivity.this, "Graph saved under: " + graphPath + "/" + graphName, Toast.LENGTH_SHORT).show();
     }
 
@@ -1721,17 +1649,16 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
     /**
      * This function builds a PlanView object of the 2D plan from a recorded level.
      * @param level (level of the building to be drawn)
-     * @param position (current position of the user or null if not used / drawn)
-     * @param orientation (current orientation of the user or null if not used / drawn)
      * @return PlanView object with the current view to be drawn
      */
-    public PlanView drawLevelOnCanvas(int level, float[] position, float[] orientation) {
+    public PlanView drawLevelOnCanvas(int level) {
         // Draw final result on Canvas.
-        PlanView planView = new PlanView(GraphmapperActivity.this, level, position, orientation, mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw);
+        PlanView planView = new PlanView(GraphmapperActivity.this, level, mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw);
         planView.setLayoutParams(new LinearLayout.LayoutParams(
                 LinearLayout.LayoutParams.MATCH_PARENT,
                 LinearLayout.LayoutParams.MATCH_PARENT));
-        planView.setDrawingCacheEnabled(true);
+        // Keep the drawn plan in a layer, so the position layer above can be updated without drawing the plan again.
+        planView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
         planView.invalidate();
         FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
         layout.addView(planView, FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT);
@@ -1741,23 +1668,49 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
     /**
      * This function build a PlanView object of the 2D plan from a recorded hallway (zoom into hallways).
      * @param hallway (hallway to be zoomed in)
-     * @param position (current position of the user or null if not used / drawn)
-     * @param orientation (current orientation of the user or null if not used / drawn)
      * @return PlanView object with the current view to be drawn
      */
-    public PlanView drawHallwayOnCanvas(Hallway hallway, float[] position, float[] orientation) {
+    public PlanView drawHallwayOnCanvas(Hallway hallway) {
         // Draw final result on Canvas.
-        PlanView planView = new PlanView(GraphmapperActivity.this, hallway, position, orientation, mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw);
+        PlanView planView = new PlanView(GraphmapperActivity.this, hallway, mShowLengthDraw, mShowPOIDraw, mShowNamesDraw, mShowObstaclesDraw);
         planView.setLayoutParams(new LinearLayout.LayoutParams(
                 LinearLayout.LayoutParams.MATCH_PARENT,
                 LinearLayout.LayoutParams.MATCH_PARENT));
-        planView.setDrawingCacheEnabled(true);
+        // Keep the drawn plan in a layer, so the position layer above can be updated without drawing the plan again.
+        planView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
         planView.invalidate();
         FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
         layout.addView(planView, FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT);
         return planView;
     }
 
+    /**
+     * This function adds the layer with the current position and orientation of the user above the current plan.
+     * The layer follows the device pose of the pose callbacks, the plan itself is not drawn again.
+     */
+    private void showPositionOverlay() {
+        if (mCurrentPlanDraw == null) {
+            return;
+        }
+        mPositionOverlay = new PositionOverlayView(GraphmapperActivity.this, mDevicePose);
+        mCurrentPlanDraw.bindPositionOverlay(mPositionOverlay);
+        FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
+        layout.addView(mPositionOverlay, FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT);
+        mPositionButton.setText("Hide position");
+    }
+
+    /**
+     * This function removes the layer with the current position (if shown).
+     */
+    private void hidePositionOverlay() {
+        if (mPositionOverlay != null) {
+            FrameLayout layout = (FrameLayout) findViewById(R.id.draw_frame_layout);
+            layout.removeView(mPositionOverlay);
+            mPositionOverlay = null;
+        }
+        mPositionButton.setText("Show position");
+    }
+
     /**
      * Getter function for the stack with the unconnected entrypoints
      * @return mUnconnectedEntrys
@@ -1802,15 +1755,19 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
     /**
      * Custom View that draws the plan in 2D.
      */
-    public class PlanView extends View {
+    public class PlanView extends View implements PlanTileRenderer.OnTileListener {
+        /** maximum zoom factor of the view (highest zoom level of the tile pyramid) */
+        private static final float MAX_VIEW_ZOOM = 1 << PlanTileRenderer.MAX_ZOOM;
         /** color and text size settings */
         private Paint mPaint;
+        /** settings to draw the tiles (filtered when scaled) */
+        private Paint mTilePaint;
         /** list of all hallway that should be drawn in this PlanView */
         private List<Hallway> mDrawHallwayList;
-        /** current position of the user (null if not used) */
-        private float[] mPosition;
-        /** current orientation of the user (null if not used) */
-        private float[] mOrientation;
+        /** cached bounding box of the drawn level or hallway */
+        private BoundingBox mPlanBounds;
+        /** id of the plan in the tile cache (levels are even, hallways are odd) */
+        private int mPlanId;
         /** signals if the length of the hallways should be drawn */
         private boolean mShowLength;
         /** signals if the POIs (rooms, markers, entrypoints) should be drawn */
@@ -1819,23 +1776,41 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
         private boolean mShowNames;
         /** signals if the obstacles of the hallways should be drawn */
         private boolean mShowObstacles;
+        /** caption with the recording, level and hallway below the plan */
+        private String mCaption;
+        /** cached projected plan geometry for the size of the view (null until the first draw) */
+        private PlanGeometry mGeometry;
+        /** label placement with the cached text widths (UI thread) */
+        private LabelLayout mLabelLayout;
+        /** current zoom factor (1 shows the whole plan) */
+        private float mZoom = 1;
+        /** current horizontal pan in pixels of the zoomed plan */
+        private float mPanX;
+        /** current vertical pan in pixels of the zoomed plan */
+        private float mPanY;
+        /** detector of the pinch gesture (zoom) */
+        private ScaleGestureDetector mScaleDetector;
+        /** detector of the scroll (pan) and double tap (reset) gestures */
+        private GestureDetector mGestureDetector;
+        /** range of the last requested tiles (zoom, first column, last column, first row, last row) */
+        private int[] mRequestedTiles = new int[]{-1, -1, -1, -1, -1};
+        /** reused source rectangle of a coarser tile */
+        private Rect mTileSource = new Rect();
+        /** reused destination rectangle of a tile */
+        private RectF mTileDestination = new RectF();
 
         /**
          * Constructor (Creates a new PlanView object to draw a whole level)
          * @param context (context / activity)
          * @param level (level to be drawn)
-         * @param position (current position of the user or null if not used)
          * @param showLength (signals if the length of the hallways should be drawn)
          * @param showPOI (signals if the POIs (rooms, markers, entrypoints) should be drawn)
          * @param showNames (signals if the names of the hallways and POIs should be drawn)
          * @param showObstacles (signals if the obstacles of the hallways should be drawn)
          */
-        public PlanView(Context context, int level, float[] position, float[] orientation, boolean showLength, boolean showPOI, boolean showNames, boolean showObstacles) {
+        public PlanView(Context context, int level, boolean showLength, boolean showPOI, boolean showNames, boolean showObstacles) {
             super(context);
-            super.setDrawingCacheBackgroundColor(0xffffffff); //white
-            mPaint = new Paint();
-            mPaint.setStrokeWidth(3);
-            mPaint.setTextSize(30);
+            init(context);
             mShowLength = showLength;
             mShowPOI = showPOI;
             mShowNames = showNames;
@@ -1847,124 +1822,246 @@ public class GraphmapperActivity extends Activity implements View.OnTouchListene
                     mDrawHallwayList.add(hallway);
                 }
             }
-            mPosition = position;
-            mOrientation = orientation;
+            mPlanBounds = mGraph.getLevelBounds(level);
+            mPlanId = level * 2;
+            mCaption = "Recording: " + mADFName + ", level: " + level;
         }
 
         /**
          * Constructor (Creates a new PlanView object to draw a whole level)
          * @param context (context / activity)
          * @param hallway (hallway to be drawn - zoom in)
-         * @param position (current position of the user or null if not used)
          * @param showLength (signals if the length of the hallways should be drawn)
          * @param showPOI (signals if the POIs (rooms, markers, entrypoints) should be drawn)
          * @param showNames (signals if the names of the hallways and POIs should be drawn)
          * @param showObstacles (signals if the obstacles of the hallways should be drawn)
          */
-        public PlanView(Context context, Hallway hallway, float[] position, float[] orientation, boolean showLength, boolean showPOI, boolean showNames, boolean showObstacles) {
+        public PlanView(Context context, Hallway hallway, boolean showLength, boolean showPOI, boolean showNames, boolean showObstacles) {
             super(context);
-            super.setDrawingCacheBackgroundColor(0xffffffff); //white
+            init(context);
+            mDrawHallwayList = new ArrayList<Hallway>();
+            mDrawHallwayList.add(hallway);
+            mPlanBounds = hallway.getBounds();
+            mPlanId = hallway.getID() * 2 + 1;
+            mShowLength = showLength;
+            mShowPOI = showPOI;
+            mShowNames = showNames;
+            mShowObstacles = showObstacles;
+            mCaption = "Recording: " + mADFName + ", level: " + hallway.getLevel() + ", hallway: " + hallway.getName();
+        }
+
+        /**
+         * This function initializes the paints and the gesture detectors (pinch to zoom, scroll to pan,
+         * double tap to show the whole plan again).
+         * @param context (context / activity)
+         */
+        private void init(Context context) {
             mPaint = new Paint();
             mPaint.setStrokeWidth(3);
             mPaint.setTextSize(30);
-            mDrawHallwayList = new ArrayList<Hallway>();
-            mDrawHallwayList.add(hallway);
+            mLabelLayout = new LabelLayout(30);
+            mTilePaint = new Paint();
+            mTilePaint.setFilterBitmap(true);
+            mScaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                @Override
+                public boolean onScale(ScaleGestureDetector detector) {
+                    float zoom = Math.max(1, Math.min(MAX_VIEW_ZOOM, mZoom * detector.getScaleFactor()));
+                    // Keep the plan point below the focus of the gesture in place.
+                    float factor = zoom / mZoom;
+                    setViewTransform(zoom, (mPanX + detector.getFocusX()) * factor - detector.getFocusX(),
+                            (mPanY + detector.getFocusY()) * factor - detector.getFocusY());
+                    return true;
+                }
+            });
+            mGestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+                @Override
+                public boolean onDown(MotionEvent e) {
+                    return true;
+                }
+
+                @Override
+                public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                    setViewTransform(mZoom, mPanX + distanceX, mPanY + distanceY);
+                    return true;
+                }
+
+                @Override
+                public boolean onDoubleTap(MotionEvent e) {
+                    setViewTransform(1, 0, 0);
+                    return true;
+                }
+            });
+        }
+
+        /**
+         * Setter function for the drawing options. The plan geometry is rebuilt on the next draw.
+         * @param showLength (signals if the length of the hallways should be drawn)
+         * @param showPOI (signals if the POIs (rooms, markers, entrypoints) should be drawn)
+         * @param showNames (signals if the names of the hallways and POIs should be drawn)
+         * @param showObstacles (signals if the obstacles of the hallways should be drawn)
+         */
+        public void setOptions(boolean showLength, boolean showPOI, boolean showNames, boolean showObstacles) {
             mShowLength = showLength;
             mShowPOI = showPOI;
             mShowNames = showNames;
             mShowObstacles = showObstacles;
-            mPosition = position;
-            mOrientation = orientation;
+            invalidate();
+        }
+
+        /**
+         * Getter function for the hallways of this plan.
+         * @return mDrawHallwayList
+         */
+        public List<Hallway> getHallways() {
+            return mDrawHallwayList;
+        }
+
+        /**
+         * Getter function for the bounding box of this plan.
+         * @return mPlanBounds
+         */
+        public BoundingBox getPlanBounds() {
+            return mPlanBounds;
+        }
+
+        /**
+         * This function passes the projection and the current zoom and pan of the plan to the position layer.
+         * @param overlay (position layer above this plan)
+         */
+        public void bindPositionOverlay(PositionOverlayView overlay) {
+            overlay.setGeometry(mGeometry);
+            overlay.setViewTransform(mZoom, mPanX, mPanY);
         }
 
         /**
-         * This function creates a list with all corner points of all hallways from a whole level
-         * @return list with points
+         * This function sets the zoom factor and the pan of the view. The pan is limited to the zoomed plan.
+         * @param zoom (zoom factor, 1 shows the whole plan)
+         * @param panX (horizontal pan in pixels of the zoomed plan)
+         * @param panY (vertical pan in pixels of the zoomed plan)
          */
-        private List<float[]> createLevelPointList() {
-            //add all points from a level
-            List<float[]> pointList = new ArrayList<float[]>();
-            for (Hallway hallway : mDrawHallwayList) {
-                pointList.addAll(hallway.getHallwayPoints());
+        private void setViewTransform(float zoom, float panX, float panY) {
+            mZoom = zoom;
+            mPanX = Math.max(0, Math.min(getWidth() * (zoom - 1), panX));
+            mPanY = Math.max(0, Math.min(getHeight() * (zoom - 1), panY));
+            if (mPositionOverlay != null && this == mCurrentPlanDraw) {
+                mPositionOverlay.setViewTransform(mZoom, mPanX, mPanY);
+            }
+            invalidate();
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+            boolean handled = mScaleDetector.onTouchEvent(event);
+            if (!mScaleDetector.isInProgress()) {
+                handled |= mGestureDetector.onTouchEvent(event);
             }
-            return pointList;
+            return handled || super.onTouchEvent(event);
+        }
+
+        @Override
+        public void onTileReady() {
+            invalidate();
         }
 
         /**
-         * This function draws a hallway on the canvas with the selected settings (POIs, length, names)
+         * This function will be running if a PlanView object is created and invalidated.
+         * It is the main drawing function of a PlanView object. The plan is composed of cached tiles of the
+         * tile pyramid, missing tiles are requested from the tile renderer and replaced by a part of a coarser
+         * tile until they are ready. The projected plan geometry is only rebuilt if the size of the view or
+         * the options changed.
          * @param canvas (canvas where the plan is drawn)
-         * @param planCenter (center of the plan)
-         * @param scale (scale of the plan)
          */
-        private void drawHallways(Canvas canvas, float[] planCenter, float scale) {
-            for (Hallway hallway : mDrawHallwayList) {
-                //draws all hallways with cutted obstacles and the selected settings
-                hallway.drawOnCanvas(canvas, mPaint, planCenter, scale, mShowLength, mShowNames, mShowObstacles);
-                mPaint.setStrokeWidth(20);
-                if(mShowPOI) {
-                    //draw rooms as dots
-                    for (Room room : hallway.getRooms()) {
-                        mPaint.setColor(0xfff44336); //Red
-                        room.drawOnCanvas(canvas, mPaint, planCenter, scale, mShowNames);
-                    }
-                    //draw markers as dots
-                    for (Marker marker : hallway.getMarkers()) {
-                        mPaint.setColor(0xffcddc39); //Lime
-                        marker.drawOnCanvas(canvas, mPaint, planCenter, scale, mShowNames);
-                    }
-                    //draw entrypoints as dots
-                    for (Entrypoint entrypoint : hallway.getConnections()) {
-                        mPaint.setColor(0xff2196f3); //Blue
-                        entrypoint.drawOnCanvas(canvas, mPaint, planCenter, scale, mShowNames);
-                    }
+        @Override
+        public void onDraw(Canvas canvas) {
+            int width = getWidth();
+            int height = getHeight();
+            if (mGeometry == null || !mGeometry.matches(width, height, mShowLength, mShowPOI, mShowNames, mShowObstacles)) {
+                if (mGeometry != null) {
+                    //the tiles of the old geometry are outdated
+                    mPlanTileCache.clear();
                 }
-                //draw current position of the user if used (not null)
-                if (mPosition != null) {
-                    drawPosition(canvas, planCenter, scale);
+                mGeometry = new PlanGeometry(mDrawHallwayList, mPlanBounds, width, height,
+                        mShowLength, mShowPOI, mShowNames, mShowObstacles, mLabelLayout);
+                mPlanTileRenderer.setPlan(mPlanId, mDrawHallwayList, mGeometry, mPlanBounds, width, height,
+                        mShowLength, mShowPOI, mShowNames, mShowObstacles, this);
+                mRequestedTiles[0] = -1;
+                if (mPositionOverlay != null && this == mCurrentPlanDraw) {
+                    mPositionOverlay.setGeometry(mGeometry);
                 }
-                mPaint.setStrokeWidth(3);
-                mPaint.setColor(0xff000000);
+            } else if (!mPlanTileRenderer.isCurrent(this)) {
+                mPlanTileRenderer.setPlan(mPlanId, mDrawHallwayList, mGeometry, mPlanBounds, width, height,
+                        mShowLength, mShowPOI, mShowNames, mShowObstacles, this);
+                mRequestedTiles[0] = -1;
             }
+            drawTiles(canvas, width, height);
+            canvas.drawText("Graphmapper (UniBw 2016)", width - 600, height - 22, mPaint);
+            canvas.drawText(mCaption, 200, height - 22, mPaint);
         }
 
         /**
-         * This function calculates the scale of the current user position point
-         * and draws the current position of the user on the canvas.
-         * @param canvas (canvas whehre the position is drawn)
-         * @param planCenter (center of the plan)
-         * @param scale (scale of the plan)
+         * This function draws the visible tiles of the current zoom level.
+         * @param canvas (canvas where the plan is drawn)
+         * @param width (width of the view)
+         * @param height (height of the view)
          */
-        public void drawPosition(Canvas canvas, float[] planCenter, float scale) {
-            int centerX = canvas.getWidth() / 2;
-            int centerY = canvas.getHeight() / 2;
-            float[] newPoint = new float[3];
-            for (int i = 0; i < 3; i++) {
-                newPoint[i] = (mPosition[i] - planCenter[i]) * scale;
+        private void drawTiles(Canvas canvas, int width, int height) {
+            // Use the smallest zoom level of the pyramid that is at least as detailed as the view.
+            int zoom = 0;
+            while ((1 << zoom) < mZoom - 0.001f && zoom < PlanTileRenderer.MAX_ZOOM) {
+                zoom++;
+            }
+            float tileSize = PlanTileRenderer.TILE_SIZE * mZoom / (1 << zoom);
+            int columns = ((width << zoom) + PlanTileRenderer.TILE_SIZE - 1) / PlanTileRenderer.TILE_SIZE;
+            int rows = ((height << zoom) + PlanTileRenderer.TILE_SIZE - 1) / PlanTileRenderer.TILE_SIZE;
+            int firstX = Math.max(0, (int) (mPanX / tileSize));
+            int lastX = Math.min(columns - 1, (int) ((mPanX + width) / tileSize));
+            int firstY = Math.max(0, (int) (mPanY / tileSize));
+            int lastY = Math.min(rows - 1, (int) ((mPanY + height) / tileSize));
+            if (mRequestedTiles[0] != zoom || mRequestedTiles[1] != firstX || mRequestedTiles[2] != lastX
+                    || mRequestedTiles[3] != firstY || mRequestedTiles[4] != lastY) {
+                //the visible tiles have changed, drop the requests of tiles that are not visible anymore
+                mPlanTileRenderer.cancelPending();
+                mRequestedTiles[0] = zoom;
+                mRequestedTiles[1] = firstX;
+                mRequestedTiles[2] = lastX;
+                mRequestedTiles[3] = firstY;
+                mRequestedTiles[4] = lastY;
+            }
+            for (int tileY = firstY; tileY <= lastY; tileY++) {
+                for (int tileX = firstX; tileX <= lastX; tileX++) {
+                    mTileDestination.set(tileX * tileSize - mPanX, tileY * tileSize - mPanY,
+                            (tileX + 1) * tileSize - mPanX, (tileY + 1) * tileSize - mPanY);
+                    Bitmap tile = mPlanTileCache.get(PlanTileCache.key(mPlanId, zoom, tileX, tileY));
+                    if (tile != null) {
+                        canvas.drawBitmap(tile, null, mTileDestination, mTilePaint);
+                    } else {
+                        mPlanTileRenderer.request(zoom, tileX, tileY);
+                        drawCoarserTile(canvas, zoom, tileX, tileY);
+                    }
+                }
             }
-            float pos_x = centerX + newPoint[0];
-            float pos_y = centerY + newPoint[2];
-            mPaint.setColor(0xffff9800); //orange
-            canvas.drawCircle(pos_x, pos_y, 7, mPaint);
         }
 
         /**
-         * This function will be running if a PlanView object is created and invalidated.
-         * It is the main drawing function of a PlanView object and
-         * calculates the center and the scale of the 2D plan to be drawn.
+         * This function draws the part of the nearest cached coarser tile that covers a missing tile.
          * @param canvas (canvas where the plan is drawn)
+         * @param zoom (zoom level of the missing tile)
+         * @param tileX (column of the missing tile)
+         * @param tileY (row of the missing tile)
          */
-        @Override
-        public void onDraw(Canvas canvas) {
-            List<float[]> pointList = createLevelPointList();
-            float[] planCenter = GraphBuilder.getPlanCenter(pointList);
-            float scale = GraphBuilder.getPlanScale(canvas.getHeight(), canvas.getWidth(), pointList);
-            canvas.drawText("Graphmapper (UniBw 2016)", canvas.getWidth() - 600, canvas.getHeight() - 22, mPaint);
-            String s = "Recording: " + mADFName + ", level: " + mCurrentLevelDraw;
-            if(mCurrentHallwayDraw != null) {
-                s += ", hallway: " + mCurrentHallwayDraw.getName();
+        private void drawCoarserTile(Canvas canvas, int zoom, int tileX, int tileY) {
+            for (int coarse = zoom - 1; coarse >= 0; coarse--) {
+                int shift = zoom - coarse;
+                Bitmap tile = mPlanTileCache.get(PlanTileCache.key(mPlanId, coarse, tileX >> shift, tileY >> shift));
+                if (tile != null) {
+                    int size = PlanTileRenderer.TILE_SIZE >> shift;
+                    int left = (tileX - ((tileX >> shift) << shift)) * size;
+                    int top = (tileY - ((tileY >> shift) << shift)) * size;
+                    mTileSource.set(left, top, left + size, top + size);
+                    canvas.drawBitmap(tile, mTileSource, mTileDestination, mTilePaint);
+                    return;
+                }
             }
-            canvas.drawText(s, 200, canvas.getHeight() - 22, mPaint);
-            drawHallways(canvas, planCenter, scale);
         }
     }
 }
@@ -26,25 +26,19 @@ import android.content.Context;
 import android.graphics.Color;
 import android.util.Log;
 import android.view.MotionEvent;
-import org.rajawali3d.Object3D;
-import org.rajawali3d.lights.DirectionalLight;
 import org.rajawali3d.materials.Material;
-import org.rajawali3d.materials.methods.DiffuseMethod;
-import org.rajawali3d.materials.methods.SpecularMethod;
 import org.rajawali3d.materials.textures.ATexture;
 import org.rajawali3d.materials.textures.StreamingTexture;
 import org.rajawali3d.materials.textures.Texture;
 import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.math.Quaternion;
 import org.rajawali3d.math.vector.Vector3;
-import org.rajawali3d.primitives.Plane;
 import org.rajawali3d.primitives.ScreenQuad;
 import org.rajawali3d.renderer.RajawaliRenderer;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import javax.microedition.khronos.opengles.GL10;
 
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
 import com.projecttango.unibw.graphmapper.graph.MeasurementType;
 import com.projecttango.rajawali.Pose;
 import com.projecttango.rajawali.ScenePoseCalculator;
@@ -54,6 +48,12 @@ import com.projecttango.rajawali.ScenePoseCalculator;
  * <p>Very simple augmented reality visialization which displays cubes fixed in place for every WallMeasurement.
  * Each time the user clicks on the screen, a cube with the specifiy type is placed flush with the surface detected using the point cloud data at the position clicked.</p>
  *
+ * <p>All cubes are drawn in one batch with one draw call and one unlit material. The icon of the type is selected
+ * in a texture atlas (see MeasurementMarkerBatch and MarkerAtlas).</p>
+ *
+ * <p>Finished hallways are shown as extruded walls (see WallLayer).
+ * In viewer mode the loaded graph is shown near the camera after the relocalization (see GraphOverlay).</p>
+ *
  * <p>The entrypoint and marker type can be placed on the wall or on the ground or on the wall (option).</p>
  *
  * <p>This class is from the Java Floorlan example (https://github.com/googlesamples/tango-examples-java) and was edited by the author.
@@ -65,44 +65,38 @@ import com.projecttango.rajawali.ScenePoseCalculator;
 public class GraphmapperRenderer extends RajawaliRenderer {
     /** lenght of the cube */
     private static final float CUBE_SIDE_LENGTH = 0.3f;
+    /** Color of the wall measurements */
+    private static final int WALL_COLOR = 0xff009900;
+    /** Color of the room measurements */
+    private static final int ROOM_COLOR = Color.RED;
+    /** Color of the entrypoint measurements */
+    private static final int ENTRY_COLOR = Color.BLUE;
+    /** Color of the marker measurements */
+    private static final int MARKER_COLOR = Color.CYAN;
+    /** Color of the obstacle wall measurements */
+    private static final int CUT_COLOR = Color.YELLOW;
     /** Tag of this class */
     private static final String TAG = GraphmapperRenderer.class.getSimpleName();
-    /** List of normal wall measurements */
-    private List<Pose> mWallPoseList = new ArrayList<Pose>();
-    /** List of room measurements */
-    private List<Pose> mRoomPoseList = new ArrayList<Pose>();
-    /** List of entrypoint measurements */
-    private List<Pose> mEntryPoseList = new ArrayList<Pose>();
-    /** List of marker measurements */
-    private List<Pose> mMarkerPoseList = new ArrayList<Pose>();
-    /** List of obstacle wall measurements */
-    private List<Pose> mCutPoseList = new ArrayList<Pose>();
-    /** Signals if the object pose has updated */
-    private boolean mObjectPoseUpdated = false;
-    /** Signals if the object should be placed on the wall or on the ground */
+    /** Commands from the UI thread (add, undo, clear), drained by the GL thread without locking */
+    private RenderCommandQueue mCommands = new RenderCommandQueue();
+    /** Signals if the latest marker of the batch can be removed by an undo command (GL thread only) */
+    private boolean mCanUndo = false;
+    /** Signals if the object should be placed on the wall or on the ground (UI thread only) */
     private boolean mIsObjectOnGround = false;
-    /** wall measurement material */
-    private Material mWallMaterial;
-    /** room measurement material */
-    private Material mRoomMaterial;
-    /** entrypoint measurement material */
-    private Material mEntryMaterial;
-    /** marker measurement material */
-    private Material mMarkerMaterial;
-    /** obstacle wall measurement material */
-    private Material mCutMaterial;
-    /** list of all 3D objects (all measurements) */
-    private List<Object3D> mMeasurementObjectList = new ArrayList<Object3D>();
+    /** batched layer of all measurement markers (one draw call) */
+    private MeasurementMarkerBatch mMarkerBatch;
+    /** extruded walls of the finished hallways, one mesh per level (GL thread only) */
+    private WallLayer mWallLayer;
+    /** view frustum of the render camera (GL thread only) */
+    private ViewFrustum mFrustum = new ViewFrustum();
+    /** counters of the culling of the wall layer and the graph overlay (GL thread only) */
+    private CullingStats mCullingStats = new CullingStats();
+    /** AR overlay of the loaded navigation graph (GL thread only, null if no graph is shown) */
+    private GraphOverlay mGraphOverlay;
     /** Augmented reality related field **/
     private ATexture mTangoCameraTexture;
     /** Augmented reality related fields **/
     private boolean mSceneCameraConfigured;
-    /** Type of the latest measurement */
-    private MeasurementType mLastType;
-    /** reference to the latest 3D object */
-    private Object3D mLastObject;
-    /** post of the latest measurement */
-    private Pose mLastPose;
 
     /**
      * Constructor (Creates new GraphmapperRenderer object)
@@ -134,78 +128,25 @@ public class GraphmapperRenderer extends RajawaliRenderer {
         }
         getCurrentScene().addChildAt(backgroundQuad, 0);
 
-        // Add a directional light in an arbitrary direction.
-        DirectionalLight light = new DirectionalLight(1, 0.2, -1);
-        light.setColor(1, 1, 1);
-        light.setPower(0.8f);
-        light.setPosition(3, 2, 4);
-        getCurrentScene().addLight(light);
-
-        // Set-up wall material.
-        mWallMaterial = new Material();
-        mWallMaterial.enableLighting(true);
-        mWallMaterial.setDiffuseMethod(new DiffuseMethod.Lambert());
-        mWallMaterial.setSpecularMethod(new SpecularMethod.Phong());
-        mWallMaterial.setColor(0xff009900);
-        mWallMaterial.setColorInfluence(0.5f);
-        try {
-            Texture t = new Texture("wall", R.drawable.wall);
-            mWallMaterial.addTexture(t);
-        } catch (ATexture.TextureException e) {
-            e.printStackTrace();
-        }
-        // Set-up room material.
-        mRoomMaterial = new Material();
-        mRoomMaterial.enableLighting(true);
-        mRoomMaterial.setDiffuseMethod(new DiffuseMethod.Lambert());
-        mRoomMaterial.setSpecularMethod(new SpecularMethod.Phong());
-        mRoomMaterial.setColor(Color.RED);
-        mRoomMaterial.setColorInfluence(0.5f);
-        try {
-            Texture t = new Texture("room", R.drawable.room);
-            mRoomMaterial.addTexture(t);
-        } catch (ATexture.TextureException e) {
-            e.printStackTrace();
-        }
-        // Set-up entry material.
-        mEntryMaterial = new Material();
-        mEntryMaterial.enableLighting(true);
-        mEntryMaterial.setDiffuseMethod(new DiffuseMethod.Lambert());
-        mEntryMaterial.setSpecularMethod(new SpecularMethod.Phong());
-        mEntryMaterial.setColor(Color.BLUE);
-        mEntryMaterial.setColorInfluence(0.5f);
-        try {
-            Texture t = new Texture("entry", R.drawable.entry);
-            mEntryMaterial.addTexture(t);
-        } catch (ATexture.TextureException e) {
-            e.printStackTrace();
-        }
-        //Set-up marker material
-        mMarkerMaterial = new Material();
-        mMarkerMaterial.enableLighting(true);
-        mMarkerMaterial.setDiffuseMethod(new DiffuseMethod.Lambert());
-        mMarkerMaterial.setSpecularMethod(new SpecularMethod.Phong());
-        mMarkerMaterial.setColor(Color.CYAN);
-        mMarkerMaterial.setColorInfluence(0.5f);
-        try {
-            Texture t = new Texture("marker", R.drawable.marker);
-            mMarkerMaterial.addTexture(t);
-        } catch (ATexture.TextureException e) {
-            e.printStackTrace();
-        }
-        // Set-up cut material.
-        mCutMaterial = new Material();
-        mCutMaterial.enableLighting(true);
-        mCutMaterial.setDiffuseMethod(new DiffuseMethod.Lambert());
-        mCutMaterial.setSpecularMethod(new SpecularMethod.Phong());
-        mCutMaterial.setColor(Color.YELLOW);
-        mCutMaterial.setColorInfluence(0.5f);
+        // Set-up the marker layer. All markers are drawn with one draw call and one unlit material.
+        // The icon of a measurement type is selected by the texture coordinates in the atlas,
+        // the vertex color tints it with the color of the type.
+        Material markerMaterial = new Material();
+        markerMaterial.useVertexColors(true);
+        markerMaterial.setColorInfluence(0.5f);
         try {
-            Texture t = new Texture("cut", R.drawable.cut);
-            mCutMaterial.addTexture(t);
+            Texture atlas = new Texture("marker_atlas", MarkerAtlas.RESOURCE_ID);
+            markerMaterial.addTexture(atlas);
         } catch (ATexture.TextureException e) {
-            e.printStackTrace();
+            Log.e(TAG, "Exception creating texture for the marker atlas", e);
         }
+        mMarkerBatch = new MeasurementMarkerBatch(CUBE_SIDE_LENGTH);
+        mMarkerBatch.setMaterial(markerMaterial);
+        getCurrentScene().addChild(mMarkerBatch);
+
+        // Set-up the wall layer of the finished hallways.
+        mWallLayer = new WallLayer();
+        getCurrentScene().addChild(mWallLayer.getRoot());
     }
 
     /**
@@ -215,123 +156,83 @@ public class GraphmapperRenderer extends RajawaliRenderer {
      */
     @Override
     protected void onRender(long elapsedRealTime, double deltaTime) {
-        // Update the AR object if necessary
-        // Synchronize against concurrent access with the setter below.
-        synchronized (this) {
-            if (mObjectPoseUpdated) {
-                Iterator<Pose> poseIterator = mWallPoseList.iterator();
-                Object3D object3D;
-                while (poseIterator.hasNext()) {
-                    Pose pose = poseIterator.next();
-                    object3D = new Plane(CUBE_SIDE_LENGTH, CUBE_SIDE_LENGTH, 2, 2);
-                    object3D.setMaterial(mWallMaterial);
-                    // Rotate around X axis so the texture is applied correctly.
-                    // NOTE: This may be a Rajawali bug.
-                    // https://github.com/Rajawali/Rajawali/issues/1561
-                    object3D.setDoubleSided(true);
-                    object3D.rotate(Vector3.Axis.X, 180);
-                    // Place the 3D object in the location of the detected plane.
-                    object3D.setPosition(pose.getPosition());
-                    object3D.rotate(pose.getOrientation());
-
-                    getCurrentScene().addChild(object3D);
-                    mMeasurementObjectList.add(object3D);
-                    if(pose.equals(mLastPose)) {
-                        mLastObject = object3D;
-                    }
-                    poseIterator.remove();
-                }
-                poseIterator = mRoomPoseList.iterator();
-                while (poseIterator.hasNext()) {
-                    Pose pose = poseIterator.next();
-                    object3D = new Plane(CUBE_SIDE_LENGTH, CUBE_SIDE_LENGTH, 2, 2);
-                    object3D.setMaterial(mRoomMaterial);
-                    // Rotate around X axis so the texture is applied correctly.
-                    // NOTE: This may be a Rajawali bug.
-                    // https://github.com/Rajawali/Rajawali/issues/1561
-                    object3D.setDoubleSided(true);
-                    object3D.rotate(Vector3.Axis.X, 180);
-                    // Place the 3D object in the location of the detected plane.
-                    object3D.setPosition(pose.getPosition());
-                    object3D.rotate(pose.getOrientation());
-
-                    getCurrentScene().addChild(object3D);
-                    mMeasurementObjectList.add(object3D);
-                    if(pose.equals(mLastPose)) {
-                        mLastObject = object3D;
-                    }
-                    poseIterator.remove();
-                }
-                poseIterator = mEntryPoseList.iterator();
-                while (poseIterator.hasNext()) {
-                    Pose pose = poseIterator.next();
-                    if(mIsObjectOnGround) {
-                        object3D = new Plane(CUBE_SIDE_LENGTH, CUBE_SIDE_LENGTH, 2, 2, Vector3.Axis.Y); //Plane on ground
-                        object3D.rotate(Vector3.Axis.Y, 180);
-                    } else {
-                        object3D = new Plane(CUBE_SIDE_LENGTH, CUBE_SIDE_LENGTH, 2, 2);
-                        object3D.rotate(Vector3.Axis.X, 180);
-                        object3D.rotate(pose.getOrientation());
-                    }
-                    object3D.setMaterial(mEntryMaterial);
-                    object3D.setDoubleSided(true);
-
-                    // Place the 3D object in the location of the detected plane.
-                    object3D.setPosition(pose.getPosition());
+        // Apply the commands of the UI thread. The queue never blocks, so neither thread waits for the other.
+        executeCommands();
+        mMarkerBatch.updateBuffers();
+        mWallLayer.update();
 
-                    getCurrentScene().addChild(object3D);
-                    mMeasurementObjectList.add(object3D);
-                    if(pose.equals(mLastPose)) {
-                        mLastObject = object3D;
-                    }
-                    poseIterator.remove();
-                }
-                poseIterator = mMarkerPoseList.iterator();
-                while (poseIterator.hasNext()) {
-                    Pose pose = poseIterator.next();
-                    if(mIsObjectOnGround) {
-                        object3D = new Plane(CUBE_SIDE_LENGTH, CUBE_SIDE_LENGTH, 2, 2, Vector3.Axis.Y); //Plane on ground
-                        object3D.rotate(Vector3.Axis.Y, 180);
-                    } else {
-                        object3D = new Plane(CUBE_SIDE_LENGTH, CUBE_SIDE_LENGTH, 2, 2);
-                        object3D.rotate(Vector3.Axis.X, 180);
-                        object3D.rotate(pose.getOrientation());
-                    }
-                    object3D.setMaterial(mMarkerMaterial);
-                    object3D.setDoubleSided(true);
-
-                    // Place the 3D object in the location of the detected plane.
-                    object3D.setPosition(pose.getPosition());
+        super.onRender(elapsedRealTime, deltaTime);
+    }
 
-                    getCurrentScene().addChild(object3D);
-                    mMeasurementObjectList.add(object3D);
-                    if(pose.equals(mLastPose)) {
-                        mLastObject = object3D;
-                    }
-                    poseIterator.remove();
-                }
-                poseIterator = mCutPoseList.iterator();
-                while (poseIterator.hasNext()) {
-                    Pose pose = poseIterator.next();
-                    object3D = new Plane(CUBE_SIDE_LENGTH, CUBE_SIDE_LENGTH, 2, 2);
-                    object3D.setMaterial(mCutMaterial);
-                    object3D.setDoubleSided(true);
-                    object3D.rotate(Vector3.Axis.X, 180);
-                    // Place the 3D object in the location of the detected plane.
-                    object3D.setPosition(pose.getPosition());
-                    object3D.rotate(pose.getOrientation());
-                    getCurrentScene().addChild(object3D);
-                    mMeasurementObjectList.add(object3D);
-                    if(pose.equals(mLastPose)) {
-                        mLastObject = object3D;
+    /**
+     * Executes all pending render commands in the order they were added.
+     * NOTE: This must be called from the OpenGL render thread.
+     */
+    private void executeCommands() {
+        RenderCommand command;
+        while ((command = mCommands.poll()) != null) {
+            switch (command.getType()) {
+                case ADD:
+                    Pose pose = command.getPose();
+                    // Place the marker in the location of the detected plane.
+                    mMarkerBatch.addMarker(pose.getPosition(), pose.getOrientation(), command.isOnGround(),
+                            command.getColor(), MarkerAtlas.getUvRect(command.getMeasurementType()));
+                    mCanUndo = true;
+                    break;
+                case UNDO:
+                    // Only the latest measurement can be undone.
+                    if (mCanUndo) {
+                        mMarkerBatch.removeLastMarker();
+                        mCanUndo = false;
                     }
-                    poseIterator.remove();
-                }
-                mObjectPoseUpdated = false;
+                    break;
+                case CLEAR:
+                    mMarkerBatch.clear();
+                    mCanUndo = false;
+                    break;
+                case HALLWAY:
+                    mWallLayer.setHallway(command.getWalls());
+                    break;
             }
         }
+    }
 
-        super.onRender(elapsedRealTime, deltaTime);
+    /**
+     * Shows the hallways, obstacles, entrypoints, rooms and markers of a loaded graph in the AR view.
+     * The geometry is uploaded once, afterwards only the visible parts near the camera are drawn.
+     * The overlay and the walls of a previously shown graph are replaced.
+     * NOTE: This must be called from the OpenGL render thread - it is not thread safe.
+     * @param graph (loaded navigation graph)
+     */
+    public void showGraph(Graph graph) {
+        if (mGraphOverlay != null) {
+            getCurrentScene().removeChild(mGraphOverlay.getRoot());
+        }
+        mGraphOverlay = new GraphOverlay(graph);
+        getCurrentScene().addChild(mGraphOverlay.getRoot());
+        mWallLayer.clear();
+        for (Hallway hallway : graph.getGraph().values()) {
+            mWallLayer.setHallway(WallMeshBuilder.extrude(hallway));
+        }
+        mWallLayer.update();
+        cull();
+    }
+
+    /**
+     * Culls the graph overlay and the wall layer with the current camera pose and projection.
+     * Both are counted in the same CullingStats.
+     * NOTE: This must be called from the OpenGL render thread.
+     */
+    private void cull() {
+        mFrustum.update(getCurrentCamera().getProjectionMatrix().getDoubleValues(),
+                getCurrentCamera().getViewMatrix().getDoubleValues());
+        Vector3 position = getCurrentCamera().getPosition();
+        mCullingStats.beginCull();
+        mWallLayer.cull(mFrustum, position, mCullingStats);
+        if (mGraphOverlay != null) {
+            mGraphOverlay.cull(mFrustum, position, mCullingStats);
+        }
+        mCullingStats.endCull();
     }
 
     /**
@@ -349,6 +250,8 @@ public class GraphmapperRenderer extends RajawaliRenderer {
         // quaternions.
         getCurrentCamera().setRotation(quaternion.conjugate());
         getCurrentCamera().setPosition(translation[0], translation[1], translation[2]);
+        // Cull the AR geometry with the new camera pose.
+        cull();
     }
 
     /**
@@ -361,6 +264,15 @@ public class GraphmapperRenderer extends RajawaliRenderer {
         return mTangoCameraTexture == null ? -1 : mTangoCameraTexture.getTextureId();
     }
 
+    /**
+     * Getter function for the counters of the culling (graph overlay and wall layer).
+     * NOTE: This must be called from the OpenGL render thread - it is not thread safe.
+     * @return mCullingStats
+     */
+    public CullingStats getCullingStats() {
+        return mCullingStats;
+    }
+
     /**
      * We need to override this method to mark the camera for re-configuration (set proper
      * projection matrix) since it will be reset by Rajawali on surface changes.
@@ -404,71 +316,73 @@ public class GraphmapperRenderer extends RajawaliRenderer {
     /**
      * Add a new WallMeasurement.
      * A new cube will be added at the plane position and orientation to represent the measurement.
+     * The pose is calculated on the calling thread and handed over to the GL thread without locking.
+     * NOTE: This must be called from the UI thread.
      * @param wallMeasurement
      */
-    public synchronized void addWallMeasurement(WallMeasurement wallMeasurement) {
+    public void addWallMeasurement(WallMeasurement wallMeasurement) {
         float[] openGlTWall = wallMeasurement.getPlaneTransform();
         Matrix4 openGlTWallMatrix = new Matrix4(openGlTWall);
         Pose pose = new Pose(openGlTWallMatrix.getTranslation(), new Quaternion().fromMatrix(openGlTWallMatrix).conjugate());
-        if(wallMeasurement.getMeasurementType() == MeasurementType.ENTRY) {
-            mEntryPoseList.add(pose);
-            mLastType = MeasurementType.ENTRY;
-        } else if(wallMeasurement.getMeasurementType() == MeasurementType.ROOM) {
-            mRoomPoseList.add(pose);
-            mLastType = MeasurementType.ROOM;
-        } else if(wallMeasurement.getMeasurementType() == MeasurementType.CUT) {
-            mCutPoseList.add(pose);
-            mLastType = MeasurementType.CUT;
-        } else if(wallMeasurement.getMeasurementType() == MeasurementType.MARKER) {
-            mMarkerPoseList.add(pose);
-            mLastType = MeasurementType.MARKER;
+        MeasurementType type = wallMeasurement.getMeasurementType();
+        int color;
+        boolean onGround = false;
+        if(type != MeasurementType.ENTRY && type != MeasurementType.ROOM && type != MeasurementType.CUT && type != MeasurementType.MARKER) {
+            type = MeasurementType.WALL;
+        }
+        if(type == MeasurementType.ENTRY) {
+            color = ENTRY_COLOR;
+            onGround = mIsObjectOnGround;
+        } else if(type == MeasurementType.ROOM) {
+            color = ROOM_COLOR;
+        } else if(type == MeasurementType.CUT) {
+            color = CUT_COLOR;
+        } else if(type == MeasurementType.MARKER) {
+            color = MARKER_COLOR;
+            onGround = mIsObjectOnGround;
         } else {
-            mWallPoseList.add(pose);
-            mLastType = MeasurementType.WALL;
+            color = WALL_COLOR;
         }
-        mLastPose = pose;
-        mObjectPoseUpdated = true;
+        sendCommand(RenderCommand.add(pose, type, color, onGround));
+    }
+
+    /**
+     * Adds the walls of a finished hallway to the AR view (or replaces them if the hallway has changed).
+     * The walls are extruded on the calling thread and handed over to the GL thread without locking.
+     * NOTE: This must be called from the UI thread.
+     * @param hallway (finished hallway)
+     */
+    public void addHallway(Hallway hallway) {
+        sendCommand(RenderCommand.hallway(WallMeshBuilder.extrude(hallway)));
     }
 
     /**
      * Remove all the measurements from the Scene.
+     * NOTE: This must be called from the UI thread.
      */
-    public synchronized void removeMeasurements() {
-        for (Object3D object3D : mMeasurementObjectList) {
-            getCurrentScene().removeChild(object3D);
-            mWallPoseList.clear();
-            mRoomPoseList.clear();
-            mEntryPoseList.clear();
-            mMarkerPoseList.clear();
-            mCutPoseList.clear();
-        }
-        mLastType = null;
-        mLastPose = null;
-        mLastObject = null;
+    public void removeMeasurements() {
+        sendCommand(RenderCommand.CLEAR);
     }
 
     /**
      * Undo the last measurement. Remove the object from the scene.
+     * NOTE: This must be called from the UI thread.
      */
-    public synchronized void undoLastMeasurement() {
-        if(mLastPose != null && mLastObject != null && mLastType != null) {
-            if(mLastType == MeasurementType.ROOM) {
-                mRoomPoseList.remove(mLastPose);
-            } else if(mLastType == MeasurementType.ENTRY) {
-                mEntryPoseList.remove(mLastPose);
-            } else if(mLastType == MeasurementType.CUT) {
-                mCutPoseList.remove(mLastObject);
-            } else if(mLastType == MeasurementType.MARKER) {
-                mMarkerPoseList.remove(mLastObject);
-            } else {
-                //Wall
-                mWallPoseList.remove(mLastPose);
-            }
-            getCurrentScene().removeChild(mLastObject);
-            mMeasurementObjectList.remove(mLastObject);
-            mLastType = null;
-            mLastPose = null;
-            mLastObject = null;
+    public void undoLastMeasurement() {
+        sendCommand(RenderCommand.UNDO);
+    }
+
+    /**
+     * Hands a command over to the GL thread. If the queue is full, a new marker (ADD) is dropped,
+     * but the commands which change the state of the scene (UNDO, CLEAR, HALLWAY) are never lost,
+     * otherwise the scene and the measurement lists of the activity would differ for the rest of the session.
+     * @param command (command to be executed before the next frame)
+     */
+    private void sendCommand(RenderCommand command) {
+        if (command.getType() != RenderCommand.Type.ADD) {
+            mCommands.put(command);
+        } else if (!mCommands.offer(command)) {
+            Log.e(TAG, "Render command queue is full, dropped command " + command.getType());
         }
     }
 
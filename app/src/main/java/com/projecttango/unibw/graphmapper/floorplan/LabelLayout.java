@@ -0,0 +1,310 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.graphics.Paint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Placement of the labels of a plan drawing. Labels that would overlap an already placed label are dropped.</p>
+ *
+ * <p>The labels are placed by their priority (hallway names before rooms, other POIs and lengths) and in the
+ * order they were added within a priority. Every label has a preferred position and is also tried slightly
+ * above, below and to the left of it. The placed labels are kept in a uniform grid, so a new label is only
+ * tested against the labels in the grid cells it covers.</p>
+ *
+ * <p>The measured width of a text is cached, because the same names and lengths are measured again for every
+ * canvas size and zoom level. An instance must only be used by one thread.</p>
+ *
+ * @version 1.0
+ */
+public class LabelLayout {
+    /** Priority of hallway names */
+    public static final int PRIORITY_HALLWAY = 0;
+    /** Priority of room names */
+    public static final int PRIORITY_ROOM = 1;
+    /** Priority of marker and entrypoint names */
+    public static final int PRIORITY_POI = 2;
+    /** Priority of the lengths of the lines */
+    public static final int PRIORITY_LENGTH = 3;
+    /** Size of a grid cell in pixels */
+    private static final int CELL_SIZE = 64;
+    /** Free space around a label in pixels */
+    private static final float PADDING = 2;
+    /** Maximum number of cached text widths */
+    private static final int MAX_CACHED_WIDTHS = 4096;
+    /** Horizontal shift of the tried positions (in text widths): preferred, above, below, left */
+    private static final float[] SHIFT_X = {0, 0, 0, -0.5f};
+    /** Vertical shift of the tried positions (in line heights): preferred, above, below, left */
+    private static final float[] SHIFT_Y = {0, -1, 1, 0};
+
+    /**
+     * Label candidate with its preferred position.
+     */
+    private static class Label {
+        /** Text of the label */
+        final String mText;
+        /** Preferred x position (left of the text) */
+        final float mX;
+        /** Preferred y position (baseline of the text) */
+        final float mY;
+        /** Color of the label */
+        final int mColor;
+        /** Priority of the label (lower is more important) */
+        final int mPriority;
+        /** Order in which the label was added */
+        final int mOrder;
+
+        Label(String text, float x, float y, int color, int priority, int order) {
+            mText = text;
+            mX = x;
+            mY = y;
+            mColor = color;
+            mPriority = priority;
+            mOrder = order;
+        }
+    }
+
+    /** Sorts the labels by priority and keeps the order of labels with the same priority */
+    private static final Comparator<Label> PRIORITY_ORDER = new Comparator<Label>() {
+        @Override
+        public int compare(Label a, Label b) {
+            if (a.mPriority != b.mPriority) {
+                return a.mPriority < b.mPriority ? -1 : 1;
+            }
+            return a.mOrder < b.mOrder ? -1 : (a.mOrder == b.mOrder ? 0 : 1);
+        }
+    };
+
+    /** Paint to measure the texts */
+    private final Paint mPaint = new Paint();
+    /** Distance from the baseline to the top of a text (negative) */
+    private final float mAscent;
+    /** Distance from the baseline to the bottom of a text */
+    private final float mDescent;
+    /** Cached widths of the measured texts */
+    private final Map<String, Float> mWidths = new HashMap<String, Float>();
+    /** Candidates of the current layout */
+    private final List<Label> mCandidates = new ArrayList<Label>();
+    /** Placed rectangles (left, top, right, bottom) in each grid cell */
+    private List<List<float[]>> mGrid;
+    /** Number of grid columns */
+    private int mColumns;
+    /** Number of grid rows */
+    private int mRows;
+    /** Texts of the placed labels */
+    private String[] mTexts;
+    /** Positions of the placed labels (x, y per label) */
+    private float[] mPositions;
+    /** Colors of the placed labels */
+    private int[] mColors;
+
+    /**
+     * Constructor (Creates a new label layout for the given text size)
+     * @param textSize (text size of the labels in pixels)
+     */
+    public LabelLayout(float textSize) {
+        mPaint.setTextSize(textSize);
+        Paint.FontMetrics metrics = mPaint.getFontMetrics();
+        mAscent = metrics.ascent;
+        mDescent = metrics.descent;
+    }
+
+    /**
+     * Starts a new layout. The candidates of the previous layout are removed.
+     */
+    public void begin() {
+        mCandidates.clear();
+    }
+
+    /**
+     * Adds a label candidate.
+     * @param text (text of the label)
+     * @param x (preferred x position, left of the text)
+     * @param y (preferred y position, baseline of the text)
+     * @param color (color of the label)
+     * @param priority (priority of the label, see the PRIORITY constants)
+     */
+    public void add(String text, float x, float y, int color, int priority) {
+        mCandidates.add(new Label(text, x, y, color, priority, mCandidates.size()));
+    }
+
+    /**
+     * Places all candidates on a canvas of the given size. Labels that overlap a more important label
+     * at all of their positions are dropped.
+     * @param width (width of the canvas)
+     * @param height (height of the canvas)
+     */
+    public void place(int width, int height) {
+        mColumns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+        mRows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+        mGrid = new ArrayList<List<float[]>>(mColumns * mRows);
+        for (int i = 0; i < mColumns * mRows; i++) {
+            mGrid.add(null);
+        }
+        Collections.sort(mCandidates, PRIORITY_ORDER);
+
+        String[] texts = new String[mCandidates.size()];
+        float[] positions = new float[2 * mCandidates.size()];
+        int[] colors = new int[mCandidates.size()];
+        int count = 0;
+        float lineHeight = mDescent - mAscent;
+        for (Label label : mCandidates) {
+            float textWidth = getWidth(label.mText);
+            for (int i = 0; i < SHIFT_X.length; i++) {
+                float x = label.mX + SHIFT_X[i] * textWidth;
+                float y = label.mY + SHIFT_Y[i] * lineHeight;
+                float[] rect = {x - PADDING, y + mAscent - PADDING, x + textWidth + PADDING, y + mDescent + PADDING};
+                if (!collides(rect)) {
+                    insert(rect);
+                    texts[count] = label.mText;
+                    positions[2 * count] = x;
+                    positions[2 * count + 1] = y;
+                    colors[count] = label.mColor;
+                    count++;
+                    break;
+                }
+            }
+        }
+        mTexts = new String[count];
+        System.arraycopy(texts, 0, mTexts, 0, count);
+        mPositions = new float[2 * count];
+        System.arraycopy(positions, 0, mPositions, 0, 2 * count);
+        mColors = new int[count];
+        System.arraycopy(colors, 0, mColors, 0, count);
+        mCandidates.clear();
+        mGrid = null;
+    }
+
+    /**
+     * Getter function for the texts of the placed labels.
+     * @return texts in drawing order
+     */
+    public String[] getTexts() {
+        return mTexts;
+    }
+
+    /**
+     * Getter function for the positions of the placed labels.
+     * @return x and y (baseline) per label
+     */
+    public float[] getPositions() {
+        return mPositions;
+    }
+
+    /**
+     * Getter function for the colors of the placed labels.
+     * @return color per label
+     */
+    public int[] getColors() {
+        return mColors;
+    }
+
+    /**
+     * This function returns the (cached) width of a text.
+     * @param text (text to be measured)
+     * @return width in pixels
+     */
+    private float getWidth(String text) {
+        Float width = mWidths.get(text);
+        if (width == null) {
+            if (mWidths.size() >= MAX_CACHED_WIDTHS) {
+                mWidths.clear();
+            }
+            width = mPaint.measureText(text);
+            mWidths.put(text, width);
+        }
+        return width;
+    }
+
+    /**
+     * Signals if a rectangle overlaps a placed label.
+     * @param rect (left, top, right, bottom)
+     * @return true if it overlaps
+     */
+    private boolean collides(float[] rect) {
+        int firstColumn = column(rect[0]);
+        int lastColumn = column(rect[2]);
+        int firstRow = row(rect[1]);
+        int lastRow = row(rect[3]);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                List<float[]> cell = mGrid.get(r * mColumns + c);
+                if (cell == null) {
+                    continue;
+                }
+                for (float[] other : cell) {
+                    if (rect[0] < other[2] && other[0] < rect[2] && rect[1] < other[3] && other[1] < rect[3]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a placed rectangle to all grid cells it covers.
+     * @param rect (left, top, right, bottom)
+     */
+    private void insert(float[] rect) {
+        int firstColumn = column(rect[0]);
+        int lastColumn = column(rect[2]);
+        int firstRow = row(rect[1]);
+        int lastRow = row(rect[3]);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int index = r * mColumns + c;
+                List<float[]> cell = mGrid.get(index);
+                if (cell == null) {
+                    cell = new ArrayList<float[]>(4);
+                    mGrid.set(index, cell);
+                }
+                cell.add(rect);
+            }
+        }
+    }
+
+    /**
+     * Grid column of an x coordinate (coordinates outside the canvas are clamped to the border cells).
+     * @param x (x coordinate)
+     * @return column
+     */
+    private int column(float x) {
+        return Math.max(0, Math.min(mColumns - 1, (int) Math.floor(x / CELL_SIZE)));
+    }
+
+    /**
+     * Grid row of a y coordinate (coordinates outside the canvas are clamped to the border cells).
+     * @param y (y coordinate)
+     * @return row
+     */
+    private int row(float y) {
+        return Math.max(0, Math.min(mRows - 1, (int) Math.floor(y / CELL_SIZE)));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import com.projecttango.unibw.graphmapper.graph.MeasurementType;
+
+/**
+ * <p>Layout of the texture atlas with the icons of the measurement types (res/drawable-nodpi/marker_atlas.png).</p>
+ *
+ * <p>The atlas is a grid of 4 x 2 cells (wall, room, entry, marker in the first row and cut in the second row).
+ * The markers select their icon with the texture coordinates of its cell, so all markers share one texture and one material.</p>
+ *
+ * @version 1.0
+ */
+public class MarkerAtlas {
+    /** Resource ID of the atlas */
+    public static final int RESOURCE_ID = R.drawable.marker_atlas;
+    /** Number of cell columns */
+    private static final int COLUMNS = 4;
+    /** Number of cell rows */
+    private static final int ROWS = 2;
+    /** Size of a cell in pixels */
+    private static final int CELL_SIZE = 256;
+    /** Inset of the texture coordinates in pixels (prevents bleeding of the neighbor cells with linear filtering) */
+    private static final float INSET = 1f;
+
+    /**
+     * Returns the cell of a measurement type. Types without an own icon use the wall icon.
+     * @param type (type of the measurement)
+     * @return index of the cell
+     */
+    private static int getCell(MeasurementType type) {
+        if (type == MeasurementType.ROOM) {
+            return 1;
+        } else if (type == MeasurementType.ENTRY) {
+            return 2;
+        } else if (type == MeasurementType.MARKER) {
+            return 3;
+        } else if (type == MeasurementType.CUT) {
+            return 4;
+        }
+        return 0;
+    }
+
+    /**
+     * Calculates the texture coordinates of the icon of a measurement type.
+     * @param type (type of the measurement)
+     * @return float[4] with u0, v0, u1, v1 (top left and bottom right corner)
+     */
+    public static float[] getUvRect(MeasurementType type) {
+        int cell = getCell(type);
+        float width = COLUMNS * CELL_SIZE;
+        float height = ROWS * CELL_SIZE;
+        float left = (cell % COLUMNS) * CELL_SIZE;
+        float top = (cell / COLUMNS) * CELL_SIZE;
+        return new float[]{(left + INSET) / width, (top + INSET) / height,
+                (left + CELL_SIZE - INSET) / width, (top + CELL_SIZE - INSET) / height};
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.graphics.Color;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * <p>Batched layer that draws all measurement markers of the augmented reality view with one draw call.</p>
+ *
+ * <p>Every marker is a square with the icon of its measurement type (cell of the texture atlas) tinted with
+ * the color of the type. The markers are transformed on the CPU
+ * when they are added, so the vertex buffer only changes when a marker is added or removed and not in every frame.
+ * All markers share one dynamic vertex buffer and one material. Unused slots are collapsed to degenerated
+ * triangles, so removing a marker does not resize the buffer. The buffer capacity is doubled if it is full.</p>
+ *
+ * <p>NOTE: OpenGL ES 2.0 has no instanced drawing, therefore the instance transforms are baked into the vertices.
+ * The class is not thread safe. The buffers must only be updated on the OpenGL render thread (see updateBuffers).</p>
+ *
+ * @version 1.0
+ */
+public class MeasurementMarkerBatch extends Object3D {
+    /** Number of markers the buffer can hold initially */
+    private static final int INITIAL_CAPACITY = 64;
+    /** Number of vertices of a marker (square) */
+    private static final int VERTICES_PER_MARKER = 4;
+    /** Number of indices of a marker (two triangles) */
+    private static final int INDICES_PER_MARKER = 6;
+    /** Corners of a marker placed on the wall (x, y, z, square in the xy plane) */
+    private static final float[] WALL_CORNERS = {-1, -1, 0, 1, -1, 0, 1, 1, 0, -1, 1, 0};
+    /** Corners of a marker placed on the ground (x, y, z, square in the xz plane) */
+    private static final float[] GROUND_CORNERS = {-1, 0, -1, 1, 0, -1, 1, 0, 1, -1, 0, 1};
+    /** Texture coordinates of the corners (u, v) relative to the icon */
+    private static final float[] CORNER_TEX_COORDS = {0, 1, 1, 1, 1, 0, 0, 0};
+    /** Half of the side length of a marker */
+    private float mHalfSide;
+    /** Number of markers the buffers can hold */
+    private int mCapacity;
+    /** Number of markers in the batch */
+    private int mCount;
+    /** Vertex positions (x, y, z) */
+    private float[] mVertices;
+    /** Vertex normals (x, y, z) */
+    private float[] mNormals;
+    /** Texture coordinates (u, v) */
+    private float[] mTexCoords;
+    /** Vertex colors (r, g, b, a) */
+    private float[] mColors;
+    /** Triangle indices */
+    private int[] mIndices;
+    /** Buffer for the upload of the vertex positions */
+    private FloatBuffer mVertexBuffer;
+    /** Buffer for the upload of the vertex normals */
+    private FloatBuffer mNormalBuffer;
+    /** Buffer for the upload of the vertex colors */
+    private FloatBuffer mColorBuffer;
+    /** Buffer for the upload of the texture coordinates */
+    private FloatBuffer mTexCoordBuffer;
+    /** Signals if the vertex data has changed since the last upload */
+    private boolean mDirty = false;
+    /** Signals if the capacity has changed since the last upload (new GPU buffers needed) */
+    private boolean mResized = true;
+    /** Temporary orientation of the marker that is added */
+    private Quaternion mTmpOrientation = new Quaternion();
+    /** Temporary rotation quaternion */
+    private Quaternion mTmpRotation = new Quaternion();
+    /** Temporary rotation matrix of the marker that is added */
+    private Matrix4 mTmpMatrix = new Matrix4();
+
+    /**
+     * Constructor (Creates a new empty batch)
+     * @param sideLength (side length of a marker)
+     */
+    public MeasurementMarkerBatch(float sideLength) {
+        mHalfSide = sideLength / 2;
+        allocate(INITIAL_CAPACITY);
+        setDoubleSided(true);
+    }
+
+    /**
+     * Adds a marker to the batch.
+     * @param position (position of the marker)
+     * @param orientation (orientation of the detected plane, ignored for markers on the ground)
+     * @param onGround (if true the marker is placed on the ground, else on the wall)
+     * @param color (color of the measurement type)
+     * @param uvRect (texture coordinates of the icon in the atlas: u0, v0, u1, v1)
+     * @return index of the marker in the batch
+     */
+    public int addMarker(Vector3 position, Quaternion orientation, boolean onGround, int color, float[] uvRect) {
+        if (mCount == mCapacity) {
+            allocate(mCapacity * 2);
+        }
+        // Same rotation as the single objects used before.
+        // The rotation around the X axis is needed so the texture is applied correctly.
+        // NOTE: This may be a Rajawali bug.
+        // https://github.com/Rajawali/Rajawali/issues/1561
+        mTmpOrientation.identity();
+        if (onGround) {
+            mTmpOrientation.multiply(mTmpRotation.fromAngleAxis(Vector3.Axis.Y, 180));
+        } else {
+            mTmpOrientation.multiply(mTmpRotation.fromAngleAxis(Vector3.Axis.X, 180));
+            mTmpOrientation.multiply(orientation);
+        }
+        double[] r = mTmpOrientation.toRotationMatrix(mTmpMatrix).getDoubleValues();
+        float[] corners = onGround ? GROUND_CORNERS : WALL_CORNERS;
+        // normal of the untransformed square (column of the rotation matrix)
+        int normalColumn = onGround ? 4 : 8;
+        float[] rgba = {Color.red(color) / 255f, Color.green(color) / 255f, Color.blue(color) / 255f, Color.alpha(color) / 255f};
+        int index = mCount;
+        for (int i = 0; i < VERTICES_PER_MARKER; i++) {
+            float x = corners[i * 3] * mHalfSide;
+            float y = corners[i * 3 + 1] * mHalfSide;
+            float z = corners[i * 3 + 2] * mHalfSide;
+            int v = (index * VERTICES_PER_MARKER + i) * 3;
+            // column major matrix
+            mVertices[v] = (float) (r[0] * x + r[4] * y + r[8] * z + position.x);
+            mVertices[v + 1] = (float) (r[1] * x + r[5] * y + r[9] * z + position.y);
+            mVertices[v + 2] = (float) (r[2] * x + r[6] * y + r[10] * z + position.z);
+            mNormals[v] = (float) r[normalColumn];
+            mNormals[v + 1] = (float) r[normalColumn + 1];
+            mNormals[v + 2] = (float) r[normalColumn + 2];
+            System.arraycopy(rgba, 0, mColors, (index * VERTICES_PER_MARKER + i) * 4, 4);
+            int t = (index * VERTICES_PER_MARKER + i) * 2;
+            mTexCoords[t] = uvRect[0] + CORNER_TEX_COORDS[i * 2] * (uvRect[2] - uvRect[0]);
+            mTexCoords[t + 1] = uvRect[1] + CORNER_TEX_COORDS[i * 2 + 1] * (uvRect[3] - uvRect[1]);
+        }
+        mCount++;
+        mDirty = true;
+        return index;
+    }
+
+    /**
+     * Removes the latest marker from the batch.
+     */
+    public void removeLastMarker() {
+        if (mCount > 0) {
+            mCount--;
+            collapse(mCount);
+            mDirty = true;
+        }
+    }
+
+    /**
+     * Removes all markers from the batch. The buffer capacity is kept.
+     */
+    public void clear() {
+        for (int i = 0; i < mCount; i++) {
+            collapse(i);
+        }
+        mCount = 0;
+        mDirty = true;
+    }
+
+    /**
+     * Getter function for the number of markers in the batch.
+     * @return number of markers
+     */
+    public int getMarkerCount() {
+        return mCount;
+    }
+
+    /**
+     * Uploads the changed vertex data to the GPU. New buffers are only created if the capacity has grown.
+     * NOTE: This must be called from the OpenGL render thread.
+     */
+    public void updateBuffers() {
+        if (mResized) {
+            setData(mVertices, mNormals, mTexCoords, mColors, mIndices, true);
+            mResized = false;
+            mDirty = false;
+        } else if (mDirty) {
+            upload(mVertexBuffer, mVertices);
+            upload(mNormalBuffer, mNormals);
+            upload(mColorBuffer, mColors);
+            upload(mTexCoordBuffer, mTexCoords);
+            mGeometry.changeBufferData(mGeometry.getVertexBufferInfo(), mVertexBuffer, 0);
+            mGeometry.changeBufferData(mGeometry.getNormalBufferInfo(), mNormalBuffer, 0);
+            mGeometry.changeBufferData(mGeometry.getColorBufferInfo(), mColorBuffer, 0);
+            mGeometry.changeBufferData(mGeometry.getTexCoordBufferInfo(), mTexCoordBuffer, 0);
+            mDirty = false;
+        }
+    }
+
+    /**
+     * Grows the arrays to the given capacity and keeps the existing markers.
+     * @param capacity (number of markers)
+     */
+    private void allocate(int capacity) {
+        int vertexCount = capacity * VERTICES_PER_MARKER;
+        mVertices = copyOf(mVertices, vertexCount * 3);
+        mNormals = copyOf(mNormals, vertexCount * 3);
+        mColors = copyOf(mColors, vertexCount * 4);
+        mTexCoords = copyOf(mTexCoords, vertexCount * 2);
+        mIndices = new int[capacity * INDICES_PER_MARKER];
+        for (int i = 0; i < capacity; i++) {
+            int first = i * VERTICES_PER_MARKER;
+            int n = i * INDICES_PER_MARKER;
+            mIndices[n] = first;
+            mIndices[n + 1] = first + 1;
+            mIndices[n + 2] = first + 2;
+            mIndices[n + 3] = first;
+            mIndices[n + 4] = first + 2;
+            mIndices[n + 5] = first + 3;
+        }
+        mVertexBuffer = createBuffer(mVertices.length);
+        mNormalBuffer = createBuffer(mNormals.length);
+        mColorBuffer = createBuffer(mColors.length);
+        mTexCoordBuffer = createBuffer(mTexCoords.length);
+        if (mCapacity > 0) {
+            // the old GPU buffers are replaced in updateBuffers
+            mGeometry.destroy();
+        }
+        mCapacity = capacity;
+        mResized = true;
+    }
+
+    /**
+     * Collapses the vertices of a marker slot to one point (degenerated triangles are not drawn).
+     * @param index (index of the marker)
+     */
+    private void collapse(int index) {
+        int from = index * VERTICES_PER_MARKER * 3;
+        int to = from + VERTICES_PER_MARKER * 3;
+        for (int i = from; i < to; i++) {
+            mVertices[i] = 0;
+        }
+    }
+
+    /**
+     * Copies an array into a new array with the given length.
+     * @param source (array to be copied, can be null)
+     * @param length (length of the new array)
+     * @return new array
+     */
+    private static float[] copyOf(float[] source, int length) {
+        float[] result = new float[length];
+        if (source != null) {
+            System.arraycopy(source, 0, result, 0, Math.min(source.length, length));
+        }
+        return result;
+    }
+
+    /**
+     * Creates a direct float buffer in native byte order.
+     * @param length (number of floats)
+     * @return new buffer
+     */
+    private static FloatBuffer createBuffer(int length) {
+        return ByteBuffer.allocateDirect(length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Copies an array into an upload buffer.
+     * @param buffer (upload buffer)
+     * @param data (array with the same length)
+     */
+    private static void upload(FloatBuffer buffer, float[] data) {
+        buffer.clear();
+        buffer.put(data);
+        buffer.position(0);
+    }
+}
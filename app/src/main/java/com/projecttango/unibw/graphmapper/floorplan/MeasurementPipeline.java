@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import com.google.atap.tangoservice.TangoCameraIntrinsics;
+import com.google.atap.tangoservice.TangoException;
+import com.google.atap.tangoservice.TangoPoseData;
+import com.google.atap.tangoservice.TangoXyzIjData;
+
+import android.opengl.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.projecttango.unibw.graphmapper.fitting.PlaneFitter;
+import com.projecttango.unibw.graphmapper.graph.MeasurementType;
+import com.projecttango.tangosupport.TangoSupport;
+import com.projecttango.tangosupport.TangoSupport.IntersectionPointPlaneModelPair;
+
+/**
+ * <p>Asynchronous measurement pipeline. The touch events (u, v and the RGB timestamp) are enqueued on the
+ * UI thread and the plane fitting is done on a single worker thread. So a tap does not block the UI thread
+ * or the rendering while the plane is fitted.</p>
+ *
+ * <p>The results are delivered back on the UI thread as WallMeasurements in the same order as the taps.
+ * The plane fitter and the measurement point cloud are only used by the worker thread.</p>
+ *
+ * <p>The worker uses the Tango service only between beginUse and endUse of the {@link TangoConnectionState},
+ * so a disconnect in onPause waits for a running measurement. Every tap belongs to a generation which is
+ * increased by cancelPending, so a measurement that finishes after it was cancelled is dropped.</p>
+ *
+ * @version 1.0
+ */
+public class MeasurementPipeline {
+    /** Tag of this class */
+    private static final String TAG = MeasurementPipeline.class.getSimpleName();
+
+    /**
+     * Listener for the results of the measurement pipeline. The functions are called on the UI thread.
+     */
+    public interface OnMeasurementListener {
+        /**
+         * Called when a plane was fitted successfully.
+         * @param wallMeasurement (new measurement)
+         */
+        void onMeasurement(WallMeasurement wallMeasurement);
+
+        /**
+         * Called when the plane fitting failed with an exception.
+         * @param e (TangoException or SecurityException of the Tango service)
+         */
+        void onMeasurementFailed(RuntimeException e);
+    }
+
+    /** ring buffer with the latest point clouds */
+    private PointCloudRingBuffer mPointCloudBuffer;
+    /** copy of the point cloud used by the current measurement (worker thread only) */
+    private TangoXyzIjData mMeasurementXyzIj;
+    /** plane fitting engine (worker thread only) */
+    private PlaneFitter mPlaneFitter;
+    /** intrinsic parameters of the color camera (set by the Tango thread after connecting) */
+    private volatile TangoCameraIntrinsics mIntrinsics;
+    /** connection state of the Tango service (guards the Tango calls of the worker thread) */
+    private TangoConnectionState mConnectionState;
+    /** generation of the taps, increased by cancelPending (results of older generations are dropped) */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    /** listener for the results */
+    private OnMeasurementListener mListener;
+    /** single worker thread with the queue of pending taps */
+    private ThreadPoolExecutor mExecutor;
+    /** handler to deliver the results on the UI thread */
+    private Handler mUiHandler;
+
+    /**
+     * Constructor (Creates a new measurement pipeline with its worker thread)
+     * @param pointCloudBuffer (ring buffer with the latest point clouds)
+     * @param connectionState (connection state of the Tango service)
+     * @param listener (listener for the results, called on the UI thread)
+     */
+    public MeasurementPipeline(PointCloudRingBuffer pointCloudBuffer, TangoConnectionState connectionState,
+                               OnMeasurementListener listener) {
+        mPointCloudBuffer = pointCloudBuffer;
+        mConnectionState = connectionState;
+        mMeasurementXyzIj = pointCloudBuffer.createXyzIj();
+        mPlaneFitter = new PlaneFitter();
+        mListener = listener;
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        mUiHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Setter function for the intrinsic parameters of the color camera.
+     * @param intrinsics (intrinsics of the color camera)
+     */
+    public void setIntrinsics(TangoCameraIntrinsics intrinsics) {
+        mIntrinsics = intrinsics;
+    }
+
+    /**
+     * Enqueues a new tap. The plane will be fitted on the worker thread.
+     * @param u (The u-coordinate for the user selection. This is expected to be between 0.0 and 1.0.)
+     * @param v (The v-coordinate for the user selection. This is expected to be between 0.0 and 1.0.)
+     * @param rgbTimestamp (timestamp of the RGB frame the user clicked on)
+     * @param type (type of the measurement)
+     */
+    public void enqueue(final float u, final float v, final double rgbTimestamp, final MeasurementType type) {
+        final int generation = mGeneration.get();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Don't use the service if the tap was cancelled or the service is not connected.
+                if (generation != mGeneration.get() || !mConnectionState.beginUse()) {
+                    return;
+                }
+                try {
+                    final WallMeasurement wallMeasurement = doWallMeasurement(u, v, rgbTimestamp, type);
+                    if (wallMeasurement != null) {
+                        mUiHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                // cancelPending runs on the UI thread as well, so this check can't race with it.
+                                if (generation == mGeneration.get()) {
+                                    mListener.onMeasurement(wallMeasurement);
+                                }
+                            }
+                        });
+                    }
+                } catch (final TangoException e) {
+                    postFailure(e, generation);
+                } catch (final SecurityException e) {
+                    postFailure(e, generation);
+                } finally {
+                    mConnectionState.endUse();
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes all taps that are not processed yet and drops the result of a running measurement
+     * (e.g. when the Tango service is disconnected). Called on the UI thread.
+     */
+    public void cancelPending() {
+        mGeneration.incrementAndGet();
+        mExecutor.getQueue().clear();
+    }
+
+    /**
+     * Stops the worker thread. Pending taps are dropped.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Delivers an exception of the worker thread to the listener on the UI thread (if the tap was not cancelled).
+     * @param e (exception of the Tango service)
+     * @param generation (generation of the tap)
+     */
+    private void postFailure(final RuntimeException e, final int generation) {
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration.get()) {
+                    mListener.onMeasurementFailed(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Use the plane fitting engine (or the TangoSupport library) and point cloud data to calculate the plane at the specified
+     * location in the color camera frame. This is called from the worker thread while the service is in use.
+     * @param u (The u-coordinate for the user selection. This is expected to be between 0.0 and 1.0.)
+     * @param v (The v-coordinate for the user selection. This is expected to be between 0.0 and 1.0.)
+     * @param rgbTimestamp (timestamp of the current measurement)
+     * @param type (type of the current measurement)
+     * @return new wallMeasurement object with the calculated pose or null if there wasn't a valid pose data
+     */
+    private WallMeasurement doWallMeasurement(float u, float v, double rgbTimestamp, MeasurementType type) {
+        // Use the point cloud closest to the RGB frame the user clicked on.
+        TangoXyzIjData xyzIj = mPointCloudBuffer.getClosestXyzIj(rgbTimestamp, mMeasurementXyzIj);
+        TangoCameraIntrinsics intrinsics = mIntrinsics;
+
+        if (xyzIj == null || intrinsics == null) {
+            return null;
+        }
+
+        // We need to calculate the transform between the color camera at the
+        // time the user clicked and the depth camera at the time the depth
+        // cloud was acquired.
+        TangoPoseData colorTdepthPose = TangoSupport.calculateRelativePose(
+                rgbTimestamp, TangoPoseData.COORDINATE_FRAME_CAMERA_COLOR,
+                xyzIj.timestamp, TangoPoseData.COORDINATE_FRAME_CAMERA_DEPTH);
+
+        // Perform plane fitting with the point cloud closest to the RGB frame.
+        try {
+            double[] intersectionPoint;
+            double[] planeModel;
+            if (mPlaneFitter.fitPlaneModelNearClick(xyzIj.xyz, xyzIj.xyzCount, intrinsics.width, intrinsics.height,
+                    intrinsics.fx, intrinsics.fy, intrinsics.cx, intrinsics.cy, poseToMatrix(colorTdepthPose), u, v)) {
+                intersectionPoint = mPlaneFitter.getIntersectionPoint();
+                planeModel = mPlaneFitter.getPlaneModel();
+            } else {
+                // Not enough points near the click for the own plane fitting, use the TangoSupport library.
+                IntersectionPointPlaneModelPair intersectionPointPlaneModelPair =
+                        TangoSupport.fitPlaneModelNearClick(xyzIj, intrinsics,
+                                colorTdepthPose, u, v);
+                intersectionPoint = intersectionPointPlaneModelPair.intersectionPoint;
+                planeModel = intersectionPointPlaneModelPair.planeModel;
+            }
+
+            // Get the depth camera transform at the time the plane data was acquired.
+            TangoSupport.TangoMatrixTransformData transform =
+                    TangoSupport.getMatrixTransformAtTime(xyzIj.timestamp,
+                            TangoPoseData.COORDINATE_FRAME_AREA_DESCRIPTION,
+                            TangoPoseData.COORDINATE_FRAME_CAMERA_DEPTH,
+                            TangoSupport.TANGO_SUPPORT_ENGINE_OPENGL,
+                            TangoSupport.TANGO_SUPPORT_ENGINE_TANGO);
+            if (transform.statusCode == TangoPoseData.POSE_VALID) {
+                // Update the AR object location.
+                float[] planeFitTransform = calculatePlaneTransform(
+                        intersectionPoint, planeModel, transform.matrix);
+
+                return new WallMeasurement(planeFitTransform, transform.matrix, xyzIj.timestamp, type);
+            } else {
+                Log.d(TAG, "Could not get a valid transform from depth to area description at time "
+                        + xyzIj.timestamp);
+            }
+        } catch (TangoException e) {
+            Log.d(TAG, "Failed to fit plane");
+            throw e;
+        }
+        return null;
+    }
+
+    /**
+     * Calculate the pose of the plane based on the position and normal orientation of the plane and align it with gravity.
+     * @param point (starting point of the plane)
+     * @param normal (normal vector of the plane)
+     * @param openGlTdepth (depth in openGL frame)
+     * @return pose of the plane in device frame
+     */
+    private float[] calculatePlaneTransform(double[] point, double normal[], float[] openGlTdepth) {
+        // Vector aligned to gravity.
+        float[] openGlUp = new float[]{0, 1, 0, 0};
+        float[] depthTOpenGl = new float[16];
+        Matrix.invertM(depthTOpenGl, 0, openGlTdepth, 0);
+        float[] depthUp = new float[4];
+        Matrix.multiplyMV(depthUp, 0, depthTOpenGl, 0, openGlUp, 0);
+        // Create the plane matrix transform in depth frame from a point, the plane normal and the
+        // up vector.
+        float[] depthTplane = matrixFromPointNormalUp(point, normal, depthUp);
+        float[] openGlTplane = new float[16];
+        Matrix.multiplyMM(openGlTplane, 0, openGlTdepth, 0, depthTplane, 0);
+        return openGlTplane;
+    }
+
+    /**
+     * Calculates a transformation matrix based on a point, a normal and the up gravity vector.
+     * The coordinate frame of the target transformation will be Z forward, X left, Y up.
+     * @param point (starting point)
+     * @param normal (normal vector)
+     * @param up (up gravity vector)
+     * @return transformation matrix (Note the order: x, z, y)
+     */
+    private float[] matrixFromPointNormalUp(double[] point, double[] normal, float[] up) {
+        float[] zAxis = new float[]{(float) normal[0], (float) normal[1], (float) normal[2]};
+        normalize(zAxis);
+        float[] xAxis = crossProduct(zAxis, up);
+        normalize(xAxis);
+        float[] yAxis = crossProduct(zAxis, xAxis);
+        normalize(yAxis);
+        float[] m = new float[16];
+        Matrix.setIdentityM(m, 0);
+        m[0] = xAxis[0];
+        m[1] = xAxis[1];
+        m[2] = xAxis[2];
+        m[4] = yAxis[0];
+        m[5] = yAxis[1];
+        m[6] = yAxis[2];
+        m[8] = zAxis[0];
+        m[9] = zAxis[1];
+        m[10] = zAxis[2];
+        m[12] = (float) point[0];
+        m[13] = (float) point[1];
+        m[14] = (float) point[2];
+        return m;
+    }
+
+    /**
+     * Normalize a vector.
+     * @param v (un-normalized vector)
+     */
+    private void normalize(float[] v) {
+        double norm = Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+        v[0] /= norm;
+        v[1] /= norm;
+        v[2] /= norm;
+    }
+
+    /**
+     * Cross product between two vectors following the right hand rule.
+     * @param v1 (first vector)
+     * @param v2 (second vector)
+     * @return cross product
+     */
+    private float[] crossProduct(float[] v1, float[] v2) {
+        float[] result = new float[3];
+        result[0] = v1[1] * v2[2] - v2[1] * v1[2];
+        result[1] = v1[2] * v2[0] - v2[2] * v1[0];
+        result[2] = v1[0] * v2[1] - v2[0] * v1[1];
+        return result;
+    }
+
+    /**
+     * Converts a Tango pose (translation and rotation quaternion) into a column major 4x4 transform matrix.
+     * @param pose (pose data)
+     * @return transform matrix
+     */
+    private static float[] poseToMatrix(TangoPoseData pose) {
+        double x = pose.rotation[0];
+        double y = pose.rotation[1];
+        double z = pose.rotation[2];
+        double w = pose.rotation[3];
+        float[] m = new float[16];
+        m[0] = (float) (1 - 2 * (y * y + z * z));
+        m[1] = (float) (2 * (x * y + z * w));
+        m[2] = (float) (2 * (x * z - y * w));
+        m[4] = (float) (2 * (x * y - z * w));
+        m[5] = (float) (1 - 2 * (x * x + z * z));
+        m[6] = (float) (2 * (y * z + x * w));
+        m[8] = (float) (2 * (x * z + y * w));
+        m[9] = (float) (2 * (y * z - x * w));
+        m[10] = (float) (1 - 2 * (x * x + y * y));
+        m[12] = (float) pose.translation[0];
+        m[13] = (float) pose.translation[1];
+        m[14] = (float) pose.translation[2];
+        m[15] = 1;
+        return m;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Exports plans as high resolution PNG images on a single worker thread.</p>
+ *
+ * <p>The size of the image follows from the bounding box of the plan and the chosen resolution in pixels per
+ * meter. The plan is rendered in horizontal strips into one reused bitmap and every strip is streamed into the
+ * {@link PngStripWriter}. So the memory use is bounded by the size of one strip, also for posters of whole
+ * levels. The listener is called on the UI thread when the file is written.</p>
+ *
+ * @version 1.0
+ */
+public class PlanExporter {
+    /** Default resolution of the exported plans (1 pixel per centimeter) */
+    public static final float DEFAULT_PIXELS_PER_METER = 100;
+    /** Resolutions of the exported plans the user can choose from (pixels per meter) */
+    public static final float[] PIXELS_PER_METER_CHOICES = {25, 50, 100, 200, 400};
+    /** Maximum width and height of an exported image */
+    private static final int MAX_SIZE = 32768;
+    /** Maximum memory of one strip (bitmap and pixel buffer) in bytes */
+    private static final int MAX_STRIP_BYTES = 8 * 1024 * 1024;
+    /** Maximum height of one strip */
+    private static final int MAX_STRIP_HEIGHT = 512;
+    /** Text size of the labels */
+    private static final float TEXT_SIZE = 30;
+    /** Background color of the image */
+    private static final int BACKGROUND_COLOR = 0xffffffff; //white
+
+    /**
+     * Listener for finished exports. The functions are called on the UI thread.
+     */
+    public interface OnExportListener {
+        /**
+         * Called when the image was written.
+         * @param file (written image)
+         * @param width (width of the image in pixels)
+         * @param height (height of the image in pixels)
+         */
+        void onExported(File file, int width, int height);
+
+        /**
+         * Called when the export failed.
+         * @param file (image that could not be written)
+         * @param e (cause of the failure)
+         */
+        void onExportFailed(File file, Exception e);
+    }
+
+    /** single worker thread with the queue of exports */
+    private final ThreadPoolExecutor mExecutor;
+    /** handler to deliver the results on the UI thread */
+    private final Handler mUiHandler;
+
+    /**
+     * Constructor (Creates a new exporter with its worker thread)
+     */
+    public PlanExporter() {
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        mUiHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Enqueues the export of a plan.
+     * @param hallways (hallways of the plan)
+     * @param bounds (bounding box of the plan)
+     * @param pixelsPerMeter (resolution of the image)
+     * @param showLength (signals if the length of the lines is labeled)
+     * @param showPOI (signals if the POIs are drawn)
+     * @param showNames (signals if the names are drawn)
+     * @param showObstacles (signals if the obstacles are drawn)
+     * @param file (PNG file to be written)
+     * @param listener (listener for the result, called on the UI thread)
+     */
+    public void export(List<Hallway> hallways, final BoundingBox bounds, final float pixelsPerMeter,
+                       final boolean showLength, final boolean showPOI, final boolean showNames,
+                       final boolean showObstacles, final File file, final OnExportListener listener) {
+        final List<Hallway> plan = new ArrayList<Hallway>(hallways);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final int[] size = render(plan, bounds, pixelsPerMeter, showLength, showPOI, showNames,
+                            showObstacles, file);
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onExported(file, size[0], size[1]);
+                        }
+                    });
+                } catch (final IOException e) {
+                    postFailure(listener, file, e);
+                } catch (final RuntimeException e) {
+                    postFailure(listener, file, e);
+                } catch (final OutOfMemoryError e) {
+                    postFailure(listener, file, new IOException("Not enough memory for the export", e));
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the worker thread. Pending exports are dropped.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Delivers a failed export to the listener on the UI thread.
+     * @param listener (listener of the export)
+     * @param file (image that could not be written)
+     * @param e (cause of the failure)
+     */
+    private void postFailure(final OnExportListener listener, final File file, final Exception e) {
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onExportFailed(file, e);
+            }
+        });
+    }
+
+    /**
+     * This function renders the plan strip by strip into the PNG file (worker thread).
+     * @param hallways (hallways of the plan)
+     * @param bounds (bounding box of the plan)
+     * @param pixelsPerMeter (resolution of the image, reduced if the image would be too large)
+     * @param showLength (signals if the length of the lines is labeled)
+     * @param showPOI (signals if the POIs are drawn)
+     * @param showNames (signals if the names are drawn)
+     * @param showObstacles (signals if the obstacles are drawn)
+     * @param file (PNG file to be written)
+     * @return width and height of the image
+     * @throws IOException (if the file can't be written)
+     */
+    private int[] render(List<Hallway> hallways, BoundingBox bounds, float pixelsPerMeter, boolean showLength,
+                         boolean showPOI, boolean showNames, boolean showObstacles, File file) throws IOException {
+        // Limit the resolution, so the image is not larger than MAX_SIZE in any direction.
+        float longest = Math.max(bounds.getWidth(), bounds.getDepth());
+        if (longest * pixelsPerMeter > MAX_SIZE * 0.75f) {
+            pixelsPerMeter = MAX_SIZE * 0.75f / longest;
+        }
+        int[] size = GraphBuilder.getPlanSize(bounds, pixelsPerMeter);
+        int width = size[0];
+        int height = size[1];
+        PlanGeometry geometry = new PlanGeometry(hallways, bounds, width, height,
+                showLength, showPOI, showNames, showObstacles, new LabelLayout(TEXT_SIZE));
+
+        int stripHeight = Math.max(1, Math.min(Math.min(MAX_STRIP_HEIGHT, height), MAX_STRIP_BYTES / 8 / width));
+        Bitmap strip = Bitmap.createBitmap(width, stripHeight, Bitmap.Config.ARGB_8888);
+        int[] pixels = new int[width * stripHeight];
+        Canvas canvas = new Canvas(strip);
+        Paint paint = new Paint();
+        paint.setTextSize(TEXT_SIZE);
+        paint.setAntiAlias(true);
+        PngStripWriter writer = new PngStripWriter(new BufferedOutputStream(new FileOutputStream(file)), width, height);
+        boolean written = false;
+        try {
+            for (int top = 0; top < height; top += stripHeight) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("Export interrupted");
+                }
+                int rows = Math.min(stripHeight, height - top);
+                strip.eraseColor(BACKGROUND_COLOR);
+                canvas.save();
+                canvas.translate(0, -top);
+                geometry.draw(canvas, paint);
+                canvas.restore();
+                strip.getPixels(pixels, 0, width, 0, 0, width, rows);
+                writer.writeRows(pixels, 0, width, rows);
+            }
+            writer.close();
+            written = true;
+        } finally {
+            strip.recycle();
+            if (!written) {
+                //don't leave an incomplete image
+                writer.abort();
+                file.delete();
+            }
+        }
+        return new int[]{width, height};
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.FloorTriangles;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.Marker;
+import com.projecttango.unibw.graphmapper.graph.OutlineLod;
+import com.projecttango.unibw.graphmapper.graph.Room;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Projected 2D geometry of a plan (a level or a single hallway) for one canvas size and one set of
+ * drawing options.</p>
+ *
+ * <p>All corner points are translated and scaled once into float arrays that can be passed directly to
+ * {@link Canvas#drawLines(float[], Paint)} and {@link Canvas#drawPoints(float[], Paint)}. The label strings
+ * (names and formatted lengths) are placed once with a {@link LabelLayout}, overlapping labels of lower
+ * priority are dropped. The outlines are taken from the precomputed levels of detail of the hallways that differ
+ * by less than half a pixel, so an overview of dense outlines has fewer lines and length labels. The floors are
+ * filled with the cached triangles of the hallways ({@link Hallway#getFloorTriangles()}).
+ * Drawing the plan is then only a replay of these buffers. A new geometry has to be built if the canvas size or the options change,
+ * see {@link #matches(int, int, boolean, boolean, boolean, boolean)}.</p>
+ *
+ * @version 1.0
+ */
+public class PlanGeometry {
+    /** Color of the hallway and obstacle lines and their labels */
+    public static final int LINE_COLOR = 0xff000000; //Black
+    /** Color of the rooms */
+    public static final int ROOM_COLOR = 0xfff44336; //Red
+    /** Color of the markers */
+    public static final int MARKER_COLOR = 0xffcddc39; //Lime
+    /** Color of the entrypoints */
+    public static final int ENTRYPOINT_COLOR = 0xff2196f3; //Blue
+    /** Color of the floor of the hallways */
+    public static final int FLOOR_COLOR = 0xffeeeeee; //Light grey
+    /** Stroke width of the lines */
+    public static final float LINE_WIDTH = 3;
+    /** Stroke width (size) of the POI points */
+    public static final float POINT_WIDTH = 20;
+    /** Offset of a name label to the left of its point (in pixel) */
+    private static final float NAME_OFFSET_X = 30;
+    /** Offset of a name label above its point (in pixel) */
+    private static final float NAME_OFFSET_Y = 15;
+
+    /** Width of the canvas */
+    private final int mWidth;
+    /** Height of the canvas */
+    private final int mHeight;
+    /** Signals if the length of the lines is labeled */
+    private final boolean mShowLength;
+    /** Signals if the POIs are drawn */
+    private final boolean mShowPOI;
+    /** Signals if the names are drawn */
+    private final boolean mShowNames;
+    /** Signals if the obstacles are drawn */
+    private final boolean mShowObstacles;
+    /** Center of the plan in the OpenGL frame */
+    private final float[] mPlanCenter;
+    /** Scale from meters to pixels */
+    private final float mScale;
+    /** Projected floor triangles of every hallway (x, y per vertex) */
+    private float[][] mFloorVertices;
+    /** Triangle indices of every hallway floor */
+    private short[][] mFloorIndices;
+    /** Vertex colors of the floors (FLOOR_COLOR, long enough for every hallway) */
+    private int[] mFloorColors;
+    /** Lines of the hallways and obstacles (x0, y0, x1, y1 per line) */
+    private float[] mLines;
+    /** Positions of the rooms (x, y per room) */
+    private float[] mRoomPoints;
+    /** Positions of the markers (x, y per marker) */
+    private float[] mMarkerPoints;
+    /** Positions of the entrypoints (x, y per entrypoint) */
+    private float[] mEntrypointPoints;
+    /** Text of the labels */
+    private String[] mLabels;
+    /** Positions of the labels (x, y per label) */
+    private float[] mLabelPositions;
+    /** Color of the labels */
+    private int[] mLabelColors;
+
+    /**
+     * Constructor (Projects the given hallways into a new plan geometry)
+     * @param hallways (hallways of the plan)
+     * @param bounds (bounding box of the plan)
+     * @param width (width of the canvas)
+     * @param height (height of the canvas)
+     * @param showLength (signals if the length of the lines is labeled)
+     * @param showPOI (signals if the POIs (rooms, markers, entrypoints) are drawn)
+     * @param showNames (signals if the names of the hallways and POIs are drawn)
+     * @param showObstacles (signals if the obstacles of the hallways are drawn)
+     * @param labelLayout (label placement of the calling thread, its text size must match the drawing paint)
+     */
+    public PlanGeometry(List<Hallway> hallways, BoundingBox bounds, int width, int height,
+                        boolean showLength, boolean showPOI, boolean showNames, boolean showObstacles,
+                        LabelLayout labelLayout) {
+        mWidth = width;
+        mHeight = height;
+        mShowLength = showLength;
+        mShowPOI = showPOI;
+        mShowNames = showNames;
+        mShowObstacles = showObstacles;
+        mPlanCenter = GraphBuilder.getPlanCenter(bounds);
+        mScale = GraphBuilder.getPlanScale(height, width, bounds);
+        build(hallways, labelLayout);
+    }
+
+    /**
+     * Signals if this geometry was built for the given canvas size and options.
+     * @param width (width of the canvas)
+     * @param height (height of the canvas)
+     * @param showLength (signals if the length of the lines is labeled)
+     * @param showPOI (signals if the POIs are drawn)
+     * @param showNames (signals if the names are drawn)
+     * @param showObstacles (signals if the obstacles are drawn)
+     * @return true if the geometry can be reused
+     */
+    public boolean matches(int width, int height, boolean showLength, boolean showPOI, boolean showNames, boolean showObstacles) {
+        return mWidth == width && mHeight == height && mShowLength == showLength && mShowPOI == showPOI
+                && mShowNames == showNames && mShowObstacles == showObstacles;
+    }
+
+    /**
+     * Projects the x coordinate of a point in the OpenGL frame onto the canvas.
+     * @param x (x coordinate in meters)
+     * @return x coordinate on the canvas
+     */
+    public float projectX(float x) {
+        return mWidth / 2 + (x - mPlanCenter[0]) * mScale;
+    }
+
+    /**
+     * Projects the z coordinate of a point in the OpenGL frame onto the canvas (y axis of the canvas).
+     * @param z (z coordinate in meters)
+     * @return y coordinate on the canvas
+     */
+    public float projectY(float z) {
+        return mHeight / 2 + (z - mPlanCenter[2]) * mScale;
+    }
+
+    /**
+     * Getter function for the scale from meters to pixels.
+     * @return mScale
+     */
+    public float getScale() {
+        return mScale;
+    }
+
+    /**
+     * This function draws the cached geometry on the canvas. Nothing is projected or formatted here.
+     * The paint is left with the line color and width.
+     * @param canvas (canvas where the plan is drawn)
+     * @param paint (paint used for the lines, points and texts, its text size is kept)
+     */
+    public void draw(Canvas canvas, Paint paint) {
+        for (int i = 0; i < mFloorVertices.length; i++) {
+            canvas.drawVertices(Canvas.VertexMode.TRIANGLES, mFloorVertices[i].length, mFloorVertices[i], 0, null, 0,
+                    mFloorColors, 0, mFloorIndices[i], 0, mFloorIndices[i].length, paint);
+        }
+        paint.setColor(LINE_COLOR);
+        paint.setStrokeWidth(LINE_WIDTH);
+        canvas.drawLines(mLines, paint);
+        if (mShowPOI) {
+            paint.setStrokeWidth(POINT_WIDTH);
+            paint.setColor(ROOM_COLOR);
+            canvas.drawPoints(mRoomPoints, paint);
+            paint.setColor(MARKER_COLOR);
+            canvas.drawPoints(mMarkerPoints, paint);
+            paint.setColor(ENTRYPOINT_COLOR);
+            canvas.drawPoints(mEntrypointPoints, paint);
+            paint.setStrokeWidth(LINE_WIDTH);
+        }
+        for (int i = 0; i < mLabels.length; i++) {
+            paint.setColor(mLabelColors[i]);
+            canvas.drawText(mLabels[i], mLabelPositions[2 * i], mLabelPositions[2 * i + 1], paint);
+        }
+        paint.setColor(LINE_COLOR);
+    }
+
+    /**
+     * This function projects all hallways (and optionally their obstacles and POIs) and places the labels.
+     * @param hallways (hallways of the plan)
+     * @param labels (label placement)
+     */
+    private void build(List<Hallway> hallways, LabelLayout labels) {
+        // Simplified outlines that differ by less than half a pixel at this scale
+        float tolerance = OutlineLod.getTolerance(mScale);
+        int lineCount = 0;
+        int roomCount = 0;
+        int markerCount = 0;
+        int entrypointCount = 0;
+        for (Hallway hallway : hallways) {
+            lineCount += hallway.getHallwayPoints(tolerance).size();
+            if (mShowObstacles) {
+                for (List<float[]> obstacle : hallway.getObstacles(tolerance)) {
+                    lineCount += obstacle.size();
+                }
+            }
+            if (mShowPOI) {
+                roomCount += hallway.getRooms().size();
+                markerCount += hallway.getMarkers().size();
+                entrypointCount += hallway.getConnections().size();
+            }
+        }
+        buildFloors(hallways);
+        mLines = new float[4 * lineCount];
+        mRoomPoints = new float[2 * roomCount];
+        mMarkerPoints = new float[2 * markerCount];
+        mEntrypointPoints = new float[2 * entrypointCount];
+        labels.begin();
+
+        int line = 0;
+        int room = 0;
+        int marker = 0;
+        int entrypoint = 0;
+        for (Hallway hallway : hallways) {
+            List<float[]> points = hallway.getHallwayPoints(tolerance);
+            int first = line;
+            line = addPolygon(points, line, labels);
+            if (mShowNames && !points.isEmpty()) {
+                float[] position = getHallwayNamePosition(hallway.getName(), first, line);
+                labels.add(hallway.getName(), position[0], position[1], LINE_COLOR, LabelLayout.PRIORITY_HALLWAY);
+            }
+            if (mShowObstacles) {
+                for (List<float[]> obstacle : hallway.getObstacles(tolerance)) {
+                    line = addPolygon(obstacle, line, labels);
+                }
+            }
+            if (mShowPOI) {
+                for (Room r : hallway.getRooms()) {
+                    room = addPoint(mRoomPoints, room, r.getPosition(), r.getNumber(), ROOM_COLOR,
+                            LabelLayout.PRIORITY_ROOM, labels);
+                }
+                for (Marker m : hallway.getMarkers()) {
+                    marker = addPoint(mMarkerPoints, marker, m.getPosition(), m.getName(), MARKER_COLOR,
+                            LabelLayout.PRIORITY_POI, labels);
+                }
+                for (Entrypoint e : hallway.getConnections()) {
+                    entrypoint = addPoint(mEntrypointPoints, entrypoint, e.getPositionFrom(), e.getName(), ENTRYPOINT_COLOR,
+                            LabelLayout.PRIORITY_POI, labels);
+                }
+            }
+        }
+
+        labels.place(mWidth, mHeight);
+        mLabels = labels.getTexts();
+        mLabelPositions = labels.getPositions();
+        mLabelColors = labels.getColors();
+    }
+
+    /**
+     * This function projects the cached floor triangles of the hallways. Hallways with more vertices than a
+     * short index can address are only drawn as lines.
+     * @param hallways (hallways of the plan)
+     */
+    private void buildFloors(List<Hallway> hallways) {
+        List<float[]> vertices = new ArrayList<float[]>(hallways.size());
+        List<short[]> indices = new ArrayList<short[]>(hallways.size());
+        int maxVertexCount = 0;
+        for (Hallway hallway : hallways) {
+            FloorTriangles floor = hallway.getFloorTriangles();
+            if (floor.getTriangleCount() == 0 || floor.getVertexCount() > Short.MAX_VALUE) {
+                continue;
+            }
+            float[] source = floor.getVertices();
+            float[] projected = new float[source.length];
+            for (int i = 0; i < source.length; i += 2) {
+                projected[i] = projectX(source[i]);
+                projected[i + 1] = projectY(source[i + 1]);
+            }
+            int[] sourceIndices = floor.getIndices();
+            short[] shortIndices = new short[sourceIndices.length];
+            for (int i = 0; i < sourceIndices.length; i++) {
+                shortIndices[i] = (short) sourceIndices[i];
+            }
+            vertices.add(projected);
+            indices.add(shortIndices);
+            maxVertexCount = Math.max(maxVertexCount, floor.getVertexCount());
+        }
+        mFloorVertices = vertices.toArray(new float[vertices.size()][]);
+        mFloorIndices = indices.toArray(new short[indices.size()][]);
+        mFloorColors = new int[maxVertexCount];
+        Arrays.fill(mFloorColors, FLOOR_COLOR);
+    }
+
+    /**
+     * This function adds the closed outline of a polygon (hallway or obstacle) to the lines and
+     * labels each line with its length in the middle of the line (if the length is shown).
+     * @param points (corner points of the polygon)
+     * @param offset (first free index in mLines)
+     * @param labels (label placement)
+     * @return next free index in mLines
+     */
+    private int addPolygon(List<float[]> points, int offset, LabelLayout labels) {
+        int i = offset;
+        int size = points.size();
+        for (int n = 0; n < size; n++) {
+            // Close the polygon with a line from the last to the first point.
+            float[] from = points.get(n == 0 ? size - 1 : n - 1);
+            float[] to = points.get(n);
+            float x0 = projectX(from[0]);
+            float y0 = projectY(from[2]);
+            float x1 = projectX(to[0]);
+            float y1 = projectY(to[2]);
+            mLines[i++] = x0;
+            mLines[i++] = y0;
+            mLines[i++] = x1;
+            mLines[i++] = y1;
+            if (mShowLength) {
+                // Get the length of the original unscaled plan.
+                double length = Math.sqrt((from[0] - to[0]) * (from[0] - to[0]) + (from[2] - to[2]) * (from[2] - to[2]));
+                labels.add(String.format("%.2f", length) + "m", (x0 + x1) / 2, (y0 + y1) / 2, LINE_COLOR,
+                        LabelLayout.PRIORITY_LENGTH);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * This function calculates the position of the name of a hallway. It is placed between the first
+     * and the third corner if the hallway has at least four corners, otherwise at its last corner.
+     * @param name (name of the hallway)
+     * @param first (index of the first line of the hallway in mLines)
+     * @param end (index after the last line of the hallway in mLines)
+     * @return x and y position of the label
+     */
+    private float[] getHallwayNamePosition(String name, int first, int end) {
+        float pos_x;
+        float pos_y;
+        if (end - first >= 16) {
+            // The first line closes the polygon, so the second line starts at the first corner
+            // and the third line ends at the third corner.
+            float ax = mLines[first + 4];
+            float ay = mLines[first + 5];
+            float bx = mLines[first + 10];
+            float by = mLines[first + 11];
+            pos_x = (float) (Math.abs(bx - ax) * 0.5 + Math.min(ax, bx) - (name.length() * 5));
+            pos_y = (float) (Math.abs(by - ay) * 0.5 + Math.min(ay, by) - (name.length() * 5));
+        } else {
+            pos_x = mLines[first];
+            pos_y = mLines[first + 1];
+        }
+        return new float[]{pos_x - NAME_OFFSET_X, pos_y - NAME_OFFSET_Y};
+    }
+
+    /**
+     * This function adds the projected position of a POI to the point array and its name to the labels.
+     * @param target (point array of the POI type)
+     * @param offset (first free index in the point array)
+     * @param position (position of the POI in the OpenGL frame)
+     * @param name (name of the POI)
+     * @param color (color of the POI type)
+     * @param priority (label priority of the POI type)
+     * @param labels (label placement)
+     * @return next free index in the point array
+     */
+    private int addPoint(float[] target, int offset, float[] position, String name, int color, int priority,
+                         LabelLayout labels) {
+        float x = projectX(position[0]);
+        float y = projectY(position[2]);
+        target[offset] = x;
+        target[offset + 1] = y;
+        if (mShowNames && name != null) {
+            labels.add(name, x - NAME_OFFSET_X, y - NAME_OFFSET_Y, color, priority);
+        }
+        return offset + 2;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * <p>Memory bounded LRU cache of rasterized plan tiles (UI thread only).</p>
+ *
+ * <p>A tile is identified by the plan (level or hallway), the zoom level of the tile pyramid and its
+ * column and row. The size of the cache is a fixed part of the heap of the app, the least recently
+ * drawn tiles are dropped first.</p>
+ *
+ * @version 1.0
+ */
+public class PlanTileCache {
+    /** Part of the maximum heap used for tiles */
+    private static final int HEAP_FRACTION = 8;
+    /** Tiles by their key, the size is measured in kilobytes */
+    private final LruCache<Long, Bitmap> mTiles;
+
+    /**
+     * Constructor (Creates a new empty tile cache)
+     */
+    public PlanTileCache() {
+        int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024 / HEAP_FRACTION);
+        mTiles = new LruCache<Long, Bitmap>(maxKilobytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap tile) {
+                return tile.getByteCount() / 1024;
+            }
+        };
+    }
+
+    /**
+     * This function builds the key of a tile.
+     * @param planId (id of the plan, see PlanView)
+     * @param zoom (zoom level of the tile pyramid)
+     * @param tileX (column of the tile)
+     * @param tileY (row of the tile)
+     * @return key of the tile
+     */
+    public static long key(int planId, int zoom, int tileX, int tileY) {
+        return ((long) planId << 32) | ((long) (zoom & 0xff) << 24) | ((tileX & 0xfff) << 12) | (tileY & 0xfff);
+    }
+
+    /**
+     * Getter function for a cached tile.
+     * @param key (key of the tile)
+     * @return tile or null if it is not cached
+     */
+    public Bitmap get(long key) {
+        return mTiles.get(key);
+    }
+
+    /**
+     * Adds a rasterized tile to the cache.
+     * @param key (key of the tile)
+     * @param tile (bitmap of the tile)
+     */
+    public void put(long key, Bitmap tile) {
+        mTiles.put(key, tile);
+    }
+
+    /**
+     * Removes all tiles (e.g. when the drawing options or the graph have changed).
+     */
+    public void clear() {
+        mTiles.evictAll();
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Rasterizes the tiles of a plan on a single worker thread.</p>
+ *
+ * <p>The plan is a tile pyramid: at zoom level z the plan is drawn on a virtual canvas of 2^z times the
+ * size of the view, which is cut into square tiles of {@link #TILE_SIZE} pixels. The projected geometry of
+ * every zoom level is built once on the worker thread, a tile is only a translated replay of it.
+ * Finished tiles are added to the {@link PlanTileCache} on the UI thread and the listener is notified.</p>
+ *
+ * <p>The functions of this class are called on the UI thread. Tiles of an old plan are dropped.</p>
+ *
+ * @version 1.0
+ */
+public class PlanTileRenderer {
+    /** Width and height of a tile in pixels */
+    public static final int TILE_SIZE = 256;
+    /** Highest zoom level of the tile pyramid (2^3 = 8 times the size of the view) */
+    public static final int MAX_ZOOM = 3;
+
+    /**
+     * Listener for finished tiles. Called on the UI thread.
+     */
+    public interface OnTileListener {
+        /**
+         * Called when a requested tile was added to the cache.
+         */
+        void onTileReady();
+    }
+
+    /**
+     * Immutable description of the plan to be rasterized. The projected geometries are only used by the worker thread.
+     */
+    private static class Plan {
+        /** Generation of the plan */
+        final int mGeneration;
+        /** Id of the plan in the tile cache */
+        final int mPlanId;
+        /** Hallways of the plan */
+        final List<Hallway> mHallways;
+        /** Bounding box of the plan */
+        final BoundingBox mBounds;
+        /** Width of the view */
+        final int mWidth;
+        /** Height of the view */
+        final int mHeight;
+        /** Drawing options */
+        final boolean mShowLength, mShowPOI, mShowNames, mShowObstacles;
+        /** Projected geometry of each zoom level (worker thread only, built on demand) */
+        final PlanGeometry[] mGeometries = new PlanGeometry[MAX_ZOOM + 1];
+        /** Listener of the plan */
+        final OnTileListener mListener;
+
+        Plan(int generation, int planId, List<Hallway> hallways, PlanGeometry baseGeometry, BoundingBox bounds,
+             int width, int height, boolean showLength, boolean showPOI, boolean showNames, boolean showObstacles,
+             OnTileListener listener) {
+            mGeneration = generation;
+            mPlanId = planId;
+            mHallways = new ArrayList<Hallway>(hallways);
+            mBounds = bounds;
+            mWidth = width;
+            mHeight = height;
+            mShowLength = showLength;
+            mShowPOI = showPOI;
+            mShowNames = showNames;
+            mShowObstacles = showObstacles;
+            mGeometries[0] = baseGeometry;
+            mListener = listener;
+        }
+
+        /**
+         * Getter function for the projected geometry of a zoom level (worker thread only).
+         * @param zoom (zoom level)
+         * @param labelLayout (label placement of the worker thread)
+         * @return geometry on a virtual canvas of 2^zoom times the size of the view
+         */
+        PlanGeometry getGeometry(int zoom, LabelLayout labelLayout) {
+            if (mGeometries[zoom] == null) {
+                mGeometries[zoom] = new PlanGeometry(mHallways, mBounds, mWidth << zoom, mHeight << zoom,
+                        mShowLength, mShowPOI, mShowNames, mShowObstacles, labelLayout);
+            }
+            return mGeometries[zoom];
+        }
+    }
+
+    /** cache for the finished tiles */
+    private final PlanTileCache mCache;
+    /** single worker thread with the queue of requested tiles */
+    private final ThreadPoolExecutor mExecutor;
+    /** handler to deliver the tiles on the UI thread */
+    private final Handler mUiHandler;
+    /** keys of the requested tiles that are not finished yet (UI thread only) */
+    private final Set<Long> mPending = new HashSet<Long>();
+    /** current plan (UI thread only) */
+    private Plan mPlan;
+    /** generation of the current plan (read by the worker thread to drop old tiles) */
+    private volatile int mGeneration;
+    /** text size of the labels */
+    private final float mTextSize;
+    /** label placement (worker thread only) */
+    private final LabelLayout mLabelLayout;
+
+    /**
+     * Constructor (Creates a new tile renderer with its worker thread)
+     * @param cache (cache for the finished tiles)
+     * @param textSize (text size of the labels)
+     */
+    public PlanTileRenderer(PlanTileCache cache, float textSize) {
+        mCache = cache;
+        mTextSize = textSize;
+        mLabelLayout = new LabelLayout(textSize);
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        mUiHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Sets the plan to be rasterized. All requested tiles of the previous plan are dropped.
+     * @param planId (id of the plan in the tile cache)
+     * @param hallways (hallways of the plan)
+     * @param baseGeometry (projected geometry for the size of the view, used as zoom level 0)
+     * @param bounds (bounding box of the plan)
+     * @param width (width of the view)
+     * @param height (height of the view)
+     * @param showLength (signals if the length of the lines is labeled)
+     * @param showPOI (signals if the POIs are drawn)
+     * @param showNames (signals if the names are drawn)
+     * @param showObstacles (signals if the obstacles are drawn)
+     * @param listener (listener for finished tiles)
+     */
+    public void setPlan(int planId, List<Hallway> hallways, PlanGeometry baseGeometry, BoundingBox bounds,
+                        int width, int height, boolean showLength, boolean showPOI, boolean showNames,
+                        boolean showObstacles, OnTileListener listener) {
+        mGeneration++;
+        mExecutor.getQueue().clear();
+        mPending.clear();
+        mPlan = new Plan(mGeneration, planId, hallways, baseGeometry, bounds, width, height,
+                showLength, showPOI, showNames, showObstacles, listener);
+    }
+
+    /**
+     * Signals if the given listener belongs to the current plan.
+     * @param listener (listener of a plan)
+     * @return true if tiles of this listener are rasterized
+     */
+    public boolean isCurrent(OnTileListener listener) {
+        return mPlan != null && mPlan.mListener == listener;
+    }
+
+    /**
+     * Drops all requested tiles that are not started yet. Called before the visible tiles are requested again,
+     * so tiles that were panned out of the view are not rasterized anymore.
+     */
+    public void cancelPending() {
+        mExecutor.getQueue().clear();
+        mPending.clear();
+    }
+
+    /**
+     * Requests a tile of the current plan. Nothing is done if it is already requested.
+     * @param zoom (zoom level)
+     * @param tileX (column of the tile)
+     * @param tileY (row of the tile)
+     */
+    public void request(final int zoom, final int tileX, final int tileY) {
+        final Plan plan = mPlan;
+        if (plan == null) {
+            return;
+        }
+        final long key = PlanTileCache.key(plan.mPlanId, zoom, tileX, tileY);
+        if (!mPending.add(key)) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (plan.mGeneration != mGeneration) {
+                    return;
+                }
+                final Bitmap tile = rasterize(plan, zoom, tileX, tileY);
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (plan.mGeneration == mGeneration) {
+                            mPending.remove(key);
+                            mCache.put(key, tile);
+                            plan.mListener.onTileReady();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops the worker thread. Requested tiles are dropped.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * This function draws one tile of the plan (worker thread).
+     * @param plan (plan of the tile)
+     * @param zoom (zoom level)
+     * @param tileX (column of the tile)
+     * @param tileY (row of the tile)
+     * @return new bitmap of the tile
+     */
+    private Bitmap rasterize(Plan plan, int zoom, int tileX, int tileY) {
+        PlanGeometry geometry = plan.getGeometry(zoom, mLabelLayout);
+        Bitmap tile = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(tile);
+        canvas.translate(-tileX * TILE_SIZE, -tileY * TILE_SIZE);
+        Paint paint = new Paint();
+        paint.setTextSize(mTextSize);
+        geometry.draw(canvas, paint);
+        return tile;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * <p>Streaming PNG encoder (8 bit RGB). The image is written row by row, so only the rows that are currently
+ * rendered have to be in memory, independent of the size of the image.</p>
+ *
+ * <p>The compressed rows are split into IDAT chunks of a fixed size. Call {@link #close()} after the last row
+ * to finish the image (the underlying stream is closed too).</p>
+ *
+ * @version 1.0
+ */
+public class PngStripWriter {
+    /** PNG file signature */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    /** Maximum size of an IDAT chunk */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /** Output of the PNG file */
+    private final OutputStream mOut;
+    /** Width of the image in pixels */
+    private final int mWidth;
+    /** Height of the image in pixels */
+    private final int mHeight;
+    /** Compressor of the image data */
+    private final Deflater mCompressor;
+    /** Stream of the image data, writes the IDAT chunks */
+    private final DeflaterOutputStream mDeflater;
+    /** Reused buffer of one row (filter byte and RGB) */
+    private final byte[] mRow;
+    /** Number of written rows */
+    private int mRows;
+
+    /**
+     * Constructor (Writes the PNG header for an image of the given size)
+     * @param out (output of the PNG file)
+     * @param width (width of the image in pixels)
+     * @param height (height of the image in pixels)
+     * @throws IOException (if the header can't be written)
+     */
+    public PngStripWriter(OutputStream out, int width, int height) throws IOException {
+        mOut = out;
+        mWidth = width;
+        mHeight = height;
+        mRow = new byte[1 + 3 * width];
+        mOut.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; //bit depth
+        header[9] = 2; //color type RGB
+        writeChunk("IHDR", header, header.length);
+        mCompressor = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        mDeflater = new DeflaterOutputStream(new IdatOutputStream(), mCompressor, CHUNK_SIZE);
+    }
+
+    /**
+     * Writes the next rows of the image.
+     * @param pixels (ARGB pixels of the rows, the alpha channel is ignored)
+     * @param offset (index of the first pixel)
+     * @param stride (number of pixels between the start of two rows)
+     * @param rows (number of rows to write)
+     * @throws IOException (if the rows can't be written or the image is already complete)
+     */
+    public void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        if (mRows + rows > mHeight) {
+            throw new IOException("Too many rows: " + (mRows + rows) + " > " + mHeight);
+        }
+        for (int r = 0; r < rows; r++) {
+            int start = offset + r * stride;
+            int i = 1; //filter type 0 (none)
+            for (int x = 0; x < mWidth; x++) {
+                int pixel = pixels[start + x];
+                mRow[i++] = (byte) (pixel >> 16);
+                mRow[i++] = (byte) (pixel >> 8);
+                mRow[i++] = (byte) pixel;
+            }
+            mDeflater.write(mRow);
+        }
+        mRows += rows;
+    }
+
+    /**
+     * Finishes the image and closes the output.
+     * @throws IOException (if not all rows were written or the output can't be written)
+     */
+    public void close() throws IOException {
+        try {
+            if (mRows != mHeight) {
+                throw new IOException("Missing rows: " + mRows + " of " + mHeight);
+            }
+            mDeflater.finish();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            mCompressor.end();
+            mOut.close();
+        }
+    }
+
+    /**
+     * Closes the output without finishing the image (e.g. after an error). Errors while closing are ignored.
+     */
+    public void abort() {
+        mCompressor.end();
+        try {
+            mOut.close();
+        } catch (IOException e) {
+            //the image is incomplete anyway
+        }
+    }
+
+    /**
+     * Writes a chunk with its length, type and CRC.
+     * @param type (chunk type with 4 ASCII characters)
+     * @param data (chunk data)
+     * @param length (number of bytes of the data)
+     * @throws IOException (if the chunk can't be written)
+     */
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        byte[] buffer = new byte[4];
+        putInt(buffer, 0, length);
+        mOut.write(buffer);
+        mOut.write(typeBytes);
+        mOut.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        putInt(buffer, 0, (int) crc.getValue());
+        mOut.write(buffer);
+    }
+
+    /**
+     * Stores an int in big endian byte order.
+     * @param buffer (target buffer)
+     * @param offset (index of the first byte)
+     * @param value (value to be stored)
+     */
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Stream that writes the compressed data as IDAT chunks.
+     */
+    private class IdatOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int size = Math.min(len, CHUNK_SIZE);
+                if (off == 0) {
+                    writeChunk("IDAT", b, size);
+                } else {
+                    byte[] part = new byte[size];
+                    System.arraycopy(b, off, part, 0, size);
+                    writeChunk("IDAT", part, size);
+                }
+                off += size;
+                len -= size;
+            }
+        }
+    }
+}
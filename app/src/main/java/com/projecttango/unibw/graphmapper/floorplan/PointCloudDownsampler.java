@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import com.google.atap.tangoservice.TangoXyzIjData;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>Downsampling stage for the incoming point clouds. It is placed between the Tango callback and the
+ * point cloud manager, so plane fitting and any later point cloud processing work on a bounded number of points.</p>
+ *
+ * <p>The points are first merged in a voxel grid (one centroid per voxel). If there are still more voxels
+ * than the point budget, only every n-th voxel is kept (stride). With a voxel size of 0 only the stride
+ * is used.</p>
+ *
+ * <p>All buffers (hash table, accumulators and the output buffer) are primitive arrays which are reused for
+ * every point cloud, so there is no allocation per point. The returned point cloud object is also reused
+ * and only valid until the next call. One object must only be used by one thread (the Tango callback thread).</p>
+ *
+ * @version 1.0
+ */
+public class PointCloudDownsampler {
+    /** Default edge length of a voxel (in meters) */
+    public static final float DEFAULT_VOXEL_SIZE = 0.02f;
+    /** Default maximum number of points of a downsampled point cloud */
+    public static final int DEFAULT_MAX_POINTS = 6000;
+    /** Offset to store negative voxel indices in 21 bits */
+    private static final long KEY_OFFSET = 1 << 20;
+    /** Mask of 21 bits for one voxel index */
+    private static final long KEY_MASK = (1 << 21) - 1;
+
+    /** Edge length of a voxel (0 for stride only) */
+    private float mVoxelSize;
+    /** Maximum number of points of a downsampled point cloud */
+    private int mMaxPoints;
+
+    /** Open addressing hash table: voxel keys */
+    private long[] mKeys = new long[0];
+    /** Open addressing hash table: accumulator index of each key */
+    private int[] mSlots = new int[0];
+    /** Open addressing hash table: generation of each entry (entries of older clouds count as empty) */
+    private int[] mGenerations = new int[0];
+    /** Current generation (incremented for every point cloud) */
+    private int mGeneration;
+    /** Sum of the x coordinates per voxel */
+    private float[] mSumX = new float[0];
+    /** Sum of the y coordinates per voxel */
+    private float[] mSumY = new float[0];
+    /** Sum of the z coordinates per voxel */
+    private float[] mSumZ = new float[0];
+    /** Number of points per voxel */
+    private int[] mCounts = new int[0];
+    /** Copy of the input points */
+    private float[] mInput = new float[0];
+
+    /** Reused output buffer (direct, like the buffers of the Tango service) */
+    private FloatBuffer mOutputBuffer;
+    /** Reused output point cloud */
+    private TangoXyzIjData mOutput = new TangoXyzIjData();
+
+    /**
+     * Constructor (Creates a new downsampler with the default settings)
+     */
+    public PointCloudDownsampler() {
+        this(DEFAULT_VOXEL_SIZE, DEFAULT_MAX_POINTS);
+    }
+
+    /**
+     * Constructor (Creates a new downsampler with the given settings)
+     * @param voxelSize (edge length of a voxel in meters, 0 for stride only)
+     * @param maxPoints (maximum number of points of a downsampled point cloud)
+     */
+    public PointCloudDownsampler(float voxelSize, int maxPoints) {
+        mVoxelSize = voxelSize;
+        mMaxPoints = maxPoints;
+        mOutputBuffer = ByteBuffer.allocateDirect(3 * maxPoints * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Setter function for the edge length of a voxel.
+     * @param voxelSize (edge length in meters, 0 for stride only)
+     */
+    public void setVoxelSize(float voxelSize) {
+        mVoxelSize = voxelSize;
+    }
+
+    /**
+     * Getter function for the edge length of a voxel.
+     * @return mVoxelSize
+     */
+    public float getVoxelSize() {
+        return mVoxelSize;
+    }
+
+    /**
+     * Getter function for the maximum number of points of a downsampled point cloud.
+     * @return mMaxPoints
+     */
+    public int getMaxPoints() {
+        return mMaxPoints;
+    }
+
+    /**
+     * Downsamples a point cloud. The ij data of the input is not copied.
+     * @param xyzIj (point cloud from the Tango callback)
+     * @return downsampled point cloud (reused object, only valid until the next call)
+     */
+    public TangoXyzIjData downsample(TangoXyzIjData xyzIj) {
+        int pointCount = xyzIj.xyzCount;
+        int length = 3 * pointCount;
+        if (mInput.length < length) {
+            mInput = new float[length];
+        }
+        // Use a duplicate so the position of the Tango buffer is not changed.
+        FloatBuffer buffer = xyzIj.xyz.duplicate();
+        buffer.position(0);
+        buffer.get(mInput, 0, length);
+
+        int count;
+        float[] points;
+        if (mVoxelSize > 0) {
+            count = voxelGrid(pointCount);
+            points = null;
+        } else {
+            count = pointCount;
+            points = mInput;
+        }
+
+        // Keep every n-th point (or voxel) if the budget is exceeded.
+        int stride = (count + mMaxPoints - 1) / mMaxPoints;
+        if (stride < 1) {
+            stride = 1;
+        }
+        mOutputBuffer.clear();
+        int outputCount = 0;
+        for (int i = 0; i < count && outputCount < mMaxPoints; i += stride) {
+            if (points != null) {
+                mOutputBuffer.put(points[3 * i]);
+                mOutputBuffer.put(points[3 * i + 1]);
+                mOutputBuffer.put(points[3 * i + 2]);
+            } else {
+                float n = mCounts[i];
+                mOutputBuffer.put(mSumX[i] / n);
+                mOutputBuffer.put(mSumY[i] / n);
+                mOutputBuffer.put(mSumZ[i] / n);
+            }
+            outputCount++;
+        }
+        mOutputBuffer.flip();
+
+        mOutput.xyz = mOutputBuffer;
+        mOutput.xyzCount = outputCount;
+        mOutput.timestamp = xyzIj.timestamp;
+        mOutput.ij = null;
+        mOutput.ijRows = 0;
+        mOutput.ijCols = 0;
+        return mOutput;
+    }
+
+    /**
+     * Merges all points of mInput into voxels. The voxels are stored in the accumulator arrays.
+     * @param pointCount (number of points in mInput)
+     * @return number of voxels
+     */
+    private int voxelGrid(int pointCount) {
+        ensureCapacity(pointCount);
+        mGeneration++;
+        if (mGeneration == 0) {
+            // Overflow: all old entries must be cleared once.
+            Arrays.fill(mGenerations, 0);
+            mGeneration = 1;
+        }
+        int mask = mKeys.length - 1;
+        float inverseSize = 1.0f / mVoxelSize;
+        int voxelCount = 0;
+        for (int i = 0; i < pointCount; i++) {
+            float x = mInput[3 * i];
+            float y = mInput[3 * i + 1];
+            float z = mInput[3 * i + 2];
+            long key = ((((long) Math.floor(x * inverseSize) + KEY_OFFSET) & KEY_MASK) << 42)
+                    | ((((long) Math.floor(y * inverseSize) + KEY_OFFSET) & KEY_MASK) << 21)
+                    | (((long) Math.floor(z * inverseSize) + KEY_OFFSET) & KEY_MASK);
+            int hash = (int) (key ^ (key >>> 32));
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            int index = hash & mask;
+            while (true) {
+                if (mGenerations[index] != mGeneration) {
+                    // New voxel
+                    mGenerations[index] = mGeneration;
+                    mKeys[index] = key;
+                    mSlots[index] = voxelCount;
+                    mSumX[voxelCount] = x;
+                    mSumY[voxelCount] = y;
+                    mSumZ[voxelCount] = z;
+                    mCounts[voxelCount] = 1;
+                    voxelCount++;
+                    break;
+                } else if (mKeys[index] == key) {
+                    // Existing voxel
+                    int slot = mSlots[index];
+                    mSumX[slot] += x;
+                    mSumY[slot] += y;
+                    mSumZ[slot] += z;
+                    mCounts[slot]++;
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+        return voxelCount;
+    }
+
+    /**
+     * Grows the hash table and the accumulators if a point cloud has more points than before.
+     * @param pointCount (number of points of the current point cloud)
+     */
+    private void ensureCapacity(int pointCount) {
+        if (mSumX.length < pointCount) {
+            mSumX = new float[pointCount];
+            mSumY = new float[pointCount];
+            mSumZ = new float[pointCount];
+            mCounts = new int[pointCount];
+        }
+        // The hash table has at least twice the size of the point cloud (load factor <= 0.5).
+        int capacity = Integer.highestOneBit(Math.max(pointCount, 1)) << 2;
+        if (mKeys.length < capacity) {
+            mKeys = new long[capacity];
+            mSlots = new int[capacity];
+            mGenerations = new int[capacity];
+            mGeneration = 0;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import com.google.atap.tangoservice.TangoXyzIjData;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * <p>Ring buffer of the most recent point clouds, indexed by their timestamps.
+ * A measurement can pick the point cloud that is closest to the timestamp of the RGB frame the user tapped on,
+ * instead of always using the latest point cloud.</p>
+ *
+ * <p>Every slot is a preallocated direct buffer, so adding a point cloud is only a copy of the points.
+ * The point clouds are written by the Tango callback thread and read by the measurement, so the access
+ * is synchronized. The reader gets a copy of the point cloud, so it can work on it without holding the lock.</p>
+ *
+ * @version 1.0
+ */
+public class PointCloudRingBuffer {
+    /** Default number of point clouds kept in the buffer (about 1.5 seconds with 5 Hz depth data) */
+    public static final int DEFAULT_CAPACITY = 8;
+
+    /** Maximum number of points per point cloud */
+    private int mMaxPoints;
+    /** Point buffers of the slots */
+    private FloatBuffer[] mBuffers;
+    /** Number of points of each slot */
+    private int[] mCounts;
+    /** Timestamps of each slot */
+    private double[] mTimestamps;
+    /** Index of the next slot to be written */
+    private int mNext;
+    /** Number of filled slots */
+    private int mSize;
+
+    /**
+     * Constructor (Creates a new ring buffer with the default capacity)
+     * @param maxPoints (maximum number of points per point cloud, more points are cut off)
+     */
+    public PointCloudRingBuffer(int maxPoints) {
+        this(DEFAULT_CAPACITY, maxPoints);
+    }
+
+    /**
+     * Constructor (Creates a new ring buffer and allocates all slots)
+     * @param capacity (number of point clouds kept in the buffer)
+     * @param maxPoints (maximum number of points per point cloud, more points are cut off)
+     */
+    public PointCloudRingBuffer(int capacity, int maxPoints) {
+        mMaxPoints = maxPoints;
+        mBuffers = new FloatBuffer[capacity];
+        mCounts = new int[capacity];
+        mTimestamps = new double[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mBuffers[i] = allocate(maxPoints);
+        }
+    }
+
+    /**
+     * Creates a point cloud object with a buffer that is large enough for every point cloud of this ring buffer.
+     * It can be used as target of the getClosestXyzIj function.
+     * @return new point cloud object
+     */
+    public TangoXyzIjData createXyzIj() {
+        TangoXyzIjData xyzIj = new TangoXyzIjData();
+        xyzIj.xyz = allocate(mMaxPoints);
+        xyzIj.xyzCount = 0;
+        return xyzIj;
+    }
+
+    /**
+     * Adds a new point cloud to the buffer. The oldest point cloud will be overwritten if the buffer is full.
+     * @param xyzIj (point cloud from the Tango callback)
+     */
+    public synchronized void updateXyzIj(TangoXyzIjData xyzIj) {
+        int count = Math.min(xyzIj.xyzCount, mMaxPoints);
+        FloatBuffer source = xyzIj.xyz.duplicate();
+        source.position(0);
+        source.limit(3 * count);
+        FloatBuffer target = mBuffers[mNext];
+        target.clear();
+        target.put(source);
+        target.flip();
+        mCounts[mNext] = count;
+        mTimestamps[mNext] = xyzIj.timestamp;
+        mNext = (mNext + 1) % mBuffers.length;
+        if (mSize < mBuffers.length) {
+            mSize++;
+        }
+    }
+
+    /**
+     * Copies the point cloud with the timestamp closest to the given timestamp into the target object.
+     * @param timestamp (timestamp of the measurement, e.g. the RGB timestamp)
+     * @param target (point cloud object created with createXyzIj)
+     * @return target or null if there is no point cloud in the buffer
+     */
+    public synchronized TangoXyzIjData getClosestXyzIj(double timestamp, TangoXyzIjData target) {
+        if (mSize == 0) {
+            return null;
+        }
+        int best = -1;
+        double bestDifference = Double.MAX_VALUE;
+        for (int i = 0; i < mSize; i++) {
+            double difference = Math.abs(mTimestamps[i] - timestamp);
+            if (difference < bestDifference) {
+                bestDifference = difference;
+                best = i;
+            }
+        }
+        FloatBuffer source = mBuffers[best].duplicate();
+        source.position(0);
+        target.xyz.clear();
+        target.xyz.put(source);
+        target.xyz.flip();
+        target.xyzCount = mCounts[best];
+        target.timestamp = mTimestamps[best];
+        return target;
+    }
+
+    /**
+     * Getter function for the latest point cloud (copy).
+     * @param target (point cloud object created with createXyzIj)
+     * @return target or null if there is no point cloud in the buffer
+     */
+    public synchronized TangoXyzIjData getLatestXyzIj(TangoXyzIjData target) {
+        return getClosestXyzIj(getNewestTimestamp(), target);
+    }
+
+    /**
+     * Getter function for the timestamp of the newest point cloud in the buffer.
+     * @return timestamp (0 if the buffer is empty)
+     */
+    public synchronized double getNewestTimestamp() {
+        if (mSize == 0) {
+            return 0;
+        }
+        return mTimestamps[(mNext - 1 + mBuffers.length) % mBuffers.length];
+    }
+
+    /**
+     * Getter function for the timestamp of the oldest point cloud in the buffer.
+     * @return timestamp (0 if the buffer is empty)
+     */
+    public synchronized double getOldestTimestamp() {
+        if (mSize == 0) {
+            return 0;
+        }
+        return mTimestamps[(mNext - mSize + mBuffers.length) % mBuffers.length];
+    }
+
+    /**
+     * Returns how long a point cloud stays valid in the buffer before it is overwritten.
+     * This is the time span between the oldest and the newest point cloud in the buffer.
+     * A measurement with an older timestamp will get the oldest point cloud.
+     * @return time span in seconds (0 if there are less than two point clouds)
+     */
+    public synchronized double getValidDuration() {
+        if (mSize < 2) {
+            return 0;
+        }
+        return getNewestTimestamp() - getOldestTimestamp();
+    }
+
+    /**
+     * Allocates a direct buffer for the given number of points.
+     * @param maxPoints (maximum number of points)
+     * @return new direct float buffer
+     */
+    private static FloatBuffer allocate(int maxPoints) {
+        return ByteBuffer.allocateDirect(3 * maxPoints * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.view.View;
+
+/**
+ * <p>Transparent layer above the PlanView that shows the current position and heading of the user.</p>
+ *
+ * <p>While the view is attached it reads the latest device pose from the {@link FrameState} up to 30 times
+ * per second. The pose is published by the pose callbacks of the Tango service (area description to device),
+ * so it is live although the AR view and its render loop are gone in the draw view. If the pose has changed, only the rectangle around the old
+ * and the new position is invalidated, so the plan below is not drawn again. The position is projected with
+ * the {@link PlanGeometry} of the plan and the zoom and pan of the plan view, nothing is drawn until the plan
+ * was drawn once.</p>
+ *
+ * <p>The heading is the forward direction of the device (negative z axis in the OpenGL frame)
+ * projected onto the floor. If no new pose arrives for a second (e.g. the tracking is lost), the last
+ * position is drawn in gray.</p>
+ *
+ * @version 1.0
+ */
+public class PositionOverlayView extends View {
+    /** Update interval (30 Hz) in milliseconds */
+    private static final long UPDATE_INTERVAL_MS = 33;
+    /** Color of the position and the arrow */
+    private static final int POSITION_COLOR = 0xffff9800; //orange
+    /** Color of the last position if there is no new pose */
+    private static final int STALE_COLOR = 0xff9e9e9e; //gray
+    /** Time without a new pose after which the position is drawn as stale */
+    private static final long STALE_MS = 1000;
+    /** Radius of the position dot in pixels */
+    private static final float POSITION_RADIUS = 7;
+    /** Length of the orientation arrow in pixels */
+    private static final float ARROW_LENGTH = 40;
+    /** Length of the arrow head lines in pixels */
+    private static final float ARROW_HEAD = 12;
+    /** Stroke width of the arrow */
+    private static final float ARROW_WIDTH = 4;
+    /** Minimum horizontal length of the forward vector to draw the arrow (device not pointing up or down) */
+    private static final float MIN_HEADING = 0.1f;
+    /** Half size of the dirty rectangle around a position */
+    private static final int EXTENT = (int) Math.ceil(ARROW_LENGTH + ARROW_WIDTH) + 1;
+
+    /** Pose source */
+    private final FrameState mFrameState;
+    /** Color and stroke settings */
+    private final Paint mPaint = new Paint();
+    /** Projection of the plan below (null until the plan was drawn) */
+    private PlanGeometry mGeometry;
+    /** Reused buffer for the translation */
+    private final float[] mTranslation = new float[3];
+    /** Reused buffer for the rotation */
+    private final float[] mRotation = new float[4];
+    /** Timestamp of the latest shown pose */
+    private double mPoseTimestamp;
+    /** Timestamp of the latest received pose (independent of the projection) */
+    private double mLatestPoseTimestamp;
+    /** Uptime when the latest pose was received in milliseconds */
+    private long mLatestPoseTime;
+    /** Signals if the shown position is older than STALE_MS */
+    private boolean mStale;
+    /** Signals if a position is shown */
+    private boolean mHasPosition;
+    /** Position on the canvas */
+    private float mX;
+    /** Position on the canvas */
+    private float mY;
+    /** Signals if the arrow is drawn */
+    private boolean mHasHeading;
+    /** Heading on the canvas (unit vector) */
+    private float mDirX;
+    /** Heading on the canvas (unit vector) */
+    private float mDirY;
+    /** Zoom factor of the plan view */
+    private float mViewZoom = 1;
+    /** Horizontal pan of the plan view */
+    private float mViewPanX;
+    /** Vertical pan of the plan view */
+    private float mViewPanY;
+    /** Reused dirty rectangle */
+    private final Rect mDirty = new Rect();
+
+    /** Periodic update while the view is attached */
+    private final Runnable mUpdate = new Runnable() {
+        @Override
+        public void run() {
+            update();
+            postDelayed(this, UPDATE_INTERVAL_MS);
+        }
+    };
+
+    /**
+     * Constructor (Creates a new position layer)
+     * @param context (context / activity)
+     * @param frameState (state with the latest device pose of the pose callbacks)
+     */
+    public PositionOverlayView(Context context, FrameState frameState) {
+        super(context);
+        mFrameState = frameState;
+        mPaint.setStrokeWidth(ARROW_WIDTH);
+        mPaint.setAntiAlias(true);
+    }
+
+    /**
+     * Setter function for the projection of the plan. Called by the plan every time its geometry was rebuilt.
+     * @param geometry (projected plan geometry)
+     */
+    public void setGeometry(PlanGeometry geometry) {
+        if (geometry != mGeometry) {
+            mGeometry = geometry;
+            mPoseTimestamp = 0; //project the latest pose again
+            invalidate();
+        }
+    }
+
+    /**
+     * Setter function for the zoom and the pan of the plan view. Called by the plan every time it is zoomed or panned.
+     * @param zoom (zoom factor of the plan view)
+     * @param panX (horizontal pan in pixels of the zoomed plan)
+     * @param panY (vertical pan in pixels of the zoomed plan)
+     */
+    public void setViewTransform(float zoom, float panX, float panY) {
+        mViewZoom = zoom;
+        mViewPanX = panX;
+        mViewPanY = panY;
+        mPoseTimestamp = 0; //project the latest pose again
+        update();
+        invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        post(mUpdate);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(mUpdate);
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * This function reads the latest pose and invalidates the old and the new position if the pose has changed
+     * or if the position became stale.
+     */
+    private void update() {
+        if (mGeometry == null) {
+            return;
+        }
+        double timestamp = mFrameState.readPose(mTranslation, mRotation);
+        long now = SystemClock.uptimeMillis();
+        if (timestamp != mLatestPoseTimestamp) {
+            mLatestPoseTimestamp = timestamp;
+            mLatestPoseTime = now;
+        }
+        boolean stale = now - mLatestPoseTime > STALE_MS;
+        if (stale != mStale) {
+            mStale = stale;
+            if (mHasPosition) {
+                invalidate((int) mX - EXTENT, (int) mY - EXTENT, (int) mX + EXTENT, (int) mY + EXTENT);
+            }
+        }
+        if (timestamp <= 0 || timestamp == mPoseTimestamp) {
+            return;
+        }
+        mPoseTimestamp = timestamp;
+        float x = mGeometry.projectX(mTranslation[0]) * mViewZoom - mViewPanX;
+        float y = mGeometry.projectY(mTranslation[2]) * mViewZoom - mViewPanY;
+        // Forward direction of the camera is the rotated negative z axis.
+        float qx = mRotation[0];
+        float qy = mRotation[1];
+        float qz = mRotation[2];
+        float qw = mRotation[3];
+        float forwardX = -2 * (qx * qz + qw * qy);
+        float forwardZ = -(1 - 2 * (qx * qx + qy * qy));
+        float length = (float) Math.sqrt(forwardX * forwardX + forwardZ * forwardZ);
+        boolean hasHeading = length > MIN_HEADING;
+        float dirX = hasHeading ? forwardX / length : 0;
+        float dirY = hasHeading ? forwardZ / length : 0;
+
+        if (mHasPosition && Math.abs(x - mX) < 0.5f && Math.abs(y - mY) < 0.5f && hasHeading == mHasHeading
+                && Math.abs(dirX - mDirX) < 0.01f && Math.abs(dirY - mDirY) < 0.01f) {
+            return; //no visible change
+        }
+        if (mHasPosition) {
+            mDirty.set((int) mX - EXTENT, (int) mY - EXTENT, (int) mX + EXTENT, (int) mY + EXTENT);
+            mDirty.union((int) x - EXTENT, (int) y - EXTENT, (int) x + EXTENT, (int) y + EXTENT);
+        } else {
+            mDirty.set((int) x - EXTENT, (int) y - EXTENT, (int) x + EXTENT, (int) y + EXTENT);
+        }
+        mX = x;
+        mY = y;
+        mHasHeading = hasHeading;
+        mDirX = dirX;
+        mDirY = dirY;
+        mHasPosition = true;
+        invalidate(mDirty);
+    }
+
+    /**
+     * This function draws the position as a dot and the heading as an arrow.
+     * @param canvas (canvas of the layer)
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (!mHasPosition || mGeometry == null) {
+            return;
+        }
+        mPaint.setColor(mStale ? STALE_COLOR : POSITION_COLOR);
+        canvas.drawCircle(mX, mY, POSITION_RADIUS, mPaint);
+        if (mHasHeading) {
+            float tipX = mX + mDirX * ARROW_LENGTH;
+            float tipY = mY + mDirY * ARROW_LENGTH;
+            canvas.drawLine(mX, mY, tipX, tipY, mPaint);
+            // Two head lines, 30 degrees to each side of the shaft.
+            float backX = -mDirX * ARROW_HEAD * 0.866f;
+            float backY = -mDirY * ARROW_HEAD * 0.866f;
+            float sideX = -mDirY * ARROW_HEAD * 0.5f;
+            float sideY = mDirX * ARROW_HEAD * 0.5f;
+            canvas.drawLine(tipX, tipY, tipX + backX + sideX, tipY + backY + sideY, mPaint);
+            canvas.drawLine(tipX, tipY, tipX + backX - sideX, tipY + backY - sideY, mPaint);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import com.projecttango.rajawali.Pose;
+import com.projecttango.unibw.graphmapper.graph.MeasurementType;
+
+/**
+ * <p>Typed command from the UI thread to the OpenGL render thread (see RenderCommandQueue).</p>
+ *
+ * <p>Commands are immutable. The undo and clear commands have no payload and are shared instances.</p>
+ *
+ * @version 1.0
+ */
+public class RenderCommand {
+    /**
+     * Type of a render command.
+     */
+    public enum Type {
+        /** Add a marker for a new measurement */
+        ADD,
+        /** Remove the marker of the latest measurement */
+        UNDO,
+        /** Remove all markers */
+        CLEAR,
+        /** Add or replace the walls of a finished hallway */
+        HALLWAY
+    }
+
+    /** Shared undo command */
+    public static final RenderCommand UNDO = new RenderCommand(Type.UNDO, null, null, 0, false, null);
+    /** Shared clear command */
+    public static final RenderCommand CLEAR = new RenderCommand(Type.CLEAR, null, null, 0, false, null);
+
+    /** Type of the command */
+    private final Type mType;
+    /** Pose of the new marker (only ADD) */
+    private final Pose mPose;
+    /** Measurement type of the new marker, selects its icon (only ADD) */
+    private final MeasurementType mMeasurementType;
+    /** Color of the new marker (only ADD) */
+    private final int mColor;
+    /** Signals if the new marker is placed on the ground (only ADD) */
+    private final boolean mOnGround;
+    /** Extruded walls of the hallway (only HALLWAY) */
+    private final WallMeshBuilder.HallwayWalls mWalls;
+
+    /**
+     * Constructor (Creates a new render command)
+     * @param type (type of the command)
+     * @param pose (pose of the new marker)
+     * @param measurementType (measurement type of the new marker)
+     * @param color (color of the new marker)
+     * @param onGround (if true the new marker is placed on the ground)
+     * @param walls (extruded walls of a hallway)
+     */
+    private RenderCommand(Type type, Pose pose, MeasurementType measurementType, int color, boolean onGround, WallMeshBuilder.HallwayWalls walls) {
+        mType = type;
+        mPose = pose;
+        mMeasurementType = measurementType;
+        mColor = color;
+        mOnGround = onGround;
+        mWalls = walls;
+    }
+
+    /**
+     * Creates a command which adds a marker for a new measurement.
+     * @param pose (pose of the measurement)
+     * @param measurementType (type of the measurement)
+     * @param color (color of the measurement type)
+     * @param onGround (if true the marker is placed on the ground)
+     * @return new ADD command
+     */
+    public static RenderCommand add(Pose pose, MeasurementType measurementType, int color, boolean onGround) {
+        return new RenderCommand(Type.ADD, pose, measurementType, color, onGround, null);
+    }
+
+    /**
+     * Creates a command which adds or replaces the walls of a finished hallway.
+     * @param walls (extruded walls of the hallway)
+     * @return new HALLWAY command
+     */
+    public static RenderCommand hallway(WallMeshBuilder.HallwayWalls walls) {
+        return new RenderCommand(Type.HALLWAY, null, null, 0, false, walls);
+    }
+
+    /**
+     * Getter function for the type of the command.
+     * @return mType
+     */
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * Getter function for the pose of the new marker.
+     * @return mPose (null if it is not an ADD command)
+     */
+    public Pose getPose() {
+        return mPose;
+    }
+
+    /**
+     * Getter function for the measurement type of the new marker.
+     * @return mMeasurementType (null if it is not an ADD command)
+     */
+    public MeasurementType getMeasurementType() {
+        return mMeasurementType;
+    }
+
+    /**
+     * Getter function for the color of the new marker.
+     * @return mColor
+     */
+    public int getColor() {
+        return mColor;
+    }
+
+    /**
+     * Signals if the new marker is placed on the ground.
+     * @return mOnGround
+     */
+    public boolean isOnGround() {
+        return mOnGround;
+    }
+
+    /**
+     * Getter function for the extruded walls of the hallway.
+     * @return mWalls (null if it is not a HALLWAY command)
+     */
+    public WallMeshBuilder.HallwayWalls getWalls() {
+        return mWalls;
+    }
+}
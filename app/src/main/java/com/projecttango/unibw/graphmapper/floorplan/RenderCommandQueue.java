@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Bounded lock-free single-producer/single-consumer queue of render commands.</p>
+ *
+ * <p>The UI thread is the only producer and the OpenGL render thread is the only consumer.
+ * Neither thread ever blocks: the producer publishes a command with an ordered write of the tail index
+ * and the consumer frees a slot with an ordered write of the head index.</p>
+ *
+ * <p>Commands which must not be lost (put) are kept in an unbounded lock-free overflow queue when the ring buffer
+ * is full. As long as the overflow queue has commands, all new commands go there as well and offer fails,
+ * so the consumer always reads the commands in the order they were added.</p>
+ *
+ * <p>NOTE: offer must only be called from one thread and poll must only be called from one (other) thread.</p>
+ *
+ * @version 1.0
+ */
+public class RenderCommandQueue {
+    /** Default number of commands the queue can hold */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /** Ring buffer of the commands */
+    private final RenderCommand[] mBuffer;
+    /** Mask to map an index to a slot of the ring buffer */
+    private final int mMask;
+    /** Index of the next command to be read (written by the consumer only) */
+    private final AtomicLong mHead = new AtomicLong();
+    /** Index of the next free slot (written by the producer only) */
+    private final AtomicLong mTail = new AtomicLong();
+    /** Commands added while the ring buffer was full (only used by put, read after the ring buffer) */
+    private final ConcurrentLinkedQueue<RenderCommand> mOverflow = new ConcurrentLinkedQueue<RenderCommand>();
+
+    /**
+     * Constructor (Creates a new queue with the default capacity)
+     */
+    public RenderCommandQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor (Creates a new queue)
+     * @param capacity (minimum number of commands the queue can hold, rounded up to a power of two)
+     */
+    public RenderCommandQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mBuffer = new RenderCommand[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * Adds a command at the end of the queue (producer thread only).
+     * @param command (command to be added)
+     * @return false if the queue is full and the command was not added
+     */
+    public boolean offer(RenderCommand command) {
+        if (!mOverflow.isEmpty()) {
+            return false; //the command would overtake the commands in the overflow queue
+        }
+        long tail = mTail.get();
+        if (tail - mHead.get() == mBuffer.length) {
+            return false;
+        }
+        mBuffer[(int) (tail & mMask)] = command;
+        mTail.lazySet(tail + 1); //publish the command
+        return true;
+    }
+
+    /**
+     * Adds a command at the end of the queue, also if the ring buffer is full (producer thread only).
+     * Only the overflow case allocates.
+     * @param command (command to be added)
+     */
+    public void put(RenderCommand command) {
+        if (!offer(command)) {
+            mOverflow.add(command);
+        }
+    }
+
+    /**
+     * Removes the first command of the queue (consumer thread only).
+     * @return first command or null if the queue is empty
+     */
+    public RenderCommand poll() {
+        long head = mHead.get();
+        if (head == mTail.get()) {
+            return mOverflow.poll(); //older commands are all in the ring buffer
+        }
+        int slot = (int) (head & mMask);
+        RenderCommand command = mBuffer[slot];
+        mBuffer[slot] = null;
+        mHead.lazySet(head + 1); //free the slot
+        return command;
+    }
+
+    /**
+     * Signals if the queue is empty. The result is only a snapshot if it is called by the producer.
+     * @return true if there is no command
+     */
+    public boolean isEmpty() {
+        return mHead.get() == mTail.get() && mOverflow.isEmpty();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Connection state of the Tango service, shared by the UI thread, the Tango connect thread, the OpenGL thread
+ * and the worker threads which use the service.</p>
+ *
+ * <p>The state replaces the activity monitor. The OpenGL thread marks the use of the service for every frame
+ * (beginUse/endUse) and never waits, the measurement worker does the same for every measurement. Only a disconnect waits until the current frame has released the service.
+ * Every connection attempt gets a new generation, so a connect thread that finishes after the activity was paused
+ * (and maybe resumed again) detects that its attempt was cancelled.</p>
+ *
+ * <p>The state and the generation are stored together in one atomic value (generation * 4 + state).</p>
+ *
+ * @version 1.0
+ */
+public class TangoConnectionState {
+    /** The service is not connected */
+    private static final int DISCONNECTED = 0;
+    /** The service is being connected */
+    private static final int CONNECTING = 1;
+    /** The service is connected and can be used */
+    private static final int CONNECTED = 2;
+    /** The service is being disconnected */
+    private static final int DISCONNECTING = 3;
+    /** Current state and generation */
+    private final AtomicLong mState = new AtomicLong(DISCONNECTED);
+    /** Number of threads which are using the service at the moment */
+    private final AtomicInteger mUsers = new AtomicInteger();
+
+    /**
+     * Starts a new connection attempt if the service is disconnected.
+     * @return generation of the new attempt or -1 if the service is not disconnected
+     */
+    public long startConnecting() {
+        while (true) {
+            long value = mState.get();
+            if (state(value) != DISCONNECTED) {
+                return -1;
+            }
+            long generation = generation(value) + 1;
+            if (mState.compareAndSet(value, pack(generation, CONNECTING))) {
+                return generation;
+            }
+        }
+    }
+
+    /**
+     * Finishes a connection attempt. The service can be used after this call.
+     * @param generation (generation of the attempt, see startConnecting)
+     * @return false if the attempt was cancelled in the meantime (the caller has to disconnect the service)
+     */
+    public boolean finishConnecting(long generation) {
+        return mState.compareAndSet(pack(generation, CONNECTING), pack(generation, CONNECTED));
+    }
+
+    /**
+     * Starts to disconnect the service. If the service is connected, it waits until no other thread uses it.
+     * A running connection attempt is cancelled instead.
+     * @return true if the service was connected and the caller has to disconnect it and call finishDisconnecting
+     */
+    public boolean startDisconnecting() {
+        while (true) {
+            long value = mState.get();
+            int state = state(value);
+            if (state == CONNECTED) {
+                if (mState.compareAndSet(value, pack(generation(value), DISCONNECTING))) {
+                    // Wait until the current frame or measurement has released the service (new users can't get it anymore).
+                    while (mUsers.get() > 0) {
+                        Thread.yield();
+                    }
+                    return true;
+                }
+            } else if (state == CONNECTING) {
+                if (mState.compareAndSet(value, pack(generation(value), DISCONNECTED))) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Finishes the disconnect (see startDisconnecting).
+     */
+    public void finishDisconnecting() {
+        mState.set(pack(generation(mState.get()), DISCONNECTED));
+    }
+
+    /**
+     * Marks the use of the service. It never waits.
+     * Every successful call must be followed by a call of endUse.
+     * @return true if the service is connected and can be used until endUse is called
+     */
+    public boolean beginUse() {
+        mUsers.incrementAndGet();
+        if (state(mState.get()) == CONNECTED) {
+            return true;
+        }
+        mUsers.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * Releases the service after a successful call of beginUse.
+     */
+    public void endUse() {
+        mUsers.decrementAndGet();
+    }
+
+    /**
+     * Signals if the service is connected at the moment.
+     * @return true if it is connected
+     */
+    public boolean isConnected() {
+        return state(mState.get()) == CONNECTED;
+    }
+
+    /**
+     * Signals if the service is disconnected at the moment (no connection attempt running).
+     * @return true if it is disconnected
+     */
+    public boolean isDisconnected() {
+        return state(mState.get()) == DISCONNECTED;
+    }
+
+    /**
+     * Combines a generation and a state to one value.
+     * @param generation (generation of the connection attempt)
+     * @param state (connection state)
+     * @return combined value
+     */
+    private static long pack(long generation, int state) {
+        return (generation << 2) | state;
+    }
+
+    /**
+     * Extracts the generation from a combined value.
+     * @param value (combined value)
+     * @return generation
+     */
+    private static long generation(long value) {
+        return value >>> 2;
+    }
+
+    /**
+     * Extracts the state from a combined value.
+     * @param value (combined value)
+     * @return state
+     */
+    private static int state(long value) {
+        return (int) (value & 3);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+
+/**
+ * <p>View frustum of the render camera as six planes, used to cull the AR geometry.</p>
+ *
+ * <p>The planes are extracted from the combined projection and view matrix (Gribb/Hartmann method).
+ * Bounding boxes are tested with their corner farthest along each plane normal.</p>
+ *
+ * @version 1.0
+ */
+public class ViewFrustum {
+    /** The box is completely outside of the frustum */
+    public static final int OUTSIDE = 0;
+    /** The box intersects the border of the frustum */
+    public static final int INTERSECTING = 1;
+    /** The box is completely inside of the frustum */
+    public static final int INSIDE = 2;
+    /** Planes (a, b, c, d with a*x + b*y + c*z + d >= 0 inside): left, right, bottom, top, near, far */
+    private final double[][] mPlanes = new double[6][4];
+    /** Combined projection and view matrix (column major) */
+    private final double[] mViewProjection = new double[16];
+
+    /**
+     * Updates the planes from the matrices of the camera.
+     * @param projection (projection matrix, column major)
+     * @param view (view matrix, column major)
+     */
+    public void update(double[] projection, double[] view) {
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                double sum = 0;
+                for (int k = 0; k < 4; k++) {
+                    sum += projection[k * 4 + row] * view[column * 4 + k];
+                }
+                mViewProjection[column * 4 + row] = sum;
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            // plane 2i: row3 + row i, plane 2i+1: row3 - row i
+            for (int column = 0; column < 4; column++) {
+                double row3 = mViewProjection[column * 4 + 3];
+                double rowI = mViewProjection[column * 4 + i];
+                mPlanes[2 * i][column] = row3 + rowI;
+                mPlanes[2 * i + 1][column] = row3 - rowI;
+            }
+        }
+    }
+
+    /**
+     * Tests a bounding box against the frustum.
+     * @param box (axis aligned bounding box, not empty)
+     * @return OUTSIDE, INTERSECTING or INSIDE
+     */
+    public int test(BoundingBox box) {
+        float minX = box.getMinX();
+        float minY = box.getMinY();
+        float minZ = box.getMinZ();
+        float maxX = box.getMaxX();
+        float maxY = box.getMaxY();
+        float maxZ = box.getMaxZ();
+        int result = INSIDE;
+        for (double[] plane : mPlanes) {
+            // corner farthest in the direction of the normal (positive vertex) and the opposite corner
+            double px = plane[0] >= 0 ? maxX : minX;
+            double py = plane[1] >= 0 ? maxY : minY;
+            double pz = plane[2] >= 0 ? maxZ : minZ;
+            if (plane[0] * px + plane[1] * py + plane[2] * pz + plane[3] < 0) {
+                return OUTSIDE;
+            }
+            double nx = plane[0] >= 0 ? minX : maxX;
+            double ny = plane[1] >= 0 ? minY : maxY;
+            double nz = plane[2] >= 0 ? minZ : maxZ;
+            if (plane[0] * nx + plane[1] * ny + plane[2] * nz + plane[3] < 0) {
+                result = INTERSECTING;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import org.rajawali3d.Object3D;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+
+/**
+ * <p>Augmented reality layer with the extruded walls of the finished hallways (one merged mesh per level).</p>
+ *
+ * <p>The walls are cached in a WallMeshBuilder. Only the levels which have changed are merged and uploaded again.
+ * The number of draw calls only depends on the number of levels and not on the number of hallways.
+ * A level is drawn if it intersects the view frustum and the camera is within the wall distance of the
+ * graph overlay (see GraphOverlay.LOD_WALLS).</p>
+ *
+ * <p>NOTE: The layer must only be used on the OpenGL render thread.</p>
+ *
+ * @version 1.0
+ */
+public class WallLayer {
+    /** Vertical distance in meters up to which the walls of a level are shown */
+    private static final float LEVEL_HEIGHT_TOLERANCE = 2.5f;
+    /** Container of the level meshes (added to the scene) */
+    private Object3D mRoot = new Object3D();
+    /** Cache of the extruded walls */
+    private WallMeshBuilder mBuilder = new WallMeshBuilder();
+    /** Mesh of every level */
+    private Map<Integer, Object3D> mLevelObjects = new HashMap<Integer, Object3D>();
+    /** Bounding box of every level mesh */
+    private Map<Integer, BoundingBox> mLevelBounds = new HashMap<Integer, BoundingBox>();
+    /** Shared material with vertex colors */
+    private Material mMaterial = new Material();
+
+    /**
+     * Constructor (Creates a new empty layer)
+     */
+    public WallLayer() {
+        mRoot.isContainer(true);
+        mMaterial.useVertexColors(true);
+    }
+
+    /**
+     * Getter function for the container of all level meshes, which has to be added to the scene.
+     * @return mRoot
+     */
+    public Object3D getRoot() {
+        return mRoot;
+    }
+
+    /**
+     * Adds or replaces the walls of a hallway. The mesh of its level is rebuilt with the next update.
+     * @param walls (extruded walls, see WallMeshBuilder.extrude)
+     */
+    public void setHallway(WallMeshBuilder.HallwayWalls walls) {
+        mBuilder.setHallway(walls);
+    }
+
+    /**
+     * Removes the walls of all hallways with the next update.
+     */
+    public void clear() {
+        mBuilder.clear();
+    }
+
+    /**
+     * Merges and uploads the meshes of the changed levels.
+     */
+    public void update() {
+        for (Integer level : mBuilder.takeDirtyLevels()) {
+            Object3D old = mLevelObjects.remove(level);
+            if (old != null) {
+                mRoot.removeChild(old);
+                old.destroy();
+            }
+            mLevelBounds.remove(level);
+            WallMeshBuilder.LevelMesh mesh = mBuilder.buildLevel(level);
+            if (mesh == null) {
+                continue;
+            }
+            Object3D object = new Object3D();
+            float[] texCoords = new float[mesh.getVertices().length / 3 * 2];
+            object.setData(mesh.getVertices(), mesh.getNormals(), texCoords, mesh.getColors(), mesh.getIndices(), true);
+            object.setMaterial(mMaterial);
+            object.setDoubleSided(true);
+            object.setTransparent(true);
+            mRoot.addChild(object);
+            mLevelObjects.put(level, object);
+            mLevelBounds.put(level, mesh.getBounds());
+        }
+    }
+
+    /**
+     * Shows the levels which are visible from the camera and hides the others.
+     * @param frustum (view frustum of the camera)
+     * @param position (position of the camera)
+     * @param stats (counters of the running cull)
+     */
+    public void cull(ViewFrustum frustum, Vector3 position, CullingStats stats) {
+        for (Map.Entry<Integer, Object3D> entry : mLevelObjects.entrySet()) {
+            BoundingBox bounds = mLevelBounds.get(entry.getKey());
+            double dx = Math.max(0, Math.max(bounds.getMinX() - position.x, position.x - bounds.getMaxX()));
+            double dz = Math.max(0, Math.max(bounds.getMinZ() - position.z, position.z - bounds.getMaxZ()));
+            float radius = GraphOverlay.getLodRadius(GraphOverlay.LOD_WALLS);
+            boolean visible = dx * dx + dz * dz <= radius * radius
+                    && position.y >= bounds.getMinY() - LEVEL_HEIGHT_TOLERANCE
+                    && position.y <= bounds.getMaxY() + LEVEL_HEIGHT_TOLERANCE
+                    && frustum.test(bounds) != ViewFrustum.OUTSIDE;
+            entry.getValue().setVisible(visible);
+            stats.countWallLevel(visible);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.floorplan;
+
+import android.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+import com.projecttango.unibw.graphmapper.graph.FloorTriangles;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.WallExtrusion;
+
+/**
+ * <p>Builds 3D wall meshes from the hallways: every hallway ring and obstacle ring is extruded into wall quads
+ * between the floor and the ceiling height. The floor is filled with the cached triangles of the hallway
+ * (see Hallway.getFloorTriangles), so the obstacles are cut out.</p>
+ *
+ * <p>The walls of a hallway are extruded once (extrude, can be called on any thread) and cached by the hallway ID.
+ * All cached hallways of a level are merged into one indexed mesh (buildLevel), so every level needs only one draw call.
+ * If a hallway is added or changed, only its own walls are extruded again and only its level is merged again.</p>
+ *
+ * <p>NOTE: The captured hallway corners lie at the height of the measured points (about the height of the device),
+ * the floor and the ceiling are not captured. Therefore the walls are placed with a fixed offset below
+ * the mean height of the corners and a fixed wall height (see WallExtrusion, also used by the glTF export).</p>
+ *
+ * @version 1.0
+ */
+public class WallMeshBuilder {
+    /** Color of the hallway walls (translucent, so the camera image stays visible) */
+    private static final int HALLWAY_WALL_COLOR = 0x5000cc00;
+    /** Color of the obstacle walls */
+    private static final int OBSTACLE_WALL_COLOR = 0x50ffff00;
+    /** Color of the floors */
+    private static final int FLOOR_COLOR = 0x3000cc00;
+    /** Cached walls of every hallway (hallway ID -> walls) */
+    private Map<Integer, HallwayWalls> mHallways = new HashMap<Integer, HallwayWalls>();
+    /** Levels which have changed since they were merged the last time */
+    private Set<Integer> mDirtyLevels = new HashSet<Integer>();
+
+    /**
+     * Extrudes the walls of a hallway. The result does not reference the hallway.
+     * @param hallway (finished hallway)
+     * @return walls of the hallway
+     */
+    public static HallwayWalls extrude(Hallway hallway) {
+        List<float[]> points = hallway.getHallwayPoints();
+        float floor = WallExtrusion.getFloorHeight(points);
+        float ceiling = floor + WallExtrusion.WALL_HEIGHT;
+        int quads = points.size();
+        for (List<float[]> obstacle : hallway.getObstacles()) {
+            quads += obstacle.size();
+        }
+        HallwayWalls walls = new HallwayWalls(hallway.getID(), hallway.getLevel(), quads);
+        walls.addRing(points, floor, ceiling, HALLWAY_WALL_COLOR);
+        for (List<float[]> obstacle : hallway.getObstacles()) {
+            walls.addRing(obstacle, floor, ceiling, OBSTACLE_WALL_COLOR);
+        }
+        walls.setFloor(hallway.getFloorTriangles(), floor);
+        return walls;
+    }
+
+    /**
+     * Adds the walls of a new hallway or replaces the walls of a changed hallway and marks its level as changed.
+     * @param walls (extruded walls)
+     */
+    public void setHallway(HallwayWalls walls) {
+        HallwayWalls old = mHallways.put(walls.mHallwayID, walls);
+        if (old != null) {
+            mDirtyLevels.add(old.mLevel);
+        }
+        mDirtyLevels.add(walls.mLevel);
+    }
+
+    /**
+     * Removes all cached walls. All levels which had walls are marked as changed.
+     */
+    public void clear() {
+        for (HallwayWalls walls : mHallways.values()) {
+            mDirtyLevels.add(walls.mLevel);
+        }
+        mHallways.clear();
+    }
+
+    /**
+     * Returns the levels which have changed since they were merged the last time and resets the changes.
+     * @return changed levels
+     */
+    public Set<Integer> takeDirtyLevels() {
+        Set<Integer> dirty = mDirtyLevels;
+        mDirtyLevels = new HashSet<Integer>();
+        return dirty;
+    }
+
+    /**
+     * Merges the cached walls of all hallways of a level into one indexed mesh.
+     * @param level (level to be merged)
+     * @return merged mesh or null if the level has no walls
+     */
+    public LevelMesh buildLevel(int level) {
+        List<HallwayWalls> levelWalls = new ArrayList<HallwayWalls>();
+        int vertices = 0;
+        int indices = 0;
+        for (HallwayWalls walls : mHallways.values()) {
+            if (walls.mLevel == level && walls.getVertexCount() > 0) {
+                levelWalls.add(walls);
+                vertices += walls.getVertexCount();
+                indices += walls.getIndexCount();
+            }
+        }
+        if (vertices == 0) {
+            return null;
+        }
+        LevelMesh mesh = new LevelMesh(vertices, indices);
+        for (HallwayWalls walls : levelWalls) {
+            mesh.append(walls);
+        }
+        return mesh;
+    }
+
+    /**
+     * Extruded walls of one hallway: four vertices per wall quad, followed by the floor triangles.
+     */
+    public static class HallwayWalls {
+        /** ID of the hallway */
+        private final int mHallwayID;
+        /** Level of the hallway */
+        private final int mLevel;
+        /** Vertex positions (x, y, z) */
+        private final float[] mVertices;
+        /** Vertex normals (x, y, z) */
+        private final float[] mNormals;
+        /** Vertex colors (r, g, b, a) */
+        private final float[] mColors;
+        /** Number of quads */
+        private int mQuadCount = 0;
+        /** Floor vertex positions (x, y, z) */
+        private float[] mFloorVertices = new float[0];
+        /** Floor triangle indices */
+        private int[] mFloorIndices = new int[0];
+
+        /**
+         * Constructor (Creates walls with space for the given number of quads)
+         * @param hallwayID (ID of the hallway)
+         * @param level (level of the hallway)
+         * @param quads (number of quads)
+         */
+        private HallwayWalls(int hallwayID, int level, int quads) {
+            mHallwayID = hallwayID;
+            mLevel = level;
+            mVertices = new float[quads * 12];
+            mNormals = new float[quads * 12];
+            mColors = new float[quads * 16];
+        }
+
+        /**
+         * Places the floor triangles at the floor height.
+         * @param floor (triangles of the floor, x/z vertices)
+         * @param height (height of the floor)
+         */
+        private void setFloor(FloorTriangles floor, float height) {
+            float[] source = floor.getVertices();
+            mFloorVertices = new float[source.length / 2 * 3];
+            for (int i = 0; i < source.length / 2; i++) {
+                mFloorVertices[3 * i] = source[2 * i];
+                mFloorVertices[3 * i + 1] = height;
+                mFloorVertices[3 * i + 2] = source[2 * i + 1];
+            }
+            mFloorIndices = floor.getIndices();
+        }
+
+        /**
+         * Getter function for the number of vertices (walls and floor).
+         * @return number of vertices
+         */
+        private int getVertexCount() {
+            return mQuadCount * 4 + mFloorVertices.length / 3;
+        }
+
+        /**
+         * Getter function for the number of triangle indices (walls and floor).
+         * @return number of indices
+         */
+        private int getIndexCount() {
+            return mQuadCount * 6 + mFloorIndices.length;
+        }
+
+        /**
+         * Extrudes a closed ring (every corner is connected to the next and the last to the first).
+         * @param ring (corner points)
+         * @param floor (height of the floor)
+         * @param ceiling (height of the ceiling)
+         * @param color (color of the walls)
+         */
+        private void addRing(List<float[]> ring, float floor, float ceiling, int color) {
+            for (int i = 0; i < ring.size(); i++) {
+                float[] from = ring.get(i);
+                float[] to = ring.get((i + 1) % ring.size());
+                float dx = to[0] - from[0];
+                float dz = to[2] - from[2];
+                float length = (float) Math.sqrt(dx * dx + dz * dz);
+                if (length == 0) {
+                    continue;
+                }
+                // horizontal normal of the wall
+                float nx = -dz / length;
+                float nz = dx / length;
+                int v = mQuadCount * 12;
+                float[] quad = {from[0], floor, from[2], to[0], floor, to[2], to[0], ceiling, to[2], from[0], ceiling, from[2]};
+                System.arraycopy(quad, 0, mVertices, v, 12);
+                for (int k = 0; k < 4; k++) {
+                    mNormals[v + k * 3] = nx;
+                    mNormals[v + k * 3 + 2] = nz;
+                    int c = (mQuadCount * 4 + k) * 4;
+                    mColors[c] = Color.red(color) / 255f;
+                    mColors[c + 1] = Color.green(color) / 255f;
+                    mColors[c + 2] = Color.blue(color) / 255f;
+                    mColors[c + 3] = Color.alpha(color) / 255f;
+                }
+                mQuadCount++;
+            }
+        }
+    }
+
+    /**
+     * Merged indexed mesh of all walls of a level.
+     */
+    public static class LevelMesh {
+        /** Vertex positions (x, y, z) */
+        private final float[] mVertices;
+        /** Vertex normals (x, y, z) */
+        private final float[] mNormals;
+        /** Vertex colors (r, g, b, a) */
+        private final float[] mColors;
+        /** Triangle indices (two triangles per quad and the floor triangles) */
+        private final int[] mIndices;
+        /** Bounding box of all walls */
+        private final BoundingBox mBounds = new BoundingBox();
+        /** Number of vertices added so far */
+        private int mVertexCount = 0;
+        /** Number of indices added so far */
+        private int mIndexCount = 0;
+
+        /**
+         * Constructor (Creates a mesh with space for the given number of vertices and indices)
+         * @param vertices (number of vertices)
+         * @param indices (number of indices)
+         */
+        private LevelMesh(int vertices, int indices) {
+            mVertices = new float[vertices * 3];
+            mNormals = new float[vertices * 3];
+            mColors = new float[vertices * 4];
+            mIndices = new int[indices];
+        }
+
+        /**
+         * Appends the walls of a hallway.
+         * @param walls (extruded walls)
+         */
+        private void append(HallwayWalls walls) {
+            int first = mVertexCount;
+            System.arraycopy(walls.mVertices, 0, mVertices, first * 3, walls.mQuadCount * 12);
+            System.arraycopy(walls.mNormals, 0, mNormals, first * 3, walls.mQuadCount * 12);
+            System.arraycopy(walls.mColors, 0, mColors, first * 4, walls.mQuadCount * 16);
+            for (int q = 0; q < walls.mQuadCount; q++) {
+                int v = first + q * 4;
+                mIndices[mIndexCount++] = v;
+                mIndices[mIndexCount++] = v + 1;
+                mIndices[mIndexCount++] = v + 2;
+                mIndices[mIndexCount++] = v;
+                mIndices[mIndexCount++] = v + 2;
+                mIndices[mIndexCount++] = v + 3;
+            }
+            mVertexCount += walls.mQuadCount * 4;
+
+            // Floor with an upward normal
+            int floor = mVertexCount;
+            int floorVertices = walls.mFloorVertices.length / 3;
+            System.arraycopy(walls.mFloorVertices, 0, mVertices, floor * 3, walls.mFloorVertices.length);
+            for (int i = floor; i < floor + floorVertices; i++) {
+                mNormals[i * 3 + 1] = 1;
+                mColors[i * 4] = Color.red(FLOOR_COLOR) / 255f;
+                mColors[i * 4 + 1] = Color.green(FLOOR_COLOR) / 255f;
+                mColors[i * 4 + 2] = Color.blue(FLOOR_COLOR) / 255f;
+                mColors[i * 4 + 3] = Color.alpha(FLOOR_COLOR) / 255f;
+            }
+            for (int index : walls.mFloorIndices) {
+                mIndices[mIndexCount++] = floor + index;
+            }
+            mVertexCount += floorVertices;
+
+            float[] point = new float[3];
+            for (int i = first; i < mVertexCount; i++) {
+                System.arraycopy(mVertices, i * 3, point, 0, 3);
+                mBounds.include(point);
+            }
+        }
+
+        /**
+         * Getter function for the vertex positions.
+         * @return mVertices
+         */
+        public float[] getVertices() {
+            return mVertices;
+        }
+
+        /**
+         * Getter function for the vertex normals.
+         * @return mNormals
+         */
+        public float[] getNormals() {
+            return mNormals;
+        }
+
+        /**
+         * Getter function for the vertex colors.
+         * @return mColors
+         */
+        public float[] getColors() {
+            return mColors;
+        }
+
+        /**
+         * Getter function for the triangle indices.
+         * @return mIndices
+         */
+        public int[] getIndices() {
+            return mIndices;
+        }
+
+        /**
+         * Getter function for the bounding box of all walls.
+         * @return mBounds
+         */
+        public BoundingBox getBounds() {
+            return mBounds;
+        }
+    }
+}
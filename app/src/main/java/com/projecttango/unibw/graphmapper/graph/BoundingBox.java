@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+package com.projecttango.unibw.graphmapper.graph;
+
+import java.util.List;
+
+/**
+ * <p>Axis aligned bounding box (AABB) around a set of 3D points (x, y, z in OpenGL frame).</p>
+ *
+ * <p>The box is extended point by point, so hallways and levels can keep their bounds up to date
+ * without scanning all corner points again every time the plan is drawn. An empty box has no extent
+ * until the first point is included. The single coordinate getters don't allocate, so they are used
+ * by the culling, which tests many boxes every frame.</p>
+ *
+ * @version 1.0
+ */
+public class BoundingBox {
+    /** Minimum x coordinate */
+    private float mMinX = Float.MAX_VALUE;
+    /** Maximum x coordinate */
+    private float mMaxX = -Float.MAX_VALUE;
+    /** Minimum y coordinate */
+    private float mMinY = Float.MAX_VALUE;
+    /** Maximum y coordinate */
+    private float mMaxY = -Float.MAX_VALUE;
+    /** Minimum z coordinate */
+    private float mMinZ = Float.MAX_VALUE;
+    /** Maximum z coordinate */
+    private float mMaxZ = -Float.MAX_VALUE;
+
+    /**
+     * Constructor (Creates a new empty bounding box)
+     */
+    public BoundingBox() {
+    }
+
+    /**
+     * Constructor (Creates a new bounding box around all given points)
+     * @param points (list of points, each point is a float[3] with x, y and z coordinates)
+     */
+    public BoundingBox(List<float[]> points) {
+        for (float[] point : points) {
+            include(point);
+        }
+    }
+
+    /**
+     * This function extends the bounding box so that it contains the given point.
+     * @param point (float[3] with x, y and z coordinates)
+     */
+    public void include(float[] point) {
+        if (point[0] < mMinX) {
+            mMinX = point[0];
+        }
+        if (point[0] > mMaxX) {
+            mMaxX = point[0];
+        }
+        if (point[1] < mMinY) {
+            mMinY = point[1];
+        }
+        if (point[1] > mMaxY) {
+            mMaxY = point[1];
+        }
+        if (point[2] < mMinZ) {
+            mMinZ = point[2];
+        }
+        if (point[2] > mMaxZ) {
+            mMaxZ = point[2];
+        }
+    }
+
+    /**
+     * This function extends the bounding box so that it contains the other bounding box (union).
+     * @param other (bounding box to be added, an empty box does not change this box)
+     */
+    public void include(BoundingBox other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        mMinX = Math.min(mMinX, other.mMinX);
+        mMaxX = Math.max(mMaxX, other.mMaxX);
+        mMinY = Math.min(mMinY, other.mMinY);
+        mMaxY = Math.max(mMaxY, other.mMaxY);
+        mMinZ = Math.min(mMinZ, other.mMinZ);
+        mMaxZ = Math.max(mMaxZ, other.mMaxZ);
+    }
+
+    /**
+     * Signals if the bounding box contains no point yet.
+     * @return true if no point was included
+     */
+    public boolean isEmpty() {
+        return mMinX > mMaxX;
+    }
+
+    /**
+     * This function calculates the center of the bounding box.
+     * @return center as a float[] 3D vector
+     */
+    public float[] getCenter() {
+        return new float[]{(mMinX + mMaxX) / 2, (mMinY + mMaxY) / 2, (mMinZ + mMaxZ) / 2};
+    }
+
+    /**
+     * Getter function for the extent of the bounding box along the x axis.
+     * @return width (0 if the box is empty)
+     */
+    public float getWidth() {
+        return isEmpty() ? 0 : mMaxX - mMinX;
+    }
+
+    /**
+     * Getter function for the extent of the bounding box along the y axis.
+     * @return height (0 if the box is empty)
+     */
+    public float getHeight() {
+        return isEmpty() ? 0 : mMaxY - mMinY;
+    }
+
+    /**
+     * Getter function for the extent of the bounding box along the z axis.
+     * @return depth (0 if the box is empty)
+     */
+    public float getDepth() {
+        return isEmpty() ? 0 : mMaxZ - mMinZ;
+    }
+
+    /**
+     * Getter function for the minimum corner of the bounding box (new array).
+     * @return float[3] with the minimum x, y and z coordinates
+     */
+    public float[] getMin() {
+        return new float[]{mMinX, mMinY, mMinZ};
+    }
+
+    /**
+     * Getter function for the maximum corner of the bounding box (new array).
+     * @return float[3] with the maximum x, y and z coordinates
+     */
+    public float[] getMax() {
+        return new float[]{mMaxX, mMaxY, mMaxZ};
+    }
+
+    /**
+     * Getter function for the minimum x coordinate.
+     * @return mMinX
+     */
+    public float getMinX() {
+        return mMinX;
+    }
+
+    /**
+     * Getter function for the maximum x coordinate.
+     * @return mMaxX
+     */
+    public float getMaxX() {
+        return mMaxX;
+    }
+
+    /**
+     * Getter function for the minimum y coordinate.
+     * @return mMinY
+     */
+    public float getMinY() {
+        return mMinY;
+    }
+
+    /**
+     * Getter function for the maximum y coordinate.
+     * @return mMaxY
+     */
+    public float getMaxY() {
+        return mMaxY;
+    }
+
+    /**
+     * Getter function for the minimum z coordinate.
+     * @return mMinZ
+     */
+    public float getMinZ() {
+        return mMinZ;
+    }
+
+    /**
+     * Getter function for the maximum z coordinate.
+     * @return mMaxZ
+     */
+    public float getMaxZ() {
+        return mMaxZ;
+    }
+}
@@ -20,9 +20,6 @@
 
 package com.projecttango.unibw.graphmapper.graph;
 
-import android.graphics.Canvas;
-import android.graphics.Paint;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -131,49 +128,4 @@ public class Entrypoint {
         mPositionToList.add(pos);
         mHallwayToIDList.add(id);
     }
-
-    /**
-     * This function draws the entrypoint as a point on a given canvas and optionally also its name
-     * @param canvas (Canvas where the entrypoint will be drawn.)
-     * @param paint (Color settings and size of the point)
-     * @param planCenter (Precalculated center of the canvas)
-     * @param scale (Precalculated scale of the plan)
-     * @param showName (if true the name of the entrypoint will also be drawn)
-     */
-    public void drawOnCanvas(Canvas canvas, Paint paint, float[] planCenter, float scale, boolean showName) {
-        float[] pos = draw2dPoint(canvas, paint, planCenter, scale);
-        if(showName) {
-            drawName(canvas, paint, pos);
-        }
-    }
-
-    /**
-     * This function draws the name of the entrypoint near to its position.
-     * @param canvas (Canvas where the name will be drawn.)
-     * @param paint (Color settings and size of the point)
-     * @param pos (position of the entrypoint)
-     */
-    private void drawName(Canvas canvas, Paint paint, float[] pos) {
-        canvas.drawText(mName, (float)(pos[0] - 30.0), (float)(pos[1] - 15.0), paint);
-    }
-
-    /**
-     * This function draws the entrypoint as a dot on the canvas.
-     * @param canvas (canvas where the entrypoint / plan is drawn)
-     * @param paint (color and size settings)
-     * @param planCenter (precalulated center of the plan)
-     * @param scale (precalculated scale of the plan)
-     */
-    private float[] draw2dPoint(Canvas canvas, Paint paint, float[] planCenter, float scale) {
-        int centerX = canvas.getWidth() / 2;
-        int centerY = canvas.getHeight() / 2;
-        float[] newPoint = new float[3];
-        for (int i = 0; i < 3; i++) {
-            newPoint[i] = (mPositionFrom[i] - planCenter[i]) * scale;
-        }
-        float pos_x = centerX + newPoint[0];
-        float pos_y = centerY + newPoint[2];
-        canvas.drawPoint(pos_x, pos_y, paint);
-        return new float[]{pos_x, pos_y};
-    }
 }
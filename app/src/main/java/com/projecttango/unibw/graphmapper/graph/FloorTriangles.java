@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.graph;
+
+/**
+ * <p>Triangulated floor of a hallway: the area inside the hallway outline without the obstacles.</p>
+ *
+ * <p>The vertices are the corners of the outline followed by the corners of the obstacles (in the order of
+ * {@link Hallway#getHallwayPoints()} and {@link Hallway#getObstacles()}) as x/z pairs. The indices describe
+ * counterclockwise triangles (in the x/z plane) and can be used as an index buffer by the 2D plan and the
+ * OpenGL renderer. See {@link PolygonTriangulator}.</p>
+ *
+ * @version 1.0
+ */
+public class FloorTriangles {
+    /** Vertex positions (x, z per vertex) */
+    private final float[] mVertices;
+    /** Triangle indices (three per triangle) */
+    private final int[] mIndices;
+
+    /**
+     * Constructor (Creates a floor from a vertex and an index buffer)
+     * @param vertices (vertex positions, x and z per vertex)
+     * @param indices (triangle indices, three per triangle)
+     */
+    public FloorTriangles(float[] vertices, int[] indices) {
+        mVertices = vertices;
+        mIndices = indices;
+    }
+
+    /**
+     * Getter function for the vertex positions (x, z per vertex). The array must not be changed.
+     * @return mVertices
+     */
+    public float[] getVertices() {
+        return mVertices;
+    }
+
+    /**
+     * Getter function for the triangle indices. The array must not be changed.
+     * @return mIndices
+     */
+    public int[] getIndices() {
+        return mIndices;
+    }
+
+    /**
+     * Getter function for the number of vertices.
+     * @return number of vertices
+     */
+    public int getVertexCount() {
+        return mVertices.length / 2;
+    }
+
+    /**
+     * Getter function for the number of triangles.
+     * @return number of triangles
+     */
+    public int getTriangleCount() {
+        return mIndices.length / 3;
+    }
+
+    /**
+     * This function calculates the area of the floor (sum of the triangle areas).
+     * @return area in square meters
+     */
+    public float getArea() {
+        float area = 0;
+        for (int i = 0; i < mIndices.length; i += 3) {
+            int a = 2 * mIndices[i];
+            int b = 2 * mIndices[i + 1];
+            int c = 2 * mIndices[i + 2];
+            area += ((mVertices[b] - mVertices[a]) * (mVertices[c + 1] - mVertices[a + 1])
+                    - (mVertices[c] - mVertices[a]) * (mVertices[b + 1] - mVertices[a + 1])) / 2;
+        }
+        return area;
+    }
+}
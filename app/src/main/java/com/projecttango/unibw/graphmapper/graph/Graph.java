@@ -20,14 +20,18 @@
 
 package com.projecttango.unibw.graphmapper.graph;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * <p>Top class for the navigation graph.</p>
  *
  * <p>It contains all elements of the navigation network and can be stored in JSON (Gson) format
- * and can be loaded again in this version. In future version the graph should be converted to an indoor navigation
- * data format (e.g. IndoorGML or Indoor OSM).</p>
+ * and can be loaded again in this version. It can also be exported to the indoor navigation data format IndoorGML
+ * (see export.IndoorGmlWriter).</p>
  *
  * <p>This class was created by Konstantin Klinger on 25.04.16. </p>
  * @author Konstantin Klinger
@@ -43,12 +47,15 @@ public class Graph {
     private HashMap<Integer, Hallway> mHallwayNet;
     /** When saving the graph, the ID must also be saved. */
     private int mSavedIDCounter;
+    /** Union bounding box of all hallways per level (transient, so it is not saved with GSON and rebuilt after loading) */
+    private transient HashMap<Integer, BoundingBox> mLevelBounds;
 
     /**
      * Constructor (This function creates a new navigation graph object.)
+     * The ID-Counter is not touched, because GSON also calls this constructor when a copy of a saved graph is read
+     * (e.g. on the export thread). A new recording resets it with resetIDCounter().
      */
     public Graph() {
-        mHallwayIDCounter = 0;
         mHallwayNet = new HashMap<Integer, Hallway>();
         mSavedIDCounter = 0;
     }
@@ -59,6 +66,67 @@ public class Graph {
      */
     public void addHallway(Hallway hallway) {
         mHallwayNet.put(hallway.getID(), hallway);
+        if (mLevelBounds != null) {
+            includeLevelBounds(hallway);
+        }
+    }
+
+    /**
+     * Returns the union bounding box of all hallways of a level.
+     * The boxes are updated incrementally when a hallway is added, so no hallway point is scanned again.
+     * @param level (level of the building)
+     * @return bounding box of the level (empty if there is no hallway at this level)
+     */
+    public BoundingBox getLevelBounds(int level) {
+        if (mLevelBounds == null) {
+            //first call or graph loaded from GSON => build all level boxes once
+            mLevelBounds = new HashMap<Integer, BoundingBox>();
+            for (Hallway hallway : mHallwayNet.values()) {
+                includeLevelBounds(hallway);
+            }
+        }
+        BoundingBox bounds = mLevelBounds.get(level);
+        return bounds != null ? bounds : new BoundingBox();
+    }
+
+    /**
+     * This function extends the bounding box of the hallway's level with the bounding box of the hallway.
+     * @param hallway (hallway to be included)
+     */
+    private void includeLevelBounds(Hallway hallway) {
+        BoundingBox bounds = mLevelBounds.get(hallway.getLevel());
+        if (bounds == null) {
+            bounds = new BoundingBox();
+            mLevelBounds.put(hallway.getLevel(), bounds);
+        }
+        bounds.include(hallway.getBounds());
+    }
+
+    /**
+     * Returns all levels with at least one hallway.
+     * @return levels in ascending order
+     */
+    public List<Integer> getLevels() {
+        TreeSet<Integer> levels = new TreeSet<Integer>();
+        for (Hallway hallway : mHallwayNet.values()) {
+            levels.add(hallway.getLevel());
+        }
+        return new ArrayList<Integer>(levels);
+    }
+
+    /**
+     * Returns all hallways of a level ordered by their ID, so exports of the same graph are always equal.
+     * @param level (level of the building)
+     * @return hallways of the level (empty if there is no hallway at this level)
+     */
+    public List<Hallway> getLevelHallways(int level) {
+        TreeMap<Integer, Hallway> hallways = new TreeMap<Integer, Hallway>();
+        for (Hallway hallway : mHallwayNet.values()) {
+            if (hallway.getLevel() == level) {
+                hallways.put(hallway.getID(), hallway);
+            }
+        }
+        return new ArrayList<Hallway>(hallways.values());
     }
 
     /**
@@ -92,6 +160,14 @@ public class Graph {
         return temp;
     }
 
+    /**
+     * This function sets mHallwayIDCounter to 0, so the hallways of a new graph are numbered from the beginning.
+     * NOTE: The ID-Counter must only be used from one thread (UI thread).
+     */
+    public static void resetIDCounter() {
+        mHallwayIDCounter = 0;
+    }
+
     /**
      * This function stores the current value of mHallwayIDCounter into mSavedIDCounter (save ID).
      */
@@ -20,10 +20,8 @@
 
 package com.projecttango.unibw.graphmapper.graph;
 
-import android.graphics.Canvas;
-import android.graphics.Paint;
-
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -31,6 +29,11 @@ import java.util.List;
  * It can also have markers and rooms and cutted obstacles within it.
  * A hallway can be seen as a node of the navigation graph / network. </p>
  *
+ * <p>The caches (bounds, levels of detail and floor triangles) are built lazily on the thread which needs them
+ * first, e.g. the UI thread or the tile worker of the plan. They are published through volatile fields and never
+ * changed afterwards, so concurrent readers see complete objects (at worst a cache is built twice).
+ * The hallway itself must not be changed any more after it was handed over to another thread.</p>
+ *
  * <p>This class is based on the class "Floorplan" of the Jave floorplan example found on https://github.com/googlesamples/tango-examples-java.
  * Added changes of Google's Okul update from June 9th (13.06.2016).
  * This class was created by Konstantin Klinger on 25.04.16. </p>
@@ -54,13 +57,26 @@ public class Hallway {
     private List<Marker> mMarkers = new ArrayList<Marker>();
     /** Unique ID of this hallway to avoid recursive connections between hallways. So the graph could be saved with GSON */
     private int mID;
+    /** Cached bounding box around the hallway points (transient, so it is not saved with GSON and rebuilt after loading) */
+    private transient volatile BoundingBox mBounds;
+    /** Cached levels of detail of the outline (transient, built on first use) */
+    private transient volatile OutlineLod mOutlineLod;
+    /** Cached levels of detail of the obstacles (transient, built on first use and reset when obstacles are added) */
+    private transient volatile List<OutlineLod> mObstacleLods;
+    /** Cached triangulated floor (transient, built on first use and reset when obstacles are added) */
+    private transient volatile FloorTriangles mFloorTriangles;
 
     /**
      * Constructor (Creates new hallway object with a unique ID and given corner points)
      * @param points
      */
     public Hallway(List<float[]> points) {
-        mHallwayPoints.addAll(points);
+        BoundingBox bounds = new BoundingBox();
+        for (float[] point : points) {
+            mHallwayPoints.add(point);
+            bounds.include(point);
+        }
+        mBounds = bounds;
         mID = Graph.getNextID();
     }
 
@@ -70,6 +86,8 @@ public class Hallway {
      */
     public void addObstacleList(List<List<float[]>> obstacleList) {
         mCuttedObstacleList.addAll(obstacleList);
+        mObstacleLods = null;
+        mFloorTriangles = null;
     }
 
     /**
@@ -161,238 +179,83 @@ public class Hallway {
     }
 
     /**
-     * This is the public plan drawing functions. It draws the plan with the user's wished options.
-     * @param canvas (canvas where the plan is drawn)
-     * @param paint (color and size settings)
-     * @param planCenter (precalulated center of the plan)
-     * @param scale (precalculated scale of the plan)
-     * @param showText (if true the lenght of the lines are shown)
-     * @param showName (if true the name of the hallway will also be drawn)
-     * @param showObstacles (if true the obstacles of the hallway will also be drawn)
-     */
-    public void drawOnCanvas(Canvas canvas, Paint paint, float[] planCenter, float scale, boolean showText, boolean showName, boolean showObstacles) {
-        float[] pos = draw2dlines(canvas, paint, planCenter, scale);
-        if(showText) {
-            drawTexts(canvas, paint, planCenter, scale);
-        }
-        if(showName) {
-            drawName(canvas, paint, pos);
-        }
-        if(showObstacles) {
-            draw2dlinesObstacles(canvas, paint, planCenter, scale);
-            drawTextsObstacles(canvas, paint, planCenter, scale);
-        }
-    }
-
-    /**
-     * This function draws the name of the hallway in the middle of it.
-     * @param canvas (Canvas where the name will be drawn.)
-     * @param paint (Color settings and size of the point)
-     * @param pos (position of the text)
+     * Getter function for the hallway points of this hallway (mHallwayPoints).
+     * @return new List of the hallway points from this Hallway.
      */
-    private void drawName(Canvas canvas, Paint paint, float[] pos) {
-        canvas.drawText(mName, (float)(pos[0] - 30.0), (float)(pos[1] - 15.0), paint);
+    public List<float[]> getHallwayPoints() {
+        return new ArrayList<float[]>(mHallwayPoints);
     }
 
     /**
-     * This function draws a line between each corner of the hallway.
-     * @param canvas (canvas where the plan is drawn)
-     * @param paint (color and size settings)
-     * @param planCenter (precalulated center of the plan)
-     * @param scale (precalculated scale of the plan)
-     * @return x and y position of the last point to draw the name of the hallway above it
+     * Getter function for the simplified outline of this hallway (precomputed level of detail).
+     * @param tolerance (allowed deviation in meters, e.g. {@link OutlineLod#getTolerance(float)} of the plan scale)
+     * @return unmodifiable list of the corner points of the coarsest level within the tolerance
      */
-    private float[] draw2dlines(Canvas canvas, Paint paint, float[] planCenter, float scale) {
-        // Get center of the canvas.
-        int centerX = canvas.getWidth() / 2;
-        int centerY = canvas.getHeight() / 2;
-        float[] lines = new float[4 * mHallwayPoints.size()];
-        int i = 0;
-        float pos_x = 0;
-        float pos_y = 0;
-        if (!mHallwayPoints.isEmpty()) {
-            float[] lastPoint = null;
-            Hallway scaledHallway = translateAndScaleHallway(planCenter, scale, mHallwayPoints);
-            // For every point add a line to the last point. Start from the center of the canvas.
-            for (float[] nextPoint : scaledHallway.mHallwayPoints) {
-                if (lastPoint != null) {
-                    lines[i++] = centerX + lastPoint[0];
-                    lines[i++] = centerY + lastPoint[2];
-                    lines[i++] = centerX + nextPoint[0];
-                    lines[i++] = centerY + nextPoint[2];
-                }
-                lastPoint = nextPoint;
-            }
-            pos_x = centerX + lastPoint[0];
-            pos_y = centerY + lastPoint[2];
-            lines[i++] = pos_x;
-            lines[i++] = pos_y;
-            lines[i++] = centerX + scaledHallway.mHallwayPoints.get(0)[0];
-            lines[i++] = centerY + scaledHallway.mHallwayPoints.get(0)[2];
-
-            if(i >= 15) {
-                if(lines[6] > lines[0]) {
-                    pos_x = (float) (((lines[6] - lines[0]) * 0.5) + lines[0] - (mName.length() * 5));
-                } else {
-                    pos_x = (float) (((lines[0] - lines[6]) * 0.5) + lines[6] - (mName.length() * 5));
-                }
-                if(lines[7] > lines[1]) {
-                    pos_y = (float) (((lines[7] - lines[1]) * 0.5) + lines[1] - (mName.length() * 5));
-                } else {
-                    pos_y = (float) (((lines[1] - lines[7]) * 0.5) + lines[7] - (mName.length() * 5));
-                }
-            }
+    public List<float[]> getHallwayPoints(float tolerance) {
+        OutlineLod outlineLod = mOutlineLod;
+        if (outlineLod == null) {
+            outlineLod = new OutlineLod(mHallwayPoints);
+            mOutlineLod = outlineLod;
         }
-        canvas.drawLines(lines, paint);
-        return new float[]{pos_x, pos_y};
+        return outlineLod.getPoints(tolerance);
     }
 
     /**
-     * This function draws every obstacle on the canvas. It draws a line between each corner of every obstacle.
-     * @param canvas (canvas where the plan is drawn)
-     * @param paint (color and size settings)
-     * @param planCenter (precalulated center of the plan)
-     * @param scale (precalculated scale of the plan)
+     * Getter function for the simplified obstacles of this hallway (precomputed levels of detail).
+     * @param tolerance (allowed deviation in meters)
+     * @return list of the obstacles, each obstacle is an unmodifiable list of its corner points
      */
-    private void draw2dlinesObstacles(Canvas canvas, Paint paint, float[] planCenter, float scale) {
-        // Get center of the canvas.
-        int centerX = canvas.getWidth() / 2;
-        int centerY = canvas.getHeight() / 2;
-        for(List<float[]> obstacle : mCuttedObstacleList) {
-            float[] lines = new float[4 * obstacle.size()];
-            int i = 0;
-            if (!obstacle.isEmpty()) {
-                float[] lastPoint = null;
-                Hallway scaledHallway = translateAndScaleHallway(planCenter, scale, obstacle);
-                // For every point add a line to the last point. Start from the center of the canvas.
-                for (float[] nextPoint : scaledHallway.mHallwayPoints) {
-                    if (lastPoint != null) {
-                        lines[i++] = centerX + lastPoint[0];
-                        lines[i++] = centerY + lastPoint[2];
-                        lines[i++] = centerX + nextPoint[0];
-                        lines[i++] = centerY + nextPoint[2];
-                    }
-                    lastPoint = nextPoint;
-                }
-                lines[i++] = centerX + lastPoint[0];
-                lines[i++] = centerY + lastPoint[2];
-                lines[i++] = centerX + scaledHallway.mHallwayPoints.get(0)[0];
-                lines[i++] = centerY + scaledHallway.mHallwayPoints.get(0)[2];
+    public List<List<float[]>> getObstacles(float tolerance) {
+        List<OutlineLod> obstacleLods = mObstacleLods;
+        if (obstacleLods == null) {
+            List<OutlineLod> lods = new ArrayList<OutlineLod>(mCuttedObstacleList.size());
+            for (List<float[]> obstacle : mCuttedObstacleList) {
+                lods.add(new OutlineLod(obstacle));
             }
-            canvas.drawLines(lines, paint);
+            obstacleLods = Collections.unmodifiableList(lods);
+            mObstacleLods = obstacleLods;
         }
-    }
-
-    /**
-     * This function calculates the length of the lines (from corner to corner) of the hallway and draws it in the middle of each line on the canvas.
-     * @param canvas (canvas where the text is drawn)
-     * @param paint (color and size settings)
-     * @param planCenter (precalculated center of the plan)
-     * @param scale (precalculated scale of the plan)
-     */
-    private void drawTexts(Canvas canvas, Paint paint, float[] planCenter, float scale) {
-        int centerX = canvas.getWidth() / 2;
-        int centerY = canvas.getHeight() / 2;
-        if (!mHallwayPoints.isEmpty()) {
-            float[] lastPoint = null;
-            float[] nextPoint;
-            float[] lastScaledPoint = null;
-            float[] nextScaledPoint;
-            Hallway scaledHallway = translateAndScaleHallway(planCenter, scale, mHallwayPoints);
-            for (int i = 0; i < mHallwayPoints.size(); i++) {
-                nextPoint = mHallwayPoints.get(i);
-                nextScaledPoint = scaledHallway.mHallwayPoints.get(i);
-                if (lastPoint != null) {
-                    // Get the length of the original unscaled plan.
-                    double length = Math.sqrt(
-                            (lastPoint[0] - nextPoint[0]) * (lastPoint[0] - nextPoint[0]) +
-                                    (lastPoint[2] - nextPoint[2]) * (lastPoint[2] - nextPoint[2]));
-                    // Draw the label in the middle of each wall.
-                    double posX = centerX + (lastScaledPoint[0] + nextScaledPoint[0]) / 2;
-                    double posY = centerY + (lastScaledPoint[2] + nextScaledPoint[2]) / 2;
-                    canvas.drawText(String.format("%.2f", length) + "m", (float) posX, (float) posY, paint);
-                }
-                lastPoint = nextPoint;
-                lastScaledPoint = nextScaledPoint;
-            }
-            // Get the length of the original unscaled plan.
-            double length = Math.sqrt((lastPoint[0] - mHallwayPoints.get(0)[0]) * (lastPoint[0] - mHallwayPoints.get(0)[0]) +
-                            (lastPoint[2] - mHallwayPoints.get(0)[2]) * (lastPoint[2] - mHallwayPoints.get(0)[2]));
-            // Draw the label in the middle of each wall.
-            double posX = centerX + (lastScaledPoint[0] + scaledHallway.mHallwayPoints.get(0)[0]) / 2;
-            double posY = centerY + (lastScaledPoint[2] + scaledHallway.mHallwayPoints.get(0)[2]) / 2;
-            canvas.drawText(String.format("%.2f", length) + "m", (float) posX, (float) posY, paint);
+        List<List<float[]>> obstacles = new ArrayList<List<float[]>>(obstacleLods.size());
+        for (OutlineLod lod : obstacleLods) {
+            obstacles.add(lod.getPoints(tolerance));
         }
+        return obstacles;
     }
 
     /**
-     * This function calculates the length of the lines (from corner to corner) of the hallway's obstacles and draws it in the middle of each line on the canvas.
-     * @param canvas (canvas where the text is drawn)
-     * @param paint (color and size settings)
-     * @param planCenter (precalculated center of the plan)
-     * @param scale (precalculated scale of the plan)
+     * Getter function for the obstacles of this hallway (mCuttedObstacleList).
+     * Obstacles can only be added with addObstacleList, which also resets the cached levels of detail and floor.
+     * @return unmodifiable list of the obstacles, each obstacle is a list of its corner points
      */
-    private void drawTextsObstacles(Canvas canvas, Paint paint, float[] planCenter, float scale) {
-        int centerX = canvas.getWidth() / 2;
-        int centerY = canvas.getHeight() / 2;
-        for(List<float[]> obstacle : mCuttedObstacleList) {
-            if (!obstacle.isEmpty()) {
-                float[] lastPoint = null;
-                float[] nextPoint;
-                float[] lastScaledPoint = null;
-                float[] nextScaledPoint;
-                Hallway scaledHallway = translateAndScaleHallway(planCenter, scale, obstacle);
-                for (int i = 0; i < obstacle.size(); i++) {
-                    nextPoint = obstacle.get(i);
-                    nextScaledPoint = scaledHallway.mHallwayPoints.get(i);
-                    if (lastPoint != null) {
-                        // Get the length of the original unscaled plan.
-                        double length = Math.sqrt(
-                                (lastPoint[0] - nextPoint[0]) * (lastPoint[0] - nextPoint[0]) +
-                                        (lastPoint[2] - nextPoint[2]) * (lastPoint[2] - nextPoint[2]));
-                        // Draw the label in the middle of each wall.
-                        double posX = centerX + (lastScaledPoint[0] + nextScaledPoint[0]) / 2;
-                        double posY = centerY + (lastScaledPoint[2] + nextScaledPoint[2]) / 2;
-                        canvas.drawText(String.format("%.2f", length) + "m", (float) posX, (float) posY, paint);
-                    }
-                    lastPoint = nextPoint;
-                    lastScaledPoint = nextScaledPoint;
-                }
-                // Get the length of the original unscaled plan.
-                double length = Math.sqrt((lastPoint[0] - obstacle.get(0)[0]) * (lastPoint[0] - obstacle.get(0)[0]) +
-                        (lastPoint[2] - obstacle.get(0)[2]) * (lastPoint[2] - obstacle.get(0)[2]));
-                // Draw the label in the middle of each wall.
-                double posX = centerX + (lastScaledPoint[0] + scaledHallway.mHallwayPoints.get(0)[0]) / 2;
-                double posY = centerY + (lastScaledPoint[2] + scaledHallway.mHallwayPoints.get(0)[2]) / 2;
-                canvas.drawText(String.format("%.2f", length) + "m", (float) posX, (float) posY, paint);
-            }
-        }
+    public List<List<float[]>> getObstacles() {
+        return Collections.unmodifiableList(mCuttedObstacleList);
     }
 
     /**
-     * This function calculates a new hallway for a list of unscaled hallway points with a predefined / precalculated planCenter and scale.
-     * @param planCenter (precalculated center of the plan / canvas)
-     * @param scale (precalculated scale of the plan / canvas)
-     * @param unscaledPoints (list of unscaled points)
-     * @return new hallway with all points in the precalculated scale
+     * Getter function for the triangulated floor of this hallway (outline with the obstacles as holes).
+     * The triangles are built once and reused until obstacles are added.
+     * @return floor triangles (vertices of the outline followed by the vertices of the obstacles)
      */
-    private Hallway translateAndScaleHallway(float[] planCenter, float scale, List<float[]> unscaledPoints) {
-        List<float[]> scaledPoints = new ArrayList<float[]>();
-        for (float[] nextPoint : unscaledPoints) {
-            float[] newPoint = new float[3];
-            for (int i = 0; i < 3; i++) {
-                newPoint[i] = (nextPoint[i] - planCenter[i]) * scale;
-            }
-            scaledPoints.add(newPoint);
+    public FloorTriangles getFloorTriangles() {
+        FloorTriangles floorTriangles = mFloorTriangles;
+        if (floorTriangles == null) {
+            floorTriangles = PolygonTriangulator.triangulate(mHallwayPoints, mCuttedObstacleList);
+            mFloorTriangles = floorTriangles;
         }
-        return new Hallway(scaledPoints);
+        return floorTriangles;
     }
 
     /**
-     * Getter function for the hallway points of this hallway (mHallwayPoints).
-     * @return new List of the hallway points from this Hallway.
+     * Getter function for the cached bounding box around the hallway points.
+     * The box is built once (also after loading the graph from GSON) and is not recalculated on every call.
+     * @return bounding box of this hallway
      */
-    public List<float[]> getHallwayPoints() {
-        return new ArrayList<float[]>(mHallwayPoints);
+    public BoundingBox getBounds() {
+        BoundingBox bounds = mBounds;
+        if (bounds == null) {
+            bounds = new BoundingBox(mHallwayPoints);
+            mBounds = bounds;
+        }
+        return bounds;
     }
 }
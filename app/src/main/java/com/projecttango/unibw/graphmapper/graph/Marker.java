@@ -20,9 +20,6 @@
 
 package com.projecttango.unibw.graphmapper.graph;
 
-import android.graphics.Canvas;
-import android.graphics.Paint;
-
 /**
  * <p>A marker object can be placed on a wall for example. It will be part of the navigation graph.
  * The user can mark things that will be shown on the floor plan later.
@@ -51,47 +48,18 @@ public class Marker {
     }
 
     /**
-     * This function draws the marker as a point on a given canvas and optionally also its name
-     * @param canvas (Canvas where the marker will be drawn.)
-     * @param paint (Color settings and size of the point)
-     * @param planCenter (Precalculated center of the canvas)
-     * @param scale (Precalculated scale of the plan)
-     * @param showName (if true the name of the marker will also be drawn)
-     */
-    public void drawOnCanvas(Canvas canvas, Paint paint, float[] planCenter, float scale, boolean showName) {
-        float[] pos = draw2dPoint(canvas, paint, planCenter, scale);
-        if(showName) {
-            drawName(canvas, paint, pos);
-        }
-    }
-
-    /**
-     * This function draws the name of the marker near to its point.
-     * @param canvas (Canvas where the name will be drawn.)
-     * @param paint (Color settings and size of the point)
-     * @param pos (position of the marker point)
+     * mPosition Getter function
+     * @return mPosition (Gets the position of the marker back.)
      */
-    private void drawName(Canvas canvas, Paint paint, float[] pos) {
-        canvas.drawText(mName, (float)(pos[0] - 30.0), (float)(pos[1] - 15.0), paint);
+    public float[] getPosition() {
+        return mPosition;
     }
 
     /**
-     * This function draws the position of the marker as a point on a given canvas with a predefined scale.
-     * @param canvas (Canvas where the point will be drawn.)
-     * @param paint (Color settings and size of the point)
-     * @param planCenter (Precalculated center of the canvas)
-     * @param scale (Precalculted scale of the plan)
+     * mName Getter function
+     * @return mName (Gets the name of the marker back.)
      */
-    private float[] draw2dPoint(Canvas canvas, Paint paint, float[] planCenter, float scale) {
-        int centerX = canvas.getWidth() / 2;
-        int centerY = canvas.getHeight() / 2;
-        float[] newPoint = new float[3];
-        for (int i = 0; i < 3; i++) {
-            newPoint[i] = (mPosition[i] - planCenter[i]) * scale;
-        }
-        float pos_x = centerX + newPoint[0];
-        float pos_y = centerY + newPoint[2];
-        canvas.drawPoint(pos_x, pos_y, paint);
-        return new float[]{pos_x, pos_y};
+    public String getName() {
+        return mName;
     }
 }
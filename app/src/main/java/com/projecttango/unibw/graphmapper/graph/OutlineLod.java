@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Precomputed levels of detail (LOD) of a closed outline.</p>
+ *
+ * <p>Every level is simplified from the original outline with Douglas-Peucker and a fixed tolerance in meters
+ * ({@link #TOLERANCES}), so no removed corner is farther away than the tolerance. Renderers calculate the
+ * tolerance from their scale with {@link #getTolerance(float)} and get the coarsest level that stays below half
+ * a pixel, so the drawing cost of an overview depends on its pixels and not on the number of measurements.</p>
+ *
+ * @version 1.0
+ */
+public class OutlineLod {
+    /** Tolerances of the levels in meters, level 0 is the original outline */
+    public static final float[] TOLERANCES = {0, 0.01f, 0.02f, 0.05f, 0.1f, 0.2f, 0.5f, 1, 2};
+    /** Allowed deviation of a simplified outline in pixels */
+    private static final float PIXEL_TOLERANCE = 0.5f;
+
+    /** Outlines of the levels (unmodifiable, equal levels share one list) */
+    private final List<List<float[]>> mLevels;
+
+    /**
+     * Constructor (Simplifies the outline for all levels)
+     * @param ring (corner points of the closed outline)
+     */
+    public OutlineLod(List<float[]> ring) {
+        mLevels = new ArrayList<List<float[]>>(TOLERANCES.length);
+        List<float[]> original = Collections.unmodifiableList(new ArrayList<float[]>(ring));
+        mLevels.add(original);
+        for (int i = 1; i < TOLERANCES.length; i++) {
+            List<float[]> previous = mLevels.get(i - 1);
+            List<float[]> level = OutlineSimplifier.douglasPeucker(original, TOLERANCES[i]);
+            mLevels.add(level.size() == previous.size() ? previous : Collections.unmodifiableList(level));
+        }
+    }
+
+    /**
+     * This function returns the coarsest level with a tolerance not larger than the given one.
+     * @param tolerance (allowed deviation in meters, 0 for the original outline)
+     * @return corner points of the level (unmodifiable)
+     */
+    public List<float[]> getPoints(float tolerance) {
+        int level = 0;
+        while (level + 1 < TOLERANCES.length && TOLERANCES[level + 1] <= tolerance) {
+            level++;
+        }
+        return mLevels.get(level);
+    }
+
+    /**
+     * This function calculates the tolerance for a scale, so a simplified outline differs by at most half a pixel.
+     * @param pixelsPerMeter (scale of the plan)
+     * @return tolerance in meters
+     */
+    public static float getTolerance(float pixelsPerMeter) {
+        return pixelsPerMeter > 0 ? PIXEL_TOLERANCE / pixelsPerMeter : 0;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <p>Simplification of closed outlines (hallways and obstacles) in the x/z plane of the floorplan.</p>
+ *
+ * <p>Douglas-Peucker keeps every removed corner within a distance tolerance of the simplified outline, so it is
+ * used for the detail levels of the plan ({@link OutlineLod}). Visvalingam-Whyatt removes the corners with the
+ * smallest effective area first and gives smoother outlines for overviews. Both keep at least three corners and
+ * the original point objects (no copies).</p>
+ *
+ * @version 1.0
+ */
+public final class OutlineSimplifier {
+    /**
+     * Constructor (not used, only static functions)
+     */
+    private OutlineSimplifier() {
+    }
+
+    /**
+     * This function simplifies a closed outline with the Douglas-Peucker algorithm.
+     * The outline is split at the first corner and the corner farthest away from it, both chains are simplified.
+     * @param ring (corner points of the closed outline, the last point is connected to the first one)
+     * @param tolerance (maximum distance of a removed corner to the simplified outline in meters)
+     * @return simplified outline (the given list if nothing can be removed)
+     */
+    public static List<float[]> douglasPeucker(List<float[]> ring, float tolerance) {
+        int size = ring.size();
+        if (size <= 3 || tolerance <= 0) {
+            return ring;
+        }
+        float[] first = ring.get(0);
+        int split = 0;
+        float maxDistance = -1;
+        for (int i = 1; i < size; i++) {
+            float[] point = ring.get(i);
+            float dx = point[0] - first[0];
+            float dz = point[2] - first[2];
+            float distance = dx * dx + dz * dz;
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                split = i;
+            }
+        }
+        boolean[] keep = new boolean[size + 1];
+        keep[0] = true;
+        keep[split] = true;
+        keep[size] = true;
+        // Index size is the first point again, so the second chain closes the outline
+        float squaredTolerance = tolerance * tolerance;
+        int[] stack = new int[2 * (size + 1)];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = split;
+        stack[top++] = split;
+        stack[top++] = size;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            float[] a = ring.get(start);
+            float[] b = ring.get(end % size);
+            int farthest = -1;
+            float maxSquared = squaredTolerance;
+            for (int i = start + 1; i < end; i++) {
+                float squared = getSquaredSegmentDistance(ring.get(i), a, b);
+                if (squared > maxSquared) {
+                    maxSquared = squared;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[top++] = start;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = end;
+            }
+        }
+        List<float[]> result = new ArrayList<float[]>();
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                result.add(ring.get(i));
+            }
+        }
+        return result.size() >= 3 && result.size() < size ? result : ring;
+    }
+
+    /**
+     * This function simplifies a closed outline with the Visvalingam-Whyatt algorithm. The corner with the
+     * smallest triangle (with its two neighbours) is removed until all triangles are larger than the minimum area.
+     * @param ring (corner points of the closed outline, the last point is connected to the first one)
+     * @param minArea (minimum effective area of a corner in square meters)
+     * @return simplified outline (the given list if nothing can be removed)
+     */
+    public static List<float[]> visvalingam(List<float[]> ring, float minArea) {
+        int size = ring.size();
+        if (size <= 3 || minArea <= 0) {
+            return ring;
+        }
+        int[] previous = new int[size];
+        int[] next = new int[size];
+        float[] areas = new float[size];
+        boolean[] removed = new boolean[size];
+        PriorityQueue<Corner> queue = new PriorityQueue<Corner>(size);
+        for (int i = 0; i < size; i++) {
+            previous[i] = (i + size - 1) % size;
+            next[i] = (i + 1) % size;
+        }
+        for (int i = 0; i < size; i++) {
+            areas[i] = getTriangleArea(ring.get(previous[i]), ring.get(i), ring.get(next[i]));
+            queue.add(new Corner(i, areas[i]));
+        }
+        int remaining = size;
+        while (remaining > 3 && !queue.isEmpty()) {
+            Corner corner = queue.poll();
+            int i = corner.mIndex;
+            if (removed[i] || corner.mArea != areas[i]) {
+                continue; //outdated entry
+            }
+            if (corner.mArea >= minArea) {
+                break;
+            }
+            removed[i] = true;
+            remaining--;
+            int p = previous[i];
+            int n = next[i];
+            next[p] = n;
+            previous[n] = p;
+            // The area of a neighbour is not smaller than the removed area, so the removal order stays monotone
+            areas[p] = Math.max(corner.mArea, getTriangleArea(ring.get(previous[p]), ring.get(p), ring.get(n)));
+            areas[n] = Math.max(corner.mArea, getTriangleArea(ring.get(p), ring.get(n), ring.get(next[n])));
+            queue.add(new Corner(p, areas[p]));
+            queue.add(new Corner(n, areas[n]));
+        }
+        if (remaining == size) {
+            return ring;
+        }
+        List<float[]> result = new ArrayList<float[]>(remaining);
+        for (int i = 0; i < size; i++) {
+            if (!removed[i]) {
+                result.add(ring.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the squared distance of a point to a segment in the x/z plane.
+     * @param point (point)
+     * @param a (start of the segment)
+     * @param b (end of the segment)
+     * @return squared distance in square meters
+     */
+    private static float getSquaredSegmentDistance(float[] point, float[] a, float[] b) {
+        float x = a[0];
+        float z = a[2];
+        float dx = b[0] - x;
+        float dz = b[2] - z;
+        if (dx != 0 || dz != 0) {
+            float t = ((point[0] - x) * dx + (point[2] - z) * dz) / (dx * dx + dz * dz);
+            if (t > 1) {
+                x = b[0];
+                z = b[2];
+            } else if (t > 0) {
+                x += dx * t;
+                z += dz * t;
+            }
+        }
+        dx = point[0] - x;
+        dz = point[2] - z;
+        return dx * dx + dz * dz;
+    }
+
+    /**
+     * Calculates the area of a triangle in the x/z plane.
+     * @param a (first corner)
+     * @param b (second corner)
+     * @param c (third corner)
+     * @return area in square meters
+     */
+    private static float getTriangleArea(float[] a, float[] b, float[] c) {
+        return Math.abs((b[0] - a[0]) * (c[2] - a[2]) - (c[0] - a[0]) * (b[2] - a[2])) / 2;
+    }
+
+    /**
+     * Entry of the Visvalingam queue (corner with its effective area at the time it was queued).
+     */
+    private static class Corner implements Comparable<Corner> {
+        /** Index of the corner in the outline */
+        private final int mIndex;
+        /** Effective area of the corner */
+        private final float mArea;
+
+        /**
+         * Constructor (Creates a queue entry)
+         * @param index (index of the corner in the outline)
+         * @param area (effective area of the corner)
+         */
+        Corner(int index, float area) {
+            mIndex = index;
+            mArea = area;
+        }
+
+        @Override
+        public int compareTo(Corner other) {
+            return Float.compare(mArea, other.mArea);
+        }
+    }
+}
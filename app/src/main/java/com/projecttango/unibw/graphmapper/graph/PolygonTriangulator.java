@@ -0,0 +1,404 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Triangulation of a polygon with holes (hallway outline with obstacles) in the x/z plane by ear clipping.</p>
+ *
+ * <p>The outline is oriented counterclockwise and the holes clockwise. Every hole is joined to the outline with a
+ * bridge (two opposite edges) from its rightmost corner to a visible corner of the outline (D. Eberly,
+ * "Triangulation by Ear Clipping"), starting with the hole that reaches farthest to the right. The resulting
+ * simple polygon is clipped ear by ear. Collinear corners are dropped without a triangle. Outlines that cross
+ * themselves still give a (partly overlapping) triangulation instead of an endless loop, holes which can't be
+ * bridged (e.g. outside of the outline) are skipped.</p>
+ *
+ * @version 1.0
+ */
+public final class PolygonTriangulator {
+    /** Vertex positions (x, z per vertex) */
+    private final float[] mVertices;
+
+    /**
+     * Constructor (only used by triangulate)
+     * @param vertices (vertex positions, x and z per vertex)
+     */
+    private PolygonTriangulator(float[] vertices) {
+        mVertices = vertices;
+    }
+
+    /**
+     * This function triangulates the area inside the outline without the holes.
+     * @param outline (corner points of the closed outline)
+     * @param holes (corner points of the holes, e.g. obstacles)
+     * @return triangles (no triangles if the outline has less than three corners)
+     */
+    public static FloorTriangles triangulate(List<float[]> outline, List<List<float[]>> holes) {
+        int total = outline.size();
+        for (List<float[]> hole : holes) {
+            total += hole.size();
+        }
+        float[] vertices = new float[2 * total];
+        int v = 0;
+        for (float[] point : outline) {
+            vertices[v++] = point[0];
+            vertices[v++] = point[2];
+        }
+        for (List<float[]> hole : holes) {
+            for (float[] point : hole) {
+                vertices[v++] = point[0];
+                vertices[v++] = point[2];
+            }
+        }
+        if (outline.size() < 3) {
+            return new FloorTriangles(vertices, new int[0]);
+        }
+        PolygonTriangulator triangulator = new PolygonTriangulator(vertices);
+
+        int[] polygon = triangulator.ring(0, outline.size(), true);
+        List<int[]> holeRings = new ArrayList<int[]>();
+        int offset = outline.size();
+        for (List<float[]> hole : holes) {
+            if (hole.size() >= 3) {
+                holeRings.add(triangulator.ring(offset, hole.size(), false));
+            }
+            offset += hole.size();
+        }
+        // Bridge the holes from right to left, so a bridge never crosses a hole which isn't joined yet
+        final float[] maxX = new float[total];
+        for (int[] hole : holeRings) {
+            maxX[hole[0]] = vertices[2 * hole[triangulator.getRightmost(hole)]];
+        }
+        Collections.sort(holeRings, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Float.compare(maxX[b[0]], maxX[a[0]]);
+            }
+        });
+        for (int[] hole : holeRings) {
+            int[] bridged = triangulator.bridge(polygon, hole);
+            if (bridged != null) {
+                polygon = bridged;
+            }
+        }
+        return new FloorTriangles(vertices, triangulator.clip(polygon));
+    }
+
+    /**
+     * Creates the index ring of a polygon with the given orientation.
+     * @param first (index of the first vertex)
+     * @param size (number of vertices)
+     * @param counterclockwise (true for the outline, false for holes)
+     * @return indices of the vertices
+     */
+    private int[] ring(int first, int size, boolean counterclockwise) {
+        int[] ring = new int[size];
+        float area = 0;
+        for (int i = 0; i < size; i++) {
+            ring[i] = first + i;
+            int a = 2 * (first + i);
+            int b = 2 * (first + (i + 1) % size);
+            area += mVertices[a] * mVertices[b + 1] - mVertices[b] * mVertices[a + 1];
+        }
+        if ((area > 0) != counterclockwise) {
+            for (int i = 0; i < size / 2; i++) {
+                int temp = ring[i];
+                ring[i] = ring[size - 1 - i];
+                ring[size - 1 - i] = temp;
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * Finds the corner with the largest x coordinate.
+     * @param ring (indices of the vertices)
+     * @return position of the corner in the ring
+     */
+    private int getRightmost(int[] ring) {
+        int best = 0;
+        for (int i = 1; i < ring.length; i++) {
+            if (mVertices[2 * ring[i]] > mVertices[2 * ring[best]]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Joins a hole to the polygon with a bridge from the rightmost corner of the hole to a visible corner.
+     * @param polygon (indices of the counterclockwise polygon)
+     * @param hole (indices of the clockwise hole)
+     * @return indices of the joined polygon or null if no visible corner was found
+     */
+    private int[] bridge(int[] polygon, int[] hole) {
+        int m = getRightmost(hole);
+        float mx = mVertices[2 * hole[m]];
+        float mz = mVertices[2 * hole[m] + 1];
+
+        // Closest intersection of the ray from M in +x direction with an edge of the polygon
+        int n = polygon.length;
+        float ix = Float.MAX_VALUE;
+        int visible = -1;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            float ax = mVertices[2 * polygon[i]];
+            float az = mVertices[2 * polygon[i] + 1];
+            float bx = mVertices[2 * polygon[j]];
+            float bz = mVertices[2 * polygon[j] + 1];
+            if (az == bz) {
+                if (az == mz) {
+                    // Edge on the ray, its closer end is visible
+                    if (ax >= mx && ax < ix) {
+                        ix = ax;
+                        visible = i;
+                    }
+                    if (bx >= mx && bx < ix) {
+                        ix = bx;
+                        visible = j;
+                    }
+                }
+                continue;
+            }
+            if (Math.min(az, bz) > mz || Math.max(az, bz) < mz) {
+                continue;
+            }
+            float x = ax + (mz - az) * (bx - ax) / (bz - az);
+            if (x >= mx && x < ix) {
+                ix = x;
+                // The end of the edge with the larger x coordinate is the candidate
+                visible = ax > bx ? i : j;
+            }
+        }
+        if (visible < 0) {
+            return null;
+        }
+
+        // A reflex corner inside the triangle M, I, P hides P; the one with the smallest angle to the ray is visible
+        float px = mVertices[2 * polygon[visible]];
+        float pz = mVertices[2 * polygon[visible] + 1];
+        if (px != ix || pz != mz) {
+            float bestTangent = Float.MAX_VALUE;
+            float bestDistance = Float.MAX_VALUE;
+            int candidate = visible;
+            for (int i = 0; i < n; i++) {
+                if (i == visible) {
+                    continue;
+                }
+                int q = polygon[i];
+                float qx = mVertices[2 * q];
+                float qz = mVertices[2 * q + 1];
+                if (qx < mx || !isReflex(polygon[(i + n - 1) % n], q, polygon[(i + 1) % n])
+                        || !isInTriangle(qx, qz, mx, mz, ix, mz, px, pz)) {
+                    continue;
+                }
+                float dx = qx - mx;
+                float tangent = dx > 0 ? Math.abs(qz - mz) / dx : Float.MAX_VALUE;
+                float distance = dx * dx + (qz - mz) * (qz - mz);
+                if (tangent < bestTangent || (tangent == bestTangent && distance < bestDistance)) {
+                    bestTangent = tangent;
+                    bestDistance = distance;
+                    candidate = i;
+                }
+            }
+            visible = candidate;
+        }
+        // Corners of bridged holes appear twice, the copy which has M inside of its corner must be used
+        for (int i = 0; i < n; i++) {
+            if (polygon[i] == polygon[visible] && isLocallyInside(polygon[(i + n - 1) % n], polygon[i],
+                    polygon[(i + 1) % n], mx, mz)) {
+                visible = i;
+                break;
+            }
+        }
+
+        // polygon[0..visible], hole from M around to M, polygon[visible..]
+        int[] joined = new int[n + hole.length + 2];
+        int k = 0;
+        for (int i = 0; i <= visible; i++) {
+            joined[k++] = polygon[i];
+        }
+        for (int i = 0; i <= hole.length; i++) {
+            joined[k++] = hole[(m + i) % hole.length];
+        }
+        for (int i = visible; i < n; i++) {
+            joined[k++] = polygon[i];
+        }
+        return joined;
+    }
+
+    /**
+     * Clips the ears of a simple counterclockwise polygon.
+     * @param polygon (indices of the polygon, holes are joined with bridges)
+     * @return triangle indices
+     */
+    private int[] clip(int[] polygon) {
+        int n = polygon.length;
+        int[] previous = new int[n];
+        int[] next = new int[n];
+        for (int i = 0; i < n; i++) {
+            previous[i] = (i + n - 1) % n;
+            next[i] = (i + 1) % n;
+        }
+        int[] triangles = new int[3 * Math.max(0, n - 2)];
+        int count = 0;
+        int remaining = n;
+        int current = 0;
+        int failed = 0;
+        while (remaining > 3) {
+            int p = previous[current];
+            int c = next[current];
+            float cross = getCross(polygon[p], polygon[current], polygon[c]);
+            boolean ear = cross > 0 && isEar(polygon, next, p, current, c);
+            if (cross == 0 || ear || failed >= remaining) {
+                // Ear, collinear corner or no ear left (self intersecting outline)
+                if (cross > 0) {
+                    triangles[count++] = polygon[p];
+                    triangles[count++] = polygon[current];
+                    triangles[count++] = polygon[c];
+                }
+                next[p] = c;
+                previous[c] = p;
+                remaining--;
+                failed = 0;
+                current = p;
+            } else {
+                current = c;
+                failed++;
+            }
+        }
+        int p = previous[current];
+        int c = next[current];
+        if (getCross(polygon[p], polygon[current], polygon[c]) > 0) {
+            triangles[count++] = polygon[p];
+            triangles[count++] = polygon[current];
+            triangles[count++] = polygon[c];
+        }
+        int[] result = new int[count];
+        System.arraycopy(triangles, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Signals if no other corner of the polygon lies inside the triangle of a convex corner.
+     * @param polygon (indices of the polygon)
+     * @param next (next position of every remaining position)
+     * @param p (position of the previous corner)
+     * @param c (position of the corner)
+     * @param n (position of the next corner)
+     * @return true if the corner can be clipped
+     */
+    private boolean isEar(int[] polygon, int[] next, int p, int c, int n) {
+        float ax = mVertices[2 * polygon[p]];
+        float az = mVertices[2 * polygon[p] + 1];
+        float bx = mVertices[2 * polygon[c]];
+        float bz = mVertices[2 * polygon[c] + 1];
+        float cx = mVertices[2 * polygon[n]];
+        float cz = mVertices[2 * polygon[n] + 1];
+        for (int i = next[n]; i != p; i = next[i]) {
+            float qx = mVertices[2 * polygon[i]];
+            float qz = mVertices[2 * polygon[i] + 1];
+            // Corners at the same position (bridge ends) don't block the ear
+            if ((qx == ax && qz == az) || (qx == bx && qz == bz) || (qx == cx && qz == cz)) {
+                continue;
+            }
+            if (isInTriangle(qx, qz, ax, az, bx, bz, cx, cz)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Signals if a point lies inside the inner angle of a corner of a counterclockwise polygon.
+     * @param a (index of the previous corner)
+     * @param b (index of the corner)
+     * @param c (index of the next corner)
+     * @param x (x coordinate of the point)
+     * @param z (z coordinate of the point)
+     * @return true if the direction from the corner to the point points into the polygon
+     */
+    private boolean isLocallyInside(int a, int b, int c, float x, float z) {
+        float ax = mVertices[2 * a];
+        float az = mVertices[2 * a + 1];
+        float bx = mVertices[2 * b];
+        float bz = mVertices[2 * b + 1];
+        float cx = mVertices[2 * c];
+        float cz = mVertices[2 * c + 1];
+        boolean leftOfIncoming = (bx - ax) * (z - az) - (bz - az) * (x - ax) >= 0;
+        boolean leftOfOutgoing = (cx - bx) * (z - bz) - (cz - bz) * (x - bx) >= 0;
+        return isReflex(a, b, c) ? leftOfIncoming || leftOfOutgoing : leftOfIncoming && leftOfOutgoing;
+    }
+
+    /**
+     * Signals if a corner of a counterclockwise polygon is reflex (inner angle over 180 degrees).
+     * @param a (index of the previous corner)
+     * @param b (index of the corner)
+     * @param c (index of the next corner)
+     * @return true if the corner is reflex
+     */
+    private boolean isReflex(int a, int b, int c) {
+        return getCross(a, b, c) < 0;
+    }
+
+    /**
+     * Calculates the z component of the cross product (b - a) x (c - b).
+     * @param a (index of the first vertex)
+     * @param b (index of the second vertex)
+     * @param c (index of the third vertex)
+     * @return positive for a counterclockwise turn, 0 for collinear vertices
+     */
+    private float getCross(int a, int b, int c) {
+        float ax = mVertices[2 * a];
+        float az = mVertices[2 * a + 1];
+        float bx = mVertices[2 * b];
+        float bz = mVertices[2 * b + 1];
+        float cx = mVertices[2 * c];
+        float cz = mVertices[2 * c + 1];
+        return (bx - ax) * (cz - bz) - (bz - az) * (cx - bx);
+    }
+
+    /**
+     * Signals if a point lies inside or on the border of a triangle (any orientation).
+     * @param px (x coordinate of the point)
+     * @param pz (z coordinate of the point)
+     * @param ax (x coordinate of the first corner)
+     * @param az (z coordinate of the first corner)
+     * @param bx (x coordinate of the second corner)
+     * @param bz (z coordinate of the second corner)
+     * @param cx (x coordinate of the third corner)
+     * @param cz (z coordinate of the third corner)
+     * @return true if the point is inside
+     */
+    private static boolean isInTriangle(float px, float pz, float ax, float az, float bx, float bz, float cx, float cz) {
+        float d1 = (px - bx) * (az - bz) - (ax - bx) * (pz - bz);
+        float d2 = (px - cx) * (bz - cz) - (bx - cx) * (pz - cz);
+        float d3 = (px - ax) * (cz - az) - (cx - ax) * (pz - az);
+        boolean negative = d1 < 0 || d2 < 0 || d3 < 0;
+        boolean positive = d1 > 0 || d2 > 0 || d3 > 0;
+        return !(negative && positive);
+    }
+}
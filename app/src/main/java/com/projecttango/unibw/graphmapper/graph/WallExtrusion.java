@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.graph;
+
+import java.util.List;
+
+/**
+ * <p>Height of the extruded walls of a hallway, shared by the 3D view of the app (WallMeshBuilder)
+ * and the exported 3D building model (export.GltfWriter), so both show the walls at the same place.</p>
+ *
+ * <p>The captured hallway corners lie at the height of the measured points (about the height of the device),
+ * the floor and the ceiling are not captured. Therefore the floor is placed with a fixed offset below
+ * the mean height of the corners and the walls have a fixed height.</p>
+ *
+ * @version 1.0
+ */
+public final class WallExtrusion {
+    /** Distance in meters between the mean height of the hallway corners and the floor */
+    public static final float FLOOR_OFFSET = 1.3f;
+    /** Height of the walls in meters */
+    public static final float WALL_HEIGHT = 2.6f;
+
+    /**
+     * Constructor (not used, only constants and static functions)
+     */
+    private WallExtrusion() {
+    }
+
+    /**
+     * Calculates the floor height of a hallway from its corner points.
+     * @param points (corner points of the hallway with x, y and z coordinates)
+     * @return height of the floor (mean height of the corners minus FLOOR_OFFSET)
+     */
+    public static float getFloorHeight(List<float[]> points) {
+        float sum = 0;
+        for (float[] point : points) {
+            sum += point[1];
+        }
+        return (points.isEmpty() ? 0 : sum / points.size()) - FLOOR_OFFSET;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.fitting;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>JMH microbenchmark of the PlaneFitter on synthetic point clouds (run it with `gradle :cli:jmh`).</p>
+ *
+ * <p>The cloud is a tilted wall 2 m in front of the camera, seen by a color camera with the intrinsics of the
+ * Tango tablet. The points are spread over the whole image, so the pixel window around the click only keeps
+ * a small part of them, like on the device. A share of the points are outliers with a random depth.
+ * The cloud is stored in a direct FloatBuffer like the xyz buffer of a TangoXyzIjData.</p>
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PlaneFitterBenchmark {
+    /** Width of the color camera image in pixels */
+    private static final int WIDTH = 1280;
+    /** Height of the color camera image in pixels */
+    private static final int HEIGHT = 720;
+    /** Focal length of the color camera (x and y) */
+    private static final double FOCAL_LENGTH = 1042;
+    /** Principal point x of the color camera */
+    private static final double CX = 637;
+    /** Principal point y of the color camera */
+    private static final double CY = 357;
+    /** Distance of the wall at the optical axis in meters */
+    private static final float WALL_DISTANCE = 2;
+    /** Slope of the wall (depth change per meter in x direction) */
+    private static final float WALL_SLOPE = 0.25f;
+    /** Standard deviation of the depth noise in meters */
+    private static final float NOISE = 0.005f;
+    /** Identity transform, the depth camera is at the color camera */
+    private static final float[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    /** Number of points of the cloud */
+    @Param({"5000", "20000", "60000"})
+    public int mPointCount;
+    /** Share of the points with a random depth */
+    @Param({"0.0", "0.3"})
+    public float mOutlierRatio;
+
+    /** Synthetic point cloud (x, y, z per point) */
+    private FloatBuffer mXyz;
+    /** Plane fitter (reused like in the MeasurementPipeline) */
+    private PlaneFitter mPlaneFitter;
+
+    /**
+     * Creates the synthetic point cloud and checks that a plane is found in it.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mXyz = ByteBuffer.allocateDirect(3 * 4 * mPointCount).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int i = 0; i < mPointCount; i++) {
+            // ray through a random pixel, intersected with the wall z = WALL_DISTANCE + WALL_SLOPE * x
+            float rayX = (float) ((random.nextFloat() * WIDTH - CX) / FOCAL_LENGTH);
+            float rayY = (float) ((random.nextFloat() * HEIGHT - CY) / FOCAL_LENGTH);
+            float z = WALL_DISTANCE / (1 - WALL_SLOPE * rayX);
+            if (random.nextFloat() < mOutlierRatio) {
+                z = 0.5f + 3.5f * random.nextFloat();
+            } else {
+                z += (float) random.nextGaussian() * NOISE;
+            }
+            mXyz.put(rayX * z).put(rayY * z).put(z);
+        }
+        mXyz.rewind();
+        mPlaneFitter = new PlaneFitter();
+        if (!fit()) {
+            throw new IllegalStateException("No plane found in the synthetic cloud");
+        }
+    }
+
+    /**
+     * Fits the plane at the center of the image.
+     * @return true if a plane was found
+     */
+    @Benchmark
+    public boolean fit() {
+        return mPlaneFitter.fitPlaneModelNearClick(mXyz, mPointCount, WIDTH, HEIGHT,
+                FOCAL_LENGTH, FOCAL_LENGTH, CX, CY, IDENTITY, 0.5f, 0.5f);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Loads the graph files of the app.</p>
+ *
+ * <p>The app saves a graph as a serialized Java String with the graph in JSON (GSON) format
+ * ("name_graph.txt" in the Graphs directory). Plain JSON files are also accepted, so graphs can be
+ * edited or generated by other tools.</p>
+ *
+ * @version 1.0
+ */
+public final class GraphFile {
+    /** Suffix of the graph files of the app */
+    public static final String GRAPH_SUFFIX = "_graph.txt";
+    /** Suffix of plain JSON graph files */
+    public static final String JSON_SUFFIX = ".json";
+    /** First two bytes of a Java serialization stream */
+    private static final int STREAM_MAGIC = 0xaced;
+
+    /**
+     * Constructor (not used, only static functions)
+     */
+    private GraphFile() {
+    }
+
+    /**
+     * This function loads a graph file.
+     * @param file (graph file of the app or plain JSON file)
+     * @return loaded graph
+     * @throws IOException (if the file can't be read or contains no graph)
+     */
+    public static Graph load(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            in.mark(2);
+            int magic = (in.read() << 8) | in.read();
+            in.reset();
+            String json;
+            if (magic == STREAM_MAGIC) {
+                ObjectInputStream is = new ObjectInputStream(in);
+                try {
+                    json = (String) is.readObject();
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    throw new IOException("No serialized graph: " + file, e);
+                }
+            } else {
+                StringBuilder b = new StringBuilder();
+                Reader reader = new InputStreamReader(in, "UTF-8");
+                char[] buffer = new char[8192];
+                int n;
+                while ((n = reader.read(buffer)) >= 0) {
+                    b.append(buffer, 0, n);
+                }
+                json = b.toString();
+            }
+            Graph graph = new Gson().fromJson(json, Graph.class);
+            if (graph == null || graph.getGraph() == null) {
+                throw new IOException("No graph: " + file);
+            }
+            return graph;
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid graph: " + file, e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * This function collects the graph files of the given files and directories. Directories are searched
+     * recursively for files ending with "_graph.txt" or ".json", files are always taken.
+     * @param paths (files and directories)
+     * @return graph files (sorted by name within a directory)
+     */
+    public static List<File> collect(List<File> paths) {
+        List<File> files = new ArrayList<File>();
+        for (File path : paths) {
+            if (path.isDirectory()) {
+                collectDirectory(path, files);
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * This function adds the graph files of a directory and its subdirectories.
+     * @param directory (directory to be searched)
+     * @param files (found graph files)
+     */
+    private static void collectDirectory(File directory, List<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectDirectory(child, files);
+            } else if (child.getName().endsWith(GRAPH_SUFFIX) || child.getName().endsWith(JSON_SUFFIX)) {
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * This function returns the name of the recording (file name without "_graph.txt" or extension).
+     * @param file (graph file)
+     * @return name of the recording
+     */
+    public static String getName(File file) {
+        String name = file.getName();
+        if (name.endsWith(GRAPH_SUFFIX)) {
+            return name.substring(0, name.length() - GRAPH_SUFFIX.length());
+        }
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.cli;
+
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>Statistics of a navigation graph (number of elements, wall length and floor area).</p>
+ *
+ * <p>The floor area of a hallway is the area of its outline minus the area of its obstacles. Lengths and
+ * areas are calculated in the x/z plane like the floorplan.</p>
+ *
+ * @version 1.0
+ */
+public class GraphStatistics {
+    /** Text of the statistics */
+    private final String mText;
+
+    /**
+     * Constructor (Calculates the statistics of a graph)
+     * @param graph (navigation graph)
+     */
+    public GraphStatistics(Graph graph) {
+        int hallways = 0;
+        int corners = 0;
+        int obstacles = 0;
+        int rooms = 0;
+        int markers = 0;
+        int entrypoints = 0;
+        int connections = 0;
+        double wallLength = 0;
+        double area = 0;
+        StringBuilder levels = new StringBuilder();
+        for (int level : graph.getLevels()) {
+            List<Hallway> levelHallways = graph.getLevelHallways(level);
+            double levelArea = 0;
+            for (Hallway hallway : levelHallways) {
+                List<float[]> points = hallway.getHallwayPoints();
+                corners += points.size();
+                wallLength += getPerimeter(points);
+                double hallwayArea = getArea(points);
+                for (List<float[]> obstacle : hallway.getObstacles()) {
+                    obstacles++;
+                    wallLength += getPerimeter(obstacle);
+                    hallwayArea -= getArea(obstacle);
+                }
+                levelArea += Math.max(hallwayArea, 0);
+                rooms += hallway.getRooms().size();
+                markers += hallway.getMarkers().size();
+                entrypoints += hallway.getConnections().size();
+                for (Entrypoint entrypoint : hallway.getConnections()) {
+                    connections += entrypoint.getHallwayToIDList().size();
+                }
+            }
+            hallways += levelHallways.size();
+            area += levelArea;
+            levels.append(String.format(Locale.ROOT, "  level %d: %d hallways, %.2f m2%n",
+                    level, levelHallways.size(), levelArea));
+        }
+        mText = String.format(Locale.ROOT, "levels: %d, hallways: %d, corners: %d, obstacles: %d%n"
+                        + "rooms: %d, markers: %d, entrypoints: %d, connections: %d%n"
+                        + "wall length: %.2f m, floor area: %.2f m2%n",
+                graph.getLevels().size(), hallways, corners, obstacles, rooms, markers, entrypoints, connections,
+                wallLength, area) + levels;
+    }
+
+    /**
+     * This function calculates the length of a closed ring.
+     * @param points (corner points of the ring)
+     * @return length in meters
+     */
+    private static double getPerimeter(List<float[]> points) {
+        double length = 0;
+        for (int i = 0; i < points.size(); i++) {
+            float[] from = points.get(i);
+            float[] to = points.get((i + 1) % points.size());
+            length += Math.hypot(to[0] - from[0], to[2] - from[2]);
+        }
+        return length;
+    }
+
+    /**
+     * This function calculates the area of a closed ring with the shoelace formula.
+     * @param points (corner points of the ring)
+     * @return area in square meters
+     */
+    private static double getArea(List<float[]> points) {
+        double area = 0;
+        for (int i = 0; i < points.size(); i++) {
+            float[] from = points.get(i);
+            float[] to = points.get((i + 1) % points.size());
+            area += (double) from[0] * to[2] - (double) to[0] * from[2];
+        }
+        return Math.abs(area) / 2;
+    }
+
+    /**
+     * Returns the statistics as text (one line per level after the totals).
+     * @return text of the statistics
+     */
+    @Override
+    public String toString() {
+        return mText;
+    }
+}
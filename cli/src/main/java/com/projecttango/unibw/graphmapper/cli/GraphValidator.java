@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.cli;
+
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>Validates the structure and the connectivity of a navigation graph.</p>
+ *
+ * <p>Errors are problems that break the graph for navigation: hallways without an outline, entrypoints that
+ * belong to another hallway or connections to hallways that don't exist. Warnings are connections that are
+ * only stored at one of the two hallways and parts of the building that can't be reached from the other
+ * hallways (more than one connected component).</p>
+ *
+ * @version 1.0
+ */
+public class GraphValidator {
+    /** Found errors */
+    private final List<String> mErrors = new ArrayList<String>();
+    /** Found warnings */
+    private final List<String> mWarnings = new ArrayList<String>();
+
+    /**
+     * Constructor (Validates a graph)
+     * @param graph (navigation graph)
+     */
+    public GraphValidator(Graph graph) {
+        // Hallways ordered by their ID, so the messages are always in the same order
+        TreeMap<Integer, Hallway> hallways = new TreeMap<Integer, Hallway>();
+        for (Map.Entry<Integer, Hallway> entry : graph.getGraph().entrySet()) {
+            Hallway hallway = entry.getValue();
+            if (hallway == null) {
+                mErrors.add("empty hallway entry " + entry.getKey());
+                continue;
+            }
+            if (entry.getKey() != hallway.getID()) {
+                mErrors.add(describe(hallway) + " is stored with the ID " + entry.getKey());
+            }
+            hallways.put(hallway.getID(), hallway);
+        }
+        if (hallways.isEmpty()) {
+            mErrors.add("graph has no hallways");
+            return;
+        }
+
+        // Undirected adjacency of the hallways
+        Map<Integer, Set<Integer>> neighbours = new HashMap<Integer, Set<Integer>>();
+        for (Hallway hallway : hallways.values()) {
+            neighbours.put(hallway.getID(), new TreeSet<Integer>());
+        }
+        for (Hallway hallway : hallways.values()) {
+            if (hallway.getHallwayPoints().size() < 3) {
+                mErrors.add(describe(hallway) + " has only " + hallway.getHallwayPoints().size() + " corners");
+            }
+            for (Entrypoint entrypoint : hallway.getConnections()) {
+                if (entrypoint.getHallwayFromID() != hallway.getID()) {
+                    mErrors.add("entrypoint \"" + entrypoint.getName() + "\" of " + describe(hallway)
+                            + " belongs to hallway " + entrypoint.getHallwayFromID());
+                }
+                if (entrypoint.getHallwayToIDList().size() != entrypoint.getPositionToList().size()) {
+                    mErrors.add("entrypoint \"" + entrypoint.getName() + "\" of " + describe(hallway)
+                            + " has " + entrypoint.getHallwayToIDList().size() + " connections but "
+                            + entrypoint.getPositionToList().size() + " positions");
+                }
+                for (int id : entrypoint.getHallwayToIDList()) {
+                    Hallway target = hallways.get(id);
+                    if (target == null) {
+                        mErrors.add("entrypoint \"" + entrypoint.getName() + "\" of " + describe(hallway)
+                                + " is connected to the missing hallway " + id);
+                        continue;
+                    }
+                    if (!isConnected(target, hallway.getID())) {
+                        mWarnings.add("connection from " + describe(hallway) + " to " + describe(target)
+                                + " is only stored in one direction");
+                    }
+                    neighbours.get(hallway.getID()).add(id);
+                    neighbours.get(id).add(hallway.getID());
+                }
+            }
+        }
+
+        // Connected components (breadth first search)
+        List<Set<Integer>> components = new ArrayList<Set<Integer>>();
+        Set<Integer> visited = new HashSet<Integer>();
+        for (int start : hallways.keySet()) {
+            if (!visited.add(start)) {
+                continue;
+            }
+            Set<Integer> component = new TreeSet<Integer>();
+            ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int id = queue.poll();
+                component.add(id);
+                for (int next : neighbours.get(id)) {
+                    if (visited.add(next)) {
+                        queue.add(next);
+                    }
+                }
+            }
+            components.add(component);
+        }
+        if (components.size() > 1) {
+            // The first component contains the hallway with the lowest ID, the others can't be reached from it
+            for (int i = 1; i < components.size(); i++) {
+                mWarnings.add("hallways " + components.get(i) + " can't be reached from hallway "
+                        + hallways.firstKey());
+            }
+        }
+    }
+
+    /**
+     * Signals if a hallway has a connection to another hallway.
+     * @param hallway (hallway with the entrypoints)
+     * @param id (ID of the other hallway)
+     * @return true if one of the entrypoints is connected to the other hallway
+     */
+    private static boolean isConnected(Hallway hallway, int id) {
+        for (Entrypoint entrypoint : hallway.getConnections()) {
+            if (entrypoint.getHallwayToIDList().contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Describes a hallway for the messages.
+     * @param hallway (hallway)
+     * @return text with the name, the ID and the level
+     */
+    private static String describe(Hallway hallway) {
+        return "hallway \"" + hallway.getName() + "\" (id: " + hallway.getID() + ", level: " + hallway.getLevel() + ")";
+    }
+
+    /**
+     * Signals if the graph has no errors (warnings are allowed).
+     * @return true if the graph is valid
+     */
+    public boolean isValid() {
+        return mErrors.isEmpty();
+    }
+
+    /**
+     * Getter function for the errors.
+     * @return errors (empty if the graph is valid)
+     */
+    public List<String> getErrors() {
+        return mErrors;
+    }
+
+    /**
+     * Getter function for the warnings.
+     * @return warnings
+     */
+    public List<String> getWarnings() {
+        return mWarnings;
+    }
+}
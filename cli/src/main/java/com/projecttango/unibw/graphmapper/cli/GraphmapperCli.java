@@ -0,0 +1,403 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.cli;
+
+import com.projecttango.unibw.graphmapper.export.GeoExporter;
+import com.projecttango.unibw.graphmapper.export.GeoJsonWriter;
+import com.projecttango.unibw.graphmapper.export.GeoReference;
+import com.projecttango.unibw.graphmapper.export.GltfWriter;
+import com.projecttango.unibw.graphmapper.export.IndoorGmlWriter;
+import com.projecttango.unibw.graphmapper.export.OsmWriter;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Command line tool for the graph files of the app.</p>
+ *
+ * <p>Usage: {@code graphmapper-cli [options] <graph file or directory>...}</p>
+ *
+ * <p>Every graph file is loaded and, depending on the options, its levels are rendered as PNG images, its
+ * statistics are printed and its connectivity is validated. The files are processed in parallel (one file per
+ * worker thread), the reports are printed in the order of the files. The exit code is 0 if all files were
+ * processed and are valid, 1 if a file failed or has validation errors and 2 for wrong arguments.</p>
+ *
+ * @version 1.0
+ */
+public class GraphmapperCli {
+    /** Exit code if all files are valid */
+    private static final int EXIT_OK = 0;
+    /** Exit code if a file failed or is invalid */
+    private static final int EXIT_FAILED = 1;
+    /** Exit code for wrong arguments */
+    private static final int EXIT_USAGE = 2;
+    /** Help text */
+    private static final String USAGE = "Usage: graphmapper-cli [options] <graph file or directory>...\n"
+            + "  -render        render the plan of each level as PNG (name_levelN.png)\n"
+            + "  -stats         print the statistics of each graph\n"
+            + "  -validate      validate the connectivity of each graph\n"
+            + "  -indoorgml     export each graph as IndoorGML (name.gml)\n"
+            + "  -gltf          export each graph as 3D building model (name.glb)\n"
+            + "  -osm           export each graph as indoor OpenStreetMap data (name.osm), needs -georef\n"
+            + "  -geojson       export each graph as GeoJSON (name.geojson), needs -georef\n"
+            + "  -georef <file> WGS84 coordinates of markers, one 'name latitude longitude' per line\n"
+            + "  -o <dir>       output directory of the images and exports (default: directory of the graph file)\n"
+            + "  -ppm <n>       pixels per meter of the images (default: " + (int) PlanRasterizer.DEFAULT_PIXELS_PER_METER + ")\n"
+            + "  -nolength      don't label the lines with their length\n"
+            + "  -threads <n>   number of worker threads (default: number of cores)\n"
+            + "Without -render, -stats, -validate and an export the first three are done.\n"
+            + "Directories are searched recursively for *_graph.txt and *.json files.";
+
+    /** Signals if the plans are rendered */
+    private boolean mRender;
+    /** Signals if the statistics are printed */
+    private boolean mStats;
+    /** Signals if the graphs are validated */
+    private boolean mValidate;
+    /** Signals if the graphs are exported as IndoorGML */
+    private boolean mIndoorGml;
+    /** Signals if the graphs are exported as glTF building models */
+    private boolean mGltf;
+    /** Signals if the graphs are exported as indoor OpenStreetMap data */
+    private boolean mOsm;
+    /** Signals if the graphs are exported as GeoJSON */
+    private boolean mGeoJson;
+    /** WGS84 coordinates (latitude, longitude) of the reference markers by name */
+    private Map<String, double[]> mMarkerCoordinates;
+    /** Output directory of the images (null: directory of the graph file) */
+    private File mOutput;
+    /** Resolution of the images */
+    private float mPixelsPerMeter = PlanRasterizer.DEFAULT_PIXELS_PER_METER;
+    /** Signals if the length of the lines is labeled */
+    private boolean mShowLength = true;
+    /** Number of worker threads */
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    /** Graph files and directories */
+    private final List<File> mPaths = new ArrayList<File>();
+
+    /**
+     * Entry point of the tool.
+     * @param args (options and graph files or directories)
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        GraphmapperCli cli = new GraphmapperCli();
+        String error = cli.parse(args);
+        if (error != null) {
+            System.err.println(error);
+            System.err.println(USAGE);
+            System.exit(EXIT_USAGE);
+        }
+        System.exit(cli.run());
+    }
+
+    /**
+     * This function parses the arguments.
+     * @param args (options and graph files or directories)
+     * @return error message or null if the arguments are valid
+     */
+    private String parse(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-render")) {
+                    mRender = true;
+                } else if (arg.equals("-stats")) {
+                    mStats = true;
+                } else if (arg.equals("-validate")) {
+                    mValidate = true;
+                } else if (arg.equals("-indoorgml")) {
+                    mIndoorGml = true;
+                } else if (arg.equals("-gltf")) {
+                    mGltf = true;
+                } else if (arg.equals("-osm")) {
+                    mOsm = true;
+                } else if (arg.equals("-geojson")) {
+                    mGeoJson = true;
+                } else if (arg.equals("-georef")) {
+                    mMarkerCoordinates = readCoordinates(new File(args[++i]));
+                } else if (arg.equals("-nolength")) {
+                    mShowLength = false;
+                } else if (arg.equals("-o")) {
+                    mOutput = new File(args[++i]);
+                } else if (arg.equals("-ppm")) {
+                    mPixelsPerMeter = Float.parseFloat(args[++i]);
+                    if (!(mPixelsPerMeter > 0)) {
+                        return "Pixels per meter must be positive";
+                    }
+                } else if (arg.equals("-threads")) {
+                    mThreads = Integer.parseInt(args[++i]);
+                    if (mThreads < 1) {
+                        return "Number of threads must be at least 1";
+                    }
+                } else if (arg.equals("-h") || arg.equals("-help")) {
+                    return "";
+                } else if (arg.startsWith("-")) {
+                    return "Unknown option: " + arg;
+                } else {
+                    mPaths.add(new File(arg));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return "Missing value of option " + args[args.length - 1];
+        } catch (NumberFormatException e) {
+            return "Invalid number: " + e.getMessage();
+        } catch (IOException e) {
+            return "Can't read the reference coordinates: " + e.getMessage();
+        }
+        if (mPaths.isEmpty()) {
+            return "No graph file given";
+        }
+        if ((mOsm || mGeoJson) && mMarkerCoordinates == null) {
+            return "-osm and -geojson need the marker coordinates of -georef";
+        }
+        if (!mRender && !mStats && !mValidate && !mIndoorGml && !mGltf && !mOsm && !mGeoJson) {
+            mRender = true;
+            mStats = true;
+            mValidate = true;
+        }
+        return null;
+    }
+
+    /**
+     * This function processes all graph files in parallel and prints the reports in the order of the files.
+     * @return exit code
+     */
+    private int run() {
+        for (File path : mPaths) {
+            if (!path.exists()) {
+                System.err.println("Not found: " + path);
+                return EXIT_FAILED;
+            }
+        }
+        if (mOutput != null && !mOutput.isDirectory() && !mOutput.mkdirs()) {
+            System.err.println("Can't create the output directory: " + mOutput);
+            return EXIT_FAILED;
+        }
+        List<File> files = GraphFile.collect(mPaths);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(mThreads, Math.max(1, files.size())));
+        List<Future<Report>> reports = new ArrayList<Future<Report>>();
+        for (final File file : files) {
+            reports.add(executor.submit(new Callable<Report>() {
+                @Override
+                public Report call() {
+                    return process(file);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        int failed = 0;
+        for (int i = 0; i < reports.size(); i++) {
+            Report report;
+            try {
+                report = reports.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                return EXIT_FAILED;
+            } catch (ExecutionException e) {
+                report = new Report(files.get(i));
+                report.fail(e.getCause());
+            }
+            System.out.print(report.mText);
+            if (!report.mOk) {
+                failed++;
+            }
+        }
+        System.out.println(files.size() + " graph files, " + failed + " failed");
+        return failed == 0 ? EXIT_OK : EXIT_FAILED;
+    }
+
+    /**
+     * This function processes one graph file (runs on a worker thread).
+     * @param file (graph file)
+     * @return report of the file
+     */
+    private Report process(File file) {
+        Report report = new Report(file);
+        try {
+            Graph graph = GraphFile.load(file);
+            if (mStats) {
+                report.mText.append(new GraphStatistics(graph));
+            }
+            if (mValidate) {
+                GraphValidator validator = new GraphValidator(graph);
+                for (String error : validator.getErrors()) {
+                    report.mText.append("  error: ").append(error).append('\n');
+                }
+                for (String warning : validator.getWarnings()) {
+                    report.mText.append("  warning: ").append(warning).append('\n');
+                }
+                report.mText.append("validation: ").append(validator.isValid() ? "ok" : "failed").append('\n');
+                report.mOk = validator.isValid();
+            }
+            File directory = mOutput != null ? mOutput : file.getAbsoluteFile().getParentFile();
+            if (mIndoorGml) {
+                File gml = new File(directory, GraphFile.getName(file) + ".gml");
+                new IndoorGmlWriter().write(graph, gml);
+                report.mText.append("exported: ").append(gml.getPath()).append('\n');
+            }
+            if (mGltf) {
+                File glb = new File(directory, GraphFile.getName(file) + ".glb");
+                new GltfWriter().write(graph, glb);
+                report.mText.append("exported: ").append(glb.getPath()).append('\n');
+            }
+            if (mOsm || mGeoJson) {
+                exportGeo(graph, directory, GraphFile.getName(file), report);
+            }
+            if (mRender) {
+                PlanRasterizer rasterizer = new PlanRasterizer(mPixelsPerMeter, mShowLength);
+                for (File image : rasterizer.writeLevels(graph, directory, GraphFile.getName(file))) {
+                    report.mText.append("rendered: ").append(image.getPath()).append('\n');
+                }
+            }
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            report.fail(e);
+        }
+        return report;
+    }
+
+    /**
+     * This function exports a graph as georeferenced OSM and/or GeoJSON in one pass.
+     * @param graph (navigation graph)
+     * @param directory (output directory)
+     * @param name (name of the graph)
+     * @param report (report of the file)
+     * @throws IOException (if a file can't be written)
+     */
+    private void exportGeo(Graph graph, File directory, String name, Report report) throws IOException {
+        GeoReference reference = GeoReference.fromMarkers(graph, mMarkerCoordinates);
+        report.mText.append(String.format(Locale.US, "georeference: scale %.4f, rotation %.2f deg, error %.3f m%n",
+                reference.getScale(), reference.getRotation(), reference.getError()));
+        File osm = new File(directory, name + ".osm");
+        File geoJson = new File(directory, name + ".geojson");
+        Writer osmOut = null;
+        Writer geoJsonOut = null;
+        try {
+            if (mOsm) {
+                osmOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(osm), "UTF-8"));
+            }
+            if (mGeoJson) {
+                geoJsonOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(geoJson), "UTF-8"));
+            }
+            new GeoExporter(reference).export(graph, osmOut != null ? new OsmWriter(osmOut) : null,
+                    geoJsonOut != null ? new GeoJsonWriter(geoJsonOut) : null);
+        } finally {
+            if (osmOut != null) {
+                osmOut.close();
+            }
+            if (geoJsonOut != null) {
+                geoJsonOut.close();
+            }
+        }
+        if (mOsm) {
+            report.mText.append("exported: ").append(osm.getPath()).append('\n');
+        }
+        if (mGeoJson) {
+            report.mText.append("exported: ").append(geoJson.getPath()).append('\n');
+        }
+    }
+
+    /**
+     * This function reads the WGS84 coordinates of the reference markers.
+     * @param file (text file with 'name latitude longitude' per line, empty lines and lines with # are skipped)
+     * @return coordinates (latitude, longitude) by marker name
+     * @throws IOException (if the file can't be read or a line is invalid)
+     */
+    private static Map<String, double[]> readCoordinates(File file) throws IOException {
+        Map<String, double[]> coordinates = new HashMap<String, double[]>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                // The name may contain spaces, the coordinates are the last two fields
+                String[] fields = line.split("\\s+");
+                if (fields.length < 3) {
+                    throw new IOException("line " + number + " needs a name, a latitude and a longitude");
+                }
+                try {
+                    double latitude = Double.parseDouble(fields[fields.length - 2]);
+                    double longitude = Double.parseDouble(fields[fields.length - 1]);
+                    String name = line.replaceFirst("\\s+\\S+\\s+\\S+$", "");
+                    coordinates.put(name, new double[]{latitude, longitude});
+                } catch (NumberFormatException e) {
+                    throw new IOException("line " + number + " has invalid coordinates");
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return coordinates;
+    }
+
+    /**
+     * Report of one graph file.
+     */
+    private static class Report {
+        /** Text of the report */
+        private final StringBuilder mText = new StringBuilder();
+        /** Signals if the file was processed and is valid */
+        private boolean mOk = true;
+
+        /**
+         * Constructor (Creates a report with the name of the file as header)
+         * @param file (graph file)
+         */
+        Report(File file) {
+            mText.append("== ").append(file.getPath()).append('\n');
+        }
+
+        /**
+         * Marks the file as failed.
+         * @param e (cause of the failure)
+         */
+        void fail(Throwable e) {
+            mText.append("  error: ").append(e).append('\n');
+            mOk = false;
+        }
+    }
+}
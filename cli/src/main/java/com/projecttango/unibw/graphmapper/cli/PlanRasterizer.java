@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Note:
+ * The classes of this project are based on the Java Floorplan example and there are influences from the other Java examples.
+ * They can be found on https://github.com/googlesamples/tango-examples-java.
+ */
+
+
+package com.projecttango.unibw.graphmapper.cli;
+
+import com.projecttango.unibw.graphmapper.export.PlanStyle;
+import com.projecttango.unibw.graphmapper.graph.BoundingBox;
+import com.projecttango.unibw.graphmapper.graph.Entrypoint;
+import com.projecttango.unibw.graphmapper.graph.Graph;
+import com.projecttango.unibw.graphmapper.graph.Hallway;
+import com.projecttango.unibw.graphmapper.graph.Marker;
+import com.projecttango.unibw.graphmapper.graph.OutlineLod;
+import com.projecttango.unibw.graphmapper.graph.Room;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * <p>Renders the floorplan of a level into an image with java.awt, so no display or Android device is needed
+ * (headless mode).</p>
+ *
+ * <p>The plan looks like the PlanView of the app: black outlines and obstacles, the lengths of the lines,
+ * the names of the hallways and the POIs as colored points with their names. The size of the image follows
+ * from the size of the level and the pixels per meter. Very large levels are scaled down, so one image has
+ * at most {@link #MAX_SIZE} pixels per side.</p>
+ *
+ * @version 1.0
+ */
+public class PlanRasterizer {
+    /** Default resolution of the images */
+    public static final float DEFAULT_PIXELS_PER_METER = 100;
+    /** Maximum width and height of an image in pixels (limits the memory of one image to 256 MB) */
+    public static final int MAX_SIZE = 8192;
+    /** Line width of the outlines in pixels (like the app) */
+    private static final float LINE_WIDTH = 3;
+    /** Diameter of the POI points in pixels (like the app) */
+    private static final float POINT_WIDTH = 20;
+    /** Text size of the labels in pixels (like the app) */
+    private static final int TEXT_SIZE = 30;
+
+    /** Resolution of the images */
+    private final float mPixelsPerMeter;
+    /** Signals if the length of the lines is labeled */
+    private final boolean mShowLength;
+
+    /**
+     * Constructor (Creates a rasterizer)
+     * @param pixelsPerMeter (resolution of the images)
+     * @param showLength (signals if the length of the lines is labeled)
+     */
+    public PlanRasterizer(float pixelsPerMeter, boolean showLength) {
+        mPixelsPerMeter = pixelsPerMeter;
+        mShowLength = showLength;
+    }
+
+    /**
+     * This function renders all levels of the graph and writes them as PNG files.
+     * @param graph (navigation graph)
+     * @param directory (target directory)
+     * @param name (prefix of the file names, e.g. the name of the recording)
+     * @return written files ("name_levelN.png")
+     * @throws IOException (if an image can't be written)
+     */
+    public List<File> writeLevels(Graph graph, File directory, String name) throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (int level : graph.getLevels()) {
+            File file = new File(directory, name + "_level" + level + ".png");
+            BufferedImage image = render(graph, level);
+            if (!ImageIO.write(image, "png", file)) {
+                throw new IOException("No PNG writer available");
+            }
+            image.flush();
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * This function renders the plan of one level.
+     * @param graph (navigation graph)
+     * @param level (level to be rendered)
+     * @return image of the plan (white background)
+     */
+    public BufferedImage render(Graph graph, int level) {
+        List<Hallway> hallways = graph.getLevelHallways(level);
+        BoundingBox bounds = graph.getLevelBounds(level);
+        float[] min = bounds.isEmpty() ? new float[3] : bounds.getMin();
+        float width = bounds.getWidth() + 2 * PlanStyle.MARGIN;
+        float depth = bounds.getDepth() + 2 * PlanStyle.MARGIN;
+        float scale = Math.min(mPixelsPerMeter, MAX_SIZE / Math.max(width, depth));
+        float left = min[0] - PlanStyle.MARGIN;
+        float top = min[2] - PlanStyle.MARGIN;
+
+        BufferedImage image = new BufferedImage(Math.max(1, Math.round(width * scale)),
+                Math.max(1, Math.round(depth * scale)), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, TEXT_SIZE));
+            g.translate(-left * scale, -top * scale);
+
+            // Outlines and obstacles in one path (simplified to half a pixel)
+            float tolerance = OutlineLod.getTolerance(scale);
+            Path2D.Float path = new Path2D.Float();
+            for (Hallway hallway : hallways) {
+                appendRing(path, hallway.getHallwayPoints(tolerance), scale);
+                for (List<float[]> obstacle : hallway.getObstacles(tolerance)) {
+                    appendRing(path, obstacle, scale);
+                }
+            }
+            g.setColor(new Color(PlanStyle.LINE_COLOR));
+            g.setStroke(new BasicStroke(LINE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g.draw(path);
+
+            // Labels of the lines and hallways
+            for (Hallway hallway : hallways) {
+                if (mShowLength) {
+                    drawLengths(g, hallway.getHallwayPoints(tolerance), scale);
+                    for (List<float[]> obstacle : hallway.getObstacles(tolerance)) {
+                        drawLengths(g, obstacle, scale);
+                    }
+                }
+                if (!hallway.getHallwayPoints().isEmpty()) {
+                    drawLabel(g, hallway.getName(), hallway.getHallwayPoints().get(0), scale);
+                }
+            }
+
+            // POIs
+            for (Hallway hallway : hallways) {
+                g.setColor(new Color(PlanStyle.ROOM_COLOR));
+                for (Room room : hallway.getRooms()) {
+                    drawPoint(g, room.getPosition(), scale);
+                    drawLabel(g, room.getNumber(), room.getPosition(), scale);
+                }
+                g.setColor(new Color(PlanStyle.MARKER_COLOR));
+                for (Marker marker : hallway.getMarkers()) {
+                    drawPoint(g, marker.getPosition(), scale);
+                    drawLabel(g, marker.getName(), marker.getPosition(), scale);
+                }
+                g.setColor(new Color(PlanStyle.ENTRYPOINT_COLOR));
+                for (Entrypoint entrypoint : hallway.getConnections()) {
+                    drawPoint(g, entrypoint.getPositionFrom(), scale);
+                    drawLabel(g, entrypoint.getName(), entrypoint.getPositionFrom(), scale);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Appends a closed ring to the path.
+     * @param path (target path in pixels)
+     * @param points (corner points of the ring in meters)
+     * @param scale (pixels per meter)
+     */
+    private static void appendRing(Path2D.Float path, List<float[]> points, float scale) {
+        for (int i = 0; i < points.size(); i++) {
+            float[] point = points.get(i);
+            if (i == 0) {
+                path.moveTo(point[0] * scale, point[2] * scale);
+            } else {
+                path.lineTo(point[0] * scale, point[2] * scale);
+            }
+        }
+        if (!points.isEmpty()) {
+            path.closePath();
+        }
+    }
+
+    /**
+     * Labels each line of a closed ring with its length in the middle of the line.
+     * @param g (graphics of the image, the color is the line color)
+     * @param points (corner points of the ring in meters)
+     * @param scale (pixels per meter)
+     */
+    private static void drawLengths(Graphics2D g, List<float[]> points, float scale) {
+        for (int i = 0; i < points.size(); i++) {
+            float[] from = points.get(i);
+            float[] to = points.get((i + 1) % points.size());
+            double length = Math.hypot(from[0] - to[0], from[2] - to[2]);
+            g.drawString(String.format(Locale.ROOT, "%.2f", length) + "m",
+                    (from[0] + to[0]) / 2 * scale, (from[2] + to[2]) / 2 * scale);
+        }
+    }
+
+    /**
+     * Draws a POI point with the current color.
+     * @param g (graphics of the image)
+     * @param position (position of the POI in meters)
+     * @param scale (pixels per meter)
+     */
+    private static void drawPoint(Graphics2D g, float[] position, float scale) {
+        g.fill(new Ellipse2D.Float(position[0] * scale - POINT_WIDTH / 2, position[2] * scale - POINT_WIDTH / 2,
+                POINT_WIDTH, POINT_WIDTH));
+    }
+
+    /**
+     * Draws a label with the current color above and to the right of its position.
+     * @param g (graphics of the image)
+     * @param text (text of the label, nothing is drawn if it is null or empty)
+     * @param position (position of the labeled element in meters)
+     * @param scale (pixels per meter)
+     */
+    private static void drawLabel(Graphics2D g, String text, float[] position, float scale) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        g.drawString(text, position[0] * scale + POINT_WIDTH, position[2] * scale - POINT_WIDTH / 2);
+    }
+}